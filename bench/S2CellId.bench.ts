@@ -0,0 +1,133 @@
+import Long = require('long');
+import {S2CellId} from "../src/S2CellId";
+import {S2CellIdBits} from "../src/S2CellIdBits";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2Point} from "../src/S2Point";
+import {S2Projections} from "../src/S2Projections";
+import {R2Vector} from "../src/R2Vector";
+import {suite} from "./harness";
+
+// The Long based implementations that S2CellId used before it delegated to
+// S2CellIdBits, kept here as the "before" baseline.
+const legacy = {
+  lowestOnBitForLevel(level:number):Long {
+    return new Long(1).shiftLeft(2 * (S2CellId.MAX_LEVEL - level));
+  },
+  parentL(id:Long, level:number):Long {
+    const newLsb = legacy.lowestOnBitForLevel(level);
+    return id.and(newLsb.negate()).or(newLsb);
+  },
+  contains(id:Long, other:Long):boolean {
+    const lsb = id.and(id.negate());
+    const min = id.sub(lsb.sub(1));
+    const max = id.add(lsb.sub(1));
+    const o = other.toUnsigned();
+    return (o.greaterThan(min.toUnsigned()) || other.equals(min))
+        && (o.lessThan(max.toUnsigned()) || other.equals(max));
+  },
+  fromPoint(p:S2Point):Long {
+    const face = S2Projections.xyzToFaceP(p);
+    const t = S2Projections.faceToUvTransform(face);
+    const i = S2Projections.stToIj(R2Vector.singleUVToST(t.xyzToU(p.x, p.y, p.z)));
+    const j = S2Projections.stToIj(R2Vector.singleUVToST(t.xyzToV(p.x, p.y, p.z)));
+    const faceL = new Long(face);
+    const n = [new Long(0), faceL.shiftLeft(S2CellId.POS_BITS - 33)];
+    let bits = faceL.and(1);
+    const mask = new Long(1).shiftLeft(S2CellId.LOOKUP_BITS).sub(1);
+    for (let k = 7; k >= 0; --k) {
+      bits = bits.add(new Long(i).shiftRight(k * S2CellId.LOOKUP_BITS).and(mask).shiftLeft(S2CellId.LOOKUP_BITS + 2));
+      bits = bits.add(new Long(j).shiftRight(k * S2CellId.LOOKUP_BITS).and(mask).shiftLeft(2));
+      bits = S2CellId.LOOKUP_POS[bits.toNumber()];
+      n[k >> 2] = n[k >> 2].or(bits.shiftRight(2).shiftLeft((k & 3) * 2 * S2CellId.LOOKUP_BITS));
+      bits = bits.and(3);
+    }
+    return n[1].shiftLeft(32).add(n[0]).shiftLeft(1).add(1);
+  }
+};
+
+const N = 4096;
+const points:S2Point[] = [];
+const cells:S2CellId[] = [];
+const parents:S2CellId[] = [];
+const words = new Uint32Array(4 * N);
+for (let k = 0; k < N; k++) {
+  const p = S2LatLng.fromDegrees(Math.random() * 180 - 90, Math.random() * 360 - 180).toPoint();
+  points.push(p);
+  const cell = S2CellId.fromPoint(p);
+  cells.push(cell);
+  parents.push(cell.parentL(12));
+  S2CellIdBits.fromLong(cell.id, words, 4 * k);
+  S2CellIdBits.fromLong(parents[k].id, words, 4 * k + 2);
+}
+
+let k = 0;
+let sink = 0;
+const out = new Uint32Array(2);
+
+suite('S2CellId.fromPoint', {
+  'Long (before)': () => {
+    sink ^= legacy.fromPoint(points[k++ & (N - 1)]).low;
+  },
+  'S2CellId': () => {
+    sink ^= S2CellId.fromPoint(points[k++ & (N - 1)]).id.low;
+  },
+  'S2CellIdBits': () => {
+    const p = points[k++ & (N - 1)];
+    S2CellIdBits.fromPoint(p.x, p.y, p.z, out);
+    sink ^= out[0];
+  },
+});
+
+const lats = new Float64Array(N);
+const lngs = new Float64Array(N);
+points.forEach((p, i) => {
+  const ll = S2LatLng.fromPoint(p);
+  lats[i] = ll.latDegrees;
+  lngs[i] = ll.lngDegrees;
+});
+const batchOut = new Uint32Array(2 * N);
+
+suite(`lat/lng degrees -> cell id at level 16 (x${N})`, {
+  'S2LatLng + S2CellId': () => {
+    for (let i = 0; i < N; i++) {
+      sink ^= S2CellId.fromPoint(S2LatLng.fromDegrees(lats[i], lngs[i]).toPoint()).parentL(16).id.low;
+    }
+  },
+  'S2CellIdBits.fromLatLngDegrees': () => {
+    S2CellIdBits.fromLatLngDegrees(lats, lngs, 16, batchOut);
+    sink ^= batchOut[0];
+  },
+});
+
+suite('S2CellId.parentL(12)', {
+  'Long (before)': () => {
+    sink ^= legacy.parentL(cells[k++ & (N - 1)].id, 12).low;
+  },
+  'S2CellId': () => {
+    sink ^= cells[k++ & (N - 1)].parentL(12).id.low;
+  },
+  'S2CellIdBits': () => {
+    const o = 4 * (k++ & (N - 1));
+    S2CellIdBits.parent(words[o + 1], words[o], 12, out);
+    sink ^= out[0];
+  },
+});
+
+suite('S2CellId.contains', {
+  'Long (before)': () => {
+    const i = k++ & (N - 1);
+    sink ^= legacy.contains(parents[i].id, cells[i].id) ? 1 : 0;
+  },
+  'S2CellId': () => {
+    const i = k++ & (N - 1);
+    sink ^= parents[i].contains(cells[i]) ? 1 : 0;
+  },
+  'S2CellIdBits': () => {
+    const o = 4 * (k++ & (N - 1));
+    sink ^= S2CellIdBits.contains(words[o + 3], words[o + 2], words[o + 1], words[o]) ? 1 : 0;
+  },
+});
+
+if (sink === 42) {
+  console.log('');
+}
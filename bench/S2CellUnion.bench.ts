@@ -0,0 +1,59 @@
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2Cap} from "../src/S2Cap";
+import {S2CellUnion} from "../src/S2CellUnion";
+import {S2PackedCellUnion} from "../src/S2PackedCellUnion";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2LatLngRect} from "../src/S2LatLngRect";
+import {S1Angle} from "../src/S1Angle";
+import {S2CellId} from "../src/S2CellId";
+import {suite} from "./harness";
+
+const coverer = new S2RegionCoverer().setMaxCells(1000).setMaxLevel(20);
+const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.4, 11.9).toPoint(), S1Angle.degrees(0.5));
+const rect = S2LatLngRect.fromPointPair(S2LatLng.fromDegrees(45.0, 11.0), S2LatLng.fromDegrees(46.0, 12.5));
+const capUnion = coverer.getCoveringUnion(cap);
+const rectUnion = coverer.getCoveringUnion(rect);
+const capPacked = S2PackedCellUnion.fromCellUnion(capUnion);
+const rectPacked = S2PackedCellUnion.fromCellUnion(rectUnion);
+
+const probes:S2CellId[] = [];
+for (let i = 0; i < 1024; i++) {
+  probes.push(S2CellId.fromPoint(S2LatLng.fromDegrees(45 + Math.random(), 11 + 1.5 * Math.random()).toPoint()));
+}
+const probeWords = new Uint32Array(2 * probes.length);
+probes.forEach((id, i) => {
+  probeWords[2 * i] = id.id.low;
+  probeWords[2 * i + 1] = id.id.high;
+});
+
+let sink = 0;
+let k = 0;
+suite(`S2CellUnion vs S2PackedCellUnion (${capUnion.size()} and ${rectUnion.size()} cells)`, {
+  'S2CellUnion.contains': () => {
+    sink ^= capUnion.contains(probes[k++ & 1023]) ? 1 : 0;
+  },
+  'S2PackedCellUnion.containsRaw': () => {
+    const i = k++ & 1023;
+    sink ^= capPacked.containsRaw(probeWords[2 * i + 1], probeWords[2 * i]) ? 1 : 0;
+  },
+  'S2CellUnion.getUnion': () => {
+    const union = new S2CellUnion();
+    union.getUnion(capUnion, rectUnion);
+    sink ^= union.size();
+  },
+  'S2PackedCellUnion.union': () => {
+    sink ^= S2PackedCellUnion.union(capPacked, rectPacked).size();
+  },
+  'S2CellUnion.getIntersectionUU': () => {
+    const union = new S2CellUnion();
+    union.getIntersectionUU(capUnion, rectUnion);
+    sink ^= union.size();
+  },
+  'S2PackedCellUnion.intersection': () => {
+    sink ^= S2PackedCellUnion.intersection(capPacked, rectPacked).size();
+  },
+}, 500);
+
+if (sink === 42) {
+  console.log('');
+}
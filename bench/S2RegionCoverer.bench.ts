@@ -0,0 +1,37 @@
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2Cap} from "../src/S2Cap";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2LatLngRect} from "../src/S2LatLngRect";
+import {S1Angle} from "../src/S1Angle";
+import {suite} from "./harness";
+
+const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.4, 11.9).toPoint(), S1Angle.degrees(0.5));
+const rect = S2LatLngRect.fromPointPair(S2LatLng.fromDegrees(45.0, 11.0), S2LatLng.fromDegrees(46.0, 12.5));
+
+const coverers:{[maxCells:number]:S2RegionCoverer} = {};
+[8, 200, 1000].forEach(maxCells => {
+  coverers[maxCells] = new S2RegionCoverer().setMaxCells(maxCells).setMaxLevel(20);
+});
+
+let sink = 0;
+suite('S2RegionCoverer.getCoveringCells', {
+  'cap, maxCells=8': () => {
+    sink ^= coverers[8].getCoveringCells(cap).length;
+  },
+  'cap, maxCells=200': () => {
+    sink ^= coverers[200].getCoveringCells(cap).length;
+  },
+  'cap, maxCells=1000': () => {
+    sink ^= coverers[1000].getCoveringCells(cap).length;
+  },
+  'rect, maxCells=200': () => {
+    sink ^= coverers[200].getCoveringCells(rect).length;
+  },
+  'rect interior, maxCells=200': () => {
+    sink ^= coverers[200].getInteriorCoveringCells(rect).length;
+  },
+});
+
+if (sink === 42) {
+  console.log('');
+}
@@ -0,0 +1,54 @@
+/**
+ * Minimal benchmark harness. Every case is a function performing a single
+ * operation (or opsPerCall operations, when it loops over a set of inputs);
+ * it is called in batches until minTimeMs has elapsed and the throughput is
+ * reported as operations per second.
+ */
+export interface BenchResult {
+  name: string;
+  ops: number;
+  opsPerSec: number;
+}
+
+function nowMs():number {
+  const [sec, nanos] = process.hrtime();
+  return sec * 1e3 + nanos / 1e6;
+}
+
+export function bench(name:string, fn:() => void, minTimeMs = 1000, opsPerCall = 1):BenchResult {
+  // Warm up so that the optimizing compiler has a chance to kick in.
+  for (let i = 0; i < Math.ceil(10000 / opsPerCall); i++) {
+    fn();
+  }
+  let calls = 0;
+  let batch = Math.ceil(1000 / opsPerCall);
+  const start = nowMs();
+  let elapsed = 0;
+  while (elapsed < minTimeMs) {
+    for (let i = 0; i < batch; i++) {
+      fn();
+    }
+    calls += batch;
+    batch = Math.min(batch * 2, 1 << 20);
+    elapsed = nowMs() - start;
+  }
+  return {name, ops: calls * opsPerCall, opsPerSec: calls * opsPerCall * 1000 / elapsed};
+}
+
+function pad(str:string, width:number, left = false):string {
+  while (str.length < width) {
+    str = left ? ' ' + str : str + ' ';
+  }
+  return str;
+}
+
+export function suite(title:string, cases:{[name:string]:() => void}, minTimeMs = 1000):BenchResult[] {
+  console.log(`\n${title}`);
+  const results:BenchResult[] = [];
+  Object.keys(cases).forEach(name => {
+    const result = bench(name, cases[name], minTimeMs);
+    results.push(result);
+    console.log(`  ${pad(name, 40)} ${pad(Math.round(result.opsPerSec).toLocaleString(), 15, true)} ops/sec`);
+  });
+  return results;
+}
@@ -0,0 +1,3 @@
+import './S2CellId.bench';
+import './S2CellUnion.bench';
+import './S2RegionCoverer.bench';
@@ -0,0 +1,58 @@
+import * as os from "os";
+import {S2CoveringPool} from "../src/S2CoveringPool";
+import {S2RegionCodec} from "../src/S2RegionCodec";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2Cap} from "../src/S2Cap";
+import {S2LatLng} from "../src/S2LatLng";
+import {S1Angle} from "../src/S1Angle";
+import {S2Region} from "../src/S2Region";
+
+/**
+ * Measures how S2CoveringPool scales: the same batch of caps is covered with
+ * 1, 2, 4... workers up to the number of cores, and compared with covering
+ * them in the main thread.
+ *
+ * Usage: ts-node bench/pool.ts [regions]
+ */
+const count = parseInt(process.argv[2] || '20000', 10);
+const regions:S2Region[] = [];
+for (let i = 0; i < count; i++) {
+  const lat = -80 + 160 * ((i * 0.6180339887498949) % 1);
+  const lng = -180 + 360 * ((i * 0.7548776662466927) % 1);
+  regions.push(S2Cap.fromAxisAngle(S2LatLng.fromDegrees(lat, lng).toPoint(), S1Angle.degrees(0.05 + (i % 10) * 0.05)));
+}
+const encoded = S2RegionCodec.encode(regions);
+const coverer = new S2RegionCoverer().setMaxCells(200).setMaxLevel(20);
+
+function nowMs():number {
+  const [sec, nanos] = process.hrtime();
+  return sec * 1e3 + nanos / 1e6;
+}
+
+async function main() {
+  console.log(`\nS2CoveringPool, ${count} caps, maxCells 200`);
+  let start = nowMs();
+  regions.forEach(region => coverer.getCoveringUnion(region));
+  const single = count * 1000 / (nowMs() - start);
+  console.log(`  ${'main thread'.padEnd(12)} ${Math.round(single).toLocaleString().padStart(10)} regions/sec`);
+
+  for (let size = 1; ; size = Math.min(2 * size, os.cpus().length)) {
+    const pool = new S2CoveringPool(size);
+    // Warm up the workers, which also makes sure they are all started.
+    await pool.getCoverings(encoded.subarray(0, 5 * 40 * size), coverer);
+    start = nowMs();
+    await pool.getCoverings(encoded, coverer);
+    const rate = count * 1000 / (nowMs() - start);
+    console.log(`  ${(size + ' workers').padEnd(12)} ${Math.round(rate).toLocaleString().padStart(10)} regions/sec` +
+        `  x${(rate / single).toFixed(2)}`);
+    await pool.close();
+    if (size === os.cpus().length) {
+      break;
+    }
+  }
+}
+
+main().catch(e => {
+  console.error(e);
+  process.exit(1);
+});
@@ -0,0 +1,32 @@
+import * as fs from "fs";
+
+/**
+ * Prints the node/java throughput ratio of every benchmark found in both JSON
+ * reports (JMH's -rf json output and the one written by bench/reference/index.ts).
+ *
+ * Usage: ts-node bench/reference/compare.ts [java.json] [node.json]
+ */
+interface ReportEntry {
+  benchmark: string;
+  primaryMetric: {score: number, scoreUnit: string};
+}
+
+function read(file:string):{[benchmark:string]:number} {
+  const scores:{[benchmark:string]:number} = {};
+  (JSON.parse(fs.readFileSync(file, 'utf8')) as ReportEntry[]).forEach(entry => {
+    if (entry.primaryMetric.scoreUnit !== 'ops/s') {
+      throw new Error(`${file}: ${entry.benchmark} is in ${entry.primaryMetric.scoreUnit}, expected ops/s`);
+    }
+    scores[entry.benchmark] = entry.primaryMetric.score;
+  });
+  return scores;
+}
+
+const java = read(process.argv[2] || 'java-test-creator/build/jmh-result.json');
+const node = read(process.argv[3] || 'java-test-creator/build/node-result.json');
+
+Object.keys(java).filter(name => name in node).forEach(name => {
+  const ratio = node[name] / java[name];
+  console.log(`${name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1)}: ` +
+      `java ${Math.round(java[name])} ops/s, node ${Math.round(node[name])} ops/s, node/java ${ratio.toFixed(3)}`);
+});
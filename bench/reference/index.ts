@@ -0,0 +1,94 @@
+import * as fs from "fs";
+import * as path from "path";
+import {S2CellId} from "../../src/S2CellId";
+import {S2CellUnion} from "../../src/S2CellUnion";
+import {S2RegionCoverer} from "../../src/S2RegionCoverer";
+import {bench, BenchResult} from "../harness";
+import * as inputs from "./inputs";
+
+/**
+ * Node side of the reference benchmarks in java-test-creator/src/jmh. Every case
+ * runs over the same inputs as its JMH counterpart and the results are written
+ * in the layout of JMH's JSON report (benchmark, mode, primaryMetric) so that
+ * bench/reference/compare.ts can read both.
+ *
+ * Usage: ts-node bench/reference/index.ts [output.json]
+ */
+const output = process.argv[2] || 'java-test-creator/build/node-result.json';
+const PACKAGE = 'com.andreabaccega.bench.';
+
+const latLngs = inputs.latLngs();
+const cells = inputs.cells();
+const caps = inputs.caps();
+const rects = inputs.rects();
+const coverer = new S2RegionCoverer().setMaxCells(200).setMaxLevel(20);
+const unionCells = inputs.unionCells(0);
+const first = unionCells.map(ids => {
+  const union = new S2CellUnion();
+  union.initFromCellIds(ids.slice());
+  return union;
+});
+const second = inputs.unionCells(0.1).map(ids => {
+  const union = new S2CellUnion();
+  union.initFromCellIds(ids);
+  return union;
+});
+
+let sink = 0;
+const cases:{[name:string]:[number, () => void]} = {
+  'S2CellIdBenchmark.fromLatLng': [inputs.POINTS, () => {
+    for (let i = 0; i < latLngs.length; i++) {
+      sink ^= S2CellId.fromPoint(latLngs[i].toPoint()).id.low;
+    }
+  }],
+  'S2CellIdBenchmark.parent': [inputs.POINTS, () => {
+    for (let i = 0; i < cells.length; i++) {
+      sink ^= cells[i].parentL(8).id.low;
+    }
+  }],
+  'S2CellIdBenchmark.getAllNeighbors': [inputs.POINTS, () => {
+    for (let i = 0; i < cells.length; i++) {
+      sink ^= cells[i].getAllNeighbors(cells[i].level() + 1).length;
+    }
+  }],
+  'S2RegionCovererBenchmark.getCoveringCap': [inputs.REGIONS, () => {
+    for (let i = 0; i < caps.length; i++) {
+      sink ^= coverer.getCoveringUnion(caps[i]).size();
+    }
+  }],
+  'S2RegionCovererBenchmark.getCoveringRect': [inputs.REGIONS, () => {
+    for (let i = 0; i < rects.length; i++) {
+      sink ^= coverer.getCoveringUnion(rects[i]).size();
+    }
+  }],
+  // initFromCellIds sorts its argument in place, so it gets a fresh copy like in Java.
+  'S2CellUnionBenchmark.normalize': [inputs.REGIONS, () => {
+    for (let i = 0; i < unionCells.length; i++) {
+      const union = new S2CellUnion();
+      union.initFromCellIds(unionCells[i].slice());
+      sink ^= union.size();
+    }
+  }],
+  'S2CellUnionBenchmark.getIntersection': [inputs.REGIONS, () => {
+    for (let i = 0; i < first.length; i++) {
+      const union = new S2CellUnion();
+      union.getIntersectionUU(first[i], second[i]);
+      sink ^= union.size();
+    }
+  }],
+};
+
+const report = Object.keys(cases).map(name => {
+  const [opsPerCall, fn] = cases[name];
+  const result:BenchResult = bench(name, fn, 5000, opsPerCall);
+  console.log(`${name}: ${Math.round(result.opsPerSec)} ops/s`);
+  return {
+    benchmark: PACKAGE + name,
+    mode: 'thrpt',
+    primaryMetric: {score: result.opsPerSec, scoreUnit: 'ops/s'},
+  };
+});
+
+fs.mkdirSync(path.dirname(output), {recursive: true});
+fs.writeFileSync(output, JSON.stringify(report, null, 2));
+console.log(`Written ${output} (${sink & 1})`);
@@ -0,0 +1,84 @@
+import {S2CellId} from "../../src/S2CellId";
+import {S2LatLng} from "../../src/S2LatLng";
+import {S2Cap} from "../../src/S2Cap";
+import {S2LatLngRect} from "../../src/S2LatLngRect";
+import {S1Angle} from "../../src/S1Angle";
+
+/**
+ * Port of java-test-creator/src/jmh/.../BenchInputs.java. The inputs are computed
+ * from plain double arithmetic so that both sides benchmark exactly the same
+ * points, regions and unions. Keep the two in sync.
+ */
+export const POINTS = 1024;
+export const REGIONS = 64;
+export const UNION_CELLS = 64;
+
+function frac(x:number):number {
+  return x - Math.floor(x);
+}
+
+function lat(k:number):number {
+  return -89 + 178 * frac(k * 0.6180339887498949);
+}
+
+function lng(k:number):number {
+  return -180 + 360 * frac(k * 0.7548776662466927);
+}
+
+export function latLngs():S2LatLng[] {
+  const toRet:S2LatLng[] = [];
+  for (let k = 0; k < POINTS; k++) {
+    toRet.push(S2LatLng.fromDegrees(lat(k), lng(k)));
+  }
+  return toRet;
+}
+
+/** Cells between level 10 and 15. */
+export function cells():S2CellId[] {
+  const toRet:S2CellId[] = [];
+  for (let k = 0; k < POINTS; k++) {
+    toRet.push(S2CellId.fromPoint(S2LatLng.fromDegrees(lat(k), lng(k)).toPoint()).parentL(10 + k % 6));
+  }
+  return toRet;
+}
+
+export function caps():S2Cap[] {
+  const toRet:S2Cap[] = [];
+  for (let k = 0; k < REGIONS; k++) {
+    toRet.push(S2Cap.fromAxisAngle(
+      S2LatLng.fromDegrees(lat(16 * k), lng(16 * k)).toPoint(),
+      S1Angle.degrees(0.05 * (1 + k % 20))));
+  }
+  return toRet;
+}
+
+export function rects():S2LatLngRect[] {
+  const toRet:S2LatLngRect[] = [];
+  for (let k = 0; k < REGIONS; k++) {
+    const size = 0.05 * (1 + k % 20);
+    toRet.push(S2LatLngRect.fromPointPair(
+      S2LatLng.fromDegrees(lat(16 * k), lng(16 * k)),
+      S2LatLng.fromDegrees(lat(16 * k) + size, lng(16 * k) + size)));
+  }
+  return toRet;
+}
+
+/**
+ * REGIONS lists of UNION_CELLS unsorted cells between level 12 and 14,
+ * clustered in a 0.2 degrees box. "offset" shifts the boxes, two sets with a
+ * small offset overlap.
+ */
+export function unionCells(offset:number):S2CellId[][] {
+  const toRet:S2CellId[][] = [];
+  for (let u = 0; u < REGIONS; u++) {
+    const ids:S2CellId[] = [];
+    for (let m = 0; m < UNION_CELLS; m++) {
+      const ll = S2LatLng.fromDegrees(
+        lat(16 * u) + offset + 0.2 * frac(m * 0.6180339887498949),
+        lng(16 * u) + offset + 0.2 * frac(m * 0.7548776662466927));
+      ids.push(S2CellId.fromPoint(ll.toPoint()).parentL(12 + m % 3));
+    }
+    toRet.push(ids);
+  }
+  return toRet;
+}
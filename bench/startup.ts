@@ -0,0 +1,83 @@
+import {execFileSync} from "child_process";
+import * as fs from "fs";
+import * as path from "path";
+
+/**
+ * Measures the cold start of the compiled library: every run spawns a fresh
+ * node process which requires a module of the build and performs a first
+ * operation with it, reporting the time spent in require() and in that first
+ * call. The median over all runs is printed for each case.
+ *
+ * Usage: ts-node bench/startup.ts [runs] [distDir]
+ */
+interface StartupCase {
+  // Module to require, relative to the build directory.
+  module: string;
+  // Body of the first operation, with the module bound to s2.
+  first: string;
+}
+
+const runs = parseInt(process.argv[2] || '20', 10);
+const dist = path.resolve(process.argv[3] || path.join(__dirname, '..', 'dist'));
+
+const cases:{[name:string]:StartupCase} = {
+  'S2LatLng only -> first toPoint': {
+    module: 'S2LatLng.js',
+    first: 's2.S2LatLng.fromDegrees(45.4, 11.9).toPoint()',
+  },
+  'export -> first S2CellId.fromPoint': {
+    module: 'export.js',
+    first: 's2.S2CellId.fromPoint(s2.S2LatLng.fromDegrees(45.4, 11.9).toPoint())',
+  },
+  'export -> first S2CellIdBits.fromPoint': {
+    module: 'export.js',
+    first: 'const p = s2.S2LatLng.fromDegrees(45.4, 11.9).toPoint(); s2.S2CellIdBits.fromPoint(p.x, p.y, p.z, new Uint32Array(2))',
+  },
+  'export -> first covering': {
+    module: 'export.js',
+    first: 'new s2.S2RegionCoverer().getCoveringUnion(s2.Utils.calcRegionFromCenterRadius(s2.S2LatLng.fromDegrees(45.4, 11.9), 1, 16))',
+  },
+};
+
+function script(startup:StartupCase):string {
+  return `
+const ms = t => t[0] * 1e3 + t[1] / 1e6;
+const start = process.hrtime();
+const s2 = require(${JSON.stringify(path.join(dist, startup.module))});
+const imported = process.hrtime();
+${startup.first};
+const done = process.hrtime();
+console.log(JSON.stringify([ms(imported) - ms(start), ms(done) - ms(imported)]));`;
+}
+
+function median(values:number[]):number {
+  const sorted = values.slice().sort((a, b) => a - b);
+  return sorted[sorted.length >> 1];
+}
+
+function pad(str:string, width:number, left = false):string {
+  while (str.length < width) {
+    str = left ? ' ' + str : str + ' ';
+  }
+  return str;
+}
+
+if (!fs.existsSync(path.join(dist, 'export.js'))) {
+  throw new Error(`${dist}/export.js not found, run npm run build first`);
+}
+
+console.log(`\nStartup (median of ${runs} fresh processes, ms)`);
+console.log(`  ${pad('', 40)} ${pad('require', 10, true)} ${pad('first call', 12, true)} ${pad('total', 10, true)}`);
+Object.keys(cases).forEach(name => {
+  const imports:number[] = [];
+  const firsts:number[] = [];
+  const totals:number[] = [];
+  for (let i = 0; i < runs; i++) {
+    const [imported, first] = JSON.parse(execFileSync(process.execPath, ['-e', script(cases[name])], {encoding: 'utf8'}));
+    imports.push(imported);
+    firsts.push(first);
+    totals.push(imported + first);
+  }
+  console.log(`  ${pad(name, 40)} ${pad(median(imports).toFixed(2), 10, true)} ` +
+      `${pad(median(firsts).toFixed(2), 12, true)} ${pad(median(totals).toFixed(2), 10, true)}`);
+});
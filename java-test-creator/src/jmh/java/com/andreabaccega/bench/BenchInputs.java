@@ -0,0 +1,91 @@
+package com.andreabaccega.bench;
+
+import com.google.common.geometry.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inputs shared by the JMH benchmarks and by bench/reference/index.ts on the node side.
+ * They are computed from plain double arithmetic (no Random, no trigonometry) so that
+ * both languages build exactly the same points, regions and unions. Keep the two in sync.
+ */
+final class BenchInputs {
+
+  static final int POINTS = 1024;
+  static final int REGIONS = 64;
+  static final int UNION_CELLS = 64;
+
+  private BenchInputs() {
+  }
+
+  private static double frac(double x) {
+    return x - Math.floor(x);
+  }
+
+  static double lat(int k) {
+    return -89 + 178 * frac(k * 0.6180339887498949);
+  }
+
+  static double lng(int k) {
+    return -180 + 360 * frac(k * 0.7548776662466927);
+  }
+
+  static List<S2LatLng> latLngs() {
+    List<S2LatLng> toRet = new ArrayList<>(POINTS);
+    for (int k = 0; k < POINTS; k++) {
+      toRet.add(S2LatLng.fromDegrees(lat(k), lng(k)));
+    }
+    return toRet;
+  }
+
+  /** Cells between level 10 and 15. */
+  static List<S2CellId> cells() {
+    List<S2CellId> toRet = new ArrayList<>(POINTS);
+    for (int k = 0; k < POINTS; k++) {
+      toRet.add(S2CellId.fromLatLng(S2LatLng.fromDegrees(lat(k), lng(k))).parent(10 + k % 6));
+    }
+    return toRet;
+  }
+
+  static List<S2Cap> caps() {
+    List<S2Cap> toRet = new ArrayList<>(REGIONS);
+    for (int k = 0; k < REGIONS; k++) {
+      toRet.add(S2Cap.fromAxisAngle(
+        S2LatLng.fromDegrees(lat(16 * k), lng(16 * k)).toPoint(),
+        S1Angle.degrees(0.05 * (1 + k % 20))));
+    }
+    return toRet;
+  }
+
+  static List<S2LatLngRect> rects() {
+    List<S2LatLngRect> toRet = new ArrayList<>(REGIONS);
+    for (int k = 0; k < REGIONS; k++) {
+      double size = 0.05 * (1 + k % 20);
+      toRet.add(S2LatLngRect.fromPointPair(
+        S2LatLng.fromDegrees(lat(16 * k), lng(16 * k)),
+        S2LatLng.fromDegrees(lat(16 * k) + size, lng(16 * k) + size)));
+    }
+    return toRet;
+  }
+
+  /**
+   * REGIONS lists of UNION_CELLS unsorted cells between level 12 and 14, clustered in a
+   * 0.2 degrees box so that normalizing them has containments to drop. "offset" shifts
+   * the boxes, two sets with a small offset overlap.
+   */
+  static List<ArrayList<S2CellId>> unionCells(double offset) {
+    List<ArrayList<S2CellId>> toRet = new ArrayList<>(REGIONS);
+    for (int u = 0; u < REGIONS; u++) {
+      ArrayList<S2CellId> cells = new ArrayList<>(UNION_CELLS);
+      for (int m = 0; m < UNION_CELLS; m++) {
+        S2LatLng ll = S2LatLng.fromDegrees(
+          lat(16 * u) + offset + 0.2 * frac(m * 0.6180339887498949),
+          lng(16 * u) + offset + 0.2 * frac(m * 0.7548776662466927));
+        cells.add(S2CellId.fromLatLng(ll).parent(12 + m % 3));
+      }
+      toRet.add(cells);
+    }
+    return toRet;
+  }
+}
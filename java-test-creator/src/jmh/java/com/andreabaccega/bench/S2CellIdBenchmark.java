@@ -0,0 +1,55 @@
+package com.andreabaccega.bench;
+
+import com.google.common.geometry.S2CellId;
+import com.google.common.geometry.S2LatLng;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class S2CellIdBenchmark {
+
+  private List<S2LatLng> latLngs;
+  private List<S2CellId> cells;
+
+  @Setup
+  public void setup() {
+    latLngs = BenchInputs.latLngs();
+    cells = BenchInputs.cells();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchInputs.POINTS)
+  public void fromLatLng(Blackhole bh) {
+    for (S2LatLng ll : latLngs) {
+      bh.consume(S2CellId.fromLatLng(ll));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchInputs.POINTS)
+  public void parent(Blackhole bh) {
+    for (S2CellId id : cells) {
+      bh.consume(id.parent(8));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchInputs.POINTS)
+  public void getAllNeighbors(Blackhole bh) {
+    List<S2CellId> output = new ArrayList<>();
+    for (S2CellId id : cells) {
+      output.clear();
+      id.getAllNeighbors(id.level() + 1, output);
+      bh.consume(output.size());
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.andreabaccega.bench;
+
+import com.google.common.geometry.S2CellId;
+import com.google.common.geometry.S2CellUnion;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class S2CellUnionBenchmark {
+
+  private List<ArrayList<S2CellId>> cells;
+  private List<S2CellUnion> first;
+  private List<S2CellUnion> second;
+
+  @Setup
+  public void setup() {
+    cells = BenchInputs.unionCells(0);
+    first = new ArrayList<>();
+    second = new ArrayList<>();
+    for (ArrayList<S2CellId> ids : cells) {
+      S2CellUnion union = new S2CellUnion();
+      // Copy, or the union would keep and normalize the list in place.
+      union.initFromCellIds(new ArrayList<>(ids));
+      first.add(union);
+    }
+    for (ArrayList<S2CellId> ids : BenchInputs.unionCells(0.1)) {
+      S2CellUnion union = new S2CellUnion();
+      union.initFromCellIds(ids);
+      second.add(union);
+    }
+  }
+
+  /**
+   * initFromCellIds keeps the list it is given and normalizes it in place, so each call gets a copy of the
+   * (unsorted) input; the copy is part of the measured time, as on the node side.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BenchInputs.REGIONS)
+  public void normalize(Blackhole bh) {
+    for (ArrayList<S2CellId> ids : cells) {
+      S2CellUnion union = new S2CellUnion();
+      union.initFromCellIds(new ArrayList<>(ids));
+      bh.consume(union);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchInputs.REGIONS)
+  public void getIntersection(Blackhole bh) {
+    for (int i = 0; i < first.size(); i++) {
+      S2CellUnion union = new S2CellUnion();
+      union.getIntersection(first.get(i), second.get(i));
+      bh.consume(union);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.andreabaccega.bench;
+
+import com.google.common.geometry.S2Cap;
+import com.google.common.geometry.S2LatLngRect;
+import com.google.common.geometry.S2RegionCoverer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class S2RegionCovererBenchmark {
+
+  private S2RegionCoverer coverer;
+  private List<S2Cap> caps;
+  private List<S2LatLngRect> rects;
+
+  @Setup
+  public void setup() {
+    coverer = S2RegionCoverer.builder().setMaxCells(200).setMaxLevel(20).build();
+    caps = BenchInputs.caps();
+    rects = BenchInputs.rects();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchInputs.REGIONS)
+  public void getCoveringCap(Blackhole bh) {
+    for (S2Cap cap : caps) {
+      bh.consume(coverer.getCovering(cap));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchInputs.REGIONS)
+  public void getCoveringRect(Blackhole bh) {
+    for (S2LatLngRect rect : rects) {
+      bh.consume(coverer.getCovering(rect));
+    }
+  }
+}
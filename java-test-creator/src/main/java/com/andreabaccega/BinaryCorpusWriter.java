@@ -0,0 +1,205 @@
+package com.andreabaccega;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Writes a corpus in the compact columnar format read by src/S2BinaryCorpus.ts.
+ *
+ * Everything is little-endian. The file starts with a 16 bytes header
+ * ("S2CB", u16 version, u16 kind, u32 record count, u32 column count) followed by one
+ * 24 bytes entry per column (8 bytes NUL padded ASCII name, u32 type, u32 number of
+ * elements, u64 byte offset of the data). Column data starts on 8 bytes boundaries so
+ * that it can be viewed as a typed array without copying.
+ *
+ * Points have the columns lat, lng (degrees), x, y, z (f64) and id (u64). Coverings have
+ * x, y, z, height (f64), maxCells, minLevel, maxLevel, levelMod (u32), offsets (u32,
+ * count + 1 entries) and cells (u64): the covering of record i is
+ * cells[offsets[i] .. offsets[i + 1]).
+ *
+ * Columns are spooled to temporary files while the chunks come in and concatenated on
+ * close, so memory does not grow with the corpus.
+ */
+final class BinaryCorpusWriter implements CorpusGenerator.CorpusSink {
+
+  static final int VERSION = 1;
+  static final int F64 = 1;
+  static final int U64 = 2;
+  static final int U32 = 3;
+
+  private static final String[] POINT_COLUMNS = {"lat", "lng", "x", "y", "z", "id"};
+  private static final int[] POINT_TYPES = {F64, F64, F64, F64, F64, U64};
+  private static final String[] COVERING_COLUMNS =
+    {"x", "y", "z", "height", "maxCells", "minLevel", "maxLevel", "levelMod", "offsets", "cells"};
+  private static final int[] COVERING_TYPES = {F64, F64, F64, F64, U32, U32, U32, U32, U32, U64};
+
+  private final File file;
+  private final CorpusGenerator.Kind kind;
+  private final String[] names;
+  private final int[] types;
+  private final File[] spools;
+  private final OutputStream[] columns;
+  private long records;
+  private long cells;
+
+  BinaryCorpusWriter(File file, CorpusGenerator.Kind kind, long count) throws IOException {
+    if (count > 0xffffffffL) {
+      throw new IllegalArgumentException("The binary format holds at most 2^32 - 1 records");
+    }
+    this.file = file;
+    this.kind = kind;
+    this.names = kind == CorpusGenerator.Kind.POINTS ? POINT_COLUMNS : COVERING_COLUMNS;
+    this.types = kind == CorpusGenerator.Kind.POINTS ? POINT_TYPES : COVERING_TYPES;
+    this.spools = new File[names.length];
+    this.columns = new OutputStream[names.length];
+    File dir = file.getAbsoluteFile().getParentFile();
+    for (int i = 0; i < names.length; i++) {
+      spools[i] = File.createTempFile(file.getName() + "." + names[i], ".tmp", dir);
+      spools[i].deleteOnExit();
+      columns[i] = new BufferedOutputStream(new FileOutputStream(spools[i]), 1 << 16);
+    }
+    if (kind == CorpusGenerator.Kind.COVERINGS) {
+      columns[offsetsColumn()].write(le(0, 4));
+    }
+  }
+
+  /**
+   * The encoded columns of one chunk. Records write their fixed-width fields in column
+   * order, the cells of a covering go to the last column.
+   */
+  static final class Chunk {
+    final ByteArrayOutputStream[] columns;
+    private final int fixed;
+    private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private int column;
+
+    Chunk(int columnCount, boolean variableLast) {
+      columns = new ByteArrayOutputStream[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        columns[i] = new ByteArrayOutputStream();
+      }
+      fixed = variableLast ? columnCount - 1 : columnCount;
+    }
+
+    void f64(double value) {
+      scratch.clear();
+      scratch.putDouble(value);
+      next(8);
+    }
+
+    void u64(long value) {
+      scratch.clear();
+      scratch.putLong(value);
+      next(8);
+    }
+
+    void u32(int value) {
+      scratch.clear();
+      scratch.putInt(value);
+      next(4);
+    }
+
+    /** Appends a cell id to the variable length column. */
+    void cell(long id) {
+      scratch.clear();
+      scratch.putLong(id);
+      columns[columns.length - 1].write(scratch.array(), 0, 8);
+    }
+
+    private void next(int size) {
+      columns[column].write(scratch.array(), 0, size);
+      column = (column + 1) % fixed;
+    }
+  }
+
+  @Override
+  public Object encode(List<CorpusGenerator.CorpusRecord> records) {
+    Chunk chunk = new Chunk(names.length, kind == CorpusGenerator.Kind.COVERINGS);
+    for (CorpusGenerator.CorpusRecord record : records) {
+      record.appendTo(chunk);
+    }
+    return chunk;
+  }
+
+  @Override
+  public void append(Object encoded) throws IOException {
+    Chunk chunk = (Chunk) encoded;
+    for (int i = 0; i < names.length; i++) {
+      if (kind == CorpusGenerator.Kind.COVERINGS && i == offsetsColumn()) {
+        // The chunk holds the size of every covering, the file the running offsets.
+        ByteBuffer sizes = ByteBuffer.wrap(chunk.columns[i].toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        while (sizes.hasRemaining()) {
+          cells += sizes.getInt();
+          columns[i].write(le(cells, 4));
+        }
+      } else {
+        chunk.columns[i].writeTo(columns[i]);
+      }
+    }
+    records += chunk.columns[0].size() / 8;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (OutputStream column : columns) {
+      column.close();
+    }
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+      long offset = align(16 + 24 * names.length);
+      ByteBuffer header = ByteBuffer.allocate((int) offset).order(ByteOrder.LITTLE_ENDIAN);
+      header.put("S2CB".getBytes(StandardCharsets.US_ASCII));
+      header.putShort((short) VERSION);
+      header.putShort((short) kind.ordinal());
+      header.putInt((int) records);
+      header.putInt(names.length);
+      for (int i = 0; i < names.length; i++) {
+        byte[] name = new byte[8];
+        byte[] ascii = names[i].getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(ascii, 0, name, 0, ascii.length);
+        header.put(name);
+        header.putInt(types[i]);
+        header.putInt((int) (spools[i].length() / (types[i] == U32 ? 4 : 8)));
+        header.putLong(offset);
+        offset = align(offset + spools[i].length());
+      }
+      out.write(header.array());
+
+      long position = header.capacity();
+      for (File spool : spools) {
+        Files.copy(spool.toPath(), out);
+        position += spool.length();
+        out.write(new byte[(int) (align(position) - position)]);
+        position = align(position);
+      }
+    } finally {
+      for (File spool : spools) {
+        spool.delete();
+      }
+    }
+  }
+
+  private int offsetsColumn() {
+    return names.length - 2;
+  }
+
+  private static long align(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+  private static byte[] le(long value, int size) {
+    ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putLong(value);
+    byte[] bytes = new byte[size];
+    System.arraycopy(buffer.array(), 0, bytes, 0, size);
+    return bytes;
+  }
+}
@@ -0,0 +1,351 @@
+package com.andreabaccega;
+
+import com.google.common.geometry.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates large point or covering corpora for load-testing the library.
+ *
+ * The corpus is split in chunks of CHUNK_SIZE records. Every chunk has its own Random
+ * seeded from (seed, chunk index) and is built on a worker thread; chunks are written to
+ * disk in order as soon as they are ready, with at most two chunks per thread in memory.
+ * The output therefore only depends on the flags, never on the number of threads.
+ */
+public class CorpusGenerator {
+
+  static final int CHUNK_SIZE = 10000;
+  static final int CLUSTERS = 32;
+  /** Sigma of the distance of a clustered point from its center, in degrees. */
+  static final double CLUSTER_SIGMA = 0.5;
+  /** Polar points have |lat| >= POLAR_LAT degrees. */
+  static final double POLAR_LAT = 60;
+
+  enum Kind {
+    POINTS, COVERINGS
+  }
+
+  enum Distribution {
+    UNIFORM, CLUSTERED, POLAR
+  }
+
+  enum Format {
+    JSON, BINARY
+  }
+
+  private final Kind kind;
+  private final Distribution distribution;
+  private final long count;
+  private final long seed;
+  private final int threads;
+  private final S2LatLng[] clusters;
+
+  CorpusGenerator(Kind kind, Distribution distribution, long count, long seed, int threads) {
+    this.kind = kind;
+    this.distribution = distribution;
+    this.count = count;
+    this.seed = seed;
+    this.threads = threads;
+    Random random = new Random(seed);
+    this.clusters = new S2LatLng[CLUSTERS];
+    for (int i = 0; i < CLUSTERS; i++) {
+      clusters[i] = S2LatLng.fromRadians(Math.asin(2 * random.nextDouble() - 1), Math.PI * (2 * random.nextDouble() - 1));
+    }
+  }
+
+  /**
+   * Parses "--corpus points|coverings --count N --distribution uniform|clustered|polar
+   * --seed S --threads T --format json|binary --out FILE" and writes the corpus. The binary
+   * format is described in {@link BinaryCorpusWriter}.
+   */
+  static void run(String[] args) throws IOException, InterruptedException {
+    Kind kind = Kind.POINTS;
+    Distribution distribution = Distribution.UNIFORM;
+    long count = 1000000;
+    long seed = 10000;
+    int threads = Runtime.getRuntime().availableProcessors();
+    Format format = Format.JSON;
+    String out = null;
+    for (int i = 0; i < args.length; i++) {
+      String value = i + 1 < args.length ? args[i + 1] : null;
+      if (value == null) {
+        throw new IllegalArgumentException("Missing value for " + args[i]);
+      }
+      switch (args[i]) {
+        case "--corpus":
+          kind = Kind.valueOf(value.toUpperCase());
+          break;
+        case "--distribution":
+          distribution = Distribution.valueOf(value.toUpperCase());
+          break;
+        case "--count":
+          count = Long.parseLong(value);
+          break;
+        case "--seed":
+          seed = Long.parseLong(value);
+          break;
+        case "--threads":
+          threads = Integer.parseInt(value);
+          break;
+        case "--format":
+          format = Format.valueOf(value.toUpperCase());
+          break;
+        case "--out":
+          out = value;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown flag " + args[i]);
+      }
+      i++;
+    }
+    if (out == null) {
+      out = "build/corpus-" + kind.name().toLowerCase() + "-" + distribution.name().toLowerCase()
+        + (format == Format.JSON ? ".json" : ".s2cb");
+    }
+    new CorpusGenerator(kind, distribution, count, seed, threads).write(new File(out), format);
+  }
+
+  void write(File file, Format format) throws IOException, InterruptedException {
+    if (file.getParentFile() != null) {
+      file.getParentFile().mkdirs();
+    }
+    System.out.println("Writing " + count + " " + kind.name().toLowerCase() + " to " + file);
+    long chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    Deque<Future<Object>> inFlight = new ArrayDeque<>();
+    try (CorpusSink sink = format == Format.JSON ? new JsonSink(file) : new BinaryCorpusWriter(file, kind, count)) {
+      for (long c = 0; c < chunks; c++) {
+        final long chunk = c;
+        inFlight.add(pool.submit(() -> sink.encode(chunk(chunk))));
+        if (inFlight.size() >= 2 * threads) {
+          sink.append(inFlight.poll().get());
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        sink.append(inFlight.poll().get());
+      }
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Where the chunks end up. encode runs on the worker threads, append is called on the
+   * calling thread with the encoded chunks in order.
+   */
+  interface CorpusSink extends Closeable {
+    Object encode(List<CorpusRecord> records);
+
+    void append(Object encoded) throws IOException;
+  }
+
+  /** A JSON array with one record per line. */
+  static final class JsonSink implements CorpusSink {
+    private final Writer out;
+    private boolean first = true;
+
+    JsonSink(File file) throws IOException {
+      out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+      out.write("[\n");
+    }
+
+    @Override
+    public Object encode(List<CorpusRecord> records) {
+      StringBuilder sb = new StringBuilder();
+      for (CorpusRecord record : records) {
+        if (sb.length() > 0) {
+          sb.append(",\n");
+        }
+        sb.append(record.toJSON().toString());
+      }
+      return sb.toString();
+    }
+
+    @Override
+    public void append(Object encoded) throws IOException {
+      if (!first) {
+        out.write(",\n");
+      }
+      first = false;
+      out.write((String) encoded);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.write("\n]\n");
+      out.close();
+    }
+  }
+
+  interface CorpusRecord {
+    JSONObject toJSON();
+
+    void appendTo(BinaryCorpusWriter.Chunk chunk);
+  }
+
+  static final class PointRecord implements CorpusRecord {
+    final S2LatLng ll;
+    final S2Point p;
+    final long id;
+
+    PointRecord(S2LatLng ll) {
+      this.ll = ll;
+      this.p = ll.toPoint();
+      this.id = S2CellId.fromPoint(p).id();
+    }
+
+    @Override
+    public JSONObject toJSON() {
+      JSONObject jO = new JSONObject();
+      jO.put("lat", Double.toString(ll.latDegrees()));
+      jO.put("lng", Double.toString(ll.lngDegrees()));
+      jO.put("x", Double.toString(p.get(0)));
+      jO.put("y", Double.toString(p.get(1)));
+      jO.put("z", Double.toString(p.get(2)));
+      jO.put("id", Long.toString(id));
+      return jO;
+    }
+
+    @Override
+    public void appendTo(BinaryCorpusWriter.Chunk chunk) {
+      chunk.f64(ll.latDegrees());
+      chunk.f64(ll.lngDegrees());
+      chunk.f64(p.get(0));
+      chunk.f64(p.get(1));
+      chunk.f64(p.get(2));
+      chunk.u64(id);
+    }
+  }
+
+  static final class CoveringRecord implements CorpusRecord {
+    final S2Cap cap;
+    final S2RegionCoverer coverer;
+    final List<S2CellId> covering;
+
+    CoveringRecord(S2Cap cap, S2RegionCoverer coverer) {
+      this.cap = cap;
+      this.coverer = coverer;
+      this.covering = coverer.getCovering(cap).cellIds();
+    }
+
+    @Override
+    public JSONObject toJSON() {
+      JSONArray tokens = new JSONArray();
+      for (S2CellId id : covering) {
+        tokens.put(id.toToken());
+      }
+      JSONObject axis = new JSONObject();
+      axis.put("x", Double.toString(cap.axis().get(0)));
+      axis.put("y", Double.toString(cap.axis().get(1)));
+      axis.put("z", Double.toString(cap.axis().get(2)));
+
+      JSONObject jO = new JSONObject();
+      jO.put("axis", axis);
+      jO.put("height", Double.toString(cap.height()));
+      jO.put("maxCells", coverer.maxCells());
+      jO.put("levelMod", coverer.levelMod());
+      jO.put("maxLevel", coverer.maxLevel());
+      jO.put("minLevel", coverer.minLevel());
+      jO.put("covering", tokens);
+      return jO;
+    }
+
+    @Override
+    public void appendTo(BinaryCorpusWriter.Chunk chunk) {
+      chunk.f64(cap.axis().get(0));
+      chunk.f64(cap.axis().get(1));
+      chunk.f64(cap.axis().get(2));
+      chunk.f64(cap.height());
+      chunk.u32(coverer.maxCells());
+      chunk.u32(coverer.minLevel());
+      chunk.u32(coverer.maxLevel());
+      chunk.u32(coverer.levelMod());
+      chunk.u32(covering.size());
+      for (S2CellId id : covering) {
+        chunk.cell(id.id());
+      }
+    }
+  }
+
+  /** Builds the records of the given chunk. */
+  private List<CorpusRecord> chunk(long chunk) {
+    Random random = new Random(mix(seed, chunk));
+    long end = Math.min(count, (chunk + 1) * CHUNK_SIZE);
+    List<CorpusRecord> records = new ArrayList<>();
+    for (long i = chunk * CHUNK_SIZE; i < end; i++) {
+      records.add(kind == Kind.POINTS ? new PointRecord(randomLatLng(random)) : coveringRecord(random));
+    }
+    return records;
+  }
+
+  /**
+   * Randomizes the levels and the cap size like CreateTests.latLngCovering, with two differences: max cells is
+   * 1 to 20 rather than 0 to 9, and the cap itself is covered rather than its rect bound, since the record stores
+   * the cap.
+   */
+  private CoveringRecord coveringRecord(Random random) {
+    final int kMaxLevel = S2CellId.MAX_LEVEL;
+    S2RegionCoverer.Builder covererBuilder = S2RegionCoverer.builder();
+    covererBuilder.setMaxCells(1 + random.nextInt(20));
+    covererBuilder.setLevelMod(1 + random.nextInt(3));
+    do {
+      covererBuilder.setMinLevel(random.nextInt(kMaxLevel + 1));
+      covererBuilder.setMaxLevel(random.nextInt(kMaxLevel + 1));
+    } while (covererBuilder.getMinLevel() > covererBuilder.getMaxLevel());
+    S2RegionCoverer coverer = covererBuilder.build();
+
+    double maxArea = Math.min(4 * S2.M_PI, (3 * coverer.maxCells() + 1) * S2Cell.averageArea(coverer.minLevel()));
+    double minArea = 0.1 * S2Cell.averageArea(kMaxLevel);
+    double capArea = maxArea * Math.pow(minArea / maxArea, random.nextDouble());
+    return new CoveringRecord(S2Cap.fromAxisArea(randomLatLng(random).toPoint(), capArea), coverer);
+  }
+
+  private S2LatLng randomLatLng(Random random) {
+    switch (distribution) {
+      case CLUSTERED: {
+        S2LatLng center = clusters[random.nextInt(CLUSTERS)];
+        double lat = center.latDegrees() + CLUSTER_SIGMA * random.nextGaussian();
+        double lng = center.lngDegrees() + CLUSTER_SIGMA * random.nextGaussian();
+        return S2LatLng.fromDegrees(Math.max(-90, Math.min(90, lat)), lng).normalized();
+      }
+      case POLAR: {
+        // Uniform over the two caps above POLAR_LAT: sin(lat) is uniform.
+        double minZ = Math.sin(Math.toRadians(POLAR_LAT));
+        double z = minZ + (1 - minZ) * random.nextDouble();
+        double lat = Math.asin(random.nextBoolean() ? z : -z);
+        return S2LatLng.fromRadians(lat, Math.PI * (2 * random.nextDouble() - 1));
+      }
+      default:
+        // Uniform over the sphere.
+        return S2LatLng.fromRadians(Math.asin(2 * random.nextDouble() - 1), Math.PI * (2 * random.nextDouble() - 1));
+    }
+  }
+
+  /** SplitMix64 finalizer, so that consecutive chunks get unrelated seeds. */
+  private static long mix(long seed, long chunk) {
+    long z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -4,7 +4,12 @@ import com.google.common.geometry.*;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.BufferedWriter;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -64,34 +69,32 @@ public class CreateTests {
     return jO;
   }
 
+  // Both overloads stream the JSON to disk instead of building the whole document
+  // as a String first; the output is the same as toString(2).
   private static void saveJAToFile(JSONArray jA, String fname) {
     String name = System.getProperty("user.dir") + "/../test/assets/" + fname;
     System.out.println("Writing to" + name);
-    try {
-      FileOutputStream out = new FileOutputStream(name);
-      out.write(jA.toString(2).getBytes());
-      out.close();
+    try (Writer out = openAsset(name)) {
+      jA.write(out, 2, 0);
     } catch (Exception e) {
-      System.out.println(jA.toString(2));
       e.printStackTrace();
-      ;
     }
   }
 
   private static void saveJAToFile(JSONObject jA, String fname) {
     String name = System.getProperty("user.dir") + "/../test/assets/" + fname;
     System.out.println("Writing to" + name);
-    try {
-      FileOutputStream out = new FileOutputStream(name);
-      out.write(jA.toString(2).getBytes());
-      out.close();
+    try (Writer out = openAsset(name)) {
+      jA.write(out, 2, 0);
     } catch (Exception e) {
-      System.out.println(jA.toString(2));
       e.printStackTrace();
-      ;
     }
   }
 
+  private static Writer openAsset(String name) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(name), StandardCharsets.UTF_8), 1 << 16);
+  }
+
   private static String toJV(double d) {
     return Double.toString(d);
   }
@@ -568,7 +571,16 @@ public class CreateTests {
 
   }
 
-  public static void main(String[] args) throws IllegalAccessException, NoSuchFieldException {
+  /**
+   * Without arguments regenerates the fixtures in test/assets. With "--corpus" (see
+   * {@link CorpusGenerator#run}) writes a large point or covering corpus instead, e.g.
+   * gradle run --args="--corpus coverings --count 2000000 --distribution clustered"
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0) {
+      CorpusGenerator.run(args);
+      return;
+    }
     calcLatLngTests();
     calcCellsTests();
     calcMainTests();
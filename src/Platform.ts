@@ -51,4 +51,9 @@ export class Platform {
     // // return (int)((S2.EXPONENT_MASK & bits) >> S2.EXPONENT_SHIFT) - 1022;
     return exponent(v);
   }
+
+  /** A monotonic clock in milliseconds, with sub-millisecond resolution where available. */
+  public static nowMs():number {
+    return typeof performance !== 'undefined' ? performance.now() : Date.now();
+  }
 }
@@ -290,7 +290,7 @@ export class S1Interval extends Interval {
         }
         return S1Interval.full();
       }
-      return new S1Interval(this.lo, this.hi, true);
+      return new S1Interval(this.lo, y.hi, true);
     }
     if (this.fastContains(y.hi)) {
       return new S1Interval(y.lo, this.hi, true);
@@ -20,7 +20,7 @@ export class S2 {
   // Number of bits in the mantissa of a double.
   private static EXPONENT_SHIFT = 52;
   // Mask to extract the exponent from a double.
-  private static EXPONENT_MASK = Long.fromString('0x7ff0000000000000', true, 16);
+  private static EXPONENT_MASK = Long.fromBits(0, 0x7ff00000, true);
   /** Mapping from cell orientation + Hilbert traversal to IJ-index. */
   public static POS_TO_ORIENTATION = [S2.SWAP_MASK, 0, 0, S2.INVERT_MASK + S2.SWAP_MASK];
   public static DBL_EPSILON = 2 * Number.EPSILON;
@@ -247,6 +247,174 @@ export class S2 {
     return (acb * (cbd) > (0)) && (cbd * (bda) > (0)) && (bda * (dac) > (0));
   }
 
+  /**
+   * Return a unique "origin" on the sphere for operations that need a fixed
+   * reference point. It should *not* be a point that is commonly used in edge
+   * tests in order to avoid triggering code to handle degenerate cases (this
+   * rules out the north and south poles and the face centers).
+   */
+  public static origin():S2Point {
+    return new S2Point(-0.0099994664350250197, 0.0025924542609324121, 0.99994664350250195);
+  }
+
+  /** Return a unit-length vector that is orthogonal to "a". */
+  public static ortho(a:S2Point):S2Point {
+    return a.ortho();
+  }
+
+  /**
+   * Return +1 if the points A, B, C are strictly counterclockwise, -1 if they
+   * are strictly clockwise, and 0 if two of the points are equal. Unlike
+   * simpleCCW, collinear points are classified consistently on one side or
+   * the other, so that:
+   *
+   *  (1) robustCCW(a,b,c) == robustCCW(b,c,a) == robustCCW(c,a,b)
+   * (2) robustCCW(a,b,c) == -robustCCW(c,b,a)
+   * (3) robustCCW(a,b,c) == 0 if and only if a==b, b==c, or c==a
+   *
+   * The cross product of A and B can be passed in when it is already known.
+   */
+  public static robustCCW(a:S2Point, b:S2Point, c:S2Point, aCrossB:S2Point = S2Point.crossProd(a, b)):number {
+    // This is a conservative bound on the error of the triple product below,
+    // 2 * 14 * 2**-54 for unit-length inputs.
+    const kMinAbsValue = 1.6e-15;
+    const det = aCrossB.dotProd(c);
+    if (det > kMinAbsValue) {
+      return 1;
+    }
+    if (det < -kMinAbsValue) {
+      return -1;
+    }
+    return S2.expensiveCCW(a, b, c);
+  }
+
+  private static expensiveCCW(a:S2Point, b:S2Point, c:S2Point):number {
+    // Return zero if and only if two points are the same. This ensures (1).
+    if (a.equals(b) || b.equals(c) || c.equals(a)) {
+      return 0;
+    }
+
+    // Now compute the determinant in a stable way. Since all three points are
+    // unit length and we know that the determinant is very close to zero, this
+    // means that points are very nearly collinear. Furthermore, the most common
+    // situation is where two points are nearly identical or nearly antipodal.
+    // To get the best accuracy in this situation, it is important to
+    // immediately reduce the magnitude of the arguments by computing either
+    // A+B or A-B for each pair of points. The two closest points are then used
+    // as the base of the determinant.
+    const sab = (a.dotProd(b) > 0) ? -1 : 1;
+    const sbc = (b.dotProd(c) > 0) ? -1 : 1;
+    const sca = (c.dotProd(a) > 0) ? -1 : 1;
+    const vab = S2Point.add(a, S2Point.mul(b, sab));
+    const vbc = S2Point.add(b, S2Point.mul(c, sbc));
+    const vca = S2Point.add(c, S2Point.mul(a, sca));
+    const dab = vab.norm2();
+    const dbc = vbc.norm2();
+    const dca = vca.norm2();
+
+    // Sort the difference vectors to find the longest edge, and use the
+    // opposite vertex as the origin. If two difference vectors are the same
+    // length, we break ties deterministically to ensure that the symmetry
+    // properties guaranteed in the header file will be true.
+    let det:number;
+    if (dca < dbc || (dca == dbc && a.lessThan(b))) {
+      if (dab < dbc || (dab == dbc && a.lessThan(c))) {
+        // The "sab" factor converts A +/- B into B +/- A.
+        det = S2Point.crossProd(vab, vca).dotProd(a) * sab; // BC is longest edge
+      } else {
+        det = S2Point.crossProd(vca, vbc).dotProd(c) * sca; // AB is longest edge
+      }
+    } else {
+      if (dab < dca || (dab == dca && b.lessThan(c))) {
+        det = S2Point.crossProd(vbc, vab).dotProd(b) * sbc; // CA is longest edge
+      } else {
+        det = S2Point.crossProd(vca, vbc).dotProd(c) * sca; // AB is longest edge
+      }
+    }
+    if (det > 0) {
+      return 1;
+    }
+    if (det < 0) {
+      return -1;
+    }
+
+    // The points lie on a common great circle. Fall back to the orientation
+    // of their projections onto the three coordinate planes, which is zero
+    // only if the points are exactly collinear in all of them.
+    let ccw = S2.planarOrderedCCW(a.y, a.z, b.y, b.z, c.y, c.z);
+    if (ccw == 0) {
+      ccw = S2.planarOrderedCCW(a.z, a.x, b.z, b.x, c.z, c.x);
+      if (ccw == 0) {
+        ccw = S2.planarOrderedCCW(a.x, a.y, b.x, b.y, c.x, c.y);
+      }
+    }
+    return ccw;
+  }
+
+  private static planarCCW(ax:number, ay:number, bx:number, by:number):number {
+    // Return +1 if the edge AB is CCW around the origin, etc.
+    const sab = (ax * bx + ay * by > 0) ? -1 : 1;
+    const vx = ax + bx * sab;
+    const vy = ay + by * sab;
+    const da = ax * ax + ay * ay;
+    const db = bx * bx + by * by;
+    let sign:number;
+    if (da < db || (da == db && (ax < bx || (ax == bx && ay < by)))) {
+      sign = (ax * vy - ay * vx) * sab;
+    } else {
+      sign = vx * by - vy * bx;
+    }
+    if (sign > 0) {
+      return 1;
+    }
+    if (sign < 0) {
+      return -1;
+    }
+    return 0;
+  }
+
+  private static planarOrderedCCW(ax:number, ay:number, bx:number, by:number, cx:number, cy:number):number {
+    const sum = S2.planarCCW(ax, ay, bx, by) + S2.planarCCW(bx, by, cx, cy) + S2.planarCCW(cx, cy, ax, ay);
+    if (sum > 0) {
+      return 1;
+    }
+    if (sum < 0) {
+      return -1;
+    }
+    return 0;
+  }
+
+  /**
+   * Return true if the edges OA, OB, and OC are encountered in that order
+   * while sweeping CCW around the point O. You can think of this as testing
+   * whether A <= B <= C with respect to a continuous CCW ordering around O.
+   *
+   * Properties:
+   * <ol>
+   *   <li>If orderedCCW(a,b,c,o) && orderedCCW(b,a,c,o), then a == b</li>
+   *   <li>If orderedCCW(a,b,c,o) && orderedCCW(a,c,b,o), then b == c</li>
+   *   <li>If orderedCCW(a,b,c,o) && orderedCCW(c,b,a,o), then a == b == c</li>
+   *   <li>If a == b or b == c, then orderedCCW(a,b,c,o) is true</li>
+   *   <li>Otherwise if a == c, then orderedCCW(a,b,c,o) is false</li>
+   * </ol>
+   */
+  public static orderedCCW(a:S2Point, b:S2Point, c:S2Point, o:S2Point):boolean {
+    // The last inequality below is ">" rather than ">=" so that we return true
+    // if A == B or B == C, and otherwise false if A == C. Recall that
+    // robustCCW(x,y,z) == -robustCCW(z,y,x) for all x,y,z.
+    let sum = 0;
+    if (S2.robustCCW(b, o, a) >= 0) {
+      ++sum;
+    }
+    if (S2.robustCCW(c, o, b) >= 0) {
+      ++sum;
+    }
+    if (S2.robustCCW(a, o, c) > 0) {
+      ++sum;
+    }
+    return sum >= 2;
+  }
+
   public static approxEqualsPointError(a: S2Point, b: S2Point, maxError: number): boolean {
     return a.angle(b) <= maxError;
   }
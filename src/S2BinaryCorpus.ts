@@ -0,0 +1,113 @@
+export interface S2CorpusColumn {
+  name:string;
+  type:number;
+  data:Float64Array|Uint32Array;
+}
+
+/**
+ * Reader (and writer) of the columnar corpus format written by
+ * java-test-creator's BinaryCorpusWriter, see there for the layout. Columns
+ * are returned as typed array views over the file bytes: f64 columns as
+ * Float64Array, u32 columns as Uint32Array and u64 cell ids as Uint32Array
+ * [lo, hi] pairs, the layout used by S2CellIdBits and S2PackedCellUnion.
+ *
+ * The reader takes bytes rather than a file name so that the package stays
+ * usable outside node, e.g. S2BinaryCorpus.read(fs.readFileSync(file)).
+ */
+export class S2BinaryCorpus {
+  public static F64 = 1;
+  public static U64 = 2;
+  public static U32 = 3;
+  public static KINDS = ['points', 'coverings'];
+
+  constructor(public kind:string, public count:number, private columns:{[name:string]:S2CorpusColumn}) {
+  }
+
+  /**
+   * Wraps the given bytes without copying them, unless they do not start on
+   * an 8 bytes boundary (as small Node Buffers often don't).
+   */
+  public static read(bytes:Uint8Array):S2BinaryCorpus {
+    if (new Uint8Array(new Uint16Array([1]).buffer)[0] !== 1) {
+      throw new Error('The binary corpus can only be viewed on little-endian platforms');
+    }
+    if (bytes.byteOffset % 8 !== 0) {
+      bytes = new Uint8Array(bytes);
+    }
+    const view = new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength);
+    const magic = String.fromCharCode(bytes[0], bytes[1], bytes[2], bytes[3]);
+    if (magic !== 'S2CB' || view.getUint16(4, true) !== 1) {
+      throw new Error(`Not a version 1 binary corpus: ${magic}`);
+    }
+    const kind = S2BinaryCorpus.KINDS[view.getUint16(6, true)];
+    const count = view.getUint32(8, true);
+    const columnCount = view.getUint32(12, true);
+    const columns:{[name:string]:S2CorpusColumn} = {};
+    for (let i = 0; i < columnCount; i++) {
+      const entry = 16 + 24 * i;
+      let name = '';
+      for (let k = 0; k < 8 && bytes[entry + k] !== 0; k++) {
+        name += String.fromCharCode(bytes[entry + k]);
+      }
+      const type = view.getUint32(entry + 8, true);
+      const length = view.getUint32(entry + 12, true);
+      const offset = bytes.byteOffset + view.getUint32(entry + 16, true) + view.getUint32(entry + 20, true) * 4294967296;
+      const data = type === S2BinaryCorpus.F64
+          ? new Float64Array(bytes.buffer, offset, length)
+          : new Uint32Array(bytes.buffer, offset, type === S2BinaryCorpus.U64 ? 2 * length : length);
+      columns[name] = {name, type, data};
+    }
+    return new S2BinaryCorpus(kind, count, columns);
+  }
+
+  /** Lays out the given columns in the binary format. */
+  public static write(kind:string, count:number, columns:S2CorpusColumn[]):Uint8Array {
+    let offset = 16 + 24 * columns.length;
+    const offsets = columns.map(column => {
+      const start = offset;
+      offset = (offset + column.data.byteLength + 7) & ~7;
+      return start;
+    });
+    const bytes = new Uint8Array(offset);
+    const view = new DataView(bytes.buffer);
+    'S2CB'.split('').forEach((c, k) => bytes[k] = c.charCodeAt(0));
+    view.setUint16(4, 1, true);
+    view.setUint16(6, S2BinaryCorpus.KINDS.indexOf(kind), true);
+    view.setUint32(8, count, true);
+    view.setUint32(12, columns.length, true);
+    columns.forEach((column, i) => {
+      const entry = 16 + 24 * i;
+      column.name.split('').forEach((c, k) => bytes[entry + k] = c.charCodeAt(0));
+      view.setUint32(entry + 8, column.type, true);
+      view.setUint32(entry + 12, column.type === S2BinaryCorpus.U64 ? column.data.length / 2 : column.data.length, true);
+      view.setUint32(entry + 16, offsets[i], true);
+      bytes.set(new Uint8Array(column.data.buffer, column.data.byteOffset, column.data.byteLength), offsets[i]);
+    });
+    return bytes;
+  }
+
+  public has(name:string):boolean {
+    return name in this.columns;
+  }
+
+  public f64(name:string):Float64Array {
+    return this.column(name, S2BinaryCorpus.F64) as Float64Array;
+  }
+
+  public u32(name:string):Uint32Array {
+    return this.column(name, S2BinaryCorpus.U32) as Uint32Array;
+  }
+
+  /** A u64 column as [lo, hi] word pairs. */
+  public ids(name:string):Uint32Array {
+    return this.column(name, S2BinaryCorpus.U64) as Uint32Array;
+  }
+
+  private column(name:string, type:number):Float64Array|Uint32Array {
+    const column = this.columns[name];
+    if (column === undefined || column.type !== type) {
+      throw new Error(`No column ${name} of type ${type} in this ${this.kind} corpus`);
+    }
+    return column.data;
+  }
+}
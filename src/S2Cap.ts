@@ -51,6 +51,10 @@ export class S2Cap implements S2Region {
    */
    private static ROUND_UP = 1/new Long(1).shiftLeft(52).toNumber() + 1;
 
+  // Scratch cell vertices and edge for the cell tests, which are not reentrant.
+  private static VERTICES = [new S2Point(0, 0, 0), new S2Point(0, 0, 0), new S2Point(0, 0, 0), new S2Point(0, 0, 0)];
+  private static EDGE = new S2Point(0, 0, 0);
+
   public axis: S2Point;
   public radius: S1ChordAngle;
 
@@ -296,10 +300,9 @@ export class S2Cap implements S2Region {
   // }
   public mayIntersectC(cell:S2Cell):boolean {
     // If the cap contains any cell vertex, return true.
-    const vertices:S2Point[] = new Array(4);
+    const vertices = S2Cap.VERTICES;
     for (let k = 0; k < 4; ++k) {
-      vertices[k] = cell.getVertex(k);
-      if (this.contains(vertices[k])) {
+      if (this.containsVertex(cell.getVertex(k, vertices[k]))) {
         return true;
       }
     }
@@ -337,9 +340,11 @@ export class S2Cap implements S2Region {
     // can intersect is if the cap intersects the interior of some edge.
 
     const sin2Angle = S1ChordAngle.sin2(this.radius);
+    const axis = this.axis;
+    const edge = S2Cap.EDGE;
     for (let k = 0; k < 4; ++k) {
-      const edge = cell.getEdgeRaw(k);
-      const dot = this.axis.dotProd(edge);
+      cell.getEdgeRaw(k, edge);
+      const dot = axis.dotProd(edge);
       if (dot > 0) {
         // The axis is in the interior half-space defined by the edge. We don't
         // need to consider these edges, since if the cap intersects this edge
@@ -354,8 +359,13 @@ export class S2Cap implements S2Region {
       // Otherwise, the great circle containing this edge intersects
       // the interior of the cap. We just need to check whether the point
       // of closest approach occurs between the two edge endpoints.
-      const dir = S2Point.crossProd(edge, this.axis);
-      if (dir.dotProd(vertices[k]) < 0 && dir.dotProd(vertices[(k + 1) & 3]) > 0) {
+      // dir = edge x axis, without allocating it.
+      const dirX = edge.y * axis.z - edge.z * axis.y;
+      const dirY = edge.z * axis.x - edge.x * axis.z;
+      const dirZ = edge.x * axis.y - edge.y * axis.x;
+      const a = vertices[k];
+      const b = vertices[(k + 1) & 3];
+      if (dirX * a.x + dirY * a.y + dirZ * a.z < 0 && dirX * b.x + dirY * b.y + dirZ * b.z > 0) {
         return true;
       }
     }
@@ -368,15 +378,22 @@ export class S2Cap implements S2Region {
     return S1ChordAngle.fromS2Point(this.axis, p).compareTo(this.radius) <= 0;
   }
 
+  /**
+   * Same as contains, for the normalized cell vertices the cell tests compute:
+   * the chord angle is compared without being allocated.
+   */
+  private containsVertex(p:S2Point):boolean {
+    return Math.min(S1ChordAngle.MAX_LENGTH2, this.axis.getDistance2(p)) <= this.radius.getLength2();
+  }
+
   public containsC(cell: S2Cell): boolean {
     // If the cap does not contain all cell vertices, return false.
     // We check the vertices before taking the Complement() because we can't
     // accurately represent the complement of a very small cap (a height
     // of 2-epsilon is rounded off to 2).
-    const vertices = [];
+    const vertices = S2Cap.VERTICES;
     for (let k = 0; k < 4; ++k) {
-      vertices[k] = cell.getVertex(k);
-      if (!this.contains(vertices[k])) {
+      if (!this.containsVertex(cell.getVertex(k, vertices[k]))) {
         return false;
       }
     }
@@ -9,6 +9,14 @@ import {S2LatLngRect} from "./S2LatLngRect";
 import {R1Interval} from "./R1Interval";
 import {S1Interval} from "./S1Interval";
 import {S2Cap} from "./S2Cap";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {Platform} from "./Platform";
+
+// Scratch buffers; nothing here is reentrant.
+const IJO = new Uint32Array(3);
+const CHILD_ID = new Uint32Array(2);
+const POINT = new S2Point(0, 0, 0);
+
 export class S2Cell {
   private static MAX_CELL_SIZE = 1 << S2CellId.MAX_LEVEL;
 
@@ -16,21 +24,87 @@ export class S2Cell {
   private _level:number;
   private _orientation:number;
 
+  // The cell id as two unsigned 32-bit words (see S2CellIdBits); the S2CellId
+  // object is only built when asked for.
+  private _idHi = 0;
+  private _idLo = 0;
+  private cellID:S2CellId = null;
+
+  // The (i,j) coordinates of the lower-left leaf cell, used by subdivide.
+  private iLo = 0;
+  private jLo = 0;
+
   private uMin: number;
   private uMax: number;
   private vMin: number;
   private vMax: number;
 
-  constructor(private cellID?:S2CellId) {
+  constructor(cellID?:S2CellId) {
     if (cellID != null) {
       this.init(cellID)
     }
   }
 
   get id():S2CellId {
+    if (this.cellID === null) {
+      this.cellID = new S2CellId(S2CellIdBits.toLong(this._idHi, this._idLo));
+    }
     return this.cellID;
   }
 
+  /** The high 32 bits of the cell id. */
+  get idHi():number {
+    return this._idHi;
+  }
+
+  /** The low 32 bits of the cell id. */
+  get idLo():number {
+    return this._idLo;
+  }
+
+  /**
+   * Reinitialize this cell in place to the cell with the given id words, without
+   * allocating. This lets hot loops (e.g. S2RegionCoverer) use one scratch cell
+   * for many ids, so a region must not keep a reference to the cells it is given.
+   */
+  public initRaw(hi:number, lo:number):S2Cell {
+    hi >>>= 0;
+    lo >>>= 0;
+    this._idHi = hi;
+    this._idLo = lo;
+    this.cellID = null;
+    this._face = S2CellIdBits.toFaceIJOrientation(hi, lo, IJO);
+    this._orientation = IJO[2];
+    this._level = S2CellIdBits.level(hi, lo);
+
+    const cellSize = S2CellId.getSizeIJ(this._level);
+    this.iLo = IJO[0] & -cellSize;
+    this.jLo = IJO[1] & -cellSize;
+
+    this.uMin = S2Projections.ijToUV(this.iLo, cellSize);
+    this.uMax = S2Projections.ijToUV(this.iLo + cellSize, cellSize);
+    this.vMin = S2Projections.ijToUV(this.jLo, cellSize);
+    this.vMax = S2Projections.ijToUV(this.jLo + cellSize, cellSize);
+    return this;
+  }
+
+  /** Return a copy of this cell that is safe to keep when this one is a scratch cell. */
+  public clone():S2Cell {
+    const cell = new S2Cell();
+    cell._face = this._face;
+    cell._level = this._level;
+    cell._orientation = this._orientation;
+    cell._idHi = this._idHi;
+    cell._idLo = this._idLo;
+    cell.cellID = this.cellID;
+    cell.iLo = this.iLo;
+    cell.jLo = this.jLo;
+    cell.uMin = this.uMin;
+    cell.uMax = this.uMax;
+    cell.vMin = this.vMin;
+    cell.vMax = this.vMax;
+    return cell;
+  }
 
   public static fromFace(face: number): S2Cell {
     return new S2Cell(S2CellId.fromFace(face));
@@ -55,8 +129,24 @@ export class S2Cell {
     return this._level == S2CellId.MAX_LEVEL;
   }
 
-  public getVertex(k:number):S2Point {
-    return S2Point.normalize(this.getVertexRaw(k));
+  /**
+   * Return the k-th vertex of the cell, normalized. If "out" is given the vertex
+   * is written into it instead of a new point.
+   */
+  public getVertex(k:number, out?:S2Point):S2Point {
+    if (out == null) {
+      return S2Point.normalize(this.getVertexRaw(k));
+    }
+    this.getVertexRaw(k, out);
+    // Same arithmetic as S2Point.normalize.
+    let norm = Math.sqrt(Math.pow(out.x, 2) + Math.pow(out.y, 2) + Math.pow(out.z, 2));
+    if (norm != 0) {
+      norm = 1 / norm;
+    }
+    out.x *= norm;
+    out.y *= norm;
+    out.z *= norm;
+    return out;
   }
 
   /**
@@ -64,17 +154,34 @@ export class S2Cell {
    * CCW order. The points returned by GetVertexRaw are not necessarily unit
    * length.
    */
-  public getVertexRaw(k:number):S2Point {
+  public getVertexRaw(k:number, out?:S2Point):S2Point {
     // Vertices are returned in the order SW, SE, NE, NW.
     return S2Projections.faceUvToXyz(
-      this._face, ((k >> 1) ^ (k & 1)) == 0 ? this.uMin : this.uMax, (k >> 1) == 0 ? this.vMin : this.vMax);
+      this._face, ((k >> 1) ^ (k & 1)) == 0 ? this.uMin : this.uMax, (k >> 1) == 0 ? this.vMin : this.vMax, out);
   }
 
   public getEdge(k:number):S2Point {
     return S2Point.normalize(this.getEdgeRaw(k));
   }
 
-  public getEdgeRaw(k:number):S2Point {
+  public getEdgeRaw(k:number, out?:S2Point):S2Point {
+    if (out != null) {
+      switch (k) {
+        case 0:
+          return S2Projections.getVNorm(this._face, this.vMin, out);
+        case 1:
+          return S2Projections.getUNorm(this._face, this.uMax, out);
+        case 2:
+          S2Projections.getVNorm(this._face, this.vMax, out);
+          break;
+        default:
+          S2Projections.getUNorm(this._face, this.uMin, out);
+      }
+      out.x *= -1;
+      out.y *= -1;
+      out.z *= -1;
+      return out;
+    }
     switch (k) {
       case 0:
         return S2Projections.getVNorm(this._face, this.vMin); // South
@@ -106,49 +213,71 @@ export class S2Cell {
     // This function is equivalent to just iterating over the child cell ids
     // and calling the S2Cell constructor, but it is about 2.5 times faster.
 
-    if (this.id.isLeaf()) {
+    if (S2CellIdBits.isLeaf(this._idLo)) {
       return null;
     }
-    
+
     const children:S2Cell[] = new Array(4);
     for (let i = 0; i < 4; ++i) {
       children[i] = new S2Cell();
     }
+    this.subdivideInto(children);
+    return children;
+  }
+
+  /**
+   * Like subdivide, but reinitializes the four given cells (which may be
+   * scratch cells reused across calls) instead of allocating new ones. Returns
+   * false, leaving them untouched, if this is a leaf cell.
+   */
+  public subdivideInto(children:S2Cell[]):boolean {
+    if (S2CellIdBits.isLeaf(this._idLo)) {
+      return false;
+    }
 
-    // Create four children with the appropriate bounds.
-    let id = this.id.childBegin();
-    const mid = this.getCenterUV();
-    const uMid = mid.x;
-    const vMid = mid.y;
+    // Create four children with the appropriate bounds. The center of the cell
+    // in (u,v) is where it is split, at half its size in (i,j).
+    const half = S2CellId.getSizeIJ(this._level + 1);
+    const uMid = S2Projections.ijToUV(this.iLo + half, half);
+    const vMid = S2Projections.ijToUV(this.jLo + half, half);
+    const id = CHILD_ID;
+    S2CellIdBits.childBegin(this._idHi, this._idLo, this._level + 1, id);
 
-    for (let pos = 0; pos < 4; ++pos, id = id.next()) {
+    for (let pos = 0; pos < 4; ++pos) {
       const child = children[pos];
-      child._face = this.face;
-      child._level = this.level + 1;
-      child._orientation = this.orientation ^ S2.POS_TO_ORIENTATION[pos];
-      child.cellID = id;
+      child._face = this._face;
+      child._level = this._level + 1;
+      child._orientation = this._orientation ^ S2.POS_TO_ORIENTATION[pos];
+      child._idLo = id[0];
+      child._idHi = id[1];
+      child.cellID = null;
       // We want to split the cell in half in "u" and "v".  To decide which
       // side to set equal to the midpoint value, we look at cell's (i,j)
       // position within its parent.  The index for "i" is in bit 1 of ij.
-      const ij = S2.POS_TO_IJ[this.orientation][pos];
+      const ij = S2.POS_TO_IJ[this._orientation][pos];
       // The dimension 0 index (i/u) is in bit 1 of ij.
       if ((ij & 0x2) != 0) {
+        child.iLo = this.iLo + half;
         child.uMin = uMid;
         child.uMax = this.uMax;
       } else {
+        child.iLo = this.iLo;
         child.uMin = this.uMin;
         child.uMax = uMid;
       }
       // The dimension 1 index (j/v) is in bit 0 of ij.
       if ((ij & 0x1) != 0) {
+        child.jLo = this.jLo + half;
         child.vMin = vMid;
         child.vMax = this.vMax;
       } else {
+        child.jLo = this.jLo;
         child.vMin = this.vMin;
         child.vMax = vMid;
       }
+      S2CellIdBits.next(id[1], id[0], id);
     }
-    return children;
+    return true;
   }
 
   /**
@@ -163,7 +292,7 @@ export class S2Cell {
   }
 
   public getCenterRaw():S2Point {
-    return this.cellID.toPointRaw();
+    return this.id.toPointRaw();
   }
 
   /**
@@ -173,7 +302,7 @@ export class S2Cell {
    * not at the midpoint of the (u,v) rectangle covered by the cell
    */
   public getCenterUV():R2Vector {
-    return this.cellID.getCenterUV();
+    return this.id.getCenterUV();
   }
 
   /**
@@ -278,11 +407,24 @@ export class S2Cell {
 // 35.26 degrees
 
 
-  private getPoint(i: number, j: number): S2Point {
-    return S2Projections.faceUvToXyz(this._face, i == 0 ? this.uMin : this.uMax, j == 0 ? this.vMin : this.vMax);
+  private getLatitude(i: number, j: number): number {
+    const p = S2Projections.faceUvToXyz(this._face, i == 0 ? this.uMin : this.uMax, j == 0 ? this.vMin : this.vMax, POINT);
+    return Math.atan2(p.z, Math.sqrt(p.x * p.x + p.y * p.y));
+  }
+
+  private getLongitude(i: number, j: number): number {
+    const p = S2Projections.faceUvToXyz(this._face, i == 0 ? this.uMin : this.uMax, j == 0 ? this.vMin : this.vMax, POINT);
+    return Math.atan2(p.y, p.x);
   }
 
-  public getRectBound():S2LatLngRect {
+  /**
+   * Return the bounding rectangle of the cell. If "out" is given its intervals
+   * are overwritten with the bound instead of allocating a new rectangle.
+   */
+  public getRectBound(out?:S2LatLngRect):S2LatLngRect {
+    if (out == null) {
+      out = new S2LatLngRect(new R1Interval(0, 0), new S1Interval(0, 0, true));
+    }
     if (this._level > 0) {
       // Except for cells at level 0, the latitude and longitude extremes are
       // attained at the vertices. Furthermore, the latitude range is
@@ -300,19 +442,48 @@ export class S2Cell {
       const i = S2Projections.getUAxis(this._face).z == 0 ? (u < 0 ? 1 : 0) : (u > 0 ? 1 : 0);
       const j = S2Projections.getVAxis(this._face).z == 0 ? (v < 0 ? 1 : 0) : (v > 0 ? 1 : 0);
 
-      const lat = R1Interval.fromPointPair(
-          S2LatLng.latitude(this.getPoint(i, j)).radians,
-          S2LatLng.latitude(this.getPoint(1 - i, 1 - j)).radians);
-          
-      const lng = S1Interval.fromPointPair(
-              S2LatLng.longitude(this.getPoint(i, 1 - j)).radians,
-              S2LatLng.longitude(this.getPoint(1 - i, j)).radians);
-
-      
-      // DBL_EPSILON
-      return new S2LatLngRect(lat, lng)
-          .expanded(S2LatLng.fromRadians(S2.DBL_EPSILON, S2.DBL_EPSILON))
-          .polarClosure();
+      // This is R1Interval.fromPointPair and S1Interval.fromPointPair, then
+      // expanded by DBL_EPSILON and polarClosure, computed on plain numbers.
+      const lat1 = this.getLatitude(i, j);
+      const lat2 = this.getLatitude(1 - i, 1 - j);
+      out.lat.lo = Math.max((lat1 <= lat2 ? lat1 : lat2) - S2.DBL_EPSILON, -S2.M_PI_2);
+      out.lat.hi = Math.min((lat1 <= lat2 ? lat2 : lat1) + S2.DBL_EPSILON, S2.M_PI_2);
+
+      let lng1 = this.getLongitude(i, 1 - j);
+      let lng2 = this.getLongitude(1 - i, j);
+      if (lng1 == -S2.M_PI) {
+        lng1 = S2.M_PI;
+      }
+      if (lng2 == -S2.M_PI) {
+        lng2 = S2.M_PI;
+      }
+      let lngLo = lng1;
+      let lngHi = lng2;
+      if (S1Interval.positiveDistance(lng1, lng2) > S2.M_PI) {
+        lngLo = lng2;
+        lngHi = lng1;
+      }
+      let length = lngHi - lngLo;
+      if (length < 0) {
+        length += 2 * S2.M_PI;
+      }
+      if (length + S2.DBL_EPSILON * 2 >= 2 * S2.M_PI - 1e-15
+          || out.lat.lo == -S2.M_PI_2 || out.lat.hi == S2.M_PI_2) {
+        lngLo = -S2.M_PI;
+        lngHi = S2.M_PI;
+      } else {
+        lngLo = Platform.IEEEremainder(lngLo - S2.DBL_EPSILON, 2 * S2.M_PI);
+        lngHi = Platform.IEEEremainder(lngHi + S2.DBL_EPSILON, 2 * S2.M_PI);
+        if (lngLo == -S2.M_PI) {
+          lngLo = S2.M_PI;
+        }
+        if (lngHi == -S2.M_PI && lngLo != S2.M_PI) {
+          lngHi = S2.M_PI;
+        }
+      }
+      out.lng.lo = lngLo;
+      out.lng.hi = lngHi;
+      return out;
     }
 
 
@@ -320,30 +491,32 @@ export class S2Cell {
     // assert (S2Projections.getNorm(face).get(face % 3) == ((face < 3) ? 1 : -1));
     switch (this._face) {
       case 0:
-        return new S2LatLngRect(
-            new R1Interval(-S2.M_PI_4, S2.M_PI_4), new S1Interval(-S2.M_PI_4, S2.M_PI_4));
+        return S2Cell.setRect(out, -S2.M_PI_4, S2.M_PI_4, -S2.M_PI_4, S2.M_PI_4);
       case 1:
-        return new S2LatLngRect(
-            new R1Interval(-S2.M_PI_4, S2.M_PI_4), new S1Interval(S2.M_PI_4, 3 * S2.M_PI_4));
+        return S2Cell.setRect(out, -S2.M_PI_4, S2.M_PI_4, S2.M_PI_4, 3 * S2.M_PI_4);
       case 2:
-        return new S2LatLngRect(
-            new R1Interval(S2Cell.POLE_MIN_LAT, S2.M_PI_2), new S1Interval(-S2.M_PI, S2.M_PI));
+        return S2Cell.setRect(out, S2Cell.POLE_MIN_LAT, S2.M_PI_2, -S2.M_PI, S2.M_PI);
       case 3:
-        return new S2LatLngRect(
-            new R1Interval(-S2.M_PI_4, S2.M_PI_4), new S1Interval(3 * S2.M_PI_4, -3 * S2.M_PI_4));
+        return S2Cell.setRect(out, -S2.M_PI_4, S2.M_PI_4, 3 * S2.M_PI_4, -3 * S2.M_PI_4);
       case 4:
-        return new S2LatLngRect(
-            new R1Interval(-S2.M_PI_4, S2.M_PI_4), new S1Interval(-3 * S2.M_PI_4, -S2.M_PI_4));
+        return S2Cell.setRect(out, -S2.M_PI_4, S2.M_PI_4, -3 * S2.M_PI_4, -S2.M_PI_4);
       default:
-        return new S2LatLngRect(
-            new R1Interval(-S2.M_PI_2, -S2Cell.POLE_MIN_LAT), new S1Interval(-S2.M_PI, S2.M_PI));
+        return S2Cell.setRect(out, -S2.M_PI_2, -S2Cell.POLE_MIN_LAT, -S2.M_PI, S2.M_PI);
     }
 
   }
 
+  private static setRect(out:S2LatLngRect, latLo:number, latHi:number, lngLo:number, lngHi:number):S2LatLngRect {
+    out.lat.lo = latLo;
+    out.lat.hi = latHi;
+    out.lng.lo = lngLo;
+    out.lng.hi = lngHi;
+    return out;
+  }
+
 
   public mayIntersectC(cell:S2Cell):boolean {
-    return this.cellID.intersects(cell.cellID);
+    return S2CellIdBits.intersects(this._idHi, this._idLo, cell._idHi, cell._idLo);
   }
 
   public contains(p:S2Point):boolean {
@@ -364,38 +537,12 @@ export class S2Cell {
 // The point 'p' does not need to be normalized.
 
   public containsC(cell:S2Cell):boolean {
-    return this.cellID.contains(cell.cellID);
+    return S2CellIdBits.contains(this._idHi, this._idLo, cell._idHi, cell._idLo);
   }
 
   private init(id:S2CellId) {
+    this.initRaw(id.id.high, id.id.low);
     this.cellID = id;
-    this._face = id.face
-
-    const ijo = id.toIJOrientation();
-
-    this._orientation = S2CellId.getOrientation(ijo);
-    this._level = id.level();
-
-    const i = S2CellId.getI(ijo);
-    const j = S2CellId.getJ(ijo);
-    const cellSize = id.getSizeIJ();
-
-    this.uMin = S2Projections.ijToUV(i, cellSize);
-    this.uMax = S2Projections.ijToUV(i + cellSize, cellSize);
-    this.vMin = S2Projections.ijToUV(j, cellSize);
-    this.vMax = S2Projections.ijToUV(j + cellSize, cellSize);
-
-    // for (let d = 0; d < 2; ++d) {
-    //   // Compute the cell bounds in scaled (i,j) coordinates.
-    //   const sijLo = (ij[d].val & -cellSize) * 2 - S2Cell.MAX_CELL_SIZE;
-    //   const sijHi = sijLo + cellSize * 2;
-
-    //   const s = 1/S2Cell.MAX_CELL_SIZE;
-    //   this._uv[d][0] = R2Vector.singleStTOUV(s * (sijLo))
-    //   //S2Projections.stToUV((1.0 / S2Cell.MAX_CELL_SIZE) * sijLo);
-    //   this._uv[d][1] = R2Vector.singleStTOUV(s * (sijHi));
-    //   //S2Projections.stToUV((1.0 / S2Cell.MAX_CELL_SIZE) * sijHi);
-    // }
   }
 
   get face(): number {
@@ -415,7 +562,7 @@ export class S2Cell {
 // where "i" and "j" are either 0 or 1.
 
   public toString():string {
-    return "[" + this._face + ", " + this._level + ", " + this.orientation + ", " + this.cellID + "]";
+    return "[" + this._face + ", " + this._level + ", " + this.orientation + ", " + this.id + "]";
   }
 
   public toGEOJSON() {
@@ -21,11 +21,13 @@ import {R2Vector} from "./R2Vector";
 import {S2} from "./S2";
 import {MutableInteger} from "./MutableInteger";
 import {S2LatLng} from "./S2LatLng";
-import { S2Projections, UvTransform } from './S2Projections';
+import { S2Projections } from './S2Projections';
+import { S2CellIdBits } from './S2CellIdBits';
+import { S2CellIdCodec } from './S2CellIdCodec';
+
+// Scratch [lo, hi] words of the parsed ids.
+const TOKEN_WORDS = new Uint32Array(2);
 
-const parseHex = function parseHex(str) {
-  return Long.fromString(str, false, 16);
-};
 /**
  * An S2CellId is a 64-bit unsigned integer that uniquely identifies a cell in
  * the S2 cell decomposition. It has the following format:
@@ -68,34 +70,9 @@ export class S2CellId {
   public static MAX_SIZE = 1 << S2CellId.MAX_LEVEL;
 
 
-//
-// calculated as 0xffffffffffffffff / radix
-
-  private static maxValueDivs = [new Long(0), new Long(0), // 0 and 1 are invalid
-    parseHex('9223372036854775807'), parseHex('6148914691236517205'), parseHex('4611686018427387903'), // 2-4
-    parseHex('3689348814741910323'), parseHex('3074457345618258602'), parseHex('2635249153387078802'), // 5-7
-    parseHex('2305843009213693951'), parseHex('2049638230412172401'), parseHex('1844674407370955161'), // 8-10
-    parseHex('1676976733973595601'), parseHex('1537228672809129301'), parseHex('1418980313362273201'), // 11-13
-    parseHex('1317624576693539401'), parseHex('1229782938247303441'), parseHex('1152921504606846975'), // 14-16
-    parseHex('1085102592571150095'), parseHex('1024819115206086200'), parseHex('970881267037344821'), // 17-19
-    parseHex('922337203685477580'), parseHex('878416384462359600'), parseHex('838488366986797800'), // 20-22
-    parseHex('802032351030850070'), parseHex('768614336404564650'), parseHex('737869762948382064'), // 23-25
-    parseHex('709490156681136600'), parseHex('683212743470724133'), parseHex('658812288346769700'), // 26-28
-    parseHex('636094623231363848'), parseHex('614891469123651720'), parseHex('595056260442243600'), // 29-31
-    parseHex('576460752303423487'), parseHex('558992244657865200'), parseHex('542551296285575047'), // 32-34
-    parseHex('527049830677415760'), parseHex('512409557603043100')] as Long[]; // 35-36
-
-
-// calculated as 0xffffffffffffffff % radix
-  private static maxValueMods = [0, 0, // 0 and 1 are invalid
-    1, 0, 3, 0, 3, 1, 7, 6, 5, 4, 3, 2, 1, 0, 15, 0, 15, 16, 15, 15, // 2-21
-    15, 5, 15, 15, 15, 24, 15, 23, 15, 15, 31, 15, 17, 15, 15]; // 22-36
-
   // Constant related to unsigned long's
   // '18446744073709551615'
-  // Long.fromString('0xffffffffffffffff', true, 16).toString()
-  // new Decimal(2).pow(64).sub(1);
-  public static MAX_UNSIGNED = Long.fromString('0xffffffffffffffff', true, 16);
+  public static MAX_UNSIGNED = Long.MAX_UNSIGNED_VALUE;
 
 
   // The following lookup tables are used to convert efficiently between an
@@ -134,8 +111,28 @@ export class S2CellId {
 
   private static TI_MASK = Long.fromInt(1).shiftLeft(32).subtract(1);
 
-  public static LOOKUP_POS = [] as Long[];
-  public static LOOKUP_IJ = [] as number[];
+  private static lookupPos:Long[] = null;
+  private static lookupIj:number[] = null;
+
+  /** Long view of S2CellIdBits.LOOKUP_POS, built on first use. */
+  public static get LOOKUP_POS():Long[] {
+    if (S2CellId.lookupPos === null) {
+      S2CellId.lookupPos = Array.from(S2CellIdBits.LOOKUP_POS, pos => Long.fromInt(pos));
+    }
+    return S2CellId.lookupPos;
+  }
+
+  /** Plain array view of S2CellIdBits.LOOKUP_IJ, built on first use. */
+  public static get LOOKUP_IJ():number[] {
+    if (S2CellId.lookupIj === null) {
+      S2CellId.lookupIj = Array.from(S2CellIdBits.LOOKUP_IJ);
+    }
+    return S2CellId.lookupIj;
+  }
+
+  // Scratch storage for the results of S2CellIdBits operations, so that only
+  // the returned S2CellId (and its Long) gets allocated.
+  private static SCRATCH = new Uint32Array(3);
 
   /**
    * This is the offset required to wrap around from the beginning of the
@@ -147,7 +144,8 @@ export class S2CellId {
   public id: Long;
   constructor(id:Long|string) {
     if (typeof(id) === 'string') {
-      this.id = Long.fromString(id as string);
+      S2CellIdCodec.fromDecimal(id as string, TOKEN_WORDS);
+      this.id = Long.fromBits(TOKEN_WORDS[0], TOKEN_WORDS[1]);
     } else {
       this.id = id as Long;
     }
@@ -156,7 +154,7 @@ export class S2CellId {
 
   /** Which cube face this cell belongs to, in the range 0..5. */
   get face() {
-    return this.id.shiftRightUnsigned(S2CellId.POS_BITS).toInt();
+    return this.id.high >>> 29;
   }
 
   /** Return the lowest-numbered bit that is on for cells at the given level. */
@@ -182,34 +180,6 @@ export class S2CellId {
   }
 
 
-  private  getBits1(i:MutableInteger, j:MutableInteger, k:number, bits:number):number {
-    const nbits = (k == 7) ? (S2CellId.MAX_LEVEL - 7 * S2CellId.LOOKUP_BITS) : S2CellId.LOOKUP_BITS;
-
-    bits += (this.id
-            .shiftRightUnsigned((k * 2 * S2CellId.LOOKUP_BITS + 1))
-            .getLowBitsUnsigned()
-            & ((1 << (2 * nbits)) - 1)) << 2;
-
-    /*
-     * System.out.println("id is: " + id_); System.out.println("bits is " +
-     * bits); System.out.println("lookup_ij[bits] is " + lookup_ij[bits]);
-     */
-    bits = S2CellId.LOOKUP_IJ[bits];
-    i.val = i.val + ((bits >> (S2CellId.LOOKUP_BITS + 2)) << (k * S2CellId.LOOKUP_BITS));
-    // i.setValue(i.intValue() + ((bits >> (LOOKUP_BITS + 2)) << (k * LOOKUP_BITS)));
-    /*
-     * System.out.println("left is " + ((bits >> 2) & ((1 << kLookupBits) -
-     * 1))); System.out.println("right is " + (k * kLookupBits));
-     * System.out.println("j is: " + j.intValue()); System.out.println("addition
-     * is: " + ((((bits >> 2) & ((1 << kLookupBits) - 1))) << (k *
-     * kLookupBits)));
-     */
-    j.val = j.val + ((((bits >> 2) & ((1 << S2CellId.LOOKUP_BITS) - 1))) << (k * S2CellId.LOOKUP_BITS));
-
-    bits &= (S2.SWAP_MASK | S2.INVERT_MASK);
-    return bits;
-  }
-
   public static lowestOnBitForLevel(level:number):Long {
     return new Long(1).shiftLeft(2 * (S2CellId.MAX_LEVEL - level));
   }
@@ -223,93 +193,21 @@ export class S2CellId {
    * the Hilbert curve orientation for the current cell.
    */
   public toFaceIJOrientation(pi:MutableInteger, pj:MutableInteger, orientation:MutableInteger) {
-    // System.out.println("Entering toFaceIjorientation");
-    const face = this.face;
-    let bits = (face & S2.SWAP_MASK);
-
-    // System.out.println("face = " + face + " bits = " + bits);
-
-    // Each iteration maps 8 bits of the Hilbert curve position into
-    // 4 bits of "i" and "j". The lookup table transforms a key of the
-    // form "ppppppppoo" to a value of the form "iiiijjjjoo", where the
-    // letters [ijpo] represents bits of "i", "j", the Hilbert curve
-    // position, and the Hilbert curve orientation respectively.
-    //
-    // On the first iteration we need to be careful to clear out the bits
-    // representing the cube face.
-    for (let k = 7; k >= 0; --k) {
-      bits = this.getBits1(pi, pj, k, bits);
-      // System.out.println("pi = " + pi + " pj= " + pj + " bits = " + bits);
-    }
-
+    const ijo = S2CellId.SCRATCH;
+    const face = S2CellIdBits.toFaceIJOrientation(this.id.high, this.id.low, ijo);
+    pi.val = pi.val + ijo[0];
+    pj.val = pj.val + ijo[1];
     if (orientation != null) {
-      // The position of a non-leaf cell at level "n" consists of a prefix of
-      // 2*n bits that identifies the cell, followed by a suffix of
-      // 2*(MAX_LEVEL-n)+1 bits of the form 10*. If n==MAX_LEVEL, the suffix is
-      // just "1" and has no effect. Otherwise, it consists of "10", followed
-      // by (MAX_LEVEL-n-1) repetitions of "00", followed by "0". The "10" has
-      // no effect, while each occurrence of "00" has the effect of reversing
-      // the kSwapMask bit.
-      // assert (S2.POS_TO_ORIENTATION[2] == 0);
-      // assert (S2.POS_TO_ORIENTATION[0] == S2.SWAP_MASK);
-      if ((Long.fromString('0x1111111111111110', true, 16).and(this.lowestOnBit()).notEquals(0))) {
-        bits ^= S2.SWAP_MASK;
-      }
-      orientation.val = bits;
+      orientation.val = ijo[2];
     }
     return face;
   }
 
   public toIJOrientation(): Long {
-    const face = this.face;
-    let bits = (face & S2.SWAP_MASK);
-
-    // System.out.println("face = " + face + " bits = " + bits);
-
-    // Each iteration maps 8 bits of the Hilbert curve position into
-    // 4 bits of "i" and "j". The lookup table transforms a key of the
-    // form "ppppppppoo" to a value of the form "iiiijjjjoo", where the
-    // letters [ijpo] represents bits of "i", "j", the Hilbert curve
-    // position, and the Hilbert curve orientation respectively.
-    //
-    // On the first iteration we need to be careful to clear out the bits
-    // representing the cube face.
-    let i = 0;
-    let j = 0;
-    for (let k = 7; k >= 0; --k) {
-      const nbits = (k == 7) ? (S2CellId.MAX_LEVEL - 7 * S2CellId.LOOKUP_BITS) : S2CellId.LOOKUP_BITS;
-
-      bits += (this.id
-              .shiftRightUnsigned((k * 2 * S2CellId.LOOKUP_BITS + 1))
-              .getLowBitsUnsigned()
-              & ((1 << (2 * nbits)) - 1)) << 2;
-
-      /*
-      * System.out.println("id is: " + id_); System.out.println("bits is " +
-      * bits); System.out.println("lookup_ij[bits] is " + lookup_ij[bits]);
-      */
-      bits = S2CellId.LOOKUP_IJ[bits];
-      i = i + ((bits >> (S2CellId.LOOKUP_BITS + 2)) << (k * S2CellId.LOOKUP_BITS));
-      // i.setValue(i.intValue() + ((bits >> (LOOKUP_BITS + 2)) << (k * LOOKUP_BITS)));
-      /*
-      * System.out.println("left is " + ((bits >> 2) & ((1 << kLookupBits) -
-      * 1))); System.out.println("right is " + (k * kLookupBits));
-      * System.out.println("j is: " + j.intValue()); System.out.println("addition
-      * is: " + ((((bits >> 2) & ((1 << kLookupBits) - 1))) << (k *
-      * kLookupBits)));
-      */
-      j = j + ((((bits >> 2) & ((1 << S2CellId.LOOKUP_BITS) - 1))) << (k * S2CellId.LOOKUP_BITS));
-
-      bits &= (S2.SWAP_MASK | S2.INVERT_MASK);
-    }
-
-    if ((Long.fromString('0x1111111111111110', true, 16).and(this.lowestOnBit()).notEquals(0))) {
-      bits ^= S2.SWAP_MASK;
-    }
-
-    const orientation = bits;
-
-    return Long.fromInt(i).shiftLeft(S2CellId.I_SHIFT).or(Long.fromInt(j).shiftLeft(S2CellId.J_SHIFT)).or(orientation); 
+    const ijo = S2CellId.SCRATCH;
+    S2CellIdBits.toFaceIJOrientation(this.id.high, this.id.low, ijo);
+    // (i << I_SHIFT) | (j << J_SHIFT) | orientation
+    return Long.fromBits((ijo[1] << S2CellId.J_SHIFT) | ijo[2], ijo[0] << (S2CellId.I_SHIFT - 32));
   }
 
   public getI(): number {
@@ -338,7 +236,7 @@ export class S2CellId {
    * level() == MAX_LEVEL).
    */
   public  isLeaf():boolean {
-    return this.id.and(1).getLowBits() != 0;
+    return (this.id.low & 1) != 0;
   }
 
 
@@ -348,16 +246,15 @@ export class S2CellId {
    */
   public parentL(level:number):S2CellId {
     // assert (isValid() && level >= 0 && level <= this.level());
-    const newLsb = S2CellId.lowestOnBitForLevel(level);
-    return new S2CellId(this.id.and(newLsb.negate()).or(newLsb))
     // return new S2CellId((id & -newLsb) | newLsb);
+    S2CellIdBits.parent(this.id.high, this.id.low, level, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
   public parent():S2CellId {
     // assert (isValid() && level() > 0);
-    const newLsb = this.lowestOnBit().shiftLeft(2);
-    // return new S2CellId((id & -newLsb) | newLsb);
-    return new S2CellId(this.id.and(newLsb.negate()).or(newLsb))
+    S2CellIdBits.immediateParent(this.id.high, this.id.low, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
   /**
@@ -387,12 +284,8 @@ export class S2CellId {
 //  * necessarily unit length).
 //  */
   public static fromPoint(p:S2Point): S2CellId {
-    const face = S2Projections.xyzToFaceP(p);
-    const t: UvTransform = S2Projections.faceToUvTransform(face);
-    const i = S2Projections.stToIj(R2Vector.singleUVToST(t.xyzToU(p.x, p.y, p.z)))
-    const j = S2Projections.stToIj(R2Vector.singleUVToST(t.xyzToV(p.x, p.y, p.z)))
-
-    return this.fromFaceIJ(face, i, j);
+    S2CellIdBits.fromPoint(p.x, p.y, p.z, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
 //
@@ -448,7 +341,7 @@ export class S2CellId {
 
   /** Return true if id() represents a valid cell. */
   public isValid():boolean {
-    return this.face < S2CellId.NUM_FACES && ((this.lowestOnBit().and(Long.fromString('0x1555555555555555', false, 16)).notEquals(0)));
+    return S2CellIdBits.isValid(this.id.high, this.id.low);
     // return this.face() < NUM_FACES && ((lowestOnBit() & (0x1555555555555555L)) != 0);
   }
 
@@ -464,35 +357,7 @@ export class S2CellId {
 
   /** Return the subdivision level of the cell (range 0..MAX_LEVEL). */
   public level():number {
-    // Fast path for leaf cells.
-    if (this.isLeaf()) {
-      return S2CellId.MAX_LEVEL;
-    }
-    let x = this.id.getLowBits();
-    let level = -1;
-    if (x != 0) {
-      level += 16;
-    } else {
-      x = this.id.shiftRightUnsigned(32).getLowBits();
-      // (int) (id >>> 32);
-    }
-    // We only need to look at even-numbered bits to determine the
-    // level of a valid cell id.
-    x &= -x; // Get lowest bit.
-    if ((x & 0x00005555) != 0) {
-      level += 8;
-    }
-    if ((x & 0x00550055) != 0) {
-      level += 4;
-    }
-    if ((x & 0x05050505) != 0) {
-      level += 2;
-    }
-    if ((x & 0x11111111) != 0) {
-      level += 1;
-    }
-    // assert (level >= 0 && level <= MAX_LEVEL);
-    return level;
+    return S2CellIdBits.level(this.id.high, this.id.low);
   }
 
   public getSizeIJ(): number {
@@ -544,13 +409,15 @@ export class S2CellId {
 // because (range_max().id() + 1) is not always a valid cell id, and the
 // iterator would need to be tested using "<" rather that the usual "!=".
   public rangeMin():S2CellId {
-    return new S2CellId(this.id.sub(this.lowestOnBit().sub(1)));
     // return new S2CellId(id - (lowestOnBit() - 1));
+    S2CellIdBits.rangeMin(this.id.high, this.id.low, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
   public rangeMax():S2CellId {
-    return new S2CellId(this.id.add(this.lowestOnBit().sub(1)));
     // return new S2CellId(id + (lowestOnBit() - 1));
+    S2CellIdBits.rangeMax(this.id.high, this.id.low, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
 //
@@ -558,54 +425,69 @@ export class S2CellId {
   /** Return true if the given cell is contained within this one. */
   public contains(other:S2CellId):boolean {
     // assert (isValid() && other.isValid());
-    return other.greaterOrEquals(this.rangeMin()) && other.lessOrEquals(this.rangeMax());
+    return S2CellIdBits.contains(this.id.high, this.id.low, other.id.high, other.id.low);
   }
 
   /** Return true if the given cell intersects this one. */
   public intersects(other:S2CellId):boolean {
     // assert (isValid() && other.isValid());
-    return other.rangeMin().lessOrEquals(this.rangeMax())
-        && other.rangeMax().greaterOrEquals(this.rangeMin());
+    return S2CellIdBits.intersects(this.id.high, this.id.low, other.id.high, other.id.low);
   }
 
 
   public childBegin():S2CellId {
     // assert (isValid() && level() < MAX_LEVEL);
-    return new S2CellId(S2CellId.childBeginAsLong(this.id));
+    return this.childBeginL(this.level() + 1);
   }
 
   public childBeginL(level:number):S2CellId {
     // assert (isValid() && level >= this.level() && level <= MAX_LEVEL);
-    return new S2CellId(S2CellId.childBeginAsLongL(this.id, level));
+    S2CellIdBits.childBegin(this.id.high, this.id.low, level, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
   public childEnd():S2CellId {
     // assert (isValid() && level() < MAX_LEVEL);
-    return new S2CellId(S2CellId.childEndAsLong(this.id))
+    return this.childEndL(this.level() + 1);
   }
 
   public childEndL(level:number):S2CellId {
     // assert (isValid() && level >= this.level() && level <= MAX_LEVEL);
-    return new S2CellId(S2CellId.childEndAsLongL(this.id, level));
-  }
-
-  private static childBeginAsLong(id: Long): Long {
-    const oldLsb = S2CellId.lowestOnBit(id);
-    return id.subtract(oldLsb).add(oldLsb.shiftRightUnsigned(2));
+    S2CellIdBits.childEnd(this.id.high, this.id.low, level, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
-  private static childBeginAsLongL(id: Long, level: number): Long {
-    return id.subtract(S2CellId.lowestOnBit(id)).add(S2CellId.lowestOnBitForLevel(level))
+  /**
+   * Lazily generates the descendants of this cell at the given level, in
+   * order, as [lo, hi] words one chunk at a time (see
+   * S2CellIdBits.descendantChunks). Each chunk is a view of the same buffer,
+   * overwritten by the next one. The level must not be coarser than this
+   * cell's.
+   */
+  public descendantChunks(level:number,
+                          chunk = new Uint32Array(2 * S2CellIdBits.DEFAULT_CHUNK_CELLS)):IterableIterator<Uint32Array> {
+    if (level < this.level()) {
+      throw new Error("Level " + level + " is coarser than the level " + this.level() + " of the cell");
+    }
+    const words = new Uint32Array([this.id.low, this.id.high]);
+    return S2CellIdBits.descendantChunks(words, () => level, chunk);
   }
 
-  private static childEndAsLong(id: Long) {
-    const oldLsb = S2CellId.lowestOnBit(id);
-
-    return id.add(oldLsb).add(oldLsb.shiftRightUnsigned(2));
+  /**
+   * Lazily generates the descendants of this cell at the given level, like
+   * iterating from childBeginL(level) to childEndL(level) but without the
+   * intermediate Longs of next().
+   */
+  public *descendants(level:number):IterableIterator<S2CellId> {
+    for (const chunk of this.descendantChunks(level)) {
+      for (let k = 0; k < chunk.length; k += 2) {
+        yield new S2CellId(Long.fromBits(chunk[k], chunk[k + 1]));
+      }
+    }
   }
 
-  private static childEndAsLongL(id: Long, level: number) {
-    return id.add(S2CellId.lowestOnBit(id)).add(S2CellId.lowestOnBitForLevel(level));
+  private static fromScratch():S2CellId {
+    return new S2CellId(Long.fromBits(S2CellId.SCRATCH[0], S2CellId.SCRATCH[1]));
   }
 
   private static fromFaceAsLong(face: number): Long {
@@ -633,8 +515,9 @@ export class S2CellId {
    * around from the last face to the first or vice versa.
    */
   public next():S2CellId {
-    return new S2CellId(this.id.add(this.lowestOnBit().shiftLeft(1)));
     // return new S2CellId(id + (lowestOnBit() << 1));
+    S2CellIdBits.next(this.id.high, this.id.low, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
   /**
@@ -643,8 +526,9 @@ export class S2CellId {
    * around from the last face to the first or vice versa.
    */
   public prev():S2CellId {
-    return new S2CellId(this.id.sub(this.lowestOnBit().shiftLeft(1)));
     // return new S2CellId(id - (lowestOnBit() << 1));
+    S2CellIdBits.prev(this.id.high, this.id.low, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
 
@@ -695,33 +579,8 @@ export class S2CellId {
    * @throws NumberFormatException if the token is not formatted correctly
    */
   public static fromToken(token:string):S2CellId {
-    if (token == null) {
-      throw new Error("Null string in S2CellId.fromToken");
-    }
-    if (token.length == 0) {
-      throw new Error("Empty string in S2CellId.fromToken");
-    }
-    if (token.length > 16 || "X" == token) {
-      return S2CellId.none();
-    }
-
-    let value = new Long(0);
-    for (let pos = 0; pos < 16; pos++) {
-      let digit = new Long(0);
-      if (pos < token.length) {
-        digit = Long.fromString(token[pos], true, 16);
-        if (digit.equals(-1)) {
-          throw new Error(token);
-        }
-        if (S2CellId.overflowInParse(value, digit.toNumber())) {
-          throw new Error("Too large for unsigned long: " + token);
-        }
-      }
-      value = value.mul(16).add(digit);
-      // (value * 16) + digit;
-    }
-
-    return new S2CellId(value);
+    S2CellIdCodec.fromToken(token, TOKEN_WORDS);
+    return new S2CellId(Long.fromBits(TOKEN_WORDS[0], TOKEN_WORDS[1]));
   }
 
   /**
@@ -737,53 +596,10 @@ export class S2CellId {
    * @return the encoded cell id
    */
   public toToken():string {
-    if (this.id.equals(0)) {
-      return "X";
-    }
-
-    const hex = this.id.toUnsigned().toString(16);
-
-    // Long.toHexString(id).toLowerCase(Locale.ENGLISH);
-    let sb = '';
-    for (let i = hex.length; i < 16; i++) {
-      sb += '0';
-      // sb.append('0');
-    }
-    sb += hex;
-    // sb.append(hex);
-    for (let len = 16; len > 0; len--) {
-      if (sb[len - 1] != '0') {
-        return sb.substring(0, len);
-      }
-    }
-
-    throw new Error("Shouldn't make it here");
+    return S2CellIdCodec.toToken(this.id.high, this.id.low);
   }
 
 
-  /**
-   * Returns true if (current * radix) + digit is a number too large to be
-   * represented by an unsigned long.  This is useful for detecting overflow
-   * while parsing a string representation of a number.
-   * Does not verify whether supplied radix is valid, passing an invalid radix
-   * will give undefined results or an ArrayIndexOutOfBoundsException.
-   */
-  private static overflowInParse(current:Long, digit:number, radix = 10):boolean {
-    if (current.greaterThanOrEqual(0)) {
-      if (current.lessThan(S2CellId.maxValueDivs[radix])) {
-        return false;
-      }
-      if (current.greaterThan(S2CellId.maxValueDivs[radix])) {
-        return true;
-      }
-      // current == maxValueDivs[radix]
-      return (digit > S2CellId.maxValueMods[radix]);
-    }
-
-    // current < 0: high bit is set
-    return true;
-  }
-
   /**
    * Return the four cells that are adjacent across the cell's four edges.
    * Neighbors are returned in the order defined by S2Cell::GetEdge. All
@@ -931,68 +747,8 @@ public getVertexNeighbors(level:number):S2CellId[] {
    * j-coordinates (see s2.h).
    */
   public static fromFaceIJ(face:number, i:number, j:number):S2CellId {
-    // Optimization notes:
-    // - Non-overlapping bit fields can be combined with either "+" or "|".
-    // Generally "+" seems to produce better code, but not always.
-
-    // gcc doesn't have very good code generation for 64-bit operations.
-    // We optimize this by computing the result as two 32-bit integers
-    // and combining them at the end. Declaring the result as an array
-    // rather than local variables helps the compiler to do a better job
-    // of register allocation as well. Note that the two 32-bits halves
-    // get shifted one bit to the left when they are combined.
-    const faceL = new Long(face);
-    const n = [new Long(0), faceL.shiftLeft(S2CellId.POS_BITS - 33)];
-
-    // Alternating faces have opposite Hilbert curve orientations; this
-    // is necessary in order for all faces to have a right-handed
-    // coordinate system.
-    let bits = faceL.and(S2CellId.SWAP_MASK);
-
-    // Each iteration maps 4 bits of "i" and "j" into 8 bits of the Hilbert
-    // curve position. The lookup table transforms a 10-bit key of the form
-    // "iiiijjjjoo" to a 10-bit value of the form "ppppppppoo", where the
-    // letters [ijpo] denote bits of "i", "j", Hilbert curve position, and
-    // Hilbert curve orientation respectively.
-
-    for (let k = 7; k >= 0; --k) {
-      bits = S2CellId.getBits(n, i, j, k, bits);
-    }
-
-    // S2CellId s = new S2CellId((((n[1] << 32) + n[0]) << 1) + 1);
-    return new S2CellId(
-        n[1].shiftLeft(32)
-            .add(n[0])
-            .shiftLeft(1)
-            .add(1)
-    );
-  }
-
-  private static getBits(n:Long[], i:number, j:number, k:number, bits:Long):Long {
-
-    const mask = new Long(1).shiftLeft(S2CellId.LOOKUP_BITS).sub(1);
-    bits = bits.add(
-        new Long(i)
-            .shiftRight(k * S2CellId.LOOKUP_BITS)
-            .and(mask)
-            .shiftLeft(S2CellId.LOOKUP_BITS + 2)
-    );
-    // bits += (((i >> (k * LOOKUP_BITS)) & mask) << (LOOKUP_BITS + 2));
-    bits = bits.add(
-        new Long(j)
-            .shiftRight(k * S2CellId.LOOKUP_BITS)
-            .and(mask)
-            .shiftLeft(2)
-    );
-    // bits += (((j >> (k * LOOKUP_BITS)) & mask) << 2);
-
-    bits = S2CellId.LOOKUP_POS[bits.toNumber()];
-    n[k >> 2] = n[k >> 2].or(
-        bits.shiftRight(2).shiftLeft((k & 3) * 2 * S2CellId.LOOKUP_BITS)
-    );
-    // n[k >> 2] |= ((((long) bits) >> 2) << ((k & 3) * 2 * LOOKUP_BITS));
-
-    return bits.and(S2CellId.SWAP_MASK | S2CellId.INVERT_MASK);
+    S2CellIdBits.fromFaceIJ(face, i, j, S2CellId.SCRATCH);
+    return S2CellId.fromScratch();
   }
 
   /**
@@ -1063,7 +819,7 @@ public getVertexNeighbors(level:number):S2CellId[] {
    * Returns true if x1 < x2, when both values are treated as unsigned.
    */
   public static unsignedLongLessThan(x1:Long, x2:Long):boolean {
-    return x1.toUnsigned().lessThan(x2.toUnsigned());
+    return S2CellIdBits.compare(x1.high, x1.low, x2.high, x2.low) < 0;
 
     // return (x1 + Long.MIN_VALUE) < (x2 + Long.MIN_VALUE);
   }
@@ -1072,7 +828,7 @@ public getVertexNeighbors(level:number):S2CellId[] {
    * Returns true if x1 > x2, when both values are treated as unsigned.
    */
   public static unsignedLongGreaterThan(x1:Long, x2:Long):boolean {
-    return x1.toUnsigned().greaterThan(x2.toUnsigned());
+    return S2CellIdBits.compare(x1.high, x1.low, x2.high, x2.low) > 0;
     // return (x1 + Long.MIN_VALUE) > (x2 + Long.MIN_VALUE);
   }
 
@@ -1085,11 +841,11 @@ public getVertexNeighbors(level:number):S2CellId[] {
   }
 
   public lessOrEquals(x:S2CellId):boolean {
-    return S2CellId.unsignedLongLessThan(this.id, x.id) || this.id.equals(x.id);
+    return this.compareTo(x) <= 0;
   }
 
   public greaterOrEquals(x:S2CellId):boolean {
-    return S2CellId.unsignedLongGreaterThan(this.id, x.id) || this.id.equals(x.id);
+    return this.compareTo(x) >= 0;
   }
 
   public  toString():string {
@@ -1098,8 +854,7 @@ public getVertexNeighbors(level:number):S2CellId[] {
   }
 
   public compareTo(that:S2CellId ):number {
-    return S2CellId.unsignedLongLessThan(this.id, that.id) ? -1 :
-        S2CellId.unsignedLongGreaterThan(this.id, that.id) ? 1 : 0;
+    return S2CellIdBits.compare(this.id.high, this.id.low, that.id.high, that.id.low);
   }
 
   public equals(that:S2CellId): boolean {
@@ -1145,31 +900,3 @@ public getVertexNeighbors(level:number):S2CellId[] {
   }
 
 }
-
-
-function initLookupCell(level:number, i:number, j:number,
-                        origOrientation:number, pos:Long, orientation:number) {
-  if (level == S2CellId.LOOKUP_BITS) {
-    const ij = (i << S2CellId.LOOKUP_BITS) + j;
-    S2CellId.LOOKUP_POS[(ij << 2) + origOrientation] = pos.shiftLeft(2).add(orientation);
-    S2CellId.LOOKUP_IJ[pos.shiftLeft(2).add(origOrientation).toNumber()] = (ij << 2) + orientation;
-    // new Long((ij << 2)).add(orientation);
-  } else {
-    level++;
-    i <<= 1;
-    j <<= 1;
-    pos = pos.shiftLeft(2);
-    // Initialize each sub-cell recursively.
-    for (let subPos = 0; subPos < 4; subPos++) {
-      const ij = S2.POS_TO_IJ[orientation][subPos];
-      const orientationMask = S2.POS_TO_ORIENTATION[subPos];
-      initLookupCell(level, i + (ij >>> 1), j + (ij & 1), origOrientation,
-          pos.add(subPos), orientation ^ orientationMask);
-    }
-  }
-}
-
-initLookupCell(0, 0, 0, 0, new Long(0), 0);
-initLookupCell(0, 0, 0, S2.SWAP_MASK, new Long(0), S2.SWAP_MASK);
-initLookupCell(0, 0, 0, S2.INVERT_MASK, new Long(0), S2.INVERT_MASK);
-initLookupCell(0, 0, 0, S2.SWAP_MASK | S2.INVERT_MASK, new Long(0), S2.SWAP_MASK | S2.INVERT_MASK);
@@ -0,0 +1,815 @@
+/*
+ * Copyright 2005 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import * as Long from 'long';
+import {S2Projections} from "./S2Projections";
+import {S2} from "./S2";
+
+const MAX_LEVEL = S2.MAX_LEVEL;
+const LOOKUP_BITS = 4;
+const SWAP_MASK = S2.SWAP_MASK;
+const INVERT_MASK = S2.INVERT_MASK;
+const MAX_SIZE = 1 << MAX_LEVEL;
+const TWO_32 = 4294967296;
+
+/**
+ * Allocation-free bit operations over 64-bit cell ids stored as a pair of
+ * unsigned 32-bit words (hi, lo).
+ *
+ * This is the primitive counterpart of {@link S2CellId}: every operation takes
+ * the two words of the id as plain numbers and either returns a scalar or
+ * writes its resulting id into a caller provided Uint32Array. Ids written to
+ * an array always occupy two consecutive slots as [lo, hi], which is the
+ * memory layout of a little-endian 64-bit integer, so the same buffer can be
+ * viewed as a BigUint64Array or read with Buffer.readBigUInt64LE.
+ *
+ * Input words may be either signed or unsigned, so the {@code high}/{@code low}
+ * fields of a Long can be passed straight in. Words written to arrays are
+ * always unsigned.
+ */
+export class S2CellIdBits {
+
+  /** The number of ids of the chunks of {@link descendantChunks} when none is given. */
+  public static DEFAULT_CHUNK_CELLS = 4096;
+
+  /**
+   * "lookup_pos" maps 4 bits of "i", 4 bits of "j", and 2 bits representing the
+   * orientation of the current cell into 8 bits representing the order in which
+   * that subcell is visited by the Hilbert curve, plus 2 bits indicating the
+   * new orientation of the Hilbert curve within that subcell.
+   *
+   * "lookup_ij" is an inverted table used for mapping in the opposite
+   * direction.
+   *
+   * Both tables are filled on first use rather than when the module is
+   * loaded, so that importing the library stays cheap for code that never
+   * converts between points and cell ids.
+   */
+  public static get LOOKUP_POS():Uint16Array {
+    if (lookupPos === null) {
+      initLookup();
+    }
+    return lookupPos;
+  }
+
+  public static get LOOKUP_IJ():Uint16Array {
+    if (lookupIj === null) {
+      initLookup();
+    }
+    return lookupIj;
+  }
+
+  /** Return the given id as a (signed) Long, as stored by S2CellId. */
+  public static toLong(hi:number, lo:number):Long {
+    return Long.fromBits(lo, hi);
+  }
+
+  /** Writes the two words of a Long cell id into out[offset], out[offset + 1]. */
+  public static fromLong(id:Long, out:Uint32Array, offset = 0) {
+    out[offset] = id.low;
+    out[offset + 1] = id.high;
+  }
+
+  /** Which cube face this cell belongs to, in the range 0..5. */
+  public static face(hi:number):number {
+    return hi >>> 29;
+  }
+
+  /**
+   * Return the index (0..63) of the lowest-numbered bit that is on, or 64 if
+   * the id is zero.
+   */
+  public static lowestOnBitIndex(hi:number, lo:number):number {
+    if (lo !== 0) {
+      return 31 - Math.clz32(lo & -lo);
+    }
+    if (hi !== 0) {
+      return 63 - Math.clz32(hi & -hi);
+    }
+    return 64;
+  }
+
+  /** Return true if this is a leaf cell. */
+  public static isLeaf(lo:number):boolean {
+    return (lo & 1) !== 0;
+  }
+
+  /** Return the subdivision level of the cell (range 0..MAX_LEVEL). */
+  public static level(hi:number, lo:number):number {
+    // Fast path for leaf cells.
+    if ((lo & 1) !== 0) {
+      return MAX_LEVEL;
+    }
+    let x = lo;
+    let level = -1;
+    if (x !== 0) {
+      level += 16;
+    } else {
+      x = hi;
+    }
+    // We only need to look at even-numbered bits to determine the
+    // level of a valid cell id.
+    x &= -x; // Get lowest bit.
+    if ((x & 0x00005555) !== 0) {
+      level += 8;
+    }
+    if ((x & 0x00550055) !== 0) {
+      level += 4;
+    }
+    if ((x & 0x05050505) !== 0) {
+      level += 2;
+    }
+    if ((x & 0x11111111) !== 0) {
+      level += 1;
+    }
+    return level;
+  }
+
+  /** Return true if id represents a valid cell. */
+  public static isValid(hi:number, lo:number):boolean {
+    if ((hi >>> 29) >= 6) {
+      return false;
+    }
+    // (lowestOnBit() & 0x1555555555555555) != 0
+    if (lo !== 0) {
+      return ((lo & -lo) & 0x55555555) !== 0;
+    }
+    return ((hi & -hi) & 0x15555555) !== 0;
+  }
+
+  /**
+   * Compares two ids as unsigned 64-bit integers, returning -1, 0 or 1.
+   */
+  public static compare(aHi:number, aLo:number, bHi:number, bLo:number):number {
+    const ah = aHi >>> 0;
+    const bh = bHi >>> 0;
+    if (ah !== bh) {
+      return ah < bh ? -1 : 1;
+    }
+    const al = aLo >>> 0;
+    const bl = bLo >>> 0;
+    return al < bl ? -1 : (al > bl ? 1 : 0);
+  }
+
+  /**
+   * Writes the cell at the given level (which must be less than or equal to
+   * the current level) containing id.
+   */
+  public static parent(hi:number, lo:number, level:number, out:Uint32Array, offset = 0) {
+    S2CellIdBits.parentAtBit(hi, lo, 2 * (MAX_LEVEL - level), out, offset);
+  }
+
+  /** Writes the immediate parent of id. */
+  public static immediateParent(hi:number, lo:number, out:Uint32Array, offset = 0) {
+    S2CellIdBits.parentAtBit(hi, lo, S2CellIdBits.lowestOnBitIndex(hi, lo) + 2, out, offset);
+  }
+
+  /** (id & -newLsb) | newLsb, where newLsb = 1 << bit. */
+  private static parentAtBit(hi:number, lo:number, bit:number, out:Uint32Array, offset:number) {
+    if (bit < 32) {
+      const lsb = 1 << bit;
+      out[offset] = (lo & -lsb) | lsb;
+      out[offset + 1] = hi;
+    } else {
+      const lsb = 1 << (bit - 32);
+      out[offset] = 0;
+      out[offset + 1] = (hi & -lsb) | lsb;
+    }
+  }
+
+  /** Writes the first leaf cell id contained within id: id - (lowestOnBit() - 1). */
+  public static rangeMin(hi:number, lo:number, out:Uint32Array, offset = 0) {
+    // Subtracting (lsb - 1) clears the lowest set bit and sets bit 0.
+    if (lo !== 0) {
+      out[offset] = (lo & (lo - 1)) | 1;
+      out[offset + 1] = hi;
+    } else {
+      out[offset] = 1;
+      out[offset + 1] = hi & (hi - 1);
+    }
+  }
+
+  /** Writes the last leaf cell id contained within id: id + (lowestOnBit() - 1). */
+  public static rangeMax(hi:number, lo:number, out:Uint32Array, offset = 0) {
+    // Adding (lsb - 1) sets every bit below the lowest set bit.
+    if (lo !== 0) {
+      out[offset] = lo | (lo - 1);
+      out[offset + 1] = hi;
+    } else {
+      out[offset] = 0xffffffff;
+      out[offset + 1] = hi | (hi - 1);
+    }
+  }
+
+  /** Return true if the cell b is contained within the cell a. */
+  public static contains(aHi:number, aLo:number, bHi:number, bLo:number):boolean {
+    let minHi:number, minLo:number, maxHi:number, maxLo:number;
+    if (aLo !== 0) {
+      minLo = ((aLo & (aLo - 1)) | 1) >>> 0;
+      maxLo = (aLo | (aLo - 1)) >>> 0;
+      minHi = maxHi = aHi >>> 0;
+    } else {
+      minLo = 1;
+      maxLo = 0xffffffff;
+      minHi = (aHi & (aHi - 1)) >>> 0;
+      maxHi = (aHi | (aHi - 1)) >>> 0;
+    }
+    return S2CellIdBits.compare(bHi, bLo, minHi, minLo) >= 0
+        && S2CellIdBits.compare(bHi, bLo, maxHi, maxLo) <= 0;
+  }
+
+  /** Return true if the cells a and b intersect. */
+  public static intersects(aHi:number, aLo:number, bHi:number, bLo:number):boolean {
+    let aMinHi:number, aMinLo:number, aMaxHi:number, aMaxLo:number;
+    if (aLo !== 0) {
+      aMinLo = ((aLo & (aLo - 1)) | 1) >>> 0;
+      aMaxLo = (aLo | (aLo - 1)) >>> 0;
+      aMinHi = aMaxHi = aHi >>> 0;
+    } else {
+      aMinLo = 1;
+      aMaxLo = 0xffffffff;
+      aMinHi = (aHi & (aHi - 1)) >>> 0;
+      aMaxHi = (aHi | (aHi - 1)) >>> 0;
+    }
+    let bMinHi:number, bMinLo:number, bMaxHi:number, bMaxLo:number;
+    if (bLo !== 0) {
+      bMinLo = ((bLo & (bLo - 1)) | 1) >>> 0;
+      bMaxLo = (bLo | (bLo - 1)) >>> 0;
+      bMinHi = bMaxHi = bHi >>> 0;
+    } else {
+      bMinLo = 1;
+      bMaxLo = 0xffffffff;
+      bMinHi = (bHi & (bHi - 1)) >>> 0;
+      bMaxHi = (bHi | (bHi - 1)) >>> 0;
+    }
+    return S2CellIdBits.compare(bMinHi, bMinLo, aMaxHi, aMaxLo) <= 0
+        && S2CellIdBits.compare(bMaxHi, bMaxLo, aMinHi, aMinLo) >= 0;
+  }
+
+  /** Writes the next cell at the same level along the Hilbert curve. */
+  public static next(hi:number, lo:number, out:Uint32Array, offset = 0) {
+    S2CellIdBits.addBit(hi, lo, S2CellIdBits.lowestOnBitIndex(hi, lo) + 1, out, offset);
+  }
+
+  /** Writes the previous cell at the same level along the Hilbert curve. */
+  public static prev(hi:number, lo:number, out:Uint32Array, offset = 0) {
+    S2CellIdBits.subBit(hi, lo, S2CellIdBits.lowestOnBitIndex(hi, lo) + 1, out, offset);
+  }
+
+  /** Writes the first child of id at the given level: id - lowestOnBit() + lowestOnBitForLevel(level). */
+  public static childBegin(hi:number, lo:number, level:number, out:Uint32Array, offset = 0) {
+    // Once the lowest set bit is cleared every bit below it is zero, so
+    // adding the new lsb is the same as setting it.
+    if (lo !== 0) {
+      lo = lo & (lo - 1);
+    } else {
+      hi = hi & (hi - 1);
+    }
+    const bit = 2 * (MAX_LEVEL - level);
+    if (bit < 32) {
+      lo |= 1 << bit;
+    } else {
+      hi |= 1 << (bit - 32);
+    }
+    out[offset] = lo;
+    out[offset + 1] = hi;
+  }
+
+  /**
+   * Writes the id following the last child of id at the given level:
+   * id + lowestOnBit() + lowestOnBitForLevel(level). This value may not be a
+   * valid cell id and should only be used as an exclusive end marker.
+   */
+  public static childEnd(hi:number, lo:number, level:number, out:Uint32Array, offset = 0) {
+    S2CellIdBits.addBit(hi, lo, S2CellIdBits.lowestOnBitIndex(hi, lo), out, offset);
+    S2CellIdBits.addBit(out[offset + 1], out[offset], 2 * (MAX_LEVEL - level), out, offset);
+  }
+
+  /** Writes id + 2^bit (mod 2^64). */
+  public static addBit(hi:number, lo:number, bit:number, out:Uint32Array, offset = 0) {
+    hi >>>= 0;
+    lo >>>= 0;
+    if (bit < 32) {
+      const sum = lo + Math.pow(2, bit);
+      if (sum >= TWO_32) {
+        out[offset] = sum - TWO_32;
+        out[offset + 1] = hi + 1;
+      } else {
+        out[offset] = sum;
+        out[offset + 1] = hi;
+      }
+    } else if (bit < 64) {
+      out[offset] = lo;
+      out[offset + 1] = hi + Math.pow(2, bit - 32);
+    } else {
+      out[offset] = lo;
+      out[offset + 1] = hi;
+    }
+  }
+
+  /** Writes id - 2^bit (mod 2^64). */
+  public static subBit(hi:number, lo:number, bit:number, out:Uint32Array, offset = 0) {
+    hi >>>= 0;
+    lo >>>= 0;
+    if (bit < 32) {
+      const diff = lo - Math.pow(2, bit);
+      if (diff < 0) {
+        out[offset] = diff + TWO_32;
+        out[offset + 1] = hi - 1;
+      } else {
+        out[offset] = diff;
+        out[offset + 1] = hi;
+      }
+    } else if (bit < 64) {
+      out[offset] = lo;
+      out[offset + 1] = hi - Math.pow(2, bit - 32);
+    } else {
+      out[offset] = lo;
+      out[offset + 1] = hi;
+    }
+  }
+
+  /**
+   * Writes the leaf cell given its cube face (range 0..5) and i- and
+   * j-coordinates (see s2.h).
+   */
+  public static fromFaceIJ(face:number, i:number, j:number, out:Uint32Array, offset = 0) {
+    // The id is computed as two 32-bit halves n1:n0 that get shifted one bit
+    // to the left when they are combined.
+    let n1 = face << 28; // face << (POS_BITS - 33)
+    let n0 = 0;
+
+    // Alternating faces have opposite Hilbert curve orientations; this
+    // is necessary in order for all faces to have a right-handed
+    // coordinate system.
+    let bits = face & SWAP_MASK;
+
+    // Each iteration maps 4 bits of "i" and "j" into 8 bits of the Hilbert
+    // curve position. The lookup table transforms a 10-bit key of the form
+    // "iiiijjjjoo" to a 10-bit value of the form "ppppppppoo", where the
+    // letters [ijpo] denote bits of "i", "j", Hilbert curve position, and
+    // Hilbert curve orientation respectively.
+    const lookupPos = S2CellIdBits.LOOKUP_POS;
+    for (let k = 7; k >= 0; --k) {
+      bits += ((i >> (k * LOOKUP_BITS)) & 15) << (LOOKUP_BITS + 2);
+      bits += ((j >> (k * LOOKUP_BITS)) & 15) << 2;
+      bits = lookupPos[bits];
+      if (k >= 4) {
+        n1 |= (bits >> 2) << ((k & 3) * 2 * LOOKUP_BITS);
+      } else {
+        n0 |= (bits >> 2) << ((k & 3) * 2 * LOOKUP_BITS);
+      }
+      bits &= SWAP_MASK | INVERT_MASK;
+    }
+
+    // (((n1 << 32) + n0) << 1) + 1
+    out[offset] = (n0 << 1) | 1;
+    out[offset + 1] = (n1 << 1) | (n0 >>> 31);
+  }
+
+  /**
+   * Given (i, j) coordinates that may be out of bounds, writes the
+   * corresponding leaf cell on an adjacent face.
+   */
+  public static fromFaceIJWrap(face:number, i:number, j:number, out:Uint32Array, offset = 0) {
+    // Convert i and j to the coordinates of a leaf cell just beyond the
+    // boundary of this face. This prevents 32-bit overflow in the case
+    // of finding the neighbors of a face cell, and also means that we
+    // don't need to worry about the distinction between (s,t) and (u,v).
+    i = Math.max(-1, Math.min(MAX_SIZE, i));
+    j = Math.max(-1, Math.min(MAX_SIZE, j));
+
+    // Find the (s,t) coordinates corresponding to (i,j). At least one
+    // of these coordinates will be just outside the range [0, 1].
+    const kScale = 1 / MAX_SIZE;
+    const u = kScale * (2 * i + 1 - MAX_SIZE);
+    const v = kScale * (2 * j + 1 - MAX_SIZE);
+
+    // Find the leaf cell coordinates on the adjacent face, and convert
+    // them to a cell id at the appropriate level.
+    const xyz = S2Projections.faceToXyzTransform(face);
+    const x = xyz.uvToX(u, v);
+    const y = xyz.uvToY(u, v);
+    const z = xyz.uvToZ(u, v);
+    const newFace = S2Projections.xyzToFace(x, y, z);
+    const uv = S2Projections.faceToUvTransform(newFace);
+    S2CellIdBits.fromFaceIJ(
+        newFace, S2CellIdBits.stToIJ(uv.xyzToU(x, y, z)), S2CellIdBits.stToIJ(uv.xyzToV(x, y, z)), out, offset);
+  }
+
+  /** Calls fromFaceIJ if sameFace is true, or fromFaceIJWrap if sameFace is false. */
+  public static fromFaceIJSame(face:number, i:number, j:number, sameFace:boolean, out:Uint32Array, offset = 0) {
+    if (sameFace) {
+      S2CellIdBits.fromFaceIJ(face, i, j, out, offset);
+    } else {
+      S2CellIdBits.fromFaceIJWrap(face, i, j, out, offset);
+    }
+  }
+
+  /**
+   * Writes the four cells that are adjacent across the cell's four edges into
+   * out[offset..offset + 7], in the S, E, N, W order used by
+   * S2CellId.getEdgeNeighbors().
+   */
+  public static edgeNeighbors(hi:number, lo:number, out:Uint32Array, offset = 0) {
+    const level = S2CellIdBits.level(hi, lo);
+    const size = 1 << (MAX_LEVEL - level);
+    const face = S2CellIdBits.toFaceIJOrientation(hi, lo, IJO);
+    const i = IJO[0];
+    const j = IJO[1];
+
+    // Edges 0, 1, 2, 3 are in the S, E, N, W directions.
+    S2CellIdBits.fromFaceIJSame(face, i, j - size, j - size >= 0, out, offset);
+    S2CellIdBits.fromFaceIJSame(face, i + size, j, i + size < MAX_SIZE, out, offset + 2);
+    S2CellIdBits.fromFaceIJSame(face, i, j + size, j + size < MAX_SIZE, out, offset + 4);
+    S2CellIdBits.fromFaceIJSame(face, i - size, j, i - size >= 0, out, offset + 6);
+    for (let k = 0; k < 8; k += 2) {
+      S2CellIdBits.parent(out[offset + k + 1], out[offset + k], level, out, offset + k);
+    }
+  }
+
+  /**
+   * Return the i- or j-index of the leaf cell containing the given s- or
+   * t-value.
+   */
+  private static stToIJ(s:number):number {
+    const m = MAX_SIZE / 2; // scaling multiplier
+    return Math.max(0, Math.min(m * 2 - 1, Math.round(m * s + m - 0.5)));
+  }
+
+  /**
+   * Writes the leaf cell containing the given point (a direction vector, not
+   * necessarily unit length).
+   */
+  public static fromPoint(x:number, y:number, z:number, out:Uint32Array, offset = 0) {
+    // Same as S2Projections.xyzToFace and the face's xyzToU / xyzToV, written
+    // out because calling the transforms costs more than the arithmetic.
+    const absX = Math.abs(x);
+    const absY = Math.abs(y);
+    const absZ = Math.abs(z);
+    let face:number;
+    let u:number;
+    let v:number;
+    if (absX > absY && absX > absZ) {
+      face = x < 0 ? 3 : 0;
+      u = (x < 0 ? z : y) / x;
+      v = (x < 0 ? y : z) / x;
+    } else if (absY > absZ && absY >= absX) {
+      face = y < 0 ? 4 : 1;
+      u = (y < 0 ? z : -x) / y;
+      v = (y < 0 ? -x : z) / y;
+    } else {
+      face = z < 0 ? 5 : 2;
+      u = (z < 0 ? -y : -x) / z;
+      v = (z < 0 ? -x : -y) / z;
+    }
+    S2CellIdBits.fromFaceIJ(face, S2CellIdBits.uvToIJ(u), S2CellIdBits.uvToIJ(v), out, offset);
+  }
+
+  /** S2Projections.stToIj(R2Vector.singleUVToST(u)). */
+  private static uvToIJ(u:number):number {
+    const s = u >= 0 ? 0.5 * Math.sqrt(1 + 3 * u) : 1 - 0.5 * Math.sqrt(1 - 3 * u);
+    return Math.max(0, Math.min(MAX_SIZE - 1, Math.round(MAX_SIZE * s - 0.5)));
+  }
+
+  /**
+   * Batch version of S2CellId.fromPoint(S2LatLng.fromDegrees(lat, lng).toPoint()).parentL(level):
+   * converts the first "count" entries of the lat/lng columns (in degrees) and
+   * writes the ids as [lo, hi] pairs into out, starting at "offset". Nothing is
+   * allocated per point.
+   */
+  public static fromLatLngDegrees(lat:Float64Array, lng:Float64Array, level:number, out:Uint32Array,
+                                  offset = 0, count = lat.length) {
+    const toRadians = Math.PI / 180;
+    for (let k = 0; k < count; k++) {
+      // Same arithmetic as S1Angle.degrees and S2LatLng.toPoint.
+      const phi = lat[k] * toRadians;
+      const theta = lng[k] * toRadians;
+      const cosphi = Math.cos(phi);
+      S2CellIdBits.fromPointAtLevel(Math.cos(theta) * cosphi, Math.sin(theta) * cosphi, Math.sin(phi),
+          level, out, offset + 2 * k);
+    }
+  }
+
+  /**
+   * Batch version of S2CellId.fromPoint(p).parentL(level) over interleaved
+   * [x, y, z] coordinates, see {@link fromLatLngDegrees}.
+   */
+  public static fromPoints(xyz:Float64Array, level:number, out:Uint32Array, offset = 0, count = xyz.length / 3) {
+    for (let k = 0; k < count; k++) {
+      S2CellIdBits.fromPointAtLevel(xyz[3 * k], xyz[3 * k + 1], xyz[3 * k + 2], level, out, offset + 2 * k);
+    }
+  }
+
+  private static fromPointAtLevel(x:number, y:number, z:number, level:number, out:Uint32Array, offset:number) {
+    S2CellIdBits.fromPoint(x, y, z, out, offset);
+    if (level < MAX_LEVEL) {
+      S2CellIdBits.parentAtBit(out[offset + 1], out[offset], 2 * (MAX_LEVEL - level), out, offset);
+    }
+  }
+
+  /**
+   * Returns the order that sorts the first "count" [lo, hi] pairs of "words"
+   * by increasing id: order[k] is the index of the k-th smallest id. The sort
+   * is stable, and a radix sort on 8-bit digits (skipping the digits that all
+   * ids share, e.g. the face bits) unless there are only a few ids.
+   */
+  public static sortOrder(words:Uint32Array, count = words.length >> 1):Uint32Array {
+    let order = new Uint32Array(count);
+    for (let i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    if (count < 64) {
+      return order.sort((a, b) => S2CellIdBits.compare(words[2 * a + 1], words[2 * a], words[2 * b + 1], words[2 * b]) || a - b);
+    }
+    let scratch = new Uint32Array(count);
+    const starts = new Uint32Array(256);
+    // Least significant digit first: the four bytes of lo, then those of hi.
+    for (let pass = 0; pass < 8; pass++) {
+      const word = pass >> 2;
+      const shift = 8 * (pass & 3);
+      starts.fill(0);
+      for (let i = 0; i < count; i++) {
+        starts[(words[2 * i + word] >>> shift) & 0xff]++;
+      }
+      if (starts[(words[word] >>> shift) & 0xff] === count) {
+        continue;
+      }
+      let sum = 0;
+      for (let d = 0; d < 256; d++) {
+        const n = starts[d];
+        starts[d] = sum;
+        sum += n;
+      }
+      for (let k = 0; k < count; k++) {
+        const i = order[k];
+        scratch[starts[(words[2 * i + word] >>> shift) & 0xff]++] = i;
+      }
+      const swap = order;
+      order = scratch;
+      scratch = swap;
+    }
+    return order;
+  }
+
+  /** Sorts the first "count" [lo, hi] pairs of "words" in increasing id order, in place. */
+  public static sortWords(words:Uint32Array, count = words.length >> 1):Uint32Array {
+    const order = S2CellIdBits.sortOrder(words, count);
+    const copy = words.slice(0, 2 * count);
+    for (let k = 0; k < count; k++) {
+      words[2 * k] = copy[2 * order[k]];
+      words[2 * k + 1] = copy[2 * order[k] + 1];
+    }
+    return words;
+  }
+
+  /**
+   * Normalizes the first "count" ids of "words", which must already be sorted,
+   * in place and returns the new number of ids. Contained cells are dropped
+   * and groups of four siblings are replaced by their parent, exactly as
+   * S2CellUnion.normalize does. The output never grows faster than the input
+   * is read, so the same array can be used for both. This is linear in count.
+   */
+  public static normalizeSorted(words:Uint32Array, count:number):number {
+    let out = 0;
+    for (let i = 0; i < count; i++) {
+      let hi = words[2 * i + 1];
+      let lo = words[2 * i];
+
+      // Check whether this cell is contained by the previous cell.
+      if (out !== 0 && S2CellIdBits.contains(words[2 * out - 1], words[2 * out - 2], hi, lo)) {
+        continue;
+      }
+
+      // Discard any previous cells contained by this cell.
+      while (out !== 0 && S2CellIdBits.contains(hi, lo, words[2 * out - 1], words[2 * out - 2])) {
+        out--;
+      }
+
+      // Check whether the last 3 elements plus "id" can be collapsed into a
+      // single parent cell.
+      while (out >= 3) {
+        const a = 2 * (out - 3);
+        if (!S2CellIdBits.siblings(words, a, hi, lo)) {
+          break;
+        }
+
+        // Replace four children by their parent cell.
+        out -= 3;
+        S2CellIdBits.immediateParent(hi, lo, words, 2 * out);
+        lo = words[2 * out];
+        hi = words[2 * out + 1];
+      }
+      words[2 * out] = lo;
+      words[2 * out + 1] = hi;
+      out++;
+    }
+    return out;
+  }
+
+  /**
+   * Return true if the first "count" ids of "words" are normalized, i.e.
+   * sorted, disjoint and without four siblings that normalizeSorted would
+   * replace by their parent. This is linear in count and does not allocate.
+   */
+  public static isNormalized(words:Uint32Array, count = words.length >> 1):boolean {
+    for (let i = 1; i < count; i++) {
+      const hi = words[2 * i + 1];
+      const lo = words[2 * i];
+      // The previous cell must end before this one starts.
+      const prevHi = words[2 * i - 1];
+      const prevLo = words[2 * i - 2];
+      const prevMaxLo = prevLo !== 0 ? (prevLo | (prevLo - 1)) >>> 0 : 0xffffffff;
+      const prevMaxHi = prevLo !== 0 ? prevHi : (prevHi | (prevHi - 1)) >>> 0;
+      const minLo = lo !== 0 ? ((lo & (lo - 1)) | 1) >>> 0 : 1;
+      const minHi = lo !== 0 ? hi : (hi & (hi - 1)) >>> 0;
+      if (S2CellIdBits.compare(prevMaxHi, prevMaxLo, minHi, minLo) >= 0) {
+        return false;
+      }
+      if (i >= 3 && S2CellIdBits.siblings(words, 2 * (i - 3), hi, lo)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Return true if the three ids at "words[a..]" and (hi, lo) are the four children of a cell. */
+  private static siblings(words:Uint32Array, a:number, hi:number, lo:number):boolean {
+    // A necessary (but not sufficient) condition is that the XOR of the
+    // four cells must be zero.
+    if (((words[a] ^ words[a + 2] ^ words[a + 4]) >>> 0) !== lo
+        || ((words[a + 1] ^ words[a + 3] ^ words[a + 5]) >>> 0) !== hi) {
+      return false;
+    }
+
+    // Exact test: block out the two bits that encode the child position of
+    // "id" with respect to its parent, the other three must agree on the rest.
+    const bit = S2CellIdBits.lowestOnBitIndex(hi, lo) + 1;
+    const maskLo = ~((bit < 32 ? 1 << bit : 0) | (bit + 1 < 32 ? 1 << (bit + 1) : 0));
+    const maskHi = ~((bit >= 32 ? 1 << (bit - 32) : 0) | (bit + 1 >= 32 ? 1 << (bit - 31) : 0));
+    const idLo = lo & maskLo;
+    const idHi = hi & maskHi;
+    return (words[a] & maskLo) === idLo && (words[a + 1] & maskHi) === idHi
+        && (words[a + 2] & maskLo) === idLo && (words[a + 3] & maskHi) === idHi
+        && (words[a + 4] & maskLo) === idLo && (words[a + 5] & maskHi) === idHi
+        && S2CellIdBits.level(hi, lo) !== 0;
+  }
+
+  /**
+   * Lazily generates, for each of the first "count" ids of "words", its
+   * descendants at the level returned by levelOf (the id itself if that is its
+   * own level), in order. The ids are written as [lo, hi] pairs into "chunk",
+   * which is yielded (as a view of its filled part) each time it is full and
+   * once more at the end, so memory stays bounded whatever the number of
+   * descendants. The same buffer is reused: copy what must outlive the next
+   * step of the iteration. Throws if levelOf returns a level coarser than the
+   * id's own.
+   */
+  public static *descendantChunks(words:Uint32Array, levelOf:(hi:number, lo:number) => number,
+                                  chunk = new Uint32Array(2 * S2CellIdBits.DEFAULT_CHUNK_CELLS),
+                                  count = words.length >> 1):IterableIterator<Uint32Array> {
+    const capacity = chunk.length >> 1;
+    if (capacity === 0) {
+      throw new Error("The chunk must hold at least one id");
+    }
+    const end = new Uint32Array(2);
+    let n = 0;
+    for (let k = 0; k < count; k++) {
+      const hi = words[2 * k + 1];
+      const lo = words[2 * k];
+      const level = levelOf(hi, lo);
+      const cellLevel = S2CellIdBits.level(hi, lo);
+      if (level < cellLevel) {
+        // There would be no descendant at which to stop.
+        throw new Error("Level " + level + " is coarser than the level " + cellLevel + " of the cell");
+      }
+      if (level === cellLevel) {
+        chunk[2 * n] = lo;
+        chunk[2 * n + 1] = hi;
+        if (++n === capacity) {
+          yield chunk.subarray(0, 2 * n);
+          n = 0;
+        }
+        continue;
+      }
+      // Consecutive cells at a level are 2 * lowestOnBitForLevel(level) apart.
+      const step = 2 * (MAX_LEVEL - level) + 1;
+      S2CellIdBits.childEnd(hi, lo, level, end);
+      S2CellIdBits.childBegin(hi, lo, level, chunk, 2 * n);
+      for (;;) {
+        const childLo = chunk[2 * n];
+        const childHi = chunk[2 * n + 1];
+        if (++n === capacity) {
+          yield chunk.subarray(0, 2 * n);
+          n = 0;
+        }
+        S2CellIdBits.addBit(childHi, childLo, step, chunk, 2 * n);
+        if (chunk[2 * n] === end[0] && chunk[2 * n + 1] === end[1]) {
+          break;
+        }
+      }
+    }
+    if (n > 0) {
+      yield chunk.subarray(0, 2 * n);
+    }
+  }
+
+  /**
+   * Return the face of the cell and write its (i, j, orientation) into
+   * out[offset..offset + 2]. Since cells are represented by the Hilbert curve
+   * position at the center of the cell, the returned (i,j) for non-leaf cells
+   * will be a leaf cell adjacent to the cell center.
+   */
+  public static toFaceIJOrientation(hi:number, lo:number, out:Uint32Array|Int32Array, offset = 0):number {
+    hi >>>= 0;
+    lo >>>= 0;
+    const face = hi >>> 29;
+    let bits = face & SWAP_MASK;
+    let i = 0;
+    let j = 0;
+
+    // Each iteration maps 8 bits of the Hilbert curve position into
+    // 4 bits of "i" and "j". On the first iteration we need to be careful to
+    // clear out the bits representing the cube face.
+    const lookupIj = S2CellIdBits.LOOKUP_IJ;
+    for (let k = 7; k >= 0; --k) {
+      const nbits = (k == 7) ? (MAX_LEVEL - 7 * LOOKUP_BITS) : LOOKUP_BITS;
+      const shift = k * 2 * LOOKUP_BITS + 1;
+      const word = shift < 32 ? ((lo >>> shift) | (hi << (32 - shift))) : (hi >>> (shift - 32));
+      bits += (word & ((1 << (2 * nbits)) - 1)) << 2;
+      bits = lookupIj[bits];
+      i += (bits >> (LOOKUP_BITS + 2)) << (k * LOOKUP_BITS);
+      j += ((bits >> 2) & ((1 << LOOKUP_BITS) - 1)) << (k * LOOKUP_BITS);
+      bits &= SWAP_MASK | INVERT_MASK;
+    }
+
+    // The position of a non-leaf cell at level "n" consists of a prefix of
+    // 2*n bits that identifies the cell, followed by a suffix of
+    // 2*(MAX_LEVEL-n)+1 bits of the form 10*. Each occurrence of "00" in the
+    // suffix has the effect of reversing the kSwapMask bit.
+    // (0x1111111111111110 & lowestOnBit()) != 0
+    if (lo !== 0) {
+      if (((lo & -lo) & 0x11111110) !== 0) {
+        bits ^= SWAP_MASK;
+      }
+    } else if (((hi & -hi) & 0x11111111) !== 0) {
+      bits ^= SWAP_MASK;
+    }
+
+    out[offset] = i;
+    out[offset + 1] = j;
+    out[offset + 2] = bits;
+    return face;
+  }
+}
+
+// Scratch (i, j, orientation) used by the neighbor methods.
+const IJO = new Uint32Array(3);
+
+let lookupPos:Uint16Array = null;
+let lookupIj:Uint16Array = null;
+
+function initLookup() {
+  const pos = new Uint16Array(1 << (2 * LOOKUP_BITS + 2));
+  const ij = new Uint16Array(1 << (2 * LOOKUP_BITS + 2));
+  initLookupCell(pos, ij, 0, 0, 0, 0, 0, 0);
+  initLookupCell(pos, ij, 0, 0, 0, SWAP_MASK, 0, SWAP_MASK);
+  initLookupCell(pos, ij, 0, 0, 0, INVERT_MASK, 0, INVERT_MASK);
+  initLookupCell(pos, ij, 0, 0, 0, SWAP_MASK | INVERT_MASK, 0, SWAP_MASK | INVERT_MASK);
+  lookupPos = pos;
+  lookupIj = ij;
+}
+
+function initLookupCell(posTable:Uint16Array, ijTable:Uint16Array, level:number, i:number, j:number,
+                        origOrientation:number, pos:number, orientation:number) {
+  if (level == LOOKUP_BITS) {
+    const ij = (i << LOOKUP_BITS) + j;
+    posTable[(ij << 2) + origOrientation] = (pos << 2) + orientation;
+    ijTable[(pos << 2) + origOrientation] = (ij << 2) + orientation;
+  } else {
+    level++;
+    i <<= 1;
+    j <<= 1;
+    pos <<= 2;
+    // Initialize each sub-cell recursively.
+    for (let subPos = 0; subPos < 4; subPos++) {
+      const ij = S2.POS_TO_IJ[orientation][subPos];
+      const orientationMask = S2.POS_TO_ORIENTATION[subPos];
+      initLookupCell(posTable, ijTable, level, i + (ij >>> 1), j + (ij & 1), origOrientation, pos + subPos,
+          orientation ^ orientationMask);
+    }
+  }
+}
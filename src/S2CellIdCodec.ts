@@ -0,0 +1,272 @@
+import * as Long from 'long';
+
+/**
+ * Text encodings of cell ids stored as [lo, hi] word pairs (see
+ * {@link S2CellIdBits}): tokens (hex with the trailing zeros stripped, as in
+ * S2CellId.toToken) and decimal strings, signed or unsigned.
+ *
+ * The single id methods work on the two words without going through Long,
+ * except for the decimal encoding.
+ * The batch methods convert whole columns between string arrays and packed
+ * Uint32Arrays, and the byte methods read and write separator delimited
+ * ASCII (e.g. a Buffer read from a file or a socket) directly, without
+ * creating a string per id.
+ */
+export class S2CellIdCodec {
+
+  /** Newline, the default separator of the byte methods. */
+  public static NEWLINE = 0x0a;
+
+  // Two digit hex of each byte, built on the first call to hex8().
+  private static HEX:string[] = null;
+
+  /**
+   * Decodes a token into out[offset] (lo) and out[offset + 1] (hi). Like
+   * S2CellId.fromToken, "X" and tokens longer than 16 characters give the
+   * invalid id 0.
+   */
+  public static fromToken(token:string, out:Uint32Array, offset = 0) {
+    if (token == null) {
+      throw new Error("Null string in S2CellId.fromToken");
+    }
+    S2CellIdCodec.parseToken(token, 0, token.length, out, offset);
+  }
+
+  public static toToken(hi:number, lo:number):string {
+    hi >>>= 0;
+    lo >>>= 0;
+    if (hi === 0 && lo === 0) {
+      return "X";
+    }
+    // Strip the trailing zero digits of the 16 digit hex.
+    if (lo === 0) {
+      return S2CellIdCodec.hex8(hi).substring(0, 8 - (S2CellIdCodec.trailingZeroBits(hi) >> 2));
+    }
+    return (S2CellIdCodec.hex8(hi) + S2CellIdCodec.hex8(lo)).substring(0, 16 - (S2CellIdCodec.trailingZeroBits(lo) >> 2));
+  }
+
+  /**
+   * Decodes a decimal id, either unsigned or signed (as printed by Long or by
+   * a 64-bit database column), into out[offset] (lo) and out[offset + 1] (hi).
+   */
+  public static fromDecimal(text:string, out:Uint32Array, offset = 0) {
+    if (text == null) {
+      throw new Error("Null string in S2CellIdCodec.fromDecimal");
+    }
+    S2CellIdCodec.parseDecimal(text, 0, text.length, out, offset);
+  }
+
+  /**
+   * Encodes the id in decimal, as a signed 64-bit integer if "signed" is true.
+   * Long's division is already faster than splitting the words by hand here.
+   */
+  public static toDecimal(hi:number, lo:number, signed = false):string {
+    return Long.fromBits(lo, hi, !signed).toString();
+  }
+
+  /** Decodes the tokens into [lo, hi] pairs, from out[offset] on. */
+  public static fromTokens(tokens:string[], out = new Uint32Array(2 * tokens.length), offset = 0):Uint32Array {
+    for (let k = 0; k < tokens.length; k++) {
+      S2CellIdCodec.fromToken(tokens[k], out, offset + 2 * k);
+    }
+    return out;
+  }
+
+  /** Encodes the first "count" ids of the [lo, hi] pairs as tokens. */
+  public static toTokens(words:Uint32Array, count = words.length >> 1):string[] {
+    const tokens:string[] = new Array(count);
+    for (let k = 0; k < count; k++) {
+      tokens[k] = S2CellIdCodec.toToken(words[2 * k + 1], words[2 * k]);
+    }
+    return tokens;
+  }
+
+  public static fromDecimals(texts:string[], out = new Uint32Array(2 * texts.length), offset = 0):Uint32Array {
+    for (let k = 0; k < texts.length; k++) {
+      S2CellIdCodec.fromDecimal(texts[k], out, offset + 2 * k);
+    }
+    return out;
+  }
+
+  public static toDecimals(words:Uint32Array, signed = false, count = words.length >> 1):string[] {
+    const texts:string[] = new Array(count);
+    for (let k = 0; k < count; k++) {
+      texts[k] = S2CellIdCodec.toDecimal(words[2 * k + 1], words[2 * k], signed);
+    }
+    return texts;
+  }
+
+  /**
+   * Decodes the tokens of an ASCII buffer, separated by the given byte (a
+   * trailing separator is allowed), into [lo, hi] pairs.
+   */
+  public static fromTokenBytes(bytes:Uint8Array, separator = S2CellIdCodec.NEWLINE):Uint32Array {
+    return S2CellIdCodec.parseBytes(bytes, separator, false);
+  }
+
+  /** Decodes the decimal ids of an ASCII buffer, see {@link fromTokenBytes}. */
+  public static fromDecimalBytes(bytes:Uint8Array, separator = S2CellIdCodec.NEWLINE):Uint32Array {
+    return S2CellIdCodec.parseBytes(bytes, separator, true);
+  }
+
+  /** Encodes the ids as tokens into an ASCII buffer, each followed by the separator. */
+  public static toTokenBytes(words:Uint32Array, separator = S2CellIdCodec.NEWLINE, count = words.length >> 1):Uint8Array {
+    // Tokens are at most 16 characters.
+    const bytes = new Uint8Array(17 * count);
+    let length = 0;
+    for (let k = 0; k < count; k++) {
+      const hi = words[2 * k + 1];
+      const lo = words[2 * k];
+      if (hi === 0 && lo === 0) {
+        bytes[length++] = 0x58; // 'X'
+      } else {
+        // The digits up to the last non-zero one.
+        const digits = 16 - ((lo === 0 ? 32 + S2CellIdCodec.trailingZeroBits(hi) : S2CellIdCodec.trailingZeroBits(lo)) >> 2);
+        for (let d = 0; d < digits; d++) {
+          const nibble = d < 8 ? (hi >>> (28 - 4 * d)) & 15 : (lo >>> (60 - 4 * d)) & 15;
+          bytes[length++] = nibble < 10 ? 0x30 + nibble : 0x57 + nibble;
+        }
+      }
+      bytes[length++] = separator;
+    }
+    return bytes.subarray(0, length);
+  }
+
+  /** Encodes the ids in decimal into an ASCII buffer, see {@link toTokenBytes}. */
+  public static toDecimalBytes(words:Uint32Array, signed = false, separator = S2CellIdCodec.NEWLINE,
+                               count = words.length >> 1):Uint8Array {
+    // At most 20 digits, or a sign and 19 digits.
+    const bytes = new Uint8Array(21 * count);
+    let length = 0;
+    for (let k = 0; k < count; k++) {
+      const text = S2CellIdCodec.toDecimal(words[2 * k + 1], words[2 * k], signed);
+      for (let c = 0; c < text.length; c++) {
+        bytes[length++] = text.charCodeAt(c);
+      }
+      bytes[length++] = separator;
+    }
+    return bytes.subarray(0, length);
+  }
+
+  private static parseBytes(bytes:Uint8Array, separator:number, decimal:boolean):Uint32Array {
+    let count = 0;
+    for (let k = 0; k < bytes.length; k++) {
+      if (bytes[k] === separator) {
+        count++;
+      }
+    }
+    if (bytes.length > 0 && bytes[bytes.length - 1] !== separator) {
+      count++;
+    }
+    const out = new Uint32Array(2 * count);
+    let start = 0;
+    for (let k = 0; k < count; k++) {
+      let end = start;
+      while (end < bytes.length && bytes[end] !== separator) {
+        end++;
+      }
+      if (decimal) {
+        S2CellIdCodec.parseDecimal(bytes, start, end, out, 2 * k);
+      } else {
+        S2CellIdCodec.parseToken(bytes, start, end, out, 2 * k);
+      }
+      start = end + 1;
+    }
+    return out;
+  }
+
+  private static parseToken(token:string|Uint8Array, start:number, end:number, out:Uint32Array, offset:number) {
+    const length = end - start;
+    if (length == 0) {
+      throw new Error("Empty string in S2CellId.fromToken");
+    }
+    const isString = typeof token === 'string';
+    const first = isString ? (token as string).charCodeAt(start) : (token as Uint8Array)[start];
+    if (length > 16 || (length == 1 && first === 0x58)) {
+      out[offset] = 0;
+      out[offset + 1] = 0;
+      return;
+    }
+    let hi = 0;
+    let lo = 0;
+    for (let d = 0; d < length; d++) {
+      const c = isString ? (token as string).charCodeAt(start + d) : (token as Uint8Array)[start + d];
+      const nibble = S2CellIdCodec.hexValue(c);
+      if (nibble < 0) {
+        throw new Error(S2CellIdCodec.text(token, start, end));
+      }
+      if (d < 8) {
+        hi |= nibble << (28 - 4 * d);
+      } else {
+        lo |= nibble << (60 - 4 * d);
+      }
+    }
+    out[offset] = lo;
+    out[offset + 1] = hi;
+  }
+
+  private static parseDecimal(text:string|Uint8Array, start:number, end:number, out:Uint32Array, offset:number) {
+    const isString = typeof text === 'string';
+    const negative = end > start && (isString ? (text as string).charCodeAt(start) : (text as Uint8Array)[start]) === 0x2d; // '-'
+    if (negative) {
+      start++;
+    }
+    if (end <= start) {
+      throw new Error("Empty string in S2CellIdCodec.fromDecimal");
+    }
+    // value = value * 10 + digit on the two words; the products stay below 2^36.
+    let hi = 0;
+    let lo = 0;
+    for (let k = start; k < end; k++) {
+      const digit = (isString ? (text as string).charCodeAt(k) : (text as Uint8Array)[k]) - 0x30;
+      if (digit < 0 || digit > 9) {
+        throw new Error(S2CellIdCodec.text(text, start, end));
+      }
+      const low = lo * 10 + digit;
+      lo = low % 4294967296;
+      hi = hi * 10 + (low - lo) / 4294967296;
+      if (hi >= 4294967296) {
+        throw new Error("Too large for unsigned long: " + S2CellIdCodec.text(text, start, end));
+      }
+    }
+    if (negative) {
+      if (hi > 0x80000000 || (hi === 0x80000000 && lo !== 0)) {
+        throw new Error("Too small for long: -" + S2CellIdCodec.text(text, start, end));
+      }
+      lo = (~lo + 1) >>> 0;
+      hi = (~hi + (lo === 0 ? 1 : 0)) >>> 0;
+    }
+    out[offset] = lo;
+    out[offset + 1] = hi;
+  }
+
+  private static hexValue(c:number):number {
+    if (c >= 0x30 && c <= 0x39) {
+      return c - 0x30;
+    }
+    // Lower case the letters.
+    c |= 0x20;
+    return c >= 0x61 && c <= 0x66 ? c - 0x57 : -1;
+  }
+
+  /** The 8 hex digits of the word, from a table of the 256 byte values (faster than toString(16)). */
+  private static hex8(word:number):string {
+    if (S2CellIdCodec.HEX === null) {
+      S2CellIdCodec.HEX = [];
+      for (let b = 0; b < 256; b++) {
+        S2CellIdCodec.HEX.push((b < 16 ? '0' : '') + b.toString(16));
+      }
+    }
+    const hex = S2CellIdCodec.HEX;
+    return hex[word >>> 24] + hex[(word >>> 16) & 255] + hex[(word >>> 8) & 255] + hex[word & 255];
+  }
+
+  /** The number of trailing zero bits of a non-zero word. */
+  private static trailingZeroBits(word:number):number {
+    return 31 - Math.clz32(word & -word);
+  }
+
+  private static text(source:string|Uint8Array, start:number, end:number):string {
+    return typeof source === 'string' ? source.substring(start, end) : String.fromCharCode(...source.subarray(start, end));
+  }
+}
@@ -0,0 +1,132 @@
+import {S2CellId} from "./S2CellId";
+
+/**
+ * A hash set of 64-bit cell ids that stores the raw (hi, lo) words in a single
+ * open-addressing table (linear probing) instead of boxing every id into an
+ * object or a string key.
+ *
+ * Ids are stored as [lo, hi] word pairs, see {@link S2CellIdBits}. The id 0 is
+ * never a valid cell id and is used to mark empty slots; it is still accepted
+ * and tracked separately.
+ */
+export class S2CellIdSet {
+
+  private words:Uint32Array;
+  private mask:number;
+  private count:number;
+  private hasZero:boolean;
+
+  constructor(expectedSize = 16) {
+    let capacity = 16;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    this.words = new Uint32Array(2 * capacity);
+    this.mask = capacity - 1;
+    this.count = 0;
+    this.hasZero = false;
+  }
+
+  /** The number of ids in the set. */
+  public size():number {
+    return this.count;
+  }
+
+  public clear() {
+    this.words.fill(0);
+    this.count = 0;
+    this.hasZero = false;
+  }
+
+  /** Return true if the set contains the id given by its two 32-bit words. */
+  public has(hi:number, lo:number):boolean {
+    hi >>>= 0;
+    lo >>>= 0;
+    if (hi === 0 && lo === 0) {
+      return this.hasZero;
+    }
+    const words = this.words;
+    for (let slot = S2CellIdSet.hash(hi, lo) & this.mask; ; slot = (slot + 1) & this.mask) {
+      const sLo = words[2 * slot];
+      const sHi = words[2 * slot + 1];
+      if (sLo === lo && sHi === hi) {
+        return true;
+      }
+      if (sLo === 0 && sHi === 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Adds the id given by its two 32-bit words. Returns true if the id was not
+   * already in the set.
+   */
+  public add(hi:number, lo:number):boolean {
+    hi >>>= 0;
+    lo >>>= 0;
+    if (hi === 0 && lo === 0) {
+      if (this.hasZero) {
+        return false;
+      }
+      this.hasZero = true;
+      this.count++;
+      return true;
+    }
+    if (2 * (this.count + 1) > this.mask + 1) {
+      this.rehash(2 * (this.mask + 1));
+    }
+    const words = this.words;
+    for (let slot = S2CellIdSet.hash(hi, lo) & this.mask; ; slot = (slot + 1) & this.mask) {
+      const sLo = words[2 * slot];
+      const sHi = words[2 * slot + 1];
+      if (sLo === lo && sHi === hi) {
+        return false;
+      }
+      if (sLo === 0 && sHi === 0) {
+        words[2 * slot] = lo;
+        words[2 * slot + 1] = hi;
+        this.count++;
+        return true;
+      }
+    }
+  }
+
+  public hasCellId(id:S2CellId):boolean {
+    return this.has(id.id.high, id.id.low);
+  }
+
+  public addCellId(id:S2CellId):boolean {
+    return this.add(id.id.high, id.id.low);
+  }
+
+  private rehash(capacity:number) {
+    const old = this.words;
+    this.words = new Uint32Array(2 * capacity);
+    this.mask = capacity - 1;
+    for (let k = 0; k < old.length; k += 2) {
+      const lo = old[k];
+      const hi = old[k + 1];
+      if (lo !== 0 || hi !== 0) {
+        let slot = S2CellIdSet.hash(hi, lo) & this.mask;
+        while (this.words[2 * slot] !== 0 || this.words[2 * slot + 1] !== 0) {
+          slot = (slot + 1) & this.mask;
+        }
+        this.words[2 * slot] = lo;
+        this.words[2 * slot + 1] = hi;
+      }
+    }
+  }
+
+  /**
+   * Mixes both words of the id. Cells at the same level share all of their
+   * trailing bits (at levels 0-14 the whole low word is zero), so the
+   * high word has to contribute as much as the low one.
+   */
+  private static hash(hi:number, lo:number):number {
+    let h = Math.imul(lo, 0xcc9e2d51) ^ hi;
+    h = Math.imul(h ^ (h >>> 16), 0x85ebca6b);
+    h = Math.imul(h ^ (h >>> 13), 0xc2b2ae35);
+    return h ^ (h >>> 16);
+  }
+}
@@ -16,6 +16,8 @@
 import * as Long from 'long';
 import {S2Region} from "./S2Region";
 import {S2CellId} from "./S2CellId";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {S2PackedCellUnion} from "./S2PackedCellUnion";
 import {S2Cell} from "./S2Cell";
 import {S1Angle} from "./S1Angle";
 import {S2Projections} from "./S2Projections";
@@ -23,6 +25,8 @@ import {S2LatLngRect} from "./S2LatLngRect";
 import {S2Point} from "./S2Point";
 import {S2Cap} from "./S2Cap";
 import { S1ChordAngle } from './S1ChordAngle';
+import {Platform} from "./Platform";
+import {S2CoveringObserver} from "./S2CoveringStats";
 /**
  * An S2CellUnion is a region consisting of cells of various sizes. Typically a
  * cell union is used to approximate some other shape. There is a tradeoff
@@ -33,10 +37,24 @@ import { S1ChordAngle } from './S1ChordAngle';
  */
 export class S2CellUnion implements S2Region {
 
+  // Notified of every normalize() call, see setObserver.
+  private static observer:S2CoveringObserver = null;
 
   /** The CellIds that form the Union */
   private cellIds:S2CellId[] = [];
 
+  /**
+   * Sets an observer notified with the {@link S2NormalizeStats} of every
+   * normalize() call, including the ones of the coverers, or null to stop.
+   */
+  public static setObserver(observer:S2CoveringObserver) {
+    S2CellUnion.observer = observer;
+  }
+
+  public static getObserver():S2CoveringObserver {
+    return S2CellUnion.observer;
+  }
+
   /**
    * Populates a cell union with the given S2CellIds or 64-bit cells ids, and
    * then calls Normalize(). The InitSwap() version takes ownership of the
@@ -114,13 +132,7 @@ export class S2CellUnion implements S2Region {
     for (let i = 0; i < this.cellIds.length; i++) {
       const id = this.cellIds[i];
       const level = id.level();
-      let newLevel = Math.max(minLevel, level);
-      if (levelMod > 1) {
-        // Round up so that (new_level - min_level) is a multiple of level_mod.
-        // (Note that S2CellId::kMaxLevel is a multiple of 1, 2, and 3.)
-        newLevel += (S2CellId.MAX_LEVEL - (newLevel - minLevel)) % levelMod;
-        newLevel = Math.min(S2CellId.MAX_LEVEL, newLevel);
-      }
+      const newLevel = S2CellUnion.denormalizedLevel(level, minLevel, levelMod);
       if (newLevel == level) {
         output.push(id);
       } else {
@@ -133,6 +145,48 @@ export class S2CellUnion implements S2Region {
     return output;
   }
 
+  /**
+   * Lazily generates the cells of denormalize(minLevel, levelMod) as [lo, hi]
+   * words, one chunk at a time (see S2CellIdBits.descendantChunks): memory
+   * stays bounded by the chunk however many cells there are. Each chunk is a
+   * view of the same buffer, overwritten by the next one.
+   */
+  public denormalizeChunks(minLevel:number, levelMod:number,
+                           chunk = new Uint32Array(2 * S2CellIdBits.DEFAULT_CHUNK_CELLS)):IterableIterator<Uint32Array> {
+    return S2CellIdBits.descendantChunks(S2PackedCellUnion.fromCellUnion(this).getWords(),
+        (hi, lo) => S2CellUnion.denormalizedLevel(S2CellIdBits.level(hi, lo), minLevel, levelMod), chunk);
+  }
+
+  /** Lazily generates the cells of denormalize(minLevel, levelMod), without building the array. */
+  public *denormalizeIterator(minLevel:number, levelMod:number):IterableIterator<S2CellId> {
+    yield* S2CellUnion.cellIdsOf(this.denormalizeChunks(minLevel, levelMod));
+  }
+
+  /**
+   * The level at which denormalize() outputs a cell at the given level: at
+   * least minLevel, rounded up so that (level - minLevel) is a multiple of
+   * levelMod.
+   */
+  private static denormalizedLevel(level:number, minLevel:number, levelMod:number):number {
+    let newLevel = Math.max(minLevel, level);
+    if (levelMod > 1) {
+      // Round up so that (new_level - min_level) is a multiple of level_mod.
+      // (Note that S2CellId::kMaxLevel is a multiple of 1, 2, and 3.)
+      newLevel += (S2CellId.MAX_LEVEL - (newLevel - minLevel)) % levelMod;
+      newLevel = Math.min(S2CellId.MAX_LEVEL, newLevel);
+    }
+    return newLevel;
+  }
+
+  /** The cell ids of the chunks, each created only when it is reached. */
+  private static *cellIdsOf(chunks:IterableIterator<Uint32Array>):IterableIterator<S2CellId> {
+    for (const chunk of chunks) {
+      for (let k = 0; k < chunk.length; k += 2) {
+        yield new S2CellId(S2CellIdBits.toLong(chunk[k + 1], chunk[k]));
+      }
+    }
+  }
+
   /**
    * If there are more than "excess" elements of the cell_ids() vector that are
    * allocated but unused, reallocate the array to eliminate the excess space.
@@ -220,18 +274,22 @@ export class S2CellUnion implements S2Region {
     // A divide-and-conquer or alternating-skip-search approach
     // may be significantly faster in both the average and worst case.
     for (let i=0; i<that.cellIds.length;i++) {
-      if (!this.intersects(that.cellIds[i])) {
-        return false;
+      if (this.intersects(that.cellIds[i])) {
+        return true;
       }
     }
-    return true;
-
+    return false;
   }
 
+  /**
+   * Initialize this cell union to the union of the two given cell unions,
+   * merged in linear time once they are normalized (see {@link packed}).
+   * Requires: x != this and y != this.
+   */
   public getUnion(x:S2CellUnion, y:S2CellUnion) {
     // assert (x != this && y != this);
-    this.cellIds = [].concat(x.cellIds).concat(y.cellIds);
-    this.normalize();
+    const union = S2PackedCellUnion.union(S2CellUnion.packed(x), S2CellUnion.packed(y));
+    this.cellIds = S2CellUnion.toCellIds(union.getWords(), x.cellIds, y.cellIds);
   }
 
   /**
@@ -269,51 +327,20 @@ export class S2CellUnion implements S2Region {
     // This is a fairly efficient calculation that uses binary search to skip
     // over sections of both input vectors. It takes constant time if all the
     // cells of "x" come before or after all the cells of "y" in S2CellId order.
+    // The walk runs on the raw words, and the output reuses the input ids.
+    const intersection = S2PackedCellUnion.intersection(S2CellUnion.packed(x), S2CellUnion.packed(y));
+    this.cellIds = S2CellUnion.toCellIds(intersection.getWords(), x.cellIds, y.cellIds);
+  }
 
-    this.cellIds = [];
-
-    let i = 0;
-    let j = 0;
-
-    while (i < x.cellIds.length && j < y.cellIds.length) {
-
-      const imin = x.cellId(i).rangeMin();
-      const jmin = y.cellId(j).rangeMin();
-
-      if (imin.greaterThan(jmin)) {
-        // Either j->contains(*i) or the two cells are disjoint.
-        if (x.cellId(i).lessOrEquals(y.cellId(j).rangeMax())) {
-          this.cellIds.push(x.cellId(i++));
-        } else {
-          // Advance "j" to the first cell possibly contained by *i.
-          j = S2CellId.indexedBinarySearch(y.cellIds, imin, j + 1);
-          // The previous cell *(j-1) may now contain *i.
-          if (x.cellId(i).lessOrEquals(y.cellId(j - 1).rangeMax())) {
-            --j;
-          }
-        }
-      } else if (jmin.greaterThan(imin)) {
-        // Identical to the code above with "i" and "j" reversed.
-        if (y.cellId(j).lessOrEquals(x.cellId(i).rangeMax())) {
-          this.cellIds.push(y.cellId(j++));
-        } else {
-          i = S2CellId.indexedBinarySearch(x.cellIds, jmin, i + 1);
-          if (y.cellId(j).lessOrEquals(x.cellId(i - 1).rangeMax())) {
-            --i;
-          }
-        }
-      } else {
-        // "i" and "j" have the same range_min(), so one contains the other.
-        if (x.cellId(i).lessThan(y.cellId(j))) {
-          this.cellIds.push(x.cellId(i++));
-        } else {
-          this.cellIds.push(y.cellId(j++));
-        }
-      }
-    }
-    // The output is generated in sorted order, and there should not be any
-    // cells that can be merged (provided that both inputs were normalized).
-    // assert (!normalize());
+  /**
+   * Initialize this cell union to the cells of x not covered by y, in time
+   * linear in the size of the inputs and output.
+   * Requires: x != this and y != this.
+   */
+  public getDifference(x:S2CellUnion, y:S2CellUnion) {
+    // assert (x != this && y != this);
+    const difference = S2PackedCellUnion.difference(S2CellUnion.packed(x), S2CellUnion.packed(y));
+    this.cellIds = S2CellUnion.toCellIds(difference.getWords(), x.cellIds, []);
   }
 
 
@@ -349,6 +376,55 @@ export class S2CellUnion implements S2Region {
     this.initSwap(output);
   }
 
+  /**
+   * Lazily generates the cells that expand(level) would normalize into the
+   * expanded union, as [lo, hi] words one chunk at a time, without modifying
+   * this union. They are not normalized: neighbors shared by nearby cells come
+   * out more than once, and cells can overlap (S2CellIdBits.sortWords and
+   * normalizeSorted, or S2PackedCellUnion.fromWords, turn them into the union).
+   * Memory is bounded by the chunk plus the neighbors of one cell. Each chunk
+   * is a view of the same buffer, overwritten by the next one.
+   */
+  public *expandChunks(level:number,
+                       chunk = new Uint32Array(2 * S2CellIdBits.DEFAULT_CHUNK_CELLS)):IterableIterator<Uint32Array> {
+    const capacity = chunk.length >> 1;
+    if (capacity === 0) {
+      throw new Error("The chunk must hold at least one id");
+    }
+    const levelLsb = S2CellId.lowestOnBitForLevel(level);
+    let n = 0;
+    let i = 0;
+    while (i < this.size()) {
+      let id = this.cellId(i++);
+      if (id.lowestOnBit().lessThan(levelLsb)) {
+        id = id.parentL(level);
+        // Skip over the following cells contained by this one, as expand()
+        // does with the preceding ones.
+        while (i < this.size() && id.contains(this.cellId(i))) {
+          i++;
+        }
+      }
+      const neighbors = id.getAllNeighbors(level);
+      for (let k = -1; k < neighbors.length; k++) {
+        const cell = k < 0 ? id : neighbors[k];
+        chunk[2 * n] = cell.id.low;
+        chunk[2 * n + 1] = cell.id.high;
+        if (++n === capacity) {
+          yield chunk.subarray(0, 2 * n);
+          n = 0;
+        }
+      }
+    }
+    if (n > 0) {
+      yield chunk.subarray(0, 2 * n);
+    }
+  }
+
+  /** Lazily generates the cells of {@link expandChunks}, without modifying this union. */
+  public *expandIterator(level:number):IterableIterator<S2CellId> {
+    yield* S2CellUnion.cellIdsOf(this.expandChunks(level));
+  }
+
   /**
    * Expand the cell union such that it contains all points whose distance to
    * the cell union is at most minRadius, but do not use cells that are more
@@ -508,66 +584,75 @@ public  getCapBound():S2Cap {
    *         false if the union was already normalized
    */
   public normalize():boolean {
-    // Optimize the representation by looking for cases where all subcells
-    // of a parent cell are present.
-    const output:S2CellId[] = [];
-    // ArrayList<S2CellId> output = new ArrayList<>(this.cellIds.size());
-    // output.ensureCapacity(this.cellIds.size());
+    const observer = S2CellUnion.observer;
+    const start = observer !== null ? Platform.nowMs() : 0;
+    const count = this.cellIds.length;
+
+    // The ids are sorted and normalized as raw words (a radix sort and a
+    // single pass, see S2CellIdBits), then mapped back to S2CellIds.
+    const words = new Uint32Array(2 * count);
+    for (let i = 0; i < count; i++) {
+      words[2 * i] = this.cellIds[i].id.low;
+      words[2 * i + 1] = this.cellIds[i].id.high;
+    }
+    const order = S2CellIdBits.sortOrder(words, count);
+    const sorted:S2CellId[] = new Array(count);
+    const sortedWords = new Uint32Array(2 * count);
+    for (let k = 0; k < count; k++) {
+      const i = order[k];
+      sorted[k] = this.cellIds[i];
+      sortedWords[2 * k] = words[2 * i];
+      sortedWords[2 * k + 1] = words[2 * i + 1];
+    }
+    const size = S2CellIdBits.normalizeSorted(sortedWords, count);
+    const output = S2CellUnion.toCellIds(sortedWords.subarray(0, 2 * size), sorted, []);
+
+    const reduced = output.length < count;
+    this.cellIds = output;
+    if (observer !== null && observer.onNormalize !== undefined) {
+      observer.onNormalize({inputCells: count, outputCells: output.length, timeMs: Platform.nowMs() - start});
+    }
+    return reduced;
+  }
 
-    this.cellIds.sort((a, b) => a.compareTo(b));
-    // Collections.sort(this.cellIds);
+  /**
+   * Packs the union for the linear merges. Unions set with initRaw*() or
+   * modified through getCellIds() may be neither sorted nor normalized: a
+   * linear check tells, and only those are sorted and normalized.
+   */
+  private static packed(union:S2CellUnion):S2PackedCellUnion {
+    const packed = S2PackedCellUnion.fromCellUnion(union);
+    return S2CellIdBits.isNormalized(packed.getWords(), packed.size()) ? packed : S2PackedCellUnion.fromWords(packed.getWords());
+  }
 
-    this.cellIds.forEach(id => {
-      let size = output.length;
-      // Check whether this cell is contained by the previous cell.
-      if (output.length !== 0 && output[size - 1].contains(id)) {
-        return;
+  /**
+   * Converts sorted [lo, hi] words to S2CellIds, reusing the ids with the
+   * same value from the sorted arrays a and b (e.g. the inputs the words
+   * were computed from) rather than allocating new ones. Ids that are not
+   * found (or missed because a or b is out of order) are allocated.
+   */
+  private static toCellIds(words:Uint32Array, a:S2CellId[], b:S2CellId[]):S2CellId[] {
+    const count = words.length >> 1;
+    const output:S2CellId[] = new Array(count);
+    let i = 0;
+    let j = 0;
+    for (let k = 0; k < count; k++) {
+      const hi = words[2 * k + 1];
+      const lo = words[2 * k];
+      while (i < a.length && S2CellIdBits.compare(a[i].id.high, a[i].id.low, hi, lo) < 0) {
+        i++;
       }
-
-      // Discard any previous cells contained by this cell.
-      while (output.length !== 0 && id.contains(output[output.length - 1])) {
-        output.splice(output.length - 1, 1);
-        // output.remove(output.size() - 1);
+      while (j < b.length && S2CellIdBits.compare(b[j].id.high, b[j].id.low, hi, lo) < 0) {
+        j++;
       }
-
-      // Check whether the last 3 elements of "output" plus "id" can be
-      // collapsed into a single parent cell.
-      while (output.length >= 3) {
-        size = output.length;
-        // A necessary (but not sufficient) condition is that the XOR of the
-        // four cells must be zero. This is also very fast to test.
-        if ((output[size - 3].id.xor(output[size - 2].id).xor(output[size - 1].id)).notEquals(id.id)) {
-          break;
-        }
-
-        // Now we do a slightly more expensive but exact test. First, compute a
-        // mask that blocks out the two bits that encode the child position of
-        // "id" with respect to its parent, then check that the other three
-        // children all agree with "mask.
-        let mask = id.lowestOnBit().shiftLeft(1) ;
-        mask = mask.add(mask.shiftLeft(1)).not();
-        // mask = ~(mask + (mask << 1));
-        const idMasked = id.id.and(mask);
-        if ((output[size - 3].id.and(mask)).notEquals(idMasked)
-            || (output[size - 2].id.and(mask)).notEquals(idMasked)
-            || (output[size - 1].id.and(mask)).notEquals(idMasked) || id.isFace()) {
-          break;
-        }
-
-        // Replace four children by their parent cell.
-        output.splice(size - 3);
-        // output.remove(size - 1);
-        // output.remove(size - 2);
-        // output.remove(size - 3);
-        id = id.parent();
+      if (i < a.length && S2CellIdBits.compare(a[i].id.high, a[i].id.low, hi, lo) === 0) {
+        output[k] = a[i];
+      } else if (j < b.length && S2CellIdBits.compare(b[j].id.high, b[j].id.low, hi, lo) === 0) {
+        output[k] = b[j];
+      } else {
+        output[k] = new S2CellId(S2CellIdBits.toLong(hi, lo));
       }
-      output.push(id);
-    });
-
-    if (output.length < this.size()) {
-      this.initRawSwap(output);
-      return true;
     }
-    return false;
+    return output;
   }
 }
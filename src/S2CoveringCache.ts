@@ -0,0 +1,127 @@
+import {S2Region} from "./S2Region";
+import {S2RegionCoverer} from "./S2RegionCoverer";
+import {S2CellUnion} from "./S2CellUnion";
+import {S2Cap} from "./S2Cap";
+import {S2LatLngRect} from "./S2LatLngRect";
+
+export interface S2CoveringCacheStats {
+  hits: number;
+  misses: number;
+  evictions: number;
+  /** Number of cached coverings. */
+  size: number;
+  /** Total number of cells held by the cached coverings. */
+  cells: number;
+}
+
+/**
+ * A bounded LRU cache of coverings in front of an {@link S2RegionCoverer}.
+ *
+ * Entries are keyed by the exact geometry of the region plus the coverer
+ * parameters in effect at the time of the call, so the coverer can still be
+ * reconfigured between calls. S2Cap and S2LatLngRect are keyed automatically;
+ * any other region needs an explicit key, otherwise it is covered without
+ * going through the cache.
+ *
+ * The returned unions are shared between callers and frozen: they must not be
+ * modified (normalize, initFrom*, getUnion... throw on them). Copy the cell ids
+ * into a new S2CellUnion to get a private, mutable one.
+ */
+export class S2CoveringCache {
+
+  private entries = new Map<string, S2CellUnion>();
+  private cells = 0;
+  private hits = 0;
+  private misses = 0;
+  private evictions = 0;
+
+  /**
+   * @param coverer the coverer computing the missing coverings
+   * @param maxEntries the maximum number of coverings kept
+   * @param maxCells the maximum total number of cells kept, for size-weighted eviction
+   */
+  constructor(private coverer:S2RegionCoverer, private maxEntries = 1024, private maxCells = Number.POSITIVE_INFINITY) {
+  }
+
+  /** Cached version of S2RegionCoverer.getCoveringUnion. */
+  public getCoveringUnion(region:S2Region, key?:string):S2CellUnion {
+    return this.get(region, false, key);
+  }
+
+  /** Cached version of S2RegionCoverer.getInteriorCoveringUnion. */
+  public getInteriorCoveringUnion(region:S2Region, key?:string):S2CellUnion {
+    return this.get(region, true, key);
+  }
+
+  public getStats():S2CoveringCacheStats {
+    return {
+      hits: this.hits,
+      misses: this.misses,
+      evictions: this.evictions,
+      size: this.entries.size,
+      cells: this.cells,
+    };
+  }
+
+  public clear() {
+    this.entries.clear();
+    this.cells = 0;
+  }
+
+  /**
+   * Return the canonical key of the region geometry, or null if the region
+   * type is not known to the cache.
+   */
+  public static regionKey(region:S2Region):string|null {
+    if (region instanceof S2Cap) {
+      return `cap:${region.axis.x},${region.axis.y},${region.axis.z},${region.radius.getLength2()}`;
+    }
+    if (region instanceof S2LatLngRect) {
+      return `rect:${region.lat.lo},${region.lat.hi},${region.lng.lo},${region.lng.hi}`;
+    }
+    return null;
+  }
+
+  private get(region:S2Region, interior:boolean, key?:string):S2CellUnion {
+    const regionKey = key !== undefined ? key : S2CoveringCache.regionKey(region);
+    if (regionKey === null) {
+      this.misses++;
+      return this.compute(region, interior);
+    }
+    const c = this.coverer;
+    const fullKey = `${interior ? 'i' : 'c'}:${c.getMinLevel()}:${c.getMaxLevel()}:${c.getLevelMod()}:${c.getMaxCells()}:${regionKey}`;
+
+    const cached = this.entries.get(fullKey);
+    if (cached !== undefined) {
+      this.hits++;
+      // Re-insert to move the entry to the most recently used end.
+      this.entries.delete(fullKey);
+      this.entries.set(fullKey, cached);
+      return cached;
+    }
+
+    this.misses++;
+    const union = this.compute(region, interior);
+    this.entries.set(fullKey, union);
+    this.cells += union.size();
+    this.evict();
+    return union;
+  }
+
+  private compute(region:S2Region, interior:boolean):S2CellUnion {
+    const union = interior ? this.coverer.getInteriorCoveringUnion(region) : this.coverer.getCoveringUnion(region);
+    Object.freeze(union.getCellIds());
+    return Object.freeze(union);
+  }
+
+  /** Drops the least recently used entries until both limits are respected. */
+  private evict() {
+    // Map iterates in insertion order, so the first key is the least recently used.
+    while (this.entries.size > this.maxEntries || (this.cells > this.maxCells && this.entries.size > 1)) {
+      const oldest = this.entries.keys().next().value;
+      this.cells -= this.entries.get(oldest).size();
+      this.entries.delete(oldest);
+      this.evictions++;
+    }
+  }
+}
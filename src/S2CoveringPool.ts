@@ -0,0 +1,276 @@
+import {Worker} from "worker_threads";
+import * as os from "os";
+import * as path from "path";
+import {S2Region} from "./S2Region";
+import {S2RegionCoverer} from "./S2RegionCoverer";
+import {S2RegionCodec} from "./S2RegionCodec";
+import {S2CellIdBits} from "./S2CellIdBits";
+
+/**
+ * The coverings of a batch of regions. The cells of region i are the [lo, hi]
+ * pairs cells[2 * offsets[i] .. 2 * offsets[i + 1]), normalized, so that
+ * {@code S2PackedCellUnion.fromRawWords(cells.subarray(...))} can wrap them.
+ */
+export interface S2CoveringBatch {
+  offsets:Uint32Array;
+  cells:Uint32Array;
+}
+
+/** A unit of work sent to a worker: either a chunk of regions or of coordinates. */
+export interface S2CoveringTask {
+  id:number;
+  // Regions encoded by S2RegionCodec, covered with [minLevel, maxLevel, levelMod, maxCells, interior].
+  regions?:Float64Array;
+  params?:number[];
+  // Coordinates in degrees, converted to cell ids at the given level.
+  lats?:Float64Array;
+  lngs?:Float64Array;
+  level?:number;
+}
+
+export interface S2CoveringResult {
+  id:number;
+  error?:string;
+  offsets?:Uint32Array;
+  cells?:Uint32Array;
+  ids?:Uint32Array;
+}
+
+interface PendingTask {
+  task:S2CoveringTask;
+  resolve:(result:S2CoveringResult) => void;
+  reject:(error:Error) => void;
+}
+
+/**
+ * A pool of worker threads computing coverings and cell ids in bulk, for
+ * batch jobs that would otherwise use a single core.
+ *
+ * Regions are serialized with {@link S2RegionCodec} and split into chunks
+ * which are handed to the first idle worker, so that uneven regions still
+ * keep every thread busy. All buffers are transferred rather than copied
+ * between threads. Each worker covers with its own S2RegionCoverer, built
+ * from the parameters of the one given to getCoverings.
+ *
+ * This class needs node's worker_threads and is not exported by the package
+ * index: import it from its own module. Idle workers do not keep the process
+ * alive, but close() should be called once the pool is no longer needed.
+ */
+export class S2CoveringPool {
+
+  private workers:Worker[] = [];
+  private idle:Worker[] = [];
+  private running = new Map<Worker, PendingTask>();
+  private queue:PendingTask[] = [];
+  private nextId = 0;
+  private closed = false;
+
+  /**
+   * @param size the number of worker threads, at least 1 (by default one per
+   * core)
+   * @param chunkSize the maximum number of regions per task, 0 to size them
+   * so that each worker gets about four tasks per batch
+   */
+  constructor(size = Math.max(1, os.cpus().length), private chunkSize = 0) {
+    // Without workers the tasks would wait in the queue forever.
+    if (!(size >= 1)) {
+      throw new Error("The pool needs at least one worker, got " + size);
+    }
+    for (let i = 0; i < size; i++) {
+      this.spawn();
+    }
+  }
+
+  public size():number {
+    return this.workers.length;
+  }
+
+  /**
+   * Covers every region with the parameters of the given coverer. Regions can
+   * be given as they are or already encoded by S2RegionCodec.encode.
+   */
+  public async getCoverings(regions:S2Region[]|Float64Array, coverer:S2RegionCoverer,
+                            interior = false):Promise<S2CoveringBatch> {
+    const data = regions instanceof Float64Array ? regions : S2RegionCodec.encode(regions);
+    const params = [coverer.getMinLevel(), coverer.getMaxLevel(), coverer.getLevelMod(), coverer.getMaxCells(), interior ? 1 : 0];
+
+    const starts:number[] = [];
+    for (let offset = 0; offset < data.length; offset = S2RegionCodec.next(data, offset)) {
+      starts.push(offset);
+    }
+    starts.push(data.length);
+    const count = starts.length - 1;
+    const chunkSize = this.chunkSize > 0 ? this.chunkSize : Math.max(1, Math.ceil(count / (4 * this.workers.length)));
+
+    const tasks:Promise<S2CoveringResult>[] = [];
+    for (let i = 0; i < count; i += chunkSize) {
+      const end = Math.min(count, i + chunkSize);
+      tasks.push(this.submit({id: 0, regions: data.slice(starts[i], starts[end]), params}));
+    }
+    const results = await Promise.all(tasks);
+
+    let cellCount = 0;
+    for (const result of results) {
+      cellCount += result.cells.length >> 1;
+    }
+    const offsets = new Uint32Array(count + 1);
+    const cells = new Uint32Array(2 * cellCount);
+    let region = 0;
+    let base = 0;
+    for (const result of results) {
+      for (let k = 1; k < result.offsets.length; k++) {
+        offsets[++region] = base + result.offsets[k];
+      }
+      cells.set(result.cells, 2 * base);
+      base += result.cells.length >> 1;
+    }
+    return {offsets, cells};
+  }
+
+  /**
+   * Parallel version of {@link S2CellIdBits.fromLatLngDegrees}: returns the
+   * cell ids at the given level of the points, as [lo, hi] pairs.
+   */
+  public async cellIdsFromLatLngDegrees(lats:Float64Array, lngs:Float64Array, level:number):Promise<Uint32Array> {
+    const count = lats.length;
+    const chunkSize = Math.max(4096, Math.ceil(count / (4 * this.workers.length)));
+    const tasks:Promise<S2CoveringResult>[] = [];
+    for (let i = 0; i < count; i += chunkSize) {
+      const end = Math.min(count, i + chunkSize);
+      tasks.push(this.submit({id: 0, lats: lats.slice(i, end), lngs: lngs.slice(i, end), level}));
+    }
+    const ids = new Uint32Array(2 * count);
+    (await Promise.all(tasks)).forEach((result, i) => ids.set(result.ids, 2 * i * chunkSize));
+    return ids;
+  }
+
+  /** Terminates the workers. Tasks not completed yet are rejected. */
+  public async close():Promise<void> {
+    this.closed = true;
+    const error = new Error('S2CoveringPool closed');
+    this.queue.forEach(pending => pending.reject(error));
+    this.running.forEach(pending => pending.reject(error));
+    this.queue = [];
+    this.running.clear();
+    const workers = this.workers;
+    this.workers = [];
+    this.idle = [];
+    await Promise.all(workers.map(worker => worker.terminate()));
+  }
+
+  /** Runs a task in the current thread; this is what the workers do. */
+  public static run(task:S2CoveringTask):S2CoveringResult {
+    if (task.regions === undefined) {
+      const ids = new Uint32Array(2 * task.lats.length);
+      S2CellIdBits.fromLatLngDegrees(task.lats, task.lngs, task.level, ids);
+      return {id: task.id, ids};
+    }
+
+    const [minLevel, maxLevel, levelMod, maxCells, interior] = task.params;
+    const coverer = new S2RegionCoverer().setMinLevel(minLevel).setMaxLevel(maxLevel).setLevelMod(levelMod).setMaxCells(maxCells);
+    const data = task.regions;
+    const offsets:number[] = [0];
+    let cells = new Uint32Array(256);
+    let size = 0;
+    for (let offset = 0; offset < data.length; offset = S2RegionCodec.next(data, offset)) {
+      const region = S2RegionCodec.read(data, offset);
+      const union = interior ? coverer.getInteriorCoveringUnion(region) : coverer.getCoveringUnion(region);
+      if (size + 2 * union.size() > cells.length) {
+        const grown = new Uint32Array(Math.max(2 * cells.length, size + 2 * union.size()));
+        grown.set(cells.subarray(0, size));
+        cells = grown;
+      }
+      for (let i = 0; i < union.size(); i++) {
+        const id = union.cellId(i).id;
+        cells[size++] = id.low;
+        cells[size++] = id.high;
+      }
+      offsets.push(size >> 1);
+    }
+    return {id: task.id, offsets: new Uint32Array(offsets), cells: cells.slice(0, size)};
+  }
+
+  /** Returns the buffers of a task or result, to be transferred instead of copied. */
+  public static transferList(message:S2CoveringTask|S2CoveringResult):ArrayBuffer[] {
+    const buffers:ArrayBuffer[] = [];
+    for (const key of Object.keys(message)) {
+      const value = message[key];
+      if (ArrayBuffer.isView(value)) {
+        buffers.push(value.buffer as ArrayBuffer);
+      }
+    }
+    return buffers;
+  }
+
+  private submit(task:S2CoveringTask):Promise<S2CoveringResult> {
+    if (this.closed) {
+      return Promise.reject(new Error('S2CoveringPool closed'));
+    }
+    task.id = this.nextId++;
+    return new Promise((resolve, reject) => {
+      this.queue.push({task, resolve, reject});
+      this.dispatch();
+    });
+  }
+
+  private dispatch() {
+    while (this.idle.length !== 0 && this.queue.length !== 0) {
+      const worker = this.idle.pop();
+      const pending = this.queue.shift();
+      this.running.set(worker, pending);
+      worker.ref();
+      worker.postMessage(pending.task, S2CoveringPool.transferList(pending.task));
+    }
+  }
+
+  private spawn() {
+    // Under ts-node (e.g. in the tests) the worker has to register it as well.
+    const ts = path.extname(__filename) === '.ts';
+    const worker = new Worker(path.join(__dirname, 'S2CoveringWorker' + path.extname(__filename)),
+        {execArgv: ts ? ['--require', 'ts-node/register/transpile-only'] : undefined});
+    worker.on('message', (result:S2CoveringResult) => this.onResult(worker, result));
+    worker.on('error', (error:Error) => this.onExit(worker, error));
+    worker.on('exit', (code:number) => this.onExit(worker, new Error('S2CoveringPool worker exited with code ' + code)));
+    worker.unref();
+    this.workers.push(worker);
+    this.idle.push(worker);
+    this.dispatch();
+  }
+
+  private onResult(worker:Worker, result:S2CoveringResult) {
+    const pending = this.running.get(worker);
+    if (pending === undefined) {
+      // The pool was closed meanwhile.
+      return;
+    }
+    this.running.delete(worker);
+    worker.unref();
+    this.idle.push(worker);
+    if (result.error !== undefined) {
+      pending.reject(new Error(result.error));
+    } else {
+      pending.resolve(result);
+    }
+    this.dispatch();
+  }
+
+  /**
+   * A worker died, with an error or not: fail its task and replace it. A
+   * crash emits both 'error' and 'exit', only the first one counts.
+   */
+  private onExit(worker:Worker, error:Error) {
+    if (this.workers.indexOf(worker) < 0) {
+      return;
+    }
+    const pending = this.running.get(worker);
+    this.running.delete(worker);
+    this.workers = this.workers.filter(w => w !== worker);
+    this.idle = this.idle.filter(w => w !== worker);
+    if (pending !== undefined) {
+      pending.reject(error);
+    }
+    if (!this.closed) {
+      this.spawn();
+    }
+  }
+}
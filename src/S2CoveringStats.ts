@@ -0,0 +1,132 @@
+/** What a single S2RegionCoverer call did, reported to its observer. */
+export interface S2CoveringStats {
+  interior: boolean;
+  /** Candidates created, i.e. cells found to intersect the region. */
+  candidatesCreated: number;
+  /** Number of cells subdivided, by level. */
+  expandedPerLevel: number[];
+  /** Largest size reached by the candidate queue. */
+  maxQueueSize: number;
+  mayIntersectCalls: number;
+  containsCalls: number;
+  /** Cells in the covering, before it is normalized into a union. */
+  resultCells: number;
+  /** True if a budget stopped a streaming covering early. */
+  truncated: boolean;
+  timeMs: number;
+}
+
+/** What a single S2CellUnion.normalize call did. */
+export interface S2NormalizeStats {
+  inputCells: number;
+  outputCells: number;
+  timeMs: number;
+}
+
+/**
+ * Receives the stats of the coverings computed by an S2RegionCoverer (see
+ * setObserver) and of the unions normalized by S2CellUnion (see
+ * S2CellUnion.setObserver). Stats are only collected while an observer is
+ * set, otherwise the covering code runs unchanged.
+ */
+export interface S2CoveringObserver {
+  onCovering?(stats:S2CoveringStats):void;
+  onNormalize?(stats:S2NormalizeStats):void;
+}
+
+/**
+ * An observer aggregating the stats into counters and latency histograms,
+ * which can be read back or rendered in the Prometheus text exposition
+ * format, e.g. from a /metrics handler.
+ */
+export class S2CoveringMetrics implements S2CoveringObserver {
+
+  /** Upper bounds of the latency histogram buckets, in seconds. */
+  public static BUCKETS = [0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1];
+
+  public coverings = 0;
+  public interiorCoverings = 0;
+  public truncatedCoverings = 0;
+  public candidatesCreated = 0;
+  public mayIntersectCalls = 0;
+  public containsCalls = 0;
+  public resultCells = 0;
+  public maxQueueSize = 0;
+  public expandedPerLevel:number[] = [];
+  public coveringSeconds = new Float64Array(S2CoveringMetrics.BUCKETS.length + 1);
+  public coveringSecondsSum = 0;
+
+  public normalizations = 0;
+  public normalizeInputCells = 0;
+  public normalizeOutputCells = 0;
+  public normalizeSecondsSum = 0;
+
+  public onCovering(stats:S2CoveringStats) {
+    this.coverings++;
+    this.interiorCoverings += stats.interior ? 1 : 0;
+    this.truncatedCoverings += stats.truncated ? 1 : 0;
+    this.candidatesCreated += stats.candidatesCreated;
+    this.mayIntersectCalls += stats.mayIntersectCalls;
+    this.containsCalls += stats.containsCalls;
+    this.resultCells += stats.resultCells;
+    this.maxQueueSize = Math.max(this.maxQueueSize, stats.maxQueueSize);
+    stats.expandedPerLevel.forEach((count, level) => {
+      this.expandedPerLevel[level] = (this.expandedPerLevel[level] || 0) + count;
+    });
+    const seconds = stats.timeMs / 1000;
+    let bucket = 0;
+    while (bucket < S2CoveringMetrics.BUCKETS.length && seconds > S2CoveringMetrics.BUCKETS[bucket]) {
+      bucket++;
+    }
+    this.coveringSeconds[bucket]++;
+    this.coveringSecondsSum += seconds;
+  }
+
+  public onNormalize(stats:S2NormalizeStats) {
+    this.normalizations++;
+    this.normalizeInputCells += stats.inputCells;
+    this.normalizeOutputCells += stats.outputCells;
+    this.normalizeSecondsSum += stats.timeMs / 1000;
+  }
+
+  /** Renders the metrics in the Prometheus text format, each name starting with the given prefix. */
+  public toPrometheus(prefix = 's2_'):string {
+    const lines:string[] = [];
+    const counter = (name:string, help:string, value:number) => {
+      lines.push(`# HELP ${prefix}${name} ${help}`, `# TYPE ${prefix}${name} counter`, `${prefix}${name} ${value}`);
+    };
+    counter('coverings_total', 'Coverings computed.', this.coverings);
+    counter('interior_coverings_total', 'Interior coverings computed.', this.interiorCoverings);
+    counter('truncated_coverings_total', 'Coverings cut short by a budget.', this.truncatedCoverings);
+    counter('covering_candidates_total', 'Candidate cells created.', this.candidatesCreated);
+    counter('covering_may_intersect_calls_total', 'Calls to S2Region.mayIntersectC.', this.mayIntersectCalls);
+    counter('covering_contains_calls_total', 'Calls to S2Region.containsC.', this.containsCalls);
+    counter('covering_cells_total', 'Cells in the coverings.', this.resultCells);
+
+    lines.push(`# HELP ${prefix}covering_max_queue_size Largest candidate queue seen.`,
+        `# TYPE ${prefix}covering_max_queue_size gauge`, `${prefix}covering_max_queue_size ${this.maxQueueSize}`);
+
+    lines.push(`# HELP ${prefix}covering_expanded_cells_total Cells subdivided, by level.`,
+        `# TYPE ${prefix}covering_expanded_cells_total counter`);
+    this.expandedPerLevel.forEach((count, level) => {
+      if (count !== undefined) {
+        lines.push(`${prefix}covering_expanded_cells_total{level="${level}"} ${count}`);
+      }
+    });
+
+    lines.push(`# HELP ${prefix}covering_seconds Time spent computing coverings.`, `# TYPE ${prefix}covering_seconds histogram`);
+    let cumulative = 0;
+    S2CoveringMetrics.BUCKETS.forEach((le, i) => {
+      cumulative += this.coveringSeconds[i];
+      lines.push(`${prefix}covering_seconds_bucket{le="${le}"} ${cumulative}`);
+    });
+    lines.push(`${prefix}covering_seconds_bucket{le="+Inf"} ${this.coverings}`,
+        `${prefix}covering_seconds_sum ${this.coveringSecondsSum}`, `${prefix}covering_seconds_count ${this.coverings}`);
+
+    counter('normalize_total', 'Cell unions normalized.', this.normalizations);
+    counter('normalize_input_cells_total', 'Cells given to normalize.', this.normalizeInputCells);
+    counter('normalize_output_cells_total', 'Cells left by normalize.', this.normalizeOutputCells);
+    counter('normalize_seconds_total', 'Time spent normalizing.', this.normalizeSecondsSum);
+    return lines.join('\n') + '\n';
+  }
+}
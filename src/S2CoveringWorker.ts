@@ -0,0 +1,15 @@
+import {parentPort} from "worker_threads";
+import {S2CoveringPool, S2CoveringTask} from "./S2CoveringPool";
+
+/**
+ * Entry point of the worker threads started by {@link S2CoveringPool}: runs
+ * each task it receives and posts back the result, transferring its buffers.
+ */
+parentPort.on('message', (task:S2CoveringTask) => {
+  try {
+    const result = S2CoveringPool.run(task);
+    parentPort.postMessage(result, S2CoveringPool.transferList(result));
+  } catch (e) {
+    parentPort.postMessage({id: task.id, error: e instanceof Error ? e.message : String(e)});
+  }
+});
@@ -1 +1,269 @@
-//TODO S2EdgeIndex
\ No newline at end of file
+import {S2} from "./S2";
+import {S2Cell} from "./S2Cell";
+import {S2CellId} from "./S2CellId";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {EdgeCrosser, S2EdgeUtil} from "./S2EdgeUtil";
+import {S2Point} from "./S2Point";
+
+/**
+ * A cell-based index of a set of edges, used to answer point containment and
+ * cell relation queries without looking at every edge.
+ *
+ * Starting from the six face cells, every cell intersected by more than
+ * maxEdgesPerCell edges is subdivided. The leaves of this quadtree tile the
+ * sphere; they are kept sorted by cell id in packed arrays, together with the
+ * ids of the edges intersecting each of them and the parity of the number of
+ * edges crossed on the way from S2.origin() to their center. A query finds its
+ * leaf with a binary search and then only looks at the few edges of that leaf.
+ *
+ * The parities are only meaningful when the edges form closed loops, in which
+ * case they tell the containment of a point up to a constant: see S2Loop.
+ *
+ * Subclasses provide the edges. The index is computed on the first query, or
+ * explicitly with computeIndex(), and must be reset() if the edges change.
+ */
+export abstract class S2EdgeIndex {
+
+  /** The default number of edges a leaf may hold before it is subdivided. */
+  public static DEFAULT_MAX_EDGES_PER_CELL = 10;
+
+  /** Returned by relateCell() when some edge may intersect the cell. */
+  public static CROSSING = -1;
+
+  // The leaves, as [lo, hi] word pairs sorted by id.
+  private cells:Uint32Array;
+  private centers:S2Point[];
+  private parities:Uint8Array;
+  // The edges of leaf i are edgeIds[offsets[i] .. offsets[i + 1]).
+  private offsets:Uint32Array;
+  private edgeIds:Int32Array;
+  private count = 0;
+  private indexComputed = false;
+  private scratch = new Uint32Array(4);
+
+  constructor(private maxEdgesPerCell = S2EdgeIndex.DEFAULT_MAX_EDGES_PER_CELL) {
+  }
+
+  /** Returns the number of edges in this index. */
+  protected abstract getNumEdges():number;
+
+  /** Returns the starting vertex of the edge at offset index. */
+  protected abstract edgeFrom(index:number):S2Point;
+
+  /** Returns the ending vertex of the edge at offset index. */
+  protected abstract edgeTo(index:number):S2Point;
+
+  /** Empties the index in case it already contained something. */
+  public reset() {
+    this.cells = null;
+    this.centers = null;
+    this.parities = null;
+    this.offsets = null;
+    this.edgeIds = null;
+    this.count = 0;
+    this.indexComputed = false;
+  }
+
+  public isIndexComputed():boolean {
+    return this.indexComputed;
+  }
+
+  /** The number of leaves of the index, computing it if needed. */
+  public getNumCells():number {
+    this.computeIndex();
+    return this.count;
+  }
+
+  /** Computes the index, if it was not computed yet. */
+  public computeIndex() {
+    if (this.indexComputed) {
+      return;
+    }
+    const out:IndexBuilder = {cells: [], centers: [], parities: [], offsets: [0], edgeIds: []};
+
+    const all:number[] = new Array(this.getNumEdges());
+    for (let i = 0; i < all.length; i++) {
+      all[i] = i;
+    }
+
+    // Walk from the origin to the center of face 2, which is close to it, and
+    // from there to the other faces so that no step is nearly antipodal.
+    const faces:S2Cell[] = [];
+    const centers:S2Point[] = [];
+    for (let face = 0; face < 6; face++) {
+      faces.push(S2Cell.fromFace(face));
+      centers.push(faces[face].getCenter());
+    }
+    const parities:number[] = new Array(6);
+    parities[2] = this.crossings(S2.origin(), centers[2], all, 0, all.length);
+    for (const face of [0, 1, 3, 4]) {
+      parities[face] = parities[2] ^ this.crossings(centers[2], centers[face], all, 0, all.length);
+    }
+    parities[5] = parities[0] ^ this.crossings(centers[0], centers[5], all, 0, all.length);
+
+    for (let face = 0; face < 6; face++) {
+      this.build(faces[face], centers[face], parities[face], this.clip(faces[face], all), out);
+    }
+
+    this.count = out.centers.length;
+    this.cells = new Uint32Array(out.cells);
+    this.centers = out.centers;
+    this.parities = new Uint8Array(out.parities);
+    this.offsets = new Uint32Array(out.offsets);
+    this.edgeIds = new Int32Array(out.edgeIds);
+    this.indexComputed = true;
+  }
+
+  /**
+   * Return true if an odd number of edges is crossed on the way from
+   * S2.origin() to p.
+   */
+  public crossingParity(p:S2Point):boolean {
+    this.computeIndex();
+    const s = this.scratch;
+    S2CellIdBits.fromPoint(p.x, p.y, p.z, s);
+    return this.parityAt(this.leafContaining(s[1], s[0]), p) === 1;
+  }
+
+  /**
+   * Returns CROSSING if some edge may intersect the given cell. Otherwise the
+   * whole cell is on the same side of the edges, and the crossing parity of
+   * its points is returned (0 or 1).
+   */
+  public relateCell(cell:S2Cell):number {
+    this.computeIndex();
+    const id = cell.id.id;
+    const s = this.scratch;
+    S2CellIdBits.rangeMin(id.high, id.low, s, 0);
+    S2CellIdBits.rangeMax(id.high, id.low, s, 2);
+    const begin = this.lowerBound(s[1], s[0], false);
+    const end = this.lowerBound(s[3], s[2], true);
+
+    if (begin < end) {
+      // The leaves within the range of the cell are exactly the ones it
+      // contains, and they tile it.
+      if (this.offsets[end] > this.offsets[begin]) {
+        return S2EdgeIndex.CROSSING;
+      }
+      return this.parities[begin];
+    }
+
+    // Otherwise the cell lies within a single leaf, whose few edges are
+    // tested against it.
+    const leaf = this.leafContaining(id.high, id.low);
+    const vertices = [cell.getVertex(0), cell.getVertex(1), cell.getVertex(2), cell.getVertex(3)];
+    for (let k = this.offsets[leaf]; k < this.offsets[leaf + 1]; k++) {
+      const edge = this.edgeIds[k];
+      if (S2EdgeIndex.edgeIntersectsCell(this.edgeFrom(edge), this.edgeTo(edge), cell, vertices)) {
+        return S2EdgeIndex.CROSSING;
+      }
+    }
+    return this.parityAt(leaf, cell.getCenter());
+  }
+
+  private build(cell:S2Cell, center:S2Point, parity:number, ids:number[], out:IndexBuilder) {
+    if (ids.length <= this.maxEdgesPerCell || cell.level >= S2CellId.MAX_LEVEL) {
+      const words = new Uint32Array(2);
+      S2CellIdBits.fromLong(cell.id.id, words);
+      out.cells.push(words[0], words[1]);
+      out.centers.push(center);
+      out.parities.push(parity);
+      for (const id of ids) {
+        out.edgeIds.push(id);
+      }
+      out.offsets.push(out.edgeIds.length);
+      return;
+    }
+    // Cells are convex, so the segment between two centers stays within the
+    // parent and only its edges can cross it.
+    for (const child of cell.subdivide()) {
+      const childCenter = child.getCenter();
+      const childParity = parity ^ this.crossings(center, childCenter, ids, 0, ids.length);
+      this.build(child, childCenter, childParity, this.clip(child, ids), out);
+    }
+  }
+
+  /** Returns the ids of the edges intersecting the cell. */
+  private clip(cell:S2Cell, ids:number[]):number[] {
+    const vertices = [cell.getVertex(0), cell.getVertex(1), cell.getVertex(2), cell.getVertex(3)];
+    return ids.filter(id => S2EdgeIndex.edgeIntersectsCell(this.edgeFrom(id), this.edgeTo(id), cell, vertices));
+  }
+
+  /** Returns the crossing parity of p, which must lie within the given leaf. */
+  private parityAt(leaf:number, p:S2Point):number {
+    return this.parities[leaf] ^ this.crossings(this.centers[leaf], p, this.edgeIds, this.offsets[leaf], this.offsets[leaf + 1]);
+  }
+
+  /** Returns the parity of the number of edges ids[begin .. end) crossed by the segment AB. */
+  private crossings(a:S2Point, b:S2Point, ids:ArrayLike<number>, begin:number, end:number):number {
+    let parity = 0;
+    let crosser:EdgeCrosser = null;
+    let last:S2Point = null;
+    for (let k = begin; k < end; k++) {
+      const from = this.edgeFrom(ids[k]);
+      if (crosser === null) {
+        crosser = new EdgeCrosser(a, b, from);
+      } else if (from !== last) {
+        crosser.restartAt(from);
+      }
+      last = this.edgeTo(ids[k]);
+      if (crosser.edgeOrVertexCrossing(last)) {
+        parity ^= 1;
+      }
+    }
+    return parity;
+  }
+
+  /**
+   * Return the position of the leaf containing the given cell. The leaves tile
+   * the sphere, so it is either the first one not before it or the previous one.
+   */
+  private leafContaining(hi:number, lo:number):number {
+    const i = this.lowerBound(hi, lo, false);
+    if (i < this.count && S2CellIdBits.contains(this.cells[2 * i + 1], this.cells[2 * i], hi, lo)) {
+      return i;
+    }
+    return i - 1;
+  }
+
+  /** Return the first leaf whose id is greater than (or equal to, unless strict) the given one. */
+  private lowerBound(hi:number, lo:number, strict:boolean):number {
+    const cells = this.cells;
+    let low = 0;
+    let high = this.count;
+    while (low < high) {
+      const mid = (low + high) >>> 1;
+      const c = S2CellIdBits.compare(cells[2 * mid + 1], cells[2 * mid], hi, lo);
+      if (c < 0 || (strict && c === 0)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Return true if the edge AB may intersect the cell, whose vertices are
+   * given. Touching the boundary counts as intersecting.
+   */
+  private static edgeIntersectsCell(a:S2Point, b:S2Point, cell:S2Cell, vertices:S2Point[]):boolean {
+    if (cell.contains(a) || cell.contains(b)) {
+      return true;
+    }
+    for (let k = 0; k < 4; k++) {
+      if (S2EdgeUtil.robustCrossing(a, b, vertices[k], vertices[(k + 1) & 3]) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
+
+interface IndexBuilder {
+  cells:number[];
+  centers:S2Point[];
+  parities:number[];
+  offsets:number[];
+  edgeIds:number[];
+}
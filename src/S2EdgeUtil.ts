@@ -19,6 +19,115 @@ import {S2Point} from "./S2Point";
 import {S2} from "./S2";
 import {S1Angle} from "./S1Angle";
 
+/**
+ * This class allows a vertex chain v0, v1, v2, ... to be efficiently tested
+ * for intersection with a given fixed edge AB.
+ */
+export class EdgeCrosser {
+  // The fields below are all constant.
+  private aCrossB:S2Point;
+
+  // The fields below are updated for each vertex in the chain.
+
+  // Previous vertex in the vertex chain.
+  private c:S2Point;
+  // The orientation of the triangle ACB.
+  private acb:number;
+
+  /**
+   * AB is the given fixed edge, and C is the first vertex of the vertex
+   * chain.
+   */
+  constructor(private a:S2Point, private b:S2Point, c:S2Point) {
+    this.aCrossB = S2Point.crossProd(a, b);
+    this.restartAt(c);
+  }
+
+  /**
+   * Call this function when your chain 'jumps' to a new place.
+   */
+  public restartAt(c:S2Point) {
+    this.c = c;
+    this.acb = -S2.robustCCW(this.a, this.b, c, this.aCrossB);
+  }
+
+  /**
+   * This method is equivalent to calling the S2EdgeUtil.robustCrossing()
+   * function (defined below) on the edges AB and CD. It returns +1 if there
+   * is a crossing, -1 if there is no crossing, and 0 if two points from
+   * different edges are the same. Returns 0 or -1 if either edge is
+   * degenerate. As a side effect, it saves vertex D to be used as the next
+   * vertex C.
+   */
+  public robustCrossing(d:S2Point):number {
+    // For there to be an edge crossing, the triangles ACB, CBD, BDA, DAC must
+    // all be oriented the same way (CW or CCW). We keep the orientation
+    // of ACB as part of our state. When each new point D arrives, we
+    // compute the orientation of BDA and check whether it matches ACB.
+    // This checks whether the points C and D are on opposite sides of the
+    // great circle through AB.
+
+    // Recall that robustCCW is invariant with respect to rotating its
+    // arguments, i.e. ABC has the same orientation as BDA.
+    const bda = S2.robustCCW(this.a, this.b, d, this.aCrossB);
+    let result:number;
+
+    if (bda == -this.acb && bda != 0) {
+      // Most common case -- triangles have opposite orientations.
+      result = -1;
+    } else if ((bda & this.acb) == 0) {
+      // At least one value is zero -- two vertices are identical.
+      result = 0;
+    } else {
+      // assert (bda == acb && bda != 0);
+      result = this.robustCrossingInternal(d); // Slow path.
+    }
+    // Now save the current vertex D as the next vertex C, and also save the
+    // orientation of the new triangle ACB (which is opposite to the current
+    // triangle BDA).
+    this.c = d;
+    this.acb = -bda;
+    return result;
+  }
+
+  /**
+   * This method is equivalent to the S2EdgeUtil.edgeOrVertexCrossing() method
+   * defined below. It is similar to robustCrossing, but handles cases where
+   * two vertices are identical in a way that makes it easy to implement
+   * point-in-polygon containment tests.
+   */
+  public edgeOrVertexCrossing(d:S2Point):boolean {
+    // We need to keep c since it is clobbered by robustCrossing().
+    const c2 = this.c;
+
+    const crossing = this.robustCrossing(d);
+    if (crossing < 0) {
+      return false;
+    }
+    if (crossing > 0) {
+      return true;
+    }
+
+    return S2EdgeUtil.vertexCrossing(this.a, this.b, c2, d);
+  }
+
+  /**
+   * This function handles the "slow path" of robustCrossing().
+   */
+  private robustCrossingInternal(d:S2Point):number {
+    // ACB and BDA have the appropriate orientations, so now we check the
+    // triangles CBD and DAC.
+    const cCrossD = S2Point.crossProd(this.c, d);
+    const cbd = -S2.robustCCW(this.c, d, this.b, cCrossD);
+    if (cbd != this.acb) {
+      return -1;
+    }
+
+    const dac = S2.robustCCW(this.c, d, this.a, cCrossD);
+    return (dac == this.acb) ? 1 : -1;
+  }
+}
+
 /**
  * This class contains various utility functions related to edges. It collects
  * together common code that is needed to implement polygonal geometry such as
@@ -40,121 +149,6 @@ export class S2EdgeUtil {
 //    */
 //   public static final S1Angle DEFAULT_INTERSECTION_TOLERANCE = S1Angle.radians(1.5e-15);
 //
-//   /**
-//    * This class allows a vertex chain v0, v1, v2, ... to be efficiently tested
-//    * for intersection with a given fixed edge AB.
-//    */
-//   public static class EdgeCrosser {
-//   // The fields below are all constant.
-//
-//   private final S2Point a;
-//   private final S2Point b;
-//   private final S2Point aCrossB;
-//
-//   // The fields below are updated for each vertex in the chain.
-//
-//   // Previous vertex in the vertex chain.
-//   private S2Point c;
-//   // The orientation of the triangle ACB.
-//   private int acb;
-//
-//   /**
-//    * AB is the given fixed edge, and C is the first vertex of the vertex
-//    * chain. All parameters must point to fixed storage that persists for the
-//    * lifetime of the EdgeCrosser object.
-//    */
-//   public EdgeCrosser(S2Point a, S2Point b, S2Point c) {
-//   this.a = a;
-//   this.b = b;
-//   this.aCrossB = S2Point.crossProd(a, b);
-//   restartAt(c);
-// }
-//
-// /**
-//  * Call this function when your chain 'jumps' to a new place.
-//  */
-// public void restartAt(S2Point c) {
-//   this.c = c;
-//   this.acb = -S2.robustCCW(this.a, this.b, c, this.aCrossB);
-// }
-//
-// /**
-//  * This method is equivalent to calling the S2EdgeUtil.robustCrossing()
-//  * function (defined below) on the edges AB and CD. It returns +1 if there
-//  * is a crossing, -1 if there is no crossing, and 0 if two points from
-//  * different edges are the same. Returns 0 or -1 if either edge is
-//  * degenerate. As a side effect, it saves vertex D to be used as the next
-//  * vertex C.
-//  */
-// public int robustCrossing(S2Point d) {
-//   // For there to be an edge crossing, the triangles ACB, CBD, BDA, DAC must
-//   // all be oriented the same way (CW or CCW). We keep the orientation
-//   // of ACB as part of our state. When each new point D arrives, we
-//   // compute the orientation of BDA and check whether it matches ACB.
-//   // This checks whether the points C and D are on opposite sides of the
-//   // great circle through AB.
-//
-//   // Recall that robustCCW is invariant with respect to rotating its
-//   // arguments, i.e. ABC has the same orientation as BDA.
-//   int bda = S2.robustCCW(this.a, this.b, d, this.aCrossB);
-//   int result;
-//
-//   if (bda == -this.acb && bda != 0) {
-//     // Most common case -- triangles have opposite orientations.
-//     result = -1;
-//   } else if ((bda & this.acb) == 0) {
-//     // At least one value is zero -- two vertices are identical.
-//     result = 0;
-//   } else {
-//     // assert (bda == acb && bda != 0);
-//     result = robustCrossingInternal(d); // Slow path.
-//   }
-//   // Now save the current vertex D as the next vertex C, and also save the
-//   // orientation of the new triangle ACB (which is opposite to the current
-//   // triangle BDA).
-//   this.c = d;
-//   this.acb = -bda;
-//   return result;
-// }
-//
-// /**
-//  * This method is equivalent to the S2EdgeUtil.edgeOrVertexCrossing() method
-//  * defined below. It is similar to robustCrossing, but handles cases where
-//  * two vertices are identical in a way that makes it easy to implement
-//  * point-in-polygon containment tests.
-//  */
-// public boolean edgeOrVertexCrossing(S2Point d) {
-//   // We need to copy c since it is clobbered by robustCrossing().
-//   S2Point c2 = new S2Point(this.c.get(0), this.c.get(1), this.c.get(2));
-//
-//   int crossing = robustCrossing(d);
-//   if (crossing < 0) {
-//     return false;
-//   }
-//   if (crossing > 0) {
-//     return true;
-//   }
-//
-//   return vertexCrossing(this.a, this.b, c2, d);
-// }
-//
-// /**
-//  * This function handles the "slow path" of robustCrossing().
-//  */
-// private int robustCrossingInternal(S2Point d) {
-//   // ACB and BDA have the appropriate orientations, so now we check the
-//   // triangles CBD and DAC.
-//   S2Point cCrossD = S2Point.crossProd(this.c, d);
-//   int cbd = -S2.robustCCW(this.c, d, this.b, cCrossD);
-//   if (cbd != this.acb) {
-//     return -1;
-//   }
-//
-//   int dac = S2.robustCCW(this.c, d, this.a, cCrossD);
-//   return (dac == this.acb) ? 1 : -1;
-// }
-// }
-//
 // /**
 //  * This class computes a bounding rectangle that contains all edges defined by
 //  * a vertex chain v0, v1, v2, ... All vertices must be unit length. Note that
@@ -518,126 +512,129 @@ export class S2EdgeUtil {
 //   return (acb * cbd > 0) && (acb * dac > 0);
 // }
 //
-// /**
-//  * Like SimpleCrossing, except that points that lie exactly on a line are
-//  * arbitrarily classified as being on one side or the other (according to the
-//  * rules of S2.robustCCW). It returns +1 if there is a crossing, -1 if there
-//  * is no crossing, and 0 if any two vertices from different edges are the
-//  * same. Returns 0 or -1 if either edge is degenerate. Properties of
-//  * robustCrossing:
-//  *
-//  *  (1) robustCrossing(b,a,c,d) == robustCrossing(a,b,c,d) (2)
-//  * robustCrossing(c,d,a,b) == robustCrossing(a,b,c,d) (3)
-//  * robustCrossing(a,b,c,d) == 0 if a==c, a==d, b==c, b==d (3)
-//  * robustCrossing(a,b,c,d) <= 0 if a==b or c==d
-//  *
-//  *  Note that if you want to check an edge against a *chain* of other edges,
-//  * it is much more efficient to use an EdgeCrosser (above).
-//  */
-// public static int robustCrossing(S2Point a, S2Point b, S2Point c, S2Point d) {
-//   // For there to be a crossing, the triangles ACB, CBD, BDA, DAC must
-//   // all have the same orientation (clockwise or counterclockwise).
-//   //
-//   // First we compute the orientation of ACB and BDA. We permute the
-//   // arguments to robustCCW so that we can reuse the cross-product of A and B.
-//   // Recall that when the arguments to robustCCW are permuted, the sign of the
-//   // result changes according to the sign of the permutation. Thus ACB and
-//   // ABC are oppositely oriented, while BDA and ABD are the same.
-//   S2Point aCrossB = S2Point.crossProd(a, b);
-//   int acb = -S2.robustCCW(a, b, c, aCrossB);
-//   int bda = S2.robustCCW(a, b, d, aCrossB);
-//
-//   // If any two vertices are the same, the result is degenerate.
-//   if ((bda & acb) == 0) {
-//     return 0;
-//   }
-//
-//   // If ABC and BDA have opposite orientations (the most common case),
-//   // there is no crossing.
-//   if (bda != acb) {
-//     return -1;
-//   }
-//
-//   // Otherwise we compute the orientations of CBD and DAC, and check whether
-//   // their orientations are compatible with the other two triangles.
-//   S2Point cCrossD = S2Point.crossProd(c, d);
-//   int cbd = -S2.robustCCW(c, d, b, cCrossD);
-//   if (cbd != acb) {
-//     return -1;
-//   }
-//
-//   int dac = S2.robustCCW(c, d, a, cCrossD);
-//   return (dac == acb) ? 1 : -1;
-// }
-//
-// /**
-//  * Given two edges AB and CD where at least two vertices are identical (i.e.
-//  * robustCrossing(a,b,c,d) == 0), this function defines whether the two edges
-//  * "cross" in a such a way that point-in-polygon containment tests can be
-//  * implemented by counting the number of edge crossings. The basic rule is
-//  * that a "crossing" occurs if AB is encountered after CD during a CCW sweep
-//  * around the shared vertex starting from a fixed reference point.
-//  *
-//  *  Note that according to this rule, if AB crosses CD then in general CD does
-//  * not cross AB. However, this leads to the correct result when counting
-//  * polygon edge crossings. For example, suppose that A,B,C are three
-//  * consecutive vertices of a CCW polygon. If we now consider the edge
-//  * crossings of a segment BP as P sweeps around B, the crossing number changes
-//  * parity exactly when BP crosses BA or BC.
-//  *
-//  *  Useful properties of VertexCrossing (VC):
-//  *
-//  *  (1) VC(a,a,c,d) == VC(a,b,c,c) == false (2) VC(a,b,a,b) == VC(a,b,b,a) ==
-//  * true (3) VC(a,b,c,d) == VC(a,b,d,c) == VC(b,a,c,d) == VC(b,a,d,c) (3) If
-//  * exactly one of a,b equals one of c,d, then exactly one of VC(a,b,c,d) and
-//  * VC(c,d,a,b) is true
-//  *
-//  * It is an error to call this method with 4 distinct vertices.
-//  */
-// public static boolean vertexCrossing(S2Point a, S2Point b, S2Point c, S2Point d) {
-//   // If A == B or C == D there is no intersection. We need to check this
-//   // case first in case 3 or more input points are identical.
-//   if (a.equals(b) || c.equals(d)) {
-//     return false;
-//   }
-//
-//   // If any other pair of vertices is equal, there is a crossing if and only
-//   // if orderedCCW() indicates that the edge AB is further CCW around the
-//   // shared vertex than the edge CD.
-//   if (a.equals(d)) {
-//     return S2.orderedCCW(S2.ortho(a), c, b, a);
-//   }
-//   if (b.equals(c)) {
-//     return S2.orderedCCW(S2.ortho(b), d, a, b);
-//   }
-//   if (a.equals(c)) {
-//     return S2.orderedCCW(S2.ortho(a), d, b, a);
-//   }
-//   if (b.equals(d)) {
-//     return S2.orderedCCW(S2.ortho(b), c, a, b);
-//   }
-//
-//   // assert (false);
-//   return false;
-// }
-//
-// /**
-//  * A convenience function that calls robustCrossing() to handle cases where
-//  * all four vertices are distinct, and VertexCrossing() to handle cases where
-//  * two or more vertices are the same. This defines a crossing function such
-//  * that point-in-polygon containment tests can be implemented by simply
-//  * counting edge crossings.
-//  */
-// public static boolean edgeOrVertexCrossing(S2Point a, S2Point b, S2Point c, S2Point d) {
-//   int crossing = robustCrossing(a, b, c, d);
-//   if (crossing < 0) {
-//     return false;
-//   }
-//   if (crossing > 0) {
-//     return true;
-//   }
-//   return vertexCrossing(a, b, c, d);
-// }
+  /**
+   * Like SimpleCrossing, except that points that lie exactly on a line are
+   * arbitrarily classified as being on one side or the other (according to the
+   * rules of S2.robustCCW). It returns +1 if there is a crossing, -1 if there
+   * is no crossing, and 0 if any two vertices from different edges are the
+   * same. Returns 0 or -1 if either edge is degenerate. Properties of
+   * robustCrossing:
+   *
+   *  (1) robustCrossing(b,a,c,d) == robustCrossing(a,b,c,d) (2)
+   * robustCrossing(c,d,a,b) == robustCrossing(a,b,c,d) (3)
+   * robustCrossing(a,b,c,d) == 0 if a==c, a==d, b==c, b==d (3)
+   * robustCrossing(a,b,c,d) <= 0 if a==b or c==d
+   *
+   *  Note that if you want to check an edge against a *chain* of other edges,
+   * it is much more efficient to use an EdgeCrosser (above).
+   */
+  public static robustCrossing(a:S2Point, b:S2Point, c:S2Point, d:S2Point):number {
+    // For there to be a crossing, the triangles ACB, CBD, BDA, DAC must
+    // all have the same orientation (clockwise or counterclockwise).
+    //
+    // First we compute the orientation of ACB and BDA. We permute the
+    // arguments to robustCCW so that we can reuse the cross-product of A and B.
+    // Recall that when the arguments to robustCCW are permuted, the sign of the
+    // result changes according to the sign of the permutation. Thus ACB and
+    // ABC are oppositely oriented, while BDA and ABD are the same.
+    const aCrossB = S2Point.crossProd(a, b);
+    const acb = -S2.robustCCW(a, b, c, aCrossB);
+    const bda = S2.robustCCW(a, b, d, aCrossB);
+
+    // If any two vertices are the same, the result is degenerate.
+    if ((bda & acb) == 0) {
+      return 0;
+    }
+
+    // If ABC and BDA have opposite orientations (the most common case),
+    // there is no crossing.
+    if (bda != acb) {
+      return -1;
+    }
+
+    // Otherwise we compute the orientations of CBD and DAC, and check whether
+    // their orientations are compatible with the other two triangles.
+    const cCrossD = S2Point.crossProd(c, d);
+    const cbd = -S2.robustCCW(c, d, b, cCrossD);
+    if (cbd != acb) {
+      return -1;
+    }
+
+    const dac = S2.robustCCW(c, d, a, cCrossD);
+    return (dac == acb) ? 1 : -1;
+  }
+
+  /**
+   * Given two edges AB and CD where at least two vertices are identical (i.e.
+   * robustCrossing(a,b,c,d) == 0), this function defines whether the two edges
+   * "cross" in a such a way that point-in-polygon containment tests can be
+   * implemented by counting the number of edge crossings. The basic rule is
+   * that a "crossing" occurs if AB is encountered after CD during a CCW sweep
+   * around the shared vertex starting from a fixed reference point.
+   *
+   *  Note that according to this rule, if AB crosses CD then in general CD does
+   * not cross AB. However, this leads to the correct result when counting
+   * polygon edge crossings. For example, suppose that A,B,C are three
+   * consecutive vertices of a CCW polygon. If we now consider the edge
+   * crossings of a segment BP as P sweeps around B, the crossing number changes
+   * parity exactly when BP crosses BA or BC.
+   *
+   *  Useful properties of VertexCrossing (VC):
+   *
+   *  (1) VC(a,a,c,d) == VC(a,b,c,c) == false (2) VC(a,b,a,b) == VC(a,b,b,a) ==
+   * true (3) VC(a,b,c,d) == VC(a,b,d,c) == VC(b,a,c,d) == VC(b,a,d,c) (3) If
+   * exactly one of a,b equals one of c,d, then exactly one of VC(a,b,c,d) and
+   * VC(c,d,a,b) is true
+   *
+   * It is an error to call this method with 4 distinct vertices.
+   */
+  public static vertexCrossing(a:S2Point, b:S2Point, c:S2Point, d:S2Point):boolean {
+    // If A == B or C == D there is no intersection. We need to check this
+    // case first in case 3 or more input points are identical.
+    if (a.equals(b) || c.equals(d)) {
+      return false;
+    }
+
+    // If any other pair of vertices is equal, there is a crossing if and only
+    // if orderedCCW() indicates that the edge AB is further CCW around the
+    // shared vertex than the edge CD.
+    if (a.equals(d)) {
+      return S2.orderedCCW(S2.ortho(a), c, b, a);
+    }
+    if (b.equals(c)) {
+      return S2.orderedCCW(S2.ortho(b), d, a, b);
+    }
+    if (a.equals(c)) {
+      return S2.orderedCCW(S2.ortho(a), d, b, a);
+    }
+    if (b.equals(d)) {
+      return S2.orderedCCW(S2.ortho(b), c, a, b);
+    }
+
+    // assert (false);
+    return false;
+  }
+
+  /**
+   * A convenience function that calls robustCrossing() to handle cases where
+   * all four vertices are distinct, and VertexCrossing() to handle cases where
+   * two or more vertices are the same. This defines a crossing function such
+   * that point-in-polygon containment tests can be implemented by simply
+   * counting edge crossings.
+   */
+  public static edgeOrVertexCrossing(a:S2Point, b:S2Point, c:S2Point, d:S2Point):boolean {
+    const crossing = S2EdgeUtil.robustCrossing(a, b, c, d);
+    if (crossing < 0) {
+      return false;
+    }
+    if (crossing > 0) {
+      return true;
+    }
+    return S2EdgeUtil.vertexCrossing(a, b, c, d);
+  }
+
+  static EdgeCrosser = EdgeCrosser;
+
 //
 // static class CloserResult {
 //   private double dmin2;
@@ -11,10 +11,20 @@ import {S2Cap} from "./S2Cap";
 import { Platform } from "./Platform";
 
 export class S2LatLngRect implements S2Region {
+  // Scratch bound of the cell given to containsC / mayIntersectC.
+  private static CELL_BOUND:S2LatLngRect = null;
+
   constructor(public lat:R1Interval, public lng:S1Interval) {
 
   }
 
+  private static cellBound(cell:S2Cell):S2LatLngRect {
+    if (S2LatLngRect.CELL_BOUND === null) {
+      S2LatLngRect.CELL_BOUND = new S2LatLngRect(new R1Interval(0, 0), new S1Interval(0, 0, true));
+    }
+    return cell.getRectBound(S2LatLngRect.CELL_BOUND);
+  }
+
   static fromLatLng(lo:S2LatLng, hi:S2LatLng):S2LatLngRect {
     return new S2LatLngRect(
         new R1Interval(
@@ -98,7 +108,7 @@ export class S2LatLngRect implements S2Region {
     }
     // Minimum/maximum latitude occurs in the edge interior. This affects the
     // latitude bounds but not the longitude bounds.
-    const absLat = Math.acos(ab.z / Math.abs(ab.norm()));
+    const absLat = Math.acos(Math.abs(ab.z / ab.norm()));
     if (da < 0) {
       return new S2LatLngRect(new R1Interval(r.lat.lo, absLat), r.lng);
     } else {
@@ -616,7 +626,7 @@ export class S2LatLngRect implements S2Region {
   public /*boolean*/ containsC(cell:S2Cell):boolean {
     // A latitude-longitude rectangle contains a cell if and only if it contains
     // the cell's bounding rectangle. (This is an exact test.)
-    return this.containsLLR(cell.getRectBound());
+    return this.containsLLR(S2LatLngRect.cellBound(cell));
   }
 
   /**
@@ -629,7 +639,7 @@ export class S2LatLngRect implements S2Region {
 
   public /*boolean*/ mayIntersectC(cell:S2Cell):boolean {
     // This test is cheap but is NOT exact (see s2latlngrect.h).
-    return this.intersectsLLR(cell.getRectBound());
+    return this.intersectsLLR(S2LatLngRect.cellBound(cell));
   }
 
   /** The point 'p' does not need to be normalized. */
@@ -1 +1,178 @@
-//TODO: S2Loop
\ No newline at end of file
+/*
+ * Copyright 2006 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import {S2Region} from "./S2Region";
+import {S2Point} from "./S2Point";
+import {S2LatLng} from "./S2LatLng";
+import {S2LatLngRect} from "./S2LatLngRect";
+import {S2Cap} from "./S2Cap";
+import {S2Cell} from "./S2Cell";
+import {S2EdgeIndex} from "./S2EdgeIndex";
+import {S2} from "./S2";
+import {R1Interval} from "./R1Interval";
+import {S1Interval} from "./S1Interval";
+
+/**
+ * An S2Loop represents a simple spherical polygon. It consists of a single
+ * chain of vertices where the first vertex is implicitly connected to the
+ * last. All loops are defined to have a CCW orientation, i.e. the interior of
+ * the polygon is on the left side of the edges. This implies that a clockwise
+ * loop enclosing a small area is interpreted to be a CCW loop enclosing a very
+ * large area.
+ *
+ * Loops are not allowed to have any duplicate vertices (whether adjacent or
+ * not), and non-adjacent edges are not allowed to intersect. Loops must have
+ * at least 3 vertices.
+ *
+ * Point containment and the containsC/mayIntersectC tests used by
+ * S2RegionCoverer go through an S2EdgeIndex, so they only look at the few
+ * edges near the query instead of every edge of the loop.
+ */
+export class S2Loop implements S2Region {
+
+  private vertices:S2Point[];
+  private index:S2LoopIndex;
+  private bound:S2LatLngRect;
+  // True if S2.origin() is inside the loop.
+  private originInside:boolean;
+
+  /**
+   * Create a loop from the given vertices, in CCW order. The array is copied,
+   * the points are not.
+   */
+  constructor(vertices:S2Point[], maxEdgesPerCell = S2EdgeIndex.DEFAULT_MAX_EDGES_PER_CELL) {
+    this.vertices = vertices.slice();
+    this.index = new S2LoopIndex(this.vertices, maxEdgesPerCell);
+    this.index.computeIndex();
+    this.initOrigin();
+    this.initBound();
+  }
+
+  /** Create a loop from the given vertices, in CCW order. */
+  public static fromLatLngs(vertices:S2LatLng[]):S2Loop {
+    return new S2Loop(vertices.map(ll => ll.toPoint()));
+  }
+
+  public numVertices():number {
+    return this.vertices.length;
+  }
+
+  /**
+   * For convenience, we make two entire copies of the vertex list available:
+   * vertex(n..2*n-1) is mapped to vertex(0..n-1), where n == numVertices().
+   */
+  public vertex(i:number):S2Point {
+    return this.vertices[i >= this.vertices.length ? i - this.vertices.length : i];
+  }
+
+  /** Return true if the loop contains the given point. */
+  public contains(p:S2Point):boolean {
+    if (!this.bound.containsP(p)) {
+      return false;
+    }
+    return this.originInside !== this.index.crossingParity(p);
+  }
+
+  public getCapBound():S2Cap {
+    return this.bound.getCapBound();
+  }
+
+  public getRectBound():S2LatLngRect {
+    return this.bound;
+  }
+
+  public containsC(cell:S2Cell):boolean {
+    const relation = this.index.relateCell(cell);
+    return relation !== S2EdgeIndex.CROSSING && this.originInside !== (relation === 1);
+  }
+
+  public mayIntersectC(cell:S2Cell):boolean {
+    const relation = this.index.relateCell(cell);
+    return relation === S2EdgeIndex.CROSSING || this.originInside !== (relation === 1);
+  }
+
+  private initOrigin() {
+    // The crossing parity tells whether a point is inside up to a constant,
+    // which is fixed by looking at vertex(1): the loop is CCW, so the point is
+    // inside if it is on the left of both of its edges.
+    const v1Inside = S2.orderedCCW(S2.ortho(this.vertex(1)), this.vertex(0), this.vertex(2), this.vertex(1));
+    this.originInside = v1Inside !== this.index.crossingParity(this.vertex(1));
+  }
+
+  private initBound() {
+    // The bounding rectangle of a loop is not necessarily the same as the
+    // bounding rectangle of its vertices. First, the loop may wrap entirely
+    // around the sphere (e.g. a loop that defines two revolutions of a
+    // candy-cane stripe). Second, the loop may include one or both poles.
+    // Note that a small clockwise loop near the equator contains both poles.
+    let b = S2LatLngRect.empty();
+    for (let i = 0; i < this.numVertices(); i++) {
+      b = b.union(S2LatLngRect.fromEdge(this.vertex(i), this.vertex(i + 1)));
+    }
+
+    // Note that we need to initialize bound with a temporary value since
+    // contains() does a bounding rectangle check before doing anything else.
+    this.bound = S2LatLngRect.full();
+    if (this.contains(new S2Point(0, 0, 1))) {
+      b = new S2LatLngRect(new R1Interval(b.lat.lo, S2.M_PI_2), S1Interval.full());
+    }
+    // If a loop contains the south pole, then either it wraps entirely
+    // around the sphere (full longitude range), or it also contains the
+    // north pole in which case b.lng.isFull() due to the test above.
+    if (b.lng.isFull() && this.contains(new S2Point(0, 0, -1))) {
+      b = new S2LatLngRect(new R1Interval(-S2.M_PI_2, b.lat.hi), b.lng);
+    }
+    this.bound = b;
+  }
+
+  public toGEOJSON():any {
+    const coords = this.vertices.concat(this.vertices[0])
+        .map(v => S2LatLng.fromPoint(v))
+        .map(v => ([v.lngDegrees, v.latDegrees]));
+    return {
+      type: 'Feature',
+      geometry: {
+        type: 'Polygon',
+        coordinates: [coords]
+      },
+      properties: {}
+    };
+  }
+
+  public toString():string {
+    return "S2Loop, " + this.vertices.length + " points. [" + this.vertices.map(v => v.toString()).join(" ") + "]";
+  }
+}
+
+/** The edges of a loop, edge i going from vertex i to vertex i + 1. */
+class S2LoopIndex extends S2EdgeIndex {
+
+  constructor(private vertices:S2Point[], maxEdgesPerCell:number) {
+    super(maxEdgesPerCell);
+  }
+
+  protected getNumEdges():number {
+    return this.vertices.length;
+  }
+
+  protected edgeFrom(index:number):S2Point {
+    return this.vertices[index];
+  }
+
+  protected edgeTo(index:number):S2Point {
+    return this.vertices[index + 1 === this.vertices.length ? 0 : index + 1];
+  }
+}
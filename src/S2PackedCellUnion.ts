@@ -0,0 +1,390 @@
+/*
+ * Copyright 2005 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import {S2Region} from "./S2Region";
+import {S2CellId} from "./S2CellId";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {S2Cell} from "./S2Cell";
+import {S2CellUnion} from "./S2CellUnion";
+import {S2LatLngRect} from "./S2LatLngRect";
+import {S2Cap} from "./S2Cap";
+
+/**
+ * A cell union stored as one contiguous Uint32Array instead of an array of
+ * S2CellId objects. Every id takes two slots, [lo, hi], which is the layout of
+ * a little-endian 64-bit integer (see {@link S2CellIdBits}), so the backing
+ * buffer can also be viewed as a BigUint64Array or written to disk as is.
+ *
+ * Like {@link S2CellUnion} the ids must be normalized (sorted, no cell
+ * contained in another and no four siblings) before doing any calculation.
+ * The factories that take raw words trust the caller on this, the others
+ * normalize.
+ */
+export class S2PackedCellUnion implements S2Region {
+
+  /** The ids of the union as [lo, hi] pairs. Only the first 2 * count slots are used. */
+  private words:Uint32Array;
+  private count:number;
+
+  private constructor(words:Uint32Array, count:number) {
+    this.words = words;
+    this.count = count;
+  }
+
+  /**
+   * Wraps the given normalized [lo, hi] words without copying them. The union
+   * shares the buffer with the caller.
+   */
+  public static fromRawWords(words:Uint32Array):S2PackedCellUnion {
+    return new S2PackedCellUnion(words, words.length >> 1);
+  }
+
+  /**
+   * Wraps the bytes of a normalized union (e.g. a Node Buffer read from disk)
+   * without copying them. The bytes are copied only if the view does not start
+   * on a 4-byte boundary, which typed arrays require.
+   */
+  public static fromRawBytes(bytes:ArrayBufferView):S2PackedCellUnion {
+    const count = bytes.byteLength >> 3;
+    if (bytes.byteOffset % 4 === 0) {
+      return new S2PackedCellUnion(new Uint32Array(bytes.buffer, bytes.byteOffset, 2 * count), count);
+    }
+    const copy = new Uint8Array(8 * count);
+    copy.set(new Uint8Array(bytes.buffer, bytes.byteOffset, 8 * count));
+    return new S2PackedCellUnion(new Uint32Array(copy.buffer), count);
+  }
+
+  /** Copies the given [lo, hi] words, in any order, and normalizes them. */
+  public static fromWords(words:Uint32Array):S2PackedCellUnion {
+    const copy = S2CellIdBits.sortWords(words.slice(0, words.length & ~1));
+    return S2PackedCellUnion.trimmed(copy, S2CellIdBits.normalizeSorted(copy, copy.length >> 1));
+  }
+
+  public static fromCellIds(cellIds:S2CellId[]):S2PackedCellUnion {
+    const words = new Uint32Array(2 * cellIds.length);
+    for (let i = 0; i < cellIds.length; i++) {
+      words[2 * i] = cellIds[i].id.low;
+      words[2 * i + 1] = cellIds[i].id.high;
+    }
+    S2CellIdBits.sortWords(words);
+    return S2PackedCellUnion.trimmed(words, S2CellIdBits.normalizeSorted(words, cellIds.length));
+  }
+
+  /** Packs an already normalized {@link S2CellUnion}. */
+  public static fromCellUnion(union:S2CellUnion):S2PackedCellUnion {
+    const words = new Uint32Array(2 * union.size());
+    for (let i = 0; i < union.size(); i++) {
+      const id = union.cellId(i).id;
+      words[2 * i] = id.low;
+      words[2 * i + 1] = id.high;
+    }
+    return new S2PackedCellUnion(words, union.size());
+  }
+
+  public size():number {
+    return this.count;
+  }
+
+  public hi(i:number):number {
+    return this.words[2 * i + 1];
+  }
+
+  public lo(i:number):number {
+    return this.words[2 * i];
+  }
+
+  public cellId(i:number):S2CellId {
+    return new S2CellId(S2CellIdBits.toLong(this.words[2 * i + 1], this.words[2 * i]));
+  }
+
+  /** The [lo, hi] words of the union. This is a view, not a copy. */
+  public getWords():Uint32Array {
+    return this.words.subarray(0, 2 * this.count);
+  }
+
+  /** The union as 8 little-endian bytes per id. This is a view, not a copy. */
+  public getBytes():Uint8Array {
+    return new Uint8Array(this.words.buffer, this.words.byteOffset, 8 * this.count);
+  }
+
+  public getCellIds():S2CellId[] {
+    const cellIds:S2CellId[] = [];
+    for (let i = 0; i < this.count; i++) {
+      cellIds.push(this.cellId(i));
+    }
+    return cellIds;
+  }
+
+  public toCellUnion():S2CellUnion {
+    const union = new S2CellUnion();
+    union.initRawCellIds(this.getCellIds());
+    return union;
+  }
+
+  /**
+   * Return true if the union contains the cell given by its two 32-bit words.
+   * This is a fast operation (logarithmic in the size of the cell union).
+   */
+  public containsRaw(hi:number, lo:number):boolean {
+    // Same reasoning as S2CellUnion.contains: only the two cells surrounding
+    // the id along the curve can contain it.
+    const pos = S2PackedCellUnion.lowerBound(this.words, this.count, hi, lo, 0);
+    const words = this.words;
+    if (pos < this.count && S2CellIdBits.contains(words[2 * pos + 1], words[2 * pos], hi, lo)) {
+      return true;
+    }
+    return pos !== 0 && S2CellIdBits.contains(words[2 * pos - 1], words[2 * pos - 2], hi, lo);
+  }
+
+  /**
+   * Return true if the union intersects the cell given by its two 32-bit
+   * words. This is a fast operation (logarithmic in the size of the cell union).
+   */
+  public intersectsRaw(hi:number, lo:number):boolean {
+    const pos = S2PackedCellUnion.lowerBound(this.words, this.count, hi, lo, 0);
+    const words = this.words;
+    if (pos < this.count && S2CellIdBits.intersects(words[2 * pos + 1], words[2 * pos], hi, lo)) {
+      return true;
+    }
+    return pos !== 0 && S2CellIdBits.intersects(words[2 * pos - 1], words[2 * pos - 2], hi, lo);
+  }
+
+  public contains(id:S2CellId):boolean {
+    return this.containsRaw(id.id.high, id.id.low);
+  }
+
+  public intersects(id:S2CellId):boolean {
+    return this.intersectsRaw(id.id.high, id.id.low);
+  }
+
+  public containsUnion(that:S2PackedCellUnion):boolean {
+    for (let i = 0; i < that.count; i++) {
+      if (!this.containsRaw(that.words[2 * i + 1], that.words[2 * i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Return true if any cell of the given union intersects this one. */
+  public intersectsUnion(that:S2PackedCellUnion):boolean {
+    for (let i = 0; i < that.count; i++) {
+      if (this.intersectsRaw(that.words[2 * i + 1], that.words[2 * i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public containsCell(cell:S2Cell):boolean {
+    return this.containsRaw(cell.idHi, cell.idLo);
+  }
+
+  public mayIntersectCell(cell:S2Cell):boolean {
+    return this.intersectsRaw(cell.idHi, cell.idLo);
+  }
+
+  containsC(cell:S2Cell):boolean {
+    return this.containsCell(cell);
+  }
+
+  mayIntersectC(cell:S2Cell):boolean {
+    return this.mayIntersectCell(cell);
+  }
+
+  public getCapBound():S2Cap {
+    return this.toCellUnion().getCapBound();
+  }
+
+  public getRectBound():S2LatLngRect {
+    return this.toCellUnion().getRectBound();
+  }
+
+  /**
+   * Return the union of the two given normalized unions. The inputs are merged
+   * in a single pass and the result is normalized in place, so the cost is
+   * linear in the size of the inputs.
+   */
+  public static union(x:S2PackedCellUnion, y:S2PackedCellUnion):S2PackedCellUnion {
+    const xw = x.words;
+    const yw = y.words;
+    const out = new Uint32Array(2 * (x.count + y.count));
+    let i = 0;
+    let j = 0;
+    let k = 0;
+    while (i < x.count && j < y.count) {
+      if (S2CellIdBits.compare(xw[2 * i + 1], xw[2 * i], yw[2 * j + 1], yw[2 * j]) <= 0) {
+        out[k++] = xw[2 * i];
+        out[k++] = xw[2 * i + 1];
+        i++;
+      } else {
+        out[k++] = yw[2 * j];
+        out[k++] = yw[2 * j + 1];
+        j++;
+      }
+    }
+    out.set(xw.subarray(2 * i, 2 * x.count), k);
+    k += 2 * (x.count - i);
+    out.set(yw.subarray(2 * j, 2 * y.count), k);
+    return S2PackedCellUnion.trimmed(out, S2CellIdBits.normalizeSorted(out, x.count + y.count));
+  }
+
+  /**
+   * Return the intersection of the two given normalized unions. This is a port
+   * of S2CellUnion.getIntersectionUU: the inputs are walked together and binary
+   * search skips over runs of cells that cannot intersect the other union.
+   */
+  public static intersection(x:S2PackedCellUnion, y:S2PackedCellUnion):S2PackedCellUnion {
+    const xw = x.words;
+    const yw = y.words;
+    const out = new Uint32Array(2 * (x.count + y.count));
+    const range = new Uint32Array(4);
+    let i = 0;
+    let j = 0;
+    let k = 0;
+    while (i < x.count && j < y.count) {
+      const xHi = xw[2 * i + 1], xLo = xw[2 * i];
+      const yHi = yw[2 * j + 1], yLo = yw[2 * j];
+      S2CellIdBits.rangeMin(xHi, xLo, range, 0);
+      S2CellIdBits.rangeMin(yHi, yLo, range, 2);
+      const cmp = S2CellIdBits.compare(range[1], range[0], range[3], range[2]);
+      if (cmp > 0) {
+        // Either y[j] contains x[i] or the two cells are disjoint.
+        S2CellIdBits.rangeMax(yHi, yLo, range, 2);
+        if (S2CellIdBits.compare(xHi, xLo, range[3], range[2]) <= 0) {
+          out[k++] = xLo;
+          out[k++] = xHi;
+          i++;
+        } else {
+          // Advance "j" to the first cell possibly contained by x[i]; the
+          // previous cell may now contain x[i].
+          j = S2PackedCellUnion.lowerBound(yw, y.count, range[1], range[0], j + 1);
+          S2CellIdBits.rangeMax(yw[2 * j - 1], yw[2 * j - 2], range, 2);
+          if (S2CellIdBits.compare(xHi, xLo, range[3], range[2]) <= 0) {
+            --j;
+          }
+        }
+      } else if (cmp < 0) {
+        // Identical to the code above with "i" and "j" reversed.
+        S2CellIdBits.rangeMax(xHi, xLo, range, 0);
+        if (S2CellIdBits.compare(yHi, yLo, range[1], range[0]) <= 0) {
+          out[k++] = yLo;
+          out[k++] = yHi;
+          j++;
+        } else {
+          i = S2PackedCellUnion.lowerBound(xw, x.count, range[3], range[2], i + 1);
+          S2CellIdBits.rangeMax(xw[2 * i - 1], xw[2 * i - 2], range, 0);
+          if (S2CellIdBits.compare(yHi, yLo, range[1], range[0]) <= 0) {
+            --i;
+          }
+        }
+      } else {
+        // Same range_min(), so one cell contains the other.
+        if (S2CellIdBits.compare(xHi, xLo, yHi, yLo) < 0) {
+          out[k++] = xLo;
+          out[k++] = xHi;
+          i++;
+        } else {
+          out[k++] = yLo;
+          out[k++] = yHi;
+          j++;
+        }
+      }
+    }
+    return S2PackedCellUnion.trimmed(out, k >> 1);
+  }
+
+  /**
+   * Return the cells of x not covered by y, both normalized. A cell of x that
+   * partially overlaps y is replaced by the children that do not overlap it,
+   * recursively. Both inputs are walked once, so the cost is linear in their
+   * size plus the size of the output.
+   */
+  public static difference(x:S2PackedCellUnion, y:S2PackedCellUnion):S2PackedCellUnion {
+    const xw = x.words;
+    const yw = y.words;
+    let out = new Uint32Array(2 * x.count + 8);
+    let k = 0;
+    let j = 0;
+    const range = new Uint32Array(4);
+
+    // Cells are visited in increasing order, so j only moves forward.
+    const subtract = (hi:number, lo:number) => {
+      S2CellIdBits.rangeMin(hi, lo, range, 0);
+      while (j < y.count) {
+        S2CellIdBits.rangeMax(yw[2 * j + 1], yw[2 * j], range, 2);
+        if (S2CellIdBits.compare(range[3], range[2], range[1], range[0]) >= 0) {
+          break;
+        }
+        j++;
+      }
+      if (j === y.count || !S2CellIdBits.intersects(hi, lo, yw[2 * j + 1], yw[2 * j])) {
+        if (k === out.length) {
+          const grown = new Uint32Array(2 * out.length);
+          grown.set(out);
+          out = grown;
+        }
+        out[k++] = lo;
+        out[k++] = hi;
+      } else if (!S2CellIdBits.contains(yw[2 * j + 1], yw[2 * j], hi, lo)) {
+        // y[j] is strictly inside the cell, which is therefore not a leaf.
+        const children = new Uint32Array(8);
+        S2CellIdBits.childBegin(hi, lo, S2CellIdBits.level(hi, lo) + 1, children, 0);
+        for (let c = 1; c < 4; c++) {
+          S2CellIdBits.next(children[2 * c - 1], children[2 * c - 2], children, 2 * c);
+        }
+        for (let c = 0; c < 4; c++) {
+          subtract(children[2 * c + 1], children[2 * c]);
+        }
+      }
+    };
+    for (let i = 0; i < x.count; i++) {
+      subtract(xw[2 * i + 1], xw[2 * i]);
+    }
+    return S2PackedCellUnion.trimmed(out, k >> 1);
+  }
+
+  /**
+   * Return the index of the first of the "count" ids in "words", starting from
+   * "from", that is greater than or equal to (hi, lo).
+   */
+  private static lowerBound(words:Uint32Array, count:number, hi:number, lo:number, from:number):number {
+    hi >>>= 0;
+    lo >>>= 0;
+    let low = from;
+    let high = count;
+    while (low < high) {
+      const mid = (low + high) >>> 1;
+      const midHi = words[2 * mid + 1];
+      if (midHi < hi || (midHi === hi && words[2 * mid] < lo)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Wraps the first "count" ids of "words", copying them to a right-sized
+   * array when normalization removed a noticeable share of the slots.
+   */
+  private static trimmed(words:Uint32Array, count:number):S2PackedCellUnion {
+    if (4 * count < 3 * (words.length >> 1)) {
+      words = words.slice(0, 2 * count);
+    }
+    return new S2PackedCellUnion(words, count);
+  }
+}
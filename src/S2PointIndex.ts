@@ -0,0 +1,523 @@
+import {S2Point} from "./S2Point";
+import {S2Cell} from "./S2Cell";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {S2LatLng} from "./S2LatLng";
+import {S2Region} from "./S2Region";
+import {S2RegionCoverer} from "./S2RegionCoverer";
+import {S1ChordAngle} from "./S1ChordAngle";
+import {S2PreparedRegion} from "./S2PreparedRegion";
+
+// Reinitialized for each per-cell test of the queries.
+const SCRATCH_CELL = new S2Cell();
+
+/** A point of the index and the number stored with it. */
+export interface S2PointIndexEntry {
+  point:S2Point;
+  data:number;
+}
+
+/** A point returned by a distance query, with its distance to the target. */
+export interface S2PointIndexNeighbor extends S2PointIndexEntry {
+  distance:S1ChordAngle;
+}
+
+/**
+ * An in-memory index of points, each with a number (e.g. a row id), sorted by
+ * the leaf cell id containing the point so that the points of any cell are a
+ * contiguous range found by binary search.
+ *
+ * Ids, coordinates and numbers are kept in typed arrays (8 + 24 + 8 bytes per
+ * point) rather than objects. Points added after the index was built go to a
+ * small sorted buffer, and removed points are only marked: both are merged
+ * into the main arrays once they grow past a fraction of the index (or on
+ * {@link compact}), so that updates stay cheap without the queries having to
+ * look at more than two sorted runs.
+ *
+ * Region queries scan the ranges of a covering of the region; distance
+ * queries visit the cells closest to the target first and skip the cells
+ * whose distance bound exceeds the current k-th distance.
+ */
+export class S2PointIndex {
+
+  // Cells with at most this many points are scanned rather than subdivided.
+  private static MAX_POINTS_PER_CELL = 16;
+
+  private main = new PointRun(0);
+  private delta = new PointRun(16);
+
+  /** Builds an index of the given points. The number of point i is data[i], or i. */
+  public static fromPoints(points:S2Point[], data?:ArrayLike<number>):S2PointIndex {
+    const xyz = new Float64Array(3 * points.length);
+    points.forEach((p, i) => {
+      xyz[3 * i] = p.x;
+      xyz[3 * i + 1] = p.y;
+      xyz[3 * i + 2] = p.z;
+    });
+    return S2PointIndex.fromXyz(xyz, data);
+  }
+
+  /** Builds an index from coordinates in degrees. The number of point i is data[i], or i. */
+  public static fromLatLngDegrees(lats:ArrayLike<number>, lngs:ArrayLike<number>, data?:ArrayLike<number>):S2PointIndex {
+    const xyz = new Float64Array(3 * lats.length);
+    for (let i = 0; i < lats.length; i++) {
+      const p = S2LatLng.fromDegrees(lats[i], lngs[i]).toPoint();
+      xyz[3 * i] = p.x;
+      xyz[3 * i + 1] = p.y;
+      xyz[3 * i + 2] = p.z;
+    }
+    return S2PointIndex.fromXyz(xyz, data);
+  }
+
+  /**
+   * Builds an index of unit length points given as consecutive x, y, z
+   * coordinates. The number of point i is data[i], or i.
+   */
+  public static fromXyz(xyz:Float64Array, data?:ArrayLike<number>):S2PointIndex {
+    const count = Math.floor(xyz.length / 3);
+    const ids = new Uint32Array(2 * count);
+    for (let i = 0; i < count; i++) {
+      S2CellIdBits.fromPoint(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2], ids, 2 * i);
+    }
+    const order = S2CellIdBits.sortOrder(ids, count);
+
+    const run = new PointRun(count);
+    order.forEach((from, to) => {
+      run.ids[2 * to] = ids[2 * from];
+      run.ids[2 * to + 1] = ids[2 * from + 1];
+      run.xyz[3 * to] = xyz[3 * from];
+      run.xyz[3 * to + 1] = xyz[3 * from + 1];
+      run.xyz[3 * to + 2] = xyz[3 * from + 2];
+      run.data[to] = data === undefined ? from : data[from];
+    });
+    run.size = count;
+    const index = new S2PointIndex();
+    index.main = run;
+    return index;
+  }
+
+  /** The number of points in the index. */
+  public size():number {
+    return this.main.live() + this.delta.live();
+  }
+
+  /** Adds a point with the given number. The same point can be added several times. */
+  public add(point:S2Point, data:number) {
+    this.delta.insert(point.x, point.y, point.z, data);
+    if (this.delta.size > Math.max(1024, this.main.size >> 5)) {
+      this.compact();
+    }
+  }
+
+  /**
+   * Removes one occurrence of the point with the given number. Returns false
+   * if there is none.
+   */
+  public remove(point:S2Point, data:number):boolean {
+    if (!this.delta.remove(point.x, point.y, point.z, data) && !this.main.remove(point.x, point.y, point.z, data)) {
+      return false;
+    }
+    if (this.main.deleted > (this.main.size >> 2) + 1024 || this.delta.deleted > (this.delta.size >> 1) + 64) {
+      this.compact();
+    }
+    return true;
+  }
+
+  /** Merges the pending insertions and removals into the sorted arrays. */
+  public compact() {
+    this.main = PointRun.merge(this.main, this.delta);
+    this.delta = new PointRun(16);
+  }
+
+  /**
+   * Calls the visitor with the coordinates and number of every point
+   * contained by the region, in no particular order, until it returns false.
+   * The region is covered with the given coverer (by default, at most 8 cells)
+   * and the points of the covering cells not contained by the region are
+   * tested one by one.
+   */
+  public visitPointsInRegion(region:S2Region, visitor:(x:number, y:number, z:number, data:number) => boolean|void,
+                             coverer:S2RegionCoverer = new S2RegionCoverer()):boolean {
+    const covering = coverer.getCoveringUnion(region);
+    const range = new Uint32Array(4);
+    for (let c = 0; c < covering.size(); c++) {
+      const id = covering.cellId(c);
+      const all = region.containsC(SCRATCH_CELL.initRaw(id.id.high, id.id.low));
+      S2CellIdBits.rangeMin(id.id.high, id.id.low, range, 0);
+      S2CellIdBits.rangeMax(id.id.high, id.id.low, range, 2);
+      for (const run of [this.main, this.delta]) {
+        const end = run.upperBound(range[3], range[2]);
+        for (let i = run.lowerBound(range[1], range[0]); i < end; i++) {
+          if (run.isDeleted(i)) {
+            continue;
+          }
+          const x = run.xyz[3 * i];
+          const y = run.xyz[3 * i + 1];
+          const z = run.xyz[3 * i + 2];
+          if (!all && !S2PreparedRegion.regionContains(region, x, y, z, run.ids[2 * i + 1], run.ids[2 * i])) {
+            continue;
+          }
+          if (visitor(x, y, z, run.data[i]) === false) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Returns the points contained by the region, see {@link visitPointsInRegion}. */
+  public getPointsInRegion(region:S2Region, coverer?:S2RegionCoverer):S2PointIndexEntry[] {
+    const entries:S2PointIndexEntry[] = [];
+    this.visitPointsInRegion(region, (x, y, z, data) => {
+      entries.push({point: new S2Point(x, y, z), data});
+    }, coverer);
+    return entries;
+  }
+
+  /**
+   * Returns the maxResults points closest to the target, no farther than
+   * maxDistance, sorted by increasing distance. Ties are broken arbitrarily.
+   */
+  public findClosestPoints(target:S2Point, maxResults:number,
+                           maxDistance:S1ChordAngle = S1ChordAngle.INFINITY):S2PointIndexNeighbor[] {
+    if (maxResults <= 0 || this.size() === 0) {
+      return [];
+    }
+    const tx = target.x;
+    const ty = target.y;
+    const tz = target.z;
+    const runs = [this.main, this.delta];
+    // The results so far in a max-heap (keyed by minus the squared chord
+    // length), holding the run and position of each point.
+    const results = new BoundQueue();
+    let limit = maxDistance.getLength2();
+
+    const visit = (r:number, begin:number, end:number) => {
+      const run = runs[r];
+      for (let i = begin; i < end; i++) {
+        if (run.isDeleted(i)) {
+          continue;
+        }
+        const dx = run.xyz[3 * i] - tx;
+        const dy = run.xyz[3 * i + 1] - ty;
+        const dz = run.xyz[3 * i + 2] - tz;
+        const d2 = Math.min(S1ChordAngle.MAX_LENGTH2, dx * dx + dy * dy + dz * dz);
+        if (d2 > limit) {
+          continue;
+        }
+        results.add(-d2, r, i);
+        if (results.size() > maxResults) {
+          results.poll();
+        }
+        if (results.size() === maxResults) {
+          limit = -results.peekKey();
+        }
+      }
+    };
+
+    // Best-first search: cells come out of the queue by increasing lower
+    // bound of their distance to the target, which stops the search as soon
+    // as no cell can hold a closer point.
+    const queue = new BoundQueue();
+    const cell = new Uint32Array(2);
+    const range = new Uint32Array(4);
+    for (let face = 0; face < 6; face++) {
+      S2CellIdBits.fromFaceIJ(face, 0, 0, cell);
+      S2CellIdBits.parent(cell[1], cell[0], 0, cell);
+      queue.add(0, cell[1], cell[0]);
+    }
+    while (queue.size() !== 0 && queue.peekKey() <= limit) {
+      const hi = queue.peekA();
+      const lo = queue.peekB();
+      queue.poll();
+      S2CellIdBits.rangeMin(hi, lo, range, 0);
+      S2CellIdBits.rangeMax(hi, lo, range, 2);
+      const mainBegin = this.main.lowerBound(range[1], range[0]);
+      const mainEnd = this.main.upperBound(range[3], range[2]);
+      const deltaBegin = this.delta.lowerBound(range[1], range[0]);
+      const deltaEnd = this.delta.upperBound(range[3], range[2]);
+      const count = mainEnd - mainBegin + deltaEnd - deltaBegin;
+      if (count === 0) {
+        continue;
+      }
+      if (count <= S2PointIndex.MAX_POINTS_PER_CELL || S2CellIdBits.isLeaf(lo)) {
+        visit(0, mainBegin, mainEnd);
+        visit(1, deltaBegin, deltaEnd);
+        continue;
+      }
+      const level = S2CellIdBits.level(hi, lo) + 1;
+      S2CellIdBits.childBegin(hi, lo, level, cell);
+      for (let k = 0; k < 4; k++) {
+        const bound = S2PointIndex.minDistance2(target, cell[1], cell[0]);
+        if (bound <= limit) {
+          queue.add(bound, cell[1], cell[0]);
+        }
+        S2CellIdBits.next(cell[1], cell[0], cell);
+      }
+    }
+
+    const neighbors:S2PointIndexNeighbor[] = new Array(results.size());
+    for (let n = results.size() - 1; n >= 0; n--) {
+      const run = runs[results.peekA()];
+      const slot = results.peekB();
+      neighbors[n] = {
+        point: new S2Point(run.xyz[3 * slot], run.xyz[3 * slot + 1], run.xyz[3 * slot + 2]),
+        data: run.data[slot],
+        distance: S1ChordAngle.fromLength2(-results.peekKey()),
+      };
+      results.poll();
+    }
+    return neighbors;
+  }
+
+  /** Returns the points within the given distance of the target, sorted by increasing distance. */
+  public findPointsWithinDistance(target:S2Point, maxDistance:S1ChordAngle):S2PointIndexNeighbor[] {
+    return this.findClosestPoints(target, Number.POSITIVE_INFINITY, maxDistance);
+  }
+
+  /**
+   * A lower bound of the squared chord distance between the target and the
+   * cell, from the cell's bounding cap.
+   */
+  private static minDistance2(target:S2Point, hi:number, lo:number):number {
+    const cap = SCRATCH_CELL.initRaw(hi, lo).getCapBound();
+    const axis = cap.axis;
+    const cx = target.y * axis.z - target.z * axis.y;
+    const cy = target.z * axis.x - target.x * axis.z;
+    const cz = target.x * axis.y - target.y * axis.x;
+    const angle = Math.atan2(Math.sqrt(cx * cx + cy * cy + cz * cz), target.x * axis.x + target.y * axis.y + target.z * axis.z);
+    // The slack absorbs the rounding errors of the angles.
+    const gap = angle - cap.angle().radians - 1e-14;
+    if (gap <= 0) {
+      return 0;
+    }
+    const sin = Math.sin(0.5 * Math.min(Math.PI, gap));
+    return 4 * sin * sin;
+  }
+}
+
+/** Points sorted by leaf cell id, in parallel typed arrays, with removal marks. */
+class PointRun {
+  public ids:Uint32Array;
+  public xyz:Float64Array;
+  public data:Float64Array;
+  // Allocated on the first removal.
+  public removed:Uint8Array = null;
+  public size = 0;
+  public deleted = 0;
+
+  constructor(capacity:number) {
+    this.ids = new Uint32Array(2 * capacity);
+    this.xyz = new Float64Array(3 * capacity);
+    this.data = new Float64Array(capacity);
+  }
+
+  public live():number {
+    return this.size - this.deleted;
+  }
+
+  public isDeleted(i:number):boolean {
+    return this.removed !== null && this.removed[i] === 1;
+  }
+
+  /** The first position whose id is not less than (hi, lo). */
+  public lowerBound(hi:number, lo:number):number {
+    let low = 0;
+    let high = this.size;
+    while (low < high) {
+      const mid = (low + high) >>> 1;
+      if (S2CellIdBits.compare(this.ids[2 * mid + 1], this.ids[2 * mid], hi, lo) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** The first position whose id is greater than (hi, lo). */
+  public upperBound(hi:number, lo:number):number {
+    let low = 0;
+    let high = this.size;
+    while (low < high) {
+      const mid = (low + high) >>> 1;
+      if (S2CellIdBits.compare(this.ids[2 * mid + 1], this.ids[2 * mid], hi, lo) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  public insert(x:number, y:number, z:number, data:number) {
+    if (this.size === this.data.length) {
+      this.grow(Math.max(16, 2 * this.size));
+    }
+    const id = new Uint32Array(2);
+    S2CellIdBits.fromPoint(x, y, z, id);
+    const pos = this.upperBound(id[1], id[0]);
+    this.ids.copyWithin(2 * pos + 2, 2 * pos, 2 * this.size);
+    this.xyz.copyWithin(3 * pos + 3, 3 * pos, 3 * this.size);
+    this.data.copyWithin(pos + 1, pos, this.size);
+    if (this.removed !== null) {
+      this.removed.copyWithin(pos + 1, pos, this.size);
+      this.removed[pos] = 0;
+    }
+    this.ids[2 * pos] = id[0];
+    this.ids[2 * pos + 1] = id[1];
+    this.xyz[3 * pos] = x;
+    this.xyz[3 * pos + 1] = y;
+    this.xyz[3 * pos + 2] = z;
+    this.data[pos] = data;
+    this.size++;
+  }
+
+  /** Marks one live occurrence of the point and number as removed. */
+  public remove(x:number, y:number, z:number, data:number):boolean {
+    const id = new Uint32Array(2);
+    S2CellIdBits.fromPoint(x, y, z, id);
+    const end = this.upperBound(id[1], id[0]);
+    for (let i = this.lowerBound(id[1], id[0]); i < end; i++) {
+      if (!this.isDeleted(i) && this.data[i] === data
+          && this.xyz[3 * i] === x && this.xyz[3 * i + 1] === y && this.xyz[3 * i + 2] === z) {
+        if (this.removed === null) {
+          this.removed = new Uint8Array(this.data.length);
+        }
+        this.removed[i] = 1;
+        this.deleted++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Merges the live points of two runs into a new one. */
+  public static merge(a:PointRun, b:PointRun):PointRun {
+    const out = new PointRun(a.live() + b.live());
+    let i = 0;
+    let j = 0;
+    for (;;) {
+      while (i < a.size && a.isDeleted(i)) {
+        i++;
+      }
+      while (j < b.size && b.isDeleted(j)) {
+        j++;
+      }
+      if (i === a.size && j === b.size) {
+        break;
+      }
+      if (j === b.size || (i < a.size && S2CellIdBits.compare(a.ids[2 * i + 1], a.ids[2 * i], b.ids[2 * j + 1], b.ids[2 * j]) <= 0)) {
+        out.push(a, i++);
+      } else {
+        out.push(b, j++);
+      }
+    }
+    return out;
+  }
+
+  private push(from:PointRun, i:number) {
+    const n = this.size++;
+    this.ids[2 * n] = from.ids[2 * i];
+    this.ids[2 * n + 1] = from.ids[2 * i + 1];
+    this.xyz[3 * n] = from.xyz[3 * i];
+    this.xyz[3 * n + 1] = from.xyz[3 * i + 1];
+    this.xyz[3 * n + 2] = from.xyz[3 * i + 2];
+    this.data[n] = from.data[i];
+  }
+
+  private grow(capacity:number) {
+    const ids = new Uint32Array(2 * capacity);
+    ids.set(this.ids);
+    this.ids = ids;
+    const xyz = new Float64Array(3 * capacity);
+    xyz.set(this.xyz);
+    this.xyz = xyz;
+    const data = new Float64Array(capacity);
+    data.set(this.data);
+    this.data = data;
+    if (this.removed !== null) {
+      const removed = new Uint8Array(capacity);
+      removed.set(this.removed);
+      this.removed = removed;
+    }
+  }
+}
+
+/** A min-heap of pairs of numbers (a, b) keyed by a number, in parallel arrays. */
+class BoundQueue {
+  private keys:number[] = [];
+  private as:number[] = [];
+  private bs:number[] = [];
+
+  public size():number {
+    return this.keys.length;
+  }
+
+  public peekKey():number {
+    return this.keys[0];
+  }
+
+  public peekA():number {
+    return this.as[0];
+  }
+
+  public peekB():number {
+    return this.bs[0];
+  }
+
+  public add(key:number, a:number, b:number) {
+    let pos = this.keys.length;
+    this.keys.push(key);
+    this.as.push(a);
+    this.bs.push(b);
+    while (pos > 0) {
+      const parent = (pos - 1) >> 1;
+      if (this.keys[parent] <= key) {
+        break;
+      }
+      this.move(parent, pos);
+      pos = parent;
+    }
+    this.set(pos, key, a, b);
+  }
+
+  /** Removes the smallest key. */
+  public poll() {
+    const key = this.keys.pop();
+    const a = this.as.pop();
+    const b = this.bs.pop();
+    const n = this.keys.length;
+    if (n === 0) {
+      return;
+    }
+    let pos = 0;
+    for (;;) {
+      let child = 2 * pos + 1;
+      if (child >= n) {
+        break;
+      }
+      if (child + 1 < n && this.keys[child + 1] < this.keys[child]) {
+        child++;
+      }
+      if (this.keys[child] >= key) {
+        break;
+      }
+      this.move(child, pos);
+      pos = child;
+    }
+    this.set(pos, key, a, b);
+  }
+
+  private move(from:number, to:number) {
+    this.keys[to] = this.keys[from];
+    this.as[to] = this.as[from];
+    this.bs[to] = this.bs[from];
+  }
+
+  private set(pos:number, key:number, a:number, b:number) {
+    this.keys[pos] = key;
+    this.as[pos] = a;
+    this.bs[pos] = b;
+  }
+}
@@ -0,0 +1,232 @@
+import {S2Point} from "./S2Point";
+import {S2Cell} from "./S2Cell";
+import {S2CellId} from "./S2CellId";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {S2CellUnion} from "./S2CellUnion";
+import {S2PackedCellUnion} from "./S2PackedCellUnion";
+import {S2Cap} from "./S2Cap";
+import {S2LatLngRect} from "./S2LatLngRect";
+import {S2Loop} from "./S2Loop";
+import {S2Region} from "./S2Region";
+import {S2RegionCoverer} from "./S2RegionCoverer";
+
+// Scratch leaf id, range, point and cell of the containment tests.
+const LEAF = new Uint32Array(2);
+const RANGE = new Uint32Array(4);
+const POINT = new S2Point(0, 0, 0);
+const CELL = new S2Cell();
+
+/** How the points tested against an S2PreparedRegion were classified. */
+export interface S2PreparedRegionStats {
+  /** Points tested. */
+  points:number;
+  /** Points found inside by the interior covering. */
+  interiorHits:number;
+  /** Points found outside by the exterior covering. */
+  exteriorMisses:number;
+  /** Points in boundary cells, which needed the exact test of the region. */
+  exactTests:number;
+}
+
+/**
+ * A region prepared for testing many points. It keeps an interior covering
+ * (cells inside the region) and an exterior covering (cells that cover the
+ * region) as {@link S2PackedCellUnion}s, so most points are classified by a
+ * binary search on their leaf cell id: inside if an interior cell contains it,
+ * outside if no exterior cell does. Only the points left in the boundary cells
+ * go through the exact test of the region. Both coverings are flattened into
+ * one sorted table of leaf id ranges, so a point costs a single search.
+ *
+ * A lookup costs about as much as S2CellIdBits.fromPoint, so this pays off
+ * for regions whose exact test is more expensive than that, e.g. loops with
+ * many vertices or custom regions; caps and rectangles already have cheap
+ * point tests. More cells make the boundary thinner and the fast path more
+ * likely, at the price of a slower preparation; {@link getStats} tells how
+ * often the fast path answered.
+ */
+export class S2PreparedRegion {
+
+  public static DEFAULT_MAX_CELLS = 1024;
+
+  private interior:S2PackedCellUnion;
+  private exterior:S2PackedCellUnion;
+
+  // Disjoint leaf id ranges sorted by start, as [lo, hi] words: the interior
+  // cells (inside[r] = 1) and the exterior cells outside them (inside[r] = 0).
+  private starts:Uint32Array;
+  private ends:Uint32Array;
+  private inside:Uint8Array;
+  private count = 0;
+
+  private points = 0;
+  private interiorHits = 0;
+  private exteriorMisses = 0;
+
+  /**
+   * Prepares the region with the given coverer, by default one with up to
+   * {@link DEFAULT_MAX_CELLS} cells per covering.
+   */
+  constructor(private region:S2Region,
+              coverer = new S2RegionCoverer().setMaxCells(S2PreparedRegion.DEFAULT_MAX_CELLS)) {
+    this.interior = S2PackedCellUnion.fromCellUnion(coverer.getInteriorCoveringUnion(region));
+    this.exterior = S2PackedCellUnion.fromCellUnion(coverer.getCoveringUnion(region));
+    this.initRanges(S2PackedCellUnion.difference(this.exterior, this.interior));
+  }
+
+  private initRanges(boundary:S2PackedCellUnion) {
+    const interiorWords = this.interior.getWords();
+    const boundaryWords = boundary.getWords();
+    const total = this.interior.size() + boundary.size();
+    this.starts = new Uint32Array(2 * total);
+    this.ends = new Uint32Array(2 * total);
+    this.inside = new Uint8Array(total);
+
+    // Merge the two sorted unions, joining the ranges that follow each other
+    // with the same classification.
+    let i = 0;
+    let b = 0;
+    while (i < this.interior.size() || b < boundary.size()) {
+      const fromInterior = b === boundary.size() || (i < this.interior.size() && S2CellIdBits.compare(
+          interiorWords[2 * i + 1], interiorWords[2 * i], boundaryWords[2 * b + 1], boundaryWords[2 * b]) < 0);
+      const words = fromInterior ? interiorWords : boundaryWords;
+      const k = fromInterior ? i++ : b++;
+      S2CellIdBits.rangeMin(words[2 * k + 1], words[2 * k], RANGE, 0);
+      S2CellIdBits.rangeMax(words[2 * k + 1], words[2 * k], RANGE, 2);
+      const last = this.count - 1;
+      if (last >= 0 && this.inside[last] === (fromInterior ? 1 : 0)
+          && S2PreparedRegion.follows(this.ends[2 * last + 1], this.ends[2 * last], RANGE[1], RANGE[0])) {
+        this.ends[2 * last] = RANGE[2];
+        this.ends[2 * last + 1] = RANGE[3];
+        continue;
+      }
+      this.starts[2 * this.count] = RANGE[0];
+      this.starts[2 * this.count + 1] = RANGE[1];
+      this.ends[2 * this.count] = RANGE[2];
+      this.ends[2 * this.count + 1] = RANGE[3];
+      this.inside[this.count] = fromInterior ? 1 : 0;
+      this.count++;
+    }
+  }
+
+  /**
+   * Return true if the leaf id (startHi, startLo) is the one right after (endHi, endLo). Leaf ids are odd, so the
+   * next one is two apart and only endLo = 0xffffffff carries into the high word.
+   */
+  private static follows(endHi:number, endLo:number, startHi:number, startLo:number):boolean {
+    return endLo === 0xffffffff ? startLo === 1 && startHi === endHi + 1 : startHi === endHi && startLo === endLo + 2;
+  }
+
+  public getRegion():S2Region {
+    return this.region;
+  }
+
+  public getInteriorCovering():S2PackedCellUnion {
+    return this.interior;
+  }
+
+  public getExteriorCovering():S2PackedCellUnion {
+    return this.exterior;
+  }
+
+  /** The number of leaf id ranges a lookup searches, after joining the cells that touch. */
+  public numRanges():number {
+    return this.count;
+  }
+
+  /** The point should be unit length. */
+  public contains(p:S2Point):boolean {
+    return this.containsXyz(p.x, p.y, p.z);
+  }
+
+  public containsXyz(x:number, y:number, z:number):boolean {
+    this.points++;
+    S2CellIdBits.fromPoint(x, y, z, LEAF, 0);
+    const lo = LEAF[0];
+    const hi = LEAF[1];
+
+    // Find the last range starting at or before the leaf.
+    const starts = this.starts;
+    let a = 0;
+    let b = this.count;
+    while (a < b) {
+      const m = (a + b) >>> 1;
+      const startHi = starts[2 * m + 1];
+      if (startHi < hi || (startHi === hi && starts[2 * m] <= lo)) {
+        a = m + 1;
+      } else {
+        b = m;
+      }
+    }
+    const r = a - 1;
+    const endHi = r >= 0 ? this.ends[2 * r + 1] : 0;
+    if (r < 0 || endHi < hi || (endHi === hi && this.ends[2 * r] < lo)) {
+      this.exteriorMisses++;
+      return false;
+    }
+    if (this.inside[r] === 1) {
+      this.interiorHits++;
+      return true;
+    }
+    return S2PreparedRegion.regionContains(this.region, x, y, z, hi, lo);
+  }
+
+  /**
+   * Tests the points stored as consecutive (x, y, z) triples, setting out[i] to
+   * 1 if point i is in the region and to 0 otherwise.
+   */
+  public containsPoints(xyz:Float64Array, out = new Uint8Array(xyz.length / 3)):Uint8Array {
+    const count = xyz.length / 3;
+    for (let i = 0; i < count; i++) {
+      out[i] = this.containsXyz(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]) ? 1 : 0;
+    }
+    return out;
+  }
+
+  public getStats():S2PreparedRegionStats {
+    return {
+      points: this.points,
+      interiorHits: this.interiorHits,
+      exteriorMisses: this.exteriorMisses,
+      exactTests: this.points - this.interiorHits - this.exteriorMisses,
+    };
+  }
+
+  /** The fraction of the points answered without the exact test (0 before any point). */
+  public getHitRate():number {
+    return this.points === 0 ? 0 : (this.interiorHits + this.exteriorMisses) / this.points;
+  }
+
+  public resetStats() {
+    this.points = 0;
+    this.interiorHits = 0;
+    this.exteriorMisses = 0;
+  }
+
+  /**
+   * Exact containment of the point (x, y, z), whose leaf cell id is (hi, lo),
+   * for the regions that have a point test; for the others, containment of the
+   * point's leaf cell.
+   */
+  public static regionContains(region:S2Region, x:number, y:number, z:number, hi:number, lo:number):boolean {
+    if (region instanceof S2Cap || region instanceof S2Loop || region instanceof S2Cell) {
+      return region.contains(S2PreparedRegion.point(x, y, z));
+    }
+    if (region instanceof S2LatLngRect) {
+      return region.containsP(S2PreparedRegion.point(x, y, z));
+    }
+    if (region instanceof S2PackedCellUnion) {
+      return region.containsRaw(hi, lo);
+    }
+    if (region instanceof S2CellUnion) {
+      return region.contains(new S2CellId(S2CellIdBits.toLong(hi, lo)));
+    }
+    return region.containsC(CELL.initRaw(hi, lo));
+  }
+
+  private static point(x:number, y:number, z:number):S2Point {
+    POINT.x = x;
+    POINT.y = y;
+    POINT.z = z;
+    return POINT;
+  }
+}
@@ -267,37 +267,37 @@ export class S2Projections {
    */
   public static MAX_SITI = Long.fromInt(1).shiftLeft(S2Projections.MAX_LEVEL + 1)
 
-  public static getUNorm(face: number, u: number): S2Point {
+  public static getUNorm(face: number, u: number, out?: S2Point): S2Point {
     switch (face) {
       case 0:
-        return new S2Point(u, -1, 0);
+        return S2Projections.point(u, -1, 0, out);
       case 1:
-        return new S2Point(1, u, 0);
+        return S2Projections.point(1, u, 0, out);
       case 2:
-        return new S2Point(1, 0, u);
+        return S2Projections.point(1, 0, u, out);
       case 3:
-        return new S2Point(-u, 0, 1);
+        return S2Projections.point(-u, 0, 1, out);
       case 4:
-        return new S2Point(0, -u, 1);
+        return S2Projections.point(0, -u, 1, out);
       default:
-        return new S2Point(0, -1, -u);
+        return S2Projections.point(0, -1, -u, out);
     }
   }
 
-  public static getVNorm(face: number, v: number): S2Point {
+  public static getVNorm(face: number, v: number, out?: S2Point): S2Point {
     switch (face) {
       case 0:
-        return new S2Point(-v, 0, 1);
+        return S2Projections.point(-v, 0, 1, out);
       case 1:
-        return new S2Point(0, -v, 1);
+        return S2Projections.point(0, -v, 1, out);
       case 2:
-        return new S2Point(0, -1, -v);
+        return S2Projections.point(0, -1, -v, out);
       case 3:
-        return new S2Point(v, -1, 0);
+        return S2Projections.point(v, -1, 0, out);
       case 4:
-        return new S2Point(1, v, 0);
+        return S2Projections.point(1, v, 0, out);
       default:
-        return new S2Point(1, 0, v);
+        return S2Projections.point(1, 0, v, out);
     }
   }
 
@@ -329,9 +329,21 @@ export class S2Projections {
     return this.faceUvToXyz(face, u, v)
   }
 
-  public static faceUvToXyz(face: number, u: number, v: number): S2Point {
+  /** Convert (face, u, v) to a point, written into "out" when it is given. */
+  public static faceUvToXyz(face: number, u: number, v: number, out?: S2Point): S2Point {
     const t = this.faceToXyzTransform(face)
-    return new S2Point(t.uvToX(u, v), t.uvToY(u, v), t.uvToZ(u, v));
+    return S2Projections.point(t.uvToX(u, v), t.uvToY(u, v), t.uvToZ(u, v), out);
+  }
+
+  /** Return a new point, or set the coordinates of "out" if it is given. */
+  private static point(x: number, y: number, z: number, out: S2Point): S2Point {
+    if (out == null) {
+      return new S2Point(x, y, z);
+    }
+    out.x = x;
+    out.y = y;
+    out.z = z;
+    return out;
   }
 
   public static faceXyzToUv(face: number, p: S2Point): R2Vector {
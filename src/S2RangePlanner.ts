@@ -0,0 +1,239 @@
+import {S2CellIdBits} from "./S2CellIdBits";
+import {S2CellId} from "./S2CellId";
+import {S2CellUnion} from "./S2CellUnion";
+import {S2PackedCellUnion} from "./S2PackedCellUnion";
+import {S2Region} from "./S2Region";
+import {S2RegionCoverer} from "./S2RegionCoverer";
+import {S2Cell} from "./S2Cell";
+
+// Scratch range of the cell being added.
+const RANGE = new Uint32Array(4);
+
+/**
+ * Sorted, disjoint ranges of leaf cell ids, each from a start to an end id
+ * (both included), as computed by {@link S2RangePlanner}. A row keyed by a
+ * leaf cell id is in the planned area iff its key is in one of the ranges.
+ *
+ * Areas are estimated from the number of leaf cells times their average area,
+ * so they are accurate to within the variation of the cell sizes (a factor of
+ * about 1.7) but cheap; they are meant to compare plans, not to measure
+ * regions.
+ */
+export class S2RangePlan {
+
+  constructor(private starts:Uint32Array,
+              private ends:Uint32Array,
+              private count:number,
+              private coveringArea:number,
+              private mergedGapAreas:Float64Array) {
+  }
+
+  public size():number {
+    return this.count;
+  }
+
+  public startId(i:number):S2CellId {
+    return new S2CellId(S2CellIdBits.toLong(this.starts[2 * i + 1], this.starts[2 * i]));
+  }
+
+  public endId(i:number):S2CellId {
+    return new S2CellId(S2CellIdBits.toLong(this.ends[2 * i + 1], this.ends[2 * i]));
+  }
+
+  /** The [lo, hi] words of the first leaf id of each range. This is a view, not a copy. */
+  public getStarts():Uint32Array {
+    return this.starts.subarray(0, 2 * this.count);
+  }
+
+  /** The [lo, hi] words of the last leaf id of each range. This is a view, not a copy. */
+  public getEnds():Uint32Array {
+    return this.ends.subarray(0, 2 * this.count);
+  }
+
+  /** Return true if the leaf cell id (hi, lo) is in one of the ranges. */
+  public containsRaw(hi:number, lo:number):boolean {
+    // Find the last range starting at or before the id.
+    let a = 0;
+    let b = this.count;
+    while (a < b) {
+      const m = (a + b) >>> 1;
+      if (S2CellIdBits.compare(this.starts[2 * m + 1], this.starts[2 * m], hi, lo) <= 0) {
+        a = m + 1;
+      } else {
+        b = m;
+      }
+    }
+    return a > 0 && S2CellIdBits.compare(this.ends[2 * a - 1], this.ends[2 * a - 2], hi, lo) >= 0;
+  }
+
+  public contains(leaf:S2CellId):boolean {
+    return this.containsRaw(leaf.id.high >>> 0, leaf.id.low >>> 0);
+  }
+
+  /** The area of the covering the ranges were planned from. */
+  public getCoveringArea():number {
+    return this.coveringArea;
+  }
+
+  /** The area of the gaps merged into the ranges, i.e. the area scanned in excess of the covering. */
+  public getExtraArea():number {
+    let area = 0;
+    for (let i = 0; i < this.mergedGapAreas.length; i++) {
+      area += this.mergedGapAreas[i];
+    }
+    return area;
+  }
+
+  /**
+   * The area admitted by each merge, in the order of the merged gaps along
+   * the curve. Gaps between cells that touch are not merges and not listed.
+   */
+  public getMergedGapAreas():Float64Array {
+    return this.mergedGapAreas;
+  }
+}
+
+/**
+ * Plans the range scans of a query over rows keyed by leaf cell id in an
+ * ordered store. The region is covered by an {@link S2RegionCoverer}, each
+ * covering cell becomes the range [rangeMin(), rangeMax()] and consecutive
+ * ranges are joined: always when the cells touch, and also across the gaps
+ * of at most {@link setMaxGapArea} and then across the smallest remaining
+ * gaps until at most {@link setMaxRanges} ranges are left.
+ *
+ * Merging gaps trades rows outside the covering (false positives, to be
+ * filtered) for fewer round trips to the store. Merging the smallest gaps
+ * first gives the least extra area for a given number of ranges; the plan
+ * reports how much each merge admitted.
+ */
+export class S2RangePlanner {
+
+  public static DEFAULT_MAX_RANGES = 16;
+
+  private maxRanges = S2RangePlanner.DEFAULT_MAX_RANGES;
+  private maxGapArea = 0;
+
+  /** The coverer computes the coverings of the regions given to {@link plan}. */
+  constructor(private coverer:S2RegionCoverer = new S2RegionCoverer()) {
+  }
+
+  public getCoverer():S2RegionCoverer {
+    return this.coverer;
+  }
+
+  /**
+   * The maximum number of ranges of a plan (at least 1). Pass
+   * Number.MAX_SAFE_INTEGER to only merge the gaps below the max gap area.
+   */
+  public setMaxRanges(maxRanges:number):S2RangePlanner {
+    this.maxRanges = Math.max(1, maxRanges);
+    return this;
+  }
+
+  public getMaxRanges():number {
+    return this.maxRanges;
+  }
+
+  /**
+   * Gaps of at most this area (in steradians, see S2Cell.averageArea) are
+   * always merged, even if the plan has fewer ranges than the maximum.
+   */
+  public setMaxGapArea(maxGapArea:number):S2RangePlanner {
+    this.maxGapArea = maxGapArea;
+    return this;
+  }
+
+  public getMaxGapArea():number {
+    return this.maxGapArea;
+  }
+
+  public plan(region:S2Region):S2RangePlan {
+    return this.planCovering(S2PackedCellUnion.fromCellUnion(this.coverer.getCoveringUnion(region)));
+  }
+
+  /** Plans the ranges of a normalized covering computed elsewhere. */
+  public planCovering(covering:S2CellUnion|S2PackedCellUnion):S2RangePlan {
+    const packed = covering instanceof S2PackedCellUnion ? covering : S2PackedCellUnion.fromCellUnion(covering);
+    const words = packed.getWords();
+    const leafArea = S2Cell.averageArea(S2CellId.MAX_LEVEL);
+
+    // The ranges of the cells, joined when they touch, and the number of leaf
+    // cells in the gap before each range but the first.
+    const starts = new Uint32Array(words.length);
+    const ends = new Uint32Array(words.length);
+    const gaps = new Float64Array(packed.size());
+    let count = 0;
+    let leaves = 0;
+    for (let k = 0; k < packed.size(); k++) {
+      const hi = words[2 * k + 1];
+      const lo = words[2 * k];
+      S2CellIdBits.rangeMin(hi, lo, RANGE, 0);
+      S2CellIdBits.rangeMax(hi, lo, RANGE, 2);
+      leaves += S2RangePlanner.leavesBetween(RANGE[1], RANGE[0], RANGE[3], RANGE[2]) + 1;
+      const gap = count === 0 ? 0 : S2RangePlanner.leavesBetween(ends[2 * count - 1], ends[2 * count - 2], RANGE[1], RANGE[0]) - 1;
+      if (count > 0 && gap === 0) {
+        ends[2 * count - 2] = RANGE[2];
+        ends[2 * count - 1] = RANGE[3];
+        continue;
+      }
+      starts[2 * count] = RANGE[0];
+      starts[2 * count + 1] = RANGE[1];
+      ends[2 * count] = RANGE[2];
+      ends[2 * count + 1] = RANGE[3];
+      gaps[count] = gap;
+      count++;
+    }
+
+    // Merge the gaps up to the tolerance, then the smallest ones down to the
+    // maximum number of ranges. gaps[r] is the gap before range r.
+    const maxGapLeaves = this.maxGapArea / leafArea;
+    const merge = new Uint8Array(count);
+    let ranges = count;
+    for (let r = 1; r < count; r++) {
+      if (gaps[r] <= maxGapLeaves) {
+        merge[r] = 1;
+        ranges--;
+      }
+    }
+    if (ranges > this.maxRanges) {
+      const order:number[] = [];
+      for (let r = 1; r < count; r++) {
+        if (merge[r] === 0) {
+          order.push(r);
+        }
+      }
+      // Stable, so equal gaps are merged from the start of the curve.
+      order.sort((a, b) => gaps[a] - gaps[b] || a - b);
+      for (let i = 0; i < ranges - this.maxRanges; i++) {
+        merge[order[i]] = 1;
+      }
+      ranges = this.maxRanges;
+    }
+
+    let merged = 0;
+    const mergedGapAreas = new Float64Array(count - ranges);
+    let out = 0;
+    for (let r = 0; r < count; r++) {
+      if (r > 0 && merge[r] === 1) {
+        mergedGapAreas[merged++] = gaps[r] * leafArea;
+        ends[2 * out - 2] = ends[2 * r];
+        ends[2 * out - 1] = ends[2 * r + 1];
+      } else {
+        starts[2 * out] = starts[2 * r];
+        starts[2 * out + 1] = starts[2 * r + 1];
+        ends[2 * out] = ends[2 * r];
+        ends[2 * out + 1] = ends[2 * r + 1];
+        out++;
+      }
+    }
+    return new S2RangePlan(starts, ends, out, leaves * leafArea, mergedGapAreas);
+  }
+
+  /**
+   * The number of leaf cells from the leaf a to the leaf b, as a double (exact
+   * up to 2^53). Leaf ids are odd and two apart.
+   */
+  private static leavesBetween(aHi:number, aLo:number, bHi:number, bLo:number):number {
+    return ((bHi - aHi) * 4294967296 + (bLo - aLo)) / 2;
+  }
+}
@@ -0,0 +1,142 @@
+import {S2Region} from "./S2Region";
+import {S2Cap} from "./S2Cap";
+import {S2Cell} from "./S2Cell";
+import {S2CellId} from "./S2CellId";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {S2LatLngRect} from "./S2LatLngRect";
+import {S2Loop} from "./S2Loop";
+import {S2Point} from "./S2Point";
+import {S1ChordAngle} from "./S1ChordAngle";
+import {R1Interval} from "./R1Interval";
+import {S1Interval} from "./S1Interval";
+
+/**
+ * Compact serialization of regions into a Float64Array, e.g. to hand them to
+ * a worker thread or to store them next to their coverings. Each region is a
+ * record starting with its type:
+ *
+ * <pre>
+ * CAP   [1, axis.x, axis.y, axis.z, radius.length2]
+ * RECT  [2, lat.lo, lat.hi, lng.lo, lng.hi]
+ * CELL  [3, id hi word, id lo word]
+ * LOOP  [4, n, x0, y0, z0, ... x(n-1), y(n-1), z(n-1)]
+ * </pre>
+ *
+ * Every value is stored exactly, so decoding gives back the same geometry.
+ */
+export class S2RegionCodec {
+
+  public static CAP = 1;
+  public static RECT = 2;
+  public static CELL = 3;
+  public static LOOP = 4;
+
+  public static encode(regions:S2Region[]):Float64Array {
+    let length = 0;
+    for (const region of regions) {
+      length += S2RegionCodec.encodedLength(region);
+    }
+    const data = new Float64Array(length);
+    let offset = 0;
+    for (const region of regions) {
+      offset = S2RegionCodec.write(region, data, offset);
+    }
+    return data;
+  }
+
+  public static decode(data:Float64Array):S2Region[] {
+    const regions:S2Region[] = [];
+    for (let offset = 0; offset < data.length; offset = S2RegionCodec.next(data, offset)) {
+      regions.push(S2RegionCodec.read(data, offset));
+    }
+    return regions;
+  }
+
+  /** Returns the offset of the record following the one at the given offset. */
+  public static next(data:Float64Array, offset:number):number {
+    switch (data[offset]) {
+      case S2RegionCodec.CAP:
+        return offset + 5;
+      case S2RegionCodec.RECT:
+        return offset + 5;
+      case S2RegionCodec.CELL:
+        return offset + 3;
+      case S2RegionCodec.LOOP:
+        return offset + 2 + 3 * data[offset + 1];
+      default:
+        throw new Error(`Unknown region type ${data[offset]} at ${offset}`);
+    }
+  }
+
+  /** Decodes the region whose record starts at the given offset. */
+  public static read(data:Float64Array, offset:number):S2Region {
+    switch (data[offset]) {
+      case S2RegionCodec.CAP:
+        return new S2Cap(new S2Point(data[offset + 1], data[offset + 2], data[offset + 3]), new S1ChordAngle(data[offset + 4]));
+      case S2RegionCodec.RECT:
+        return new S2LatLngRect(
+            new R1Interval(data[offset + 1], data[offset + 2]), new S1Interval(data[offset + 3], data[offset + 4], true));
+      case S2RegionCodec.CELL:
+        return new S2Cell(new S2CellId(S2CellIdBits.toLong(data[offset + 1], data[offset + 2])));
+      case S2RegionCodec.LOOP: {
+        const vertices:S2Point[] = [];
+        for (let k = offset + 2; k < offset + 2 + 3 * data[offset + 1]; k += 3) {
+          vertices.push(new S2Point(data[k], data[k + 1], data[k + 2]));
+        }
+        return new S2Loop(vertices);
+      }
+      default:
+        throw new Error(`Unknown region type ${data[offset]} at ${offset}`);
+    }
+  }
+
+  private static encodedLength(region:S2Region):number {
+    if (region instanceof S2Cap || region instanceof S2LatLngRect) {
+      return 5;
+    }
+    if (region instanceof S2Cell) {
+      return 3;
+    }
+    if (region instanceof S2Loop) {
+      return 2 + 3 * region.numVertices();
+    }
+    throw new Error(`Cannot encode ${region}: only S2Cap, S2LatLngRect, S2Cell and S2Loop are supported`);
+  }
+
+  private static write(region:S2Region, data:Float64Array, offset:number):number {
+    if (region instanceof S2Cap) {
+      data[offset] = S2RegionCodec.CAP;
+      data[offset + 1] = region.axis.x;
+      data[offset + 2] = region.axis.y;
+      data[offset + 3] = region.axis.z;
+      data[offset + 4] = region.radius.getLength2();
+      return offset + 5;
+    }
+    if (region instanceof S2LatLngRect) {
+      data[offset] = S2RegionCodec.RECT;
+      data[offset + 1] = region.lat.lo;
+      data[offset + 2] = region.lat.hi;
+      data[offset + 3] = region.lng.lo;
+      data[offset + 4] = region.lng.hi;
+      return offset + 5;
+    }
+    if (region instanceof S2Cell) {
+      const id = region.id.id;
+      data[offset] = S2RegionCodec.CELL;
+      data[offset + 1] = id.high >>> 0;
+      data[offset + 2] = id.low >>> 0;
+      return offset + 3;
+    }
+    const loop = region as S2Loop;
+    data[offset] = S2RegionCodec.LOOP;
+    data[offset + 1] = loop.numVertices();
+    offset += 2;
+    for (let i = 0; i < loop.numVertices(); i++) {
+      const v = loop.vertex(i);
+      data[offset++] = v.x;
+      data[offset++] = v.y;
+      data[offset++] = v.z;
+    }
+    return offset;
+  }
+}
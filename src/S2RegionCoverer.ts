@@ -17,9 +17,30 @@
 import {S2Cell} from "./S2Cell";
 import {S2Region} from "./S2Region";
 import {S2CellId} from "./S2CellId";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {S2CellIdSet} from "./S2CellIdSet";
 import {S2CellUnion} from "./S2CellUnion";
 import {S2Projections} from "./S2Projections";
 import { S2Point } from "./S2Point";
+import {Platform} from "./Platform";
+import {S2CoveringObserver, S2CoveringStats} from "./S2CoveringStats";
+
+/**
+ * Limits on the work done by {@link S2RegionCoverer.getCoveringStream}. All of
+ * them are optional.
+ */
+export interface S2CoveringBudget {
+  /** Stop refining once the coverer has worked for this many milliseconds. */
+  maxTimeMs?: number;
+  /** Stop refining once this many candidate cells have been created. */
+  maxCandidates?: number;
+  /**
+   * Return control to the event loop after this many milliseconds of work
+   * (default 2).
+   */
+  sliceMs?: number;
+}
+
 /**
  * An S2RegionCoverer is a class that allows arbitrary regions to be
  * approximated as unions of cells (S2CellUnion). This is useful for
@@ -50,6 +71,10 @@ import { S2Point } from "./S2Point";
  *  This class is thread-unsafe. Simultaneous calls to any of the getCovering
  * methods will conflict and produce unpredictable results.
  *
+ *  The cells handed to the region's mayIntersectC and containsC are scratch
+ * cells that are reinitialized for the next test, so regions must not keep
+ * references to them (use S2Cell.clone if needed).
+ *
  */
 export class S2RegionCoverer {
 
@@ -60,7 +85,8 @@ export class S2RegionCoverer {
    */
   public static DEFAULT_MAX_CELLS = 8;
 
-  private static FACE_CELLS:S2Cell[] = [0, 1, 2, 3, 4, 5].map(face => S2Cell.fromFace(face));
+  // The six face cells, built on the first covering rather than on import.
+  private static faceCells:S2Cell[] = null;
 
 
   private minLevel:number;
@@ -74,6 +100,10 @@ export class S2RegionCoverer {
 // Counter of number of candidates created, for performance evaluation.
   private candidatesCreatedCounter:number;
 
+  // Scratch children for expandChildren, one set of four per remaining level.
+  // Only the cells that become candidates are copied.
+  private childCells:S2Cell[][] = [];
+
   /**
    * We save a temporary copy of the pointer passed to GetCovering() in order to
    * avoid passing this parameter around internally. It is only used (and only
@@ -93,7 +123,14 @@ export class S2RegionCoverer {
    * queue entries since for some reason priority_queue<> uses a deque by
    * default.
    */
-  private candidateQueue:PriorityQueue<QueueEntry>;
+  private candidateQueue:PriorityQueue<Candidate>;
+
+  // Notified of every covering, see setObserver.
+  private observer:S2CoveringObserver = null;
+
+  // The stats of the covering in progress, only collected while an observer is set.
+  private stats:S2CoveringStats = null;
+  private statsStart:number;
 
   /**
    * Default constructor, sets all fields to default values.
@@ -105,7 +142,7 @@ export class S2RegionCoverer {
     this.maxCells = S2RegionCoverer.DEFAULT_MAX_CELLS;
     this.region = null;
     this.result = [];
-    this.candidateQueue = new PriorityQueue<QueueEntry>();
+    this.candidateQueue = new PriorityQueue<Candidate>();
   }
 
 // Set the minimum and maximum cell level to be used. The default is to use
@@ -188,6 +225,20 @@ export class S2RegionCoverer {
     return this;
   }
 
+  /**
+   * Sets an observer notified with the {@link S2CoveringStats} of every
+   * covering computed from now on, including the streaming ones, or null to
+   * stop collecting them. Without an observer no stats are collected.
+   */
+  public setObserver(observer:S2CoveringObserver):S2RegionCoverer {
+    this.observer = observer;
+    return this;
+  }
+
+  public getObserver():S2CoveringObserver {
+    return this.observer;
+  }
+
   public getMinLevel(): number {
     return this.minLevel;
   }
@@ -263,20 +314,77 @@ export class S2RegionCoverer {
     return covering;
   }
 
+  /**
+   * Computes the same covering as {@link getCoveringUnion} without blocking
+   * the event loop for long: the work is split into slices of budget.sliceMs
+   * milliseconds, and the cell ids are yielded as soon as they are final. They
+   * are disjoint but not normalized.
+   *
+   * Once budget.maxTimeMs or budget.maxCandidates is exceeded the refinement
+   * stops and the candidates still pending are yielded as they are, so the
+   * cells always cover the region: the covering is only coarser, and may use
+   * cells above min_level(). The generator returns true if the covering was
+   * completed, false if it was cut short by the budget.
+   *
+   * The covering runs on a copy of this coverer, which can be used or
+   * reconfigured while the stream is consumed.
+   */
+  public getCoveringStream(region:S2Region, budget:S2CoveringBudget = {}):AsyncGenerator<S2CellId, boolean, undefined> {
+    return this.copy().stream(region, false, budget);
+  }
+
+  /**
+   * Streaming version of {@link getInteriorCoveringUnion}. When the budget
+   * runs out the candidates still pending are dropped, so the cells yielded
+   * are always contained by the region.
+   */
+  public getInteriorCoveringStream(region:S2Region, budget:S2CoveringBudget = {}):AsyncGenerator<S2CellId, boolean, undefined> {
+    return this.copy().stream(region, true, budget);
+  }
+
+  /** Collects {@link getCoveringStream} into a normalized cell union. */
+  public async getCoveringUnionAsync(region:S2Region, budget:S2CoveringBudget = {}):Promise<S2CellUnion> {
+    return S2RegionCoverer.collect(this.getCoveringStream(region, budget));
+  }
+
+  /** Collects {@link getInteriorCoveringStream} into a normalized cell union. */
+  public async getInteriorCoveringUnionAsync(region:S2Region, budget:S2CoveringBudget = {}):Promise<S2CellUnion> {
+    return S2RegionCoverer.collect(this.getInteriorCoveringStream(region, budget));
+  }
+
   /**
    * Given a connected region and a starting point, return a set of cells at the given level that
    * cover the region.
    */
   public static getSimpleCovering(region: S2Region, start: S2Point, level: number): S2CellId[] {
-    return this.floodFill(region, S2CellId.fromPoint(start).parentL(level));
+    const words = this.getSimpleCoveringPacked(region, start, level);
+    const output: S2CellId[] = [];
+    for (let k = 0; k < words.length; k += 2) {
+      output.push(new S2CellId(S2CellIdBits.toLong(words[k + 1], words[k])));
+    }
+    return output;
+  }
+
+  /**
+   * Same as {@link getSimpleCovering} but returns the cell ids packed as [lo, hi] word pairs.
+   */
+  public static getSimpleCoveringPacked(region: S2Region, start: S2Point, level: number): Uint32Array {
+    const id = new Uint32Array(2);
+    S2CellIdBits.fromPoint(start.x, start.y, start.z, id, 0);
+    S2CellIdBits.parent(id[1], id[0], level, id, 0);
+    return this.floodFill(region, id[1], id[0]);
   }
 
   /**
    * If the cell intersects the given region, return a new candidate with no
    * children, otherwise return null. Also marks the candidate as "terminal" if
-   * it should not be expanded further.
+   * it should not be expanded further. The cell may be a scratch cell: the
+   * candidate keeps a copy of it.
    */
   private newCandidate(cell:S2Cell):Candidate {
+    if (this.stats !== null) {
+      this.stats.mayIntersectCalls++;
+    }
     if (!this.region.mayIntersectC(cell)) {
       return null;
     }
@@ -284,33 +392,38 @@ export class S2RegionCoverer {
     let isTerminal = false;
     if (cell.level >= this.minLevel) {
       if (this.interiorCovering) {
-        if (this.region.containsC(cell)) {
+        if (this.regionContains(cell)) {
           isTerminal = true;
         } else if (cell.level + this.levelMod > this.maxLevel) {
           return null;
         }
       } else {
-        if (cell.level + this.levelMod > this.maxLevel || this.region.containsC(cell)) {
+        if (cell.level + this.levelMod > this.maxLevel || this.regionContains(cell)) {
           isTerminal = true;
         }
       }
     }
 
     const candidate = new Candidate();
-    candidate.cell = cell;
+    candidate.cell = cell.clone();
     candidate.isTerminal = isTerminal;
     candidate.numChildren = 0;
     if (!isTerminal) {
+      // Filled by expandChildren, with up to 1 << maxChildrenShift() entries.
       candidate.children = [];
-      const numOfChildren = 1 << this.maxChildrenShift();
-      for (let i = 0; i < numOfChildren; i++) {
-        candidate.children.push(new Candidate())
-      }
     }
     this.candidatesCreatedCounter++;
     return candidate;
   }
 
+  /** region.containsC(cell), counted in the stats if there is an observer. */
+  private regionContains(cell:S2Cell):boolean {
+    if (this.stats !== null) {
+      this.stats.containsCalls++;
+    }
+    return this.region.containsC(cell);
+  }
+
   /** Return the log base 2 of the maximum number of children of a candidate. */
   private maxChildrenShift():number {
     return 2 * this.levelMod;
@@ -336,6 +449,10 @@ export class S2RegionCoverer {
     // we don't skip over it.
     const numLevels = (candidate.cell.level < this.minLevel) ? 1 : this.levelMod;
 
+    if (this.stats !== null) {
+      const level = candidate.cell.level;
+      this.stats.expandedPerLevel[level] = (this.stats.expandedPerLevel[level] || 0) + 1;
+    }
     const numTerminals = this.expandChildren(candidate, candidate.cell, numLevels);
 
     if (candidate.numChildren == 0) {
@@ -359,7 +476,7 @@ export class S2RegionCoverer {
       const priority = -((((candidate.cell.level << this.maxChildrenShift()) + candidate.numChildren)
       << this.maxChildrenShift()) + numTerminals);
 
-      this.candidateQueue.add(new QueueEntry(priority, candidate));
+      this.candidateQueue.add(priority, candidate);
       // logger.info("Push: " + candidate.cell.id() + " (" + priority + ") ");
     }
   }
@@ -372,11 +489,19 @@ export class S2RegionCoverer {
   private expandChildren(candidate:Candidate, cell:S2Cell, numLevels:number):number {
     numLevels--;
 
-    const childCells = cell.subdivide();
+    let childCells = this.childCells[numLevels];
+    if (childCells === undefined) {
+      childCells = [new S2Cell(), new S2Cell(), new S2Cell(), new S2Cell()];
+      this.childCells[numLevels] = childCells;
+    }
+    cell.subdivideInto(childCells);
 
     let numTerminals = 0;
     for (let i = 0; i < 4; ++i) {
       if (numLevels > 0) {
+        if (this.stats !== null) {
+          this.stats.mayIntersectCalls++;
+        }
         if (this.region.mayIntersectC(childCells[i])) {
           numTerminals += this.expandChildren(candidate, childCells[i], numLevels);
         }
@@ -429,8 +554,11 @@ export class S2RegionCoverer {
       }
     }
     // Default: start with all six cube faces.
+    if (S2RegionCoverer.faceCells === null) {
+      S2RegionCoverer.faceCells = [0, 1, 2, 3, 4, 5].map(face => S2Cell.fromFace(face));
+    }
     for (let face = 0; face < 6; ++face) {
-      this.addCandidate(this.newCandidate(S2RegionCoverer.FACE_CELLS[face]));
+      this.addCandidate(this.newCandidate(S2RegionCoverer.faceCells[face]));
     }
   }
 
@@ -450,7 +578,14 @@ export class S2RegionCoverer {
     // first), then by the number of intersecting children they have (fewest
     // children first), and then by the number of fully contained children
     // (fewest children first).
+    this.beginCovering(region);
+    while (this.refineCovering()) {
+      // Keep refining.
+    }
+    this.endCovering(false);
+  }
 
+  private beginCovering(region:S2Region) {
     if (!(this.candidateQueue.size() == 0 && this.result.length == 0)) {
       throw new Error('preconditions are not satisfied')
     }
@@ -458,62 +593,197 @@ export class S2RegionCoverer {
 
     this.region = region;
     this.candidatesCreatedCounter = 0;
+    if (this.observer !== null) {
+      this.stats = {
+        interior: this.interiorCovering, candidatesCreated: 0, expandedPerLevel: [], maxQueueSize: 0,
+        mayIntersectCalls: 0, containsCalls: 0, resultCells: 0, truncated: false, timeMs: 0,
+      };
+      this.statsStart = Platform.nowMs();
+    }
 
     this.getInitialCandidates();
+  }
 
-    while (this.candidateQueue.size() !== 0 && (!this.interiorCovering || this.result.length < this.maxCells)) {
-      const candidate = this.candidateQueue.poll().candidate;
-      if (this.interiorCovering || candidate.cell.level < this.minLevel || candidate.numChildren == 1
-          || this.result.length + this.candidateQueue.size() + candidate.numChildren <= this.maxCells) {
-        // Expand this candidate into its children.
-        for (let i = 0; i < candidate.numChildren; ++i) {
-          if (!this.interiorCovering || this.result.length < this.maxCells) {
-            this.addCandidate(candidate.children[i]);
-          }
+  /**
+   * Expands (or adds to the result) the best candidate of the queue. Returns
+   * false, doing nothing, once the covering is complete.
+   */
+  private refineCovering():boolean {
+    if (this.candidateQueue.size() === 0 || (this.interiorCovering && this.result.length >= this.maxCells)) {
+      return false;
+    }
+    if (this.stats !== null) {
+      this.stats.maxQueueSize = Math.max(this.stats.maxQueueSize, this.candidateQueue.size());
+    }
+    const candidate = this.candidateQueue.poll();
+    if (this.interiorCovering || candidate.cell.level < this.minLevel || candidate.numChildren == 1
+        || this.result.length + this.candidateQueue.size() + candidate.numChildren <= this.maxCells) {
+      // Expand this candidate into its children.
+      for (let i = 0; i < candidate.numChildren; ++i) {
+        if (!this.interiorCovering || this.result.length < this.maxCells) {
+          this.addCandidate(candidate.children[i]);
         }
-      } else {
-        candidate.isTerminal = true;
-        this.addCandidate(candidate);
       }
+    } else {
+      candidate.isTerminal = true;
+      this.addCandidate(candidate);
     }
+    return true;
+  }
 
+  /**
+   * Ends the covering. When truncating, the candidates still in the queue are
+   * added to the result as they are, since they are disjoint from it and each
+   * intersects the region, except for interior coverings where they are
+   * dropped. The time spent can be given by callers that do not run the
+   * covering in one go.
+   */
+  private endCovering(truncate:boolean, timeMs?:number) {
+    if (truncate && !this.interiorCovering) {
+      while (this.candidateQueue.size() !== 0) {
+        this.result.push(this.candidateQueue.poll().cell.id);
+      }
+    }
     this.candidateQueue.clear();
     this.region = null;
+    if (this.stats !== null) {
+      const stats = this.stats;
+      this.stats = null;
+      stats.candidatesCreated = this.candidatesCreatedCounter;
+      stats.resultCells = this.result.length;
+      stats.truncated = truncate;
+      stats.timeMs = timeMs === undefined ? Platform.nowMs() - this.statsStart : timeMs;
+      if (this.observer.onCovering !== undefined) {
+        this.observer.onCovering(stats);
+      }
+    }
+  }
+
+  private async *stream(region:S2Region, interior:boolean, budget:S2CoveringBudget):AsyncGenerator<S2CellId, boolean, undefined> {
+    const maxTimeMs = budget.maxTimeMs === undefined ? Infinity : budget.maxTimeMs;
+    const maxCandidates = budget.maxCandidates === undefined ? Infinity : budget.maxCandidates;
+    const sliceMs = budget.sliceMs === undefined ? 2 : budget.sliceMs;
+
+    // Only the time spent covering counts, not the time the consumer takes
+    // between two cells.
+    let spent = 0;
+    let slice = 0;
+    let emitted = 0;
+    let complete = true;
+    let start = Platform.nowMs();
+    this.interiorCovering = interior;
+    this.beginCovering(region);
+    while (this.refineCovering()) {
+      const elapsed = Platform.nowMs() - start;
+      spent += elapsed;
+      slice += elapsed;
+      if (spent >= maxTimeMs || this.candidatesCreatedCounter >= maxCandidates) {
+        complete = false;
+        break;
+      }
+      while (emitted < this.result.length) {
+        yield this.result[emitted++];
+      }
+      if (slice >= sliceMs) {
+        await yieldToEventLoop();
+        slice = 0;
+      }
+      start = Platform.nowMs();
+    }
+    this.endCovering(!complete, spent);
+    while (emitted < this.result.length) {
+      yield this.result[emitted++];
+    }
+    this.result = [];
+    return complete;
+  }
+
+  /** Returns a new coverer with the same parameters and observer. */
+  private copy():S2RegionCoverer {
+    return new S2RegionCoverer()
+        .setMinLevel(this.minLevel)
+        .setMaxLevel(this.maxLevel)
+        .setLevelMod(this.levelMod)
+        .setMaxCells(this.maxCells)
+        .setObserver(this.observer);
+  }
+
+  private static async collect(cells:AsyncGenerator<S2CellId, boolean, undefined>):Promise<S2CellUnion> {
+    const ids:S2CellId[] = [];
+    for await (const id of cells) {
+      ids.push(id);
+    }
+    const union = new S2CellUnion();
+    union.initSwap(ids);
+    return union;
   }
 
   /**
    * Given a region and a starting cell, return the set of all the edge-connected cells at the same
-   * level that intersect "region". The output cells are returned in arbitrary order.
+   * level that intersect "region". The output cells are returned in arbitrary order, packed as
+   * [lo, hi] word pairs (see {@link S2CellIdBits}).
+   *
+   * Visited cells are tracked by their raw 64-bit id, neighbors are computed in place and the
+   * region is handed one scratch S2Cell reinitialized for each cell, so nothing is allocated per cell.
    */
-  private static floodFill(region: S2Region, start: S2CellId): S2CellId[] {
-    const all = new Set<string>();
-    const frontier: S2CellId[] = [];
-    const output: S2CellId[] = [];
-
-    all.add(start.toToken());
-    frontier.push(start);
-    while (frontier.length !== 0) {
-      const id = frontier.pop();
-      if (!region.mayIntersectC(new S2Cell(id))) {
+  private static floodFill(region: S2Region, startHi: number, startLo: number): Uint32Array {
+    const all = new S2CellIdSet();
+    let frontier = new Uint32Array(64);
+    let frontierSize = 0;
+    let output = new Uint32Array(64);
+    let outputSize = 0;
+    const neighbors = new Uint32Array(8);
+    const cell = new S2Cell();
+
+    all.add(startHi, startLo);
+    frontier[0] = startLo;
+    frontier[1] = startHi;
+    frontierSize = 2;
+    while (frontierSize !== 0) {
+      frontierSize -= 2;
+      const lo = frontier[frontierSize];
+      const hi = frontier[frontierSize + 1];
+      if (!region.mayIntersectC(cell.initRaw(hi, lo))) {
         continue;
       }
-      output.push(id);
+      if (outputSize === output.length) {
+        output = S2RegionCoverer.grow(output);
+      }
+      output[outputSize] = lo;
+      output[outputSize + 1] = hi;
+      outputSize += 2;
 
-      const neighbors: S2CellId[] = id.getEdgeNeighbors();
+      S2CellIdBits.edgeNeighbors(hi, lo, neighbors, 0);
       for (let edge = 0; edge < 4; ++edge) {
-        const nbr = neighbors[edge];
-        if (!all.has(nbr.toToken())) {
-          frontier.push(nbr);
-          all.add(nbr.toToken());
+        const nLo = neighbors[2 * edge];
+        const nHi = neighbors[2 * edge + 1];
+        if (all.add(nHi, nLo)) {
+          if (frontierSize === frontier.length) {
+            frontier = S2RegionCoverer.grow(frontier);
+          }
+          frontier[frontierSize] = nLo;
+          frontier[frontierSize + 1] = nHi;
+          frontierSize += 2;
         }
       }
     }
 
-    return output;
+    return output.subarray(0, outputSize);
+  }
+
+  private static grow(words: Uint32Array): Uint32Array {
+    const grown = new Uint32Array(2 * words.length);
+    grown.set(words);
+    return grown;
   }
 }
 
 
+/** Returns control to the event loop: setImmediate in node, a zero timeout elsewhere. */
+function yieldToEventLoop():Promise<void> {
+  return new Promise<void>(resolve => typeof setImmediate === 'function' ? setImmediate(resolve) : setTimeout(resolve, 0));
+}
+
 class Candidate {
   public cell:S2Cell;
   public isTerminal:boolean; // Cell should not be expanded further.
@@ -526,23 +796,44 @@ class Candidate {
   }
 }
 
-interface Comparable<T> {
-  compare(other:T):number;
-}
-class PriorityQueue<T extends Comparable<T>> {
-  public items:T[];
+/**
+ * Array-backed binary max-heap keyed by a numeric priority. Items with the same
+ * priority are returned in insertion order, so that the covering does not
+ * depend on how the heap happens to break ties.
+ */
+class PriorityQueue<T> {
+  private priorities:number[];
+  private sequences:number[];
+  private items:T[];
+  private counter:number;
 
   constructor() {
     this.clear();
   }
 
-  add(item:T) {
+  add(priority:number, item:T) {
+    let pos = this.items.length;
+    const sequence = this.counter++;
+    this.priorities.push(priority);
+    this.sequences.push(sequence);
     this.items.push(item);
-    this.items.sort((a, b) => a.compare(b));
+    // Sift up.
+    while (pos > 0) {
+      const parent = (pos - 1) >> 1;
+      if (!this.before(priority, sequence, this.priorities[parent], this.sequences[parent])) {
+        break;
+      }
+      this.move(parent, pos);
+      pos = parent;
+    }
+    this.set(pos, priority, sequence, item);
   }
 
   clear() {
+    this.priorities = [];
+    this.sequences = [];
     this.items = [];
+    this.counter = 0;
   }
 
   size() {
@@ -550,16 +841,52 @@ class PriorityQueue<T extends Comparable<T>> {
   }
 
   poll():T {
-    return this.items.splice(0, 1)[0];
+    const size = this.items.length;
+    if (size == 0) {
+      return undefined;
+    }
+    const top = this.items[0];
+    const priority = this.priorities.pop();
+    const sequence = this.sequences.pop();
+    const item = this.items.pop();
+    const n = size - 1;
+    if (n > 0) {
+      // Sift the last element down from the root.
+      let pos = 0;
+      for (;;) {
+        let child = 2 * pos + 1;
+        if (child >= n) {
+          break;
+        }
+        if (child + 1 < n && this.before(
+            this.priorities[child + 1], this.sequences[child + 1], this.priorities[child], this.sequences[child])) {
+          child++;
+        }
+        if (!this.before(this.priorities[child], this.sequences[child], priority, sequence)) {
+          break;
+        }
+        this.move(child, pos);
+        pos = child;
+      }
+      this.set(pos, priority, sequence, item);
+    }
+    return top;
   }
-}
 
-class QueueEntry implements Comparable<QueueEntry> {
-  compare(other:QueueEntry):number {
-    return this.id < other.id ? 1 : (this.id > other.id ? -1 : 0);
+  /** True if the entry (p1, s1) must be polled before (p2, s2). */
+  private before(p1:number, s1:number, p2:number, s2:number):boolean {
+    return p1 > p2 || (p1 == p2 && s1 < s2);
   }
 
-  public constructor(public id:number, public candidate:Candidate) {
+  private move(from:number, to:number) {
+    this.priorities[to] = this.priorities[from];
+    this.sequences[to] = this.sequences[from];
+    this.items[to] = this.items[from];
+  }
 
+  private set(pos:number, priority:number, sequence:number, item:T) {
+    this.priorities[pos] = priority;
+    this.sequences[pos] = sequence;
+    this.items[pos] = item;
   }
 }
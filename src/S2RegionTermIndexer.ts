@@ -0,0 +1,254 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import {S2Region} from "./S2Region";
+import {S2RegionCoverer} from "./S2RegionCoverer";
+import {S2CellId} from "./S2CellId";
+import {S2Point} from "./S2Point";
+
+/**
+ * S2RegionTermIndexer is a helper for indexing and querying geometry with a
+ * key-value store or an inverted index: it converts points and regions into
+ * string terms such that a query region matches an indexed region exactly
+ * when they share a term and their coverings intersect.
+ *
+ * Given a covering, every cell is indexed as a "covering" term and every
+ * ancestor of a cell (down to min_level) as an "ancestor" term. A query cell
+ * then matches an indexed cell containing it through the covering terms of
+ * its ancestors, and an indexed cell it contains through its own ancestor
+ * term. Covering terms are distinguished by a marker character, '$' by
+ * default.
+ *
+ * The coverer parameters are the main knobs:
+ * <ul>
+ * <li>max_cells: more cells give a tighter covering (fewer false positives)
+ * at the price of more terms, both indexed and queried.
+ * <li>min_level, max_level: ancestor terms are generated for every level in
+ * between, so a narrower range means fewer terms per document and query.
+ * <li>level_mod: only every level_mod-th level is used, dividing the number
+ * of ancestor terms by level_mod at the price of looser coverings.
+ * </ul>
+ *
+ * and two more options describe the workload:
+ * <ul>
+ * <li>indexContainsPointsOnly: if only points are indexed no covering terms
+ * are needed, and each query cell becomes a single term.
+ * <li>optimizeForSpace: by default covering cells are also indexed as
+ * ancestor terms so that queries need one term less per cell; set it to
+ * index fewer terms and query more.
+ * </ul>
+ *
+ * Terms can be prefixed (e.g. with a field name) so that several geometry
+ * fields can share the same index.
+ */
+export class S2RegionTermIndexer {
+
+  private indexContainsPointsOnly = false;
+  private optimizeForSpace = false;
+  private marker = '$';
+
+  /**
+   * The coverer provides the covering parameters and computes the coverings.
+   * If none is given, one with max_cells 8 and levels 4 to 16 is used.
+   */
+  constructor(private coverer:S2RegionCoverer = new S2RegionCoverer().setMaxCells(8).setMinLevel(4).setMaxLevel(16)) {
+  }
+
+  public getCoverer():S2RegionCoverer {
+    return this.coverer;
+  }
+
+  /**
+   * Set it if only points will be indexed. Any region can still be queried,
+   * with fewer terms.
+   */
+  public setIndexContainsPointsOnly(indexContainsPointsOnly:boolean):S2RegionTermIndexer {
+    this.indexContainsPointsOnly = indexContainsPointsOnly;
+    return this;
+  }
+
+  public getIndexContainsPointsOnly():boolean {
+    return this.indexContainsPointsOnly;
+  }
+
+  /** Set it to index fewer terms, at the price of more terms per query. */
+  public setOptimizeForSpace(optimizeForSpace:boolean):S2RegionTermIndexer {
+    this.optimizeForSpace = optimizeForSpace;
+    return this;
+  }
+
+  public getOptimizeForSpace():boolean {
+    return this.optimizeForSpace;
+  }
+
+  /**
+   * The character marking covering terms. It must not be a hex digit, nor
+   * appear in the prefixes (terms are prefix + [marker] + token).
+   */
+  public setMarker(marker:string):S2RegionTermIndexer {
+    if (marker.length !== 1 || /[0-9a-fA-FxX]/.test(marker)) {
+      throw new Error(`Invalid marker '${marker}'`);
+    }
+    this.marker = marker;
+    return this;
+  }
+
+  public getMarker():string {
+    return this.marker;
+  }
+
+  /**
+   * Returns the maximum level actually used, i.e. the largest level not above
+   * max_level that min_level plus a multiple of level_mod reaches.
+   */
+  public trueMaxLevel():number {
+    const c = this.coverer;
+    return c.getMaxLevel() - (c.getMaxLevel() - c.getMinLevel()) % c.getLevelMod();
+  }
+
+  /** Returns the terms to index a point with. */
+  public getIndexTerms(point:S2Point, prefix?:string):string[];
+
+  /** Returns the terms to index a region with, from its covering. */
+  public getIndexTerms(region:S2Region, prefix?:string):string[];
+
+  public getIndexTerms(pointOrRegion:S2Point|S2Region, prefix = ''):string[] {
+    if (pointOrRegion instanceof S2Point) {
+      // The last cell is effectively the covering of the point, but it is
+      // indexed as an ancestor term: true_max_level cells are never covering
+      // terms, so that they need a single query term.
+      const id = S2CellId.fromPoint(pointOrRegion);
+      const c = this.coverer;
+      const terms:string[] = [];
+      for (let level = c.getMinLevel(); level <= c.getMaxLevel(); level += c.getLevelMod()) {
+        terms.push(this.ancestorTerm(id.parentL(level), prefix));
+      }
+      return terms;
+    }
+    return this.getIndexTermsForCanonicalCovering(this.coverer.getCoveringCells(pointOrRegion), prefix);
+  }
+
+  /**
+   * Returns the index terms of a covering which respects the coverer
+   * parameters (level range and level_mod), as getCoveringCells returns.
+   */
+  public getIndexTermsForCanonicalCovering(covering:S2CellId[], prefix = ''):string[] {
+    if (this.indexContainsPointsOnly) {
+      throw new Error('Regions cannot be indexed with indexContainsPointsOnly');
+    }
+    const c = this.coverer;
+    const trueMaxLevel = this.trueMaxLevel();
+    const terms:string[] = [];
+    let prev:S2CellId = null;
+    for (const id of covering) {
+      let level = id.level();
+      this.checkLevel(level);
+      // Covering cells are indexed as covering terms and, unless optimizing
+      // for space, also as ancestor terms which saves one query term each.
+      if (level < trueMaxLevel) {
+        terms.push(this.coveringTerm(id, prefix));
+      }
+      if (level === trueMaxLevel || !this.optimizeForSpace) {
+        terms.push(this.ancestorTerm(id, prefix));
+      }
+      // Then come the ancestors, stopping at the ones already emitted for the
+      // previous cell (the covering is sorted).
+      while ((level -= c.getLevelMod()) >= c.getMinLevel()) {
+        const ancestor = id.parentL(level);
+        if (prev !== null && prev.level() > level && prev.parentL(level).equals(ancestor)) {
+          break;
+        }
+        terms.push(this.ancestorTerm(ancestor, prefix));
+      }
+      prev = id;
+    }
+    return terms;
+  }
+
+  /** Returns the terms to query the index with for a point. */
+  public getQueryTerms(point:S2Point, prefix?:string):string[];
+
+  /** Returns the terms to query the index with for a region, from its covering. */
+  public getQueryTerms(region:S2Region, prefix?:string):string[];
+
+  public getQueryTerms(pointOrRegion:S2Point|S2Region, prefix = ''):string[] {
+    if (pointOrRegion instanceof S2Point) {
+      const id = S2CellId.fromPoint(pointOrRegion);
+      // true_max_level cells are indexed as ancestor terms only.
+      let level = this.trueMaxLevel();
+      const terms = [this.ancestorTerm(id.parentL(level), prefix)];
+      if (this.indexContainsPointsOnly) {
+        return terms;
+      }
+      for (; level >= this.coverer.getMinLevel(); level -= this.coverer.getLevelMod()) {
+        terms.push(this.coveringTerm(id.parentL(level), prefix));
+      }
+      return terms;
+    }
+    return this.getQueryTermsForCanonicalCovering(this.coverer.getCoveringCells(pointOrRegion), prefix);
+  }
+
+  /**
+   * Returns the query terms of a covering which respects the coverer
+   * parameters (level range and level_mod), as getCoveringCells returns.
+   */
+  public getQueryTermsForCanonicalCovering(covering:S2CellId[], prefix = ''):string[] {
+    const c = this.coverer;
+    const trueMaxLevel = this.trueMaxLevel();
+    const terms:string[] = [];
+    let prev:S2CellId = null;
+    for (const id of covering) {
+      let level = id.level();
+      this.checkLevel(level);
+      // Covering cells are always queried as ancestor terms.
+      terms.push(this.ancestorTerm(id, prefix));
+      if (this.indexContainsPointsOnly) {
+        continue;
+      }
+      // When optimizing for space, indexed covering cells are not ancestor
+      // terms, so they have to be queried as covering terms too.
+      if (this.optimizeForSpace && level < trueMaxLevel) {
+        terms.push(this.coveringTerm(id, prefix));
+      }
+      // Indexed cells containing this one are found through their covering terms.
+      while ((level -= c.getLevelMod()) >= c.getMinLevel()) {
+        const ancestor = id.parentL(level);
+        if (prev !== null && prev.level() > level && prev.parentL(level).equals(ancestor)) {
+          break;
+        }
+        terms.push(this.coveringTerm(ancestor, prefix));
+      }
+      prev = id;
+    }
+    return terms;
+  }
+
+  private ancestorTerm(id:S2CellId, prefix:string):string {
+    return prefix + id.toToken();
+  }
+
+  /** Never used with indexContainsPointsOnly, which has no covering terms. */
+  private coveringTerm(id:S2CellId, prefix:string):string {
+    return prefix + this.marker + id.toToken();
+  }
+
+  private checkLevel(level:number) {
+    const c = this.coverer;
+    if (level < c.getMinLevel() || level > c.getMaxLevel() || (level - c.getMinLevel()) % c.getLevelMod() !== 0) {
+      throw new Error(`Cell level ${level} does not respect the coverer parameters, use a canonical covering`);
+    }
+  }
+}
@@ -0,0 +1,248 @@
+import * as Long from 'long';
+import {S2CellId} from "./S2CellId";
+import {S2CellIdBits} from "./S2CellIdBits";
+import {S2CellUnion} from "./S2CellUnion";
+import {S2PackedCellUnion} from "./S2PackedCellUnion";
+
+const TWO_32 = 4294967296;
+
+// Scratch range of a cell and leaf id.
+const RANGE = new Uint32Array(4);
+
+/**
+ * Splits the leaf cell ids, i.e. the Hilbert curve over the six faces, into
+ * N contiguous ranges ("shards") of about the same weight, so that geodata
+ * keyed by cell id can be spread over N nodes without hot shards in the dense
+ * areas. Shard s holds the leaves from split s - 1 (or the first leaf) up to
+ * split s (excluded), so {@link shardOf} is a binary search over the N - 1
+ * split leaf ids.
+ *
+ * The weights come either from a sample of ids (e.g. the leaf ids of a few
+ * thousand rows), each counting once, or from a union (e.g. the footprint of
+ * the data), whose cells weigh their number of leaves. A shard can be empty if
+ * much of the weight is on a single leaf, which cannot be split. The split
+ * points can be stored with {@link getSplits} and restored with
+ * {@link fromSplits}, so that every node agrees on the partitioning.
+ */
+export class S2ShardPartitioner {
+
+  private constructor(private splits:Uint32Array) {
+  }
+
+  /**
+   * Partitions the sample of ids, given as [lo, hi] words or S2CellIds. A
+   * cell that is not a leaf stands for the leaf right after its center.
+   */
+  public static fromSample(sample:Uint32Array|S2CellId[], numShards:number):S2ShardPartitioner {
+    S2ShardPartitioner.checkNumShards(numShards);
+    let words:Uint32Array;
+    if (sample instanceof Uint32Array) {
+      words = sample.slice(0, sample.length & ~1);
+    } else {
+      words = new Uint32Array(2 * sample.length);
+      sample.forEach((id, i) => {
+        words[2 * i] = id.id.low;
+        words[2 * i + 1] = id.id.high;
+      });
+    }
+    const count = words.length >> 1;
+    for (let i = 0; i < count; i++) {
+      words[2 * i] |= 1;
+    }
+    S2CellIdBits.sortWords(words, count);
+
+    // Split halfway between the last sample of a shard and the first one of
+    // the next, so that unseen ids near the boundary go to the nearest side.
+    const splits = new Uint32Array(2 * Math.max(0, numShards - 1));
+    for (let s = 1; s < numShards; s++) {
+      const k = Math.min(count, Math.round(s * count / numShards));
+      if (k === 0) {
+        S2ShardPartitioner.setLeaf(0, splits, 2 * (s - 1));
+      } else if (k === count) {
+        S2ShardPartitioner.setLeaf(S2ShardPartitioner.leafIndex(words[2 * k - 1], words[2 * k - 2]) + 1, splits, 2 * (s - 1));
+      } else {
+        const a = S2ShardPartitioner.leafIndex(words[2 * k - 1], words[2 * k - 2]);
+        const b = S2ShardPartitioner.leafIndex(words[2 * k + 1], words[2 * k]);
+        S2ShardPartitioner.setLeaf(Math.floor((a + b) / 2) + 1, splits, 2 * (s - 1));
+        // Keep the split in (a, b] despite the rounding of large indexes.
+        if (S2CellIdBits.compare(splits[2 * s - 1], splits[2 * s - 2], words[2 * k - 1], words[2 * k - 2]) <= 0
+            || S2CellIdBits.compare(splits[2 * s - 1], splits[2 * s - 2], words[2 * k + 1], words[2 * k]) > 0) {
+          splits[2 * s - 2] = words[2 * k];
+          splits[2 * s - 1] = words[2 * k + 1];
+        }
+      }
+    }
+    return new S2ShardPartitioner(S2ShardPartitioner.monotonic(splits));
+  }
+
+  /**
+   * Partitions the leaves of the union, so that each shard holds about the
+   * same area of it. An empty union weighs nothing anywhere: the whole curve
+   * is then split into shards of the same area.
+   */
+  public static fromCellUnion(union:S2CellUnion|S2PackedCellUnion, numShards:number):S2ShardPartitioner {
+    S2ShardPartitioner.checkNumShards(numShards);
+    const packed = union instanceof S2PackedCellUnion ? union : S2PackedCellUnion.fromCellUnion(union);
+    if (packed.size() === 0) {
+      return S2ShardPartitioner.fromCellUnion(
+          S2PackedCellUnion.fromCellIds([0, 1, 2, 3, 4, 5].map(face => S2CellId.fromFace(face))), numShards);
+    }
+    const words = packed.getWords();
+    let total = 0;
+    for (let k = 0; k < packed.size(); k++) {
+      total += S2ShardPartitioner.leaves(words[2 * k + 1], words[2 * k]);
+    }
+
+    // Walk the cells, splitting inside the one where the running total of
+    // leaves reaches each target.
+    const splits = new Uint32Array(2 * Math.max(0, numShards - 1));
+    let s = 1;
+    let before = 0;
+    for (let k = 0; k < packed.size() && s < numShards; k++) {
+      const hi = words[2 * k + 1];
+      const lo = words[2 * k];
+      const leaves = S2ShardPartitioner.leaves(hi, lo);
+      S2CellIdBits.rangeMin(hi, lo, RANGE, 0);
+      const first = S2ShardPartitioner.leafIndex(RANGE[1], RANGE[0]);
+      while (s < numShards && before + leaves >= s * total / numShards) {
+        const offset = Math.min(leaves - 1, Math.max(0, Math.round(s * total / numShards - before)));
+        S2ShardPartitioner.setLeaf(first + offset, splits, 2 * (s - 1));
+        s++;
+      }
+      before += leaves;
+    }
+    // Shards past the end of the union, if any, start after its last leaf.
+    for (; s < numShards; s++) {
+      S2CellIdBits.rangeMax(words[words.length - 1], words[words.length - 2], RANGE, 0);
+      S2ShardPartitioner.setLeaf(S2ShardPartitioner.leafIndex(RANGE[1], RANGE[0]) + 1, splits, 2 * (s - 1));
+    }
+    return new S2ShardPartitioner(S2ShardPartitioner.monotonic(splits));
+  }
+
+  /** Restores a partitioning from the words returned by {@link getSplits}. */
+  public static fromSplits(splits:Uint32Array):S2ShardPartitioner {
+    return new S2ShardPartitioner(splits.slice(0, splits.length & ~1));
+  }
+
+  public numShards():number {
+    return (this.splits.length >> 1) + 1;
+  }
+
+  /** The [lo, hi] words of the first leaf id of each shard but the first. This is a view, not a copy. */
+  public getSplits():Uint32Array {
+    return this.splits.subarray(0);
+  }
+
+  /** The shard of the leaf cell id (hi, lo), or of the first leaf of a larger cell. */
+  public shardOfRaw(hi:number, lo:number):number {
+    S2CellIdBits.rangeMin(hi, lo, RANGE, 0);
+    return this.shardOfLeaf(RANGE[1], RANGE[0]);
+  }
+
+  /** The shard of the leaf cell id, or of the first leaf of a larger cell. */
+  public shardOf(id:S2CellId):number {
+    return this.shardOfRaw(id.id.high >>> 0, id.id.low >>> 0);
+  }
+
+  private shardOfLeaf(hi:number, lo:number):number {
+    // The number of splits at or before the leaf.
+    const splits = this.splits;
+    let a = 0;
+    let b = splits.length >> 1;
+    while (a < b) {
+      const m = (a + b) >>> 1;
+      const splitHi = splits[2 * m + 1];
+      if (splitHi < hi || (splitHi === hi && splits[2 * m] <= lo)) {
+        a = m + 1;
+      } else {
+        b = m;
+      }
+    }
+    return a;
+  }
+
+  /**
+   * The shards holding some leaf of the cells, in increasing order, e.g. the
+   * nodes to query for a covering.
+   */
+  public shardsOf(covering:S2CellUnion|S2PackedCellUnion|S2CellId[]):number[] {
+    const touched = new Uint8Array(this.numShards());
+    const mark = (hi:number, lo:number) => {
+      S2CellIdBits.rangeMin(hi, lo, RANGE, 0);
+      S2CellIdBits.rangeMax(hi, lo, RANGE, 2);
+      const last = this.shardOfLeaf(RANGE[3], RANGE[2]);
+      for (let s = this.shardOfLeaf(RANGE[1], RANGE[0]); s <= last; s++) {
+        touched[s] = 1;
+      }
+    };
+    if (covering instanceof S2PackedCellUnion) {
+      const words = covering.getWords();
+      for (let k = 0; k < covering.size(); k++) {
+        mark(words[2 * k + 1], words[2 * k]);
+      }
+    } else {
+      const ids = covering instanceof S2CellUnion ? covering.getCellIds() : covering;
+      ids.forEach(id => mark(id.id.high >>> 0, id.id.low >>> 0));
+    }
+    const shards:number[] = [];
+    touched.forEach((t, s) => {
+      if (t === 1) {
+        shards.push(s);
+      }
+    });
+    return shards;
+  }
+
+  /** The first leaf of the shard. */
+  public shardStart(shard:number):S2CellId {
+    if (shard === 0) {
+      return S2CellId.begin(S2CellId.MAX_LEVEL);
+    }
+    return new S2CellId(S2CellIdBits.toLong(this.splits[2 * shard - 1], this.splits[2 * shard - 2]));
+  }
+
+  /** The last leaf of the shard, which comes before its start if the shard is empty. */
+  public shardEnd(shard:number):S2CellId {
+    if (shard === this.numShards() - 1) {
+      return S2CellId.end(S2CellId.MAX_LEVEL).prev();
+    }
+    const next = S2CellIdBits.toLong(this.splits[2 * shard + 1], this.splits[2 * shard]);
+    return new S2CellId(next.subtract(Long.fromInt(2)));
+  }
+
+  private static checkNumShards(numShards:number) {
+    if (!(numShards >= 1) || numShards % 1 !== 0) {
+      throw new Error("The number of shards must be a positive integer, got " + numShards);
+    }
+  }
+
+  /** The number of leaves of the cell, as a double (exact up to level 4). */
+  private static leaves(hi:number, lo:number):number {
+    return Math.pow(4, S2CellId.MAX_LEVEL - S2CellIdBits.level(hi, lo));
+  }
+
+  /** The index of the leaf along the whole curve, (id - 1) / 2, as a double. */
+  private static leafIndex(hi:number, lo:number):number {
+    return Math.floor((hi * TWO_32 + lo) / 2);
+  }
+
+  /** Writes the id 2 * index + 1 of the leaf, clamped to the end of face 5. */
+  private static setLeaf(index:number, out:Uint32Array, offset:number) {
+    // The largest double below 6 * 2^61, the end of the last face.
+    const id = Math.min(2 * index, 6 * Math.pow(2, 61) - 2048);
+    const hi = Math.floor(id / TWO_32);
+    out[offset] = (id - hi * TWO_32) | 1;
+    out[offset + 1] = hi;
+  }
+
+  /** Raises the splits that went below the previous one, so that they never decrease. */
+  private static monotonic(splits:Uint32Array):Uint32Array {
+    for (let k = 2; k < splits.length; k += 2) {
+      if (S2CellIdBits.compare(splits[k + 1], splits[k], splits[k - 1], splits[k - 2]) < 0) {
+        splits[k] = splits[k - 2];
+        splits[k + 1] = splits[k - 1];
+      }
+    }
+    return splits;
+  }
+}
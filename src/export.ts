@@ -8,25 +8,40 @@ export * from './R2Vector';
 export * from './S1Angle';
 export * from './S1Interval';
 export * from './S2';
+export * from './S2BinaryCorpus';
 export * from './S2Cap';
 export * from './S2Cell';
 export * from './S2CellId';
+export * from './S2CellIdBits';
+export * from './S2CellIdCodec';
+export * from './S2CellIdSet';
 export * from './S2CellUnion';
-// export * from './S2EdgeIndex';
-// export * from './S2EdgeUtil';
+export * from './S2PackedCellUnion';
+export * from './S2PointIndex';
+export * from './S2PreparedRegion';
+export * from './S2CoveringCache';
+export * from './S2CoveringStats';
+export * from './S2EdgeIndex';
+export * from './S2EdgeUtil';
 export * from './S2LatLng';
 export * from './S2LatLngRect';
-// export * from './S2Loop';
+export * from './S2Loop';
 export * from './S2Point';
 export * from './S2Projections';
+export * from './S2RangePlanner';
 export * from './S2Region';
+export * from './S2RegionCodec';
 export * from './S2RegionCoverer';
+export * from './S2RegionTermIndexer';
+export * from './S2ShardPartitioner';
 
 export class Utils {
 
   /**
    * Calculates a region covering a circle
-   * NOTE: The current implementation uses S2Cap while S2Loop would be better (S2Loop is not implemented yet)
+   * NOTE: This returns the S2Cap bounding the points. For a tighter region build an S2Loop from the same points,
+   * reversed since pointsAtDistance walks them clockwise:
+   * {@code new S2Loop(center.pointsAtDistance(radiusInKM, points).map(p => p.toPoint()).reverse())}
    * @param center
    * @param radiusInKM
    * @param points the number of points to calculate. The higher the better precision
@@ -36,8 +51,7 @@ export class Utils {
     const pointsAtDistance = center.pointsAtDistance(radiusInKM, points);
     let s2Cap = S2Cap.empty().addPoint(center.toPoint());
     // It would be probably enough to add one of the points/2 pair of opposite points in the circle such
-    // as (0, points/2). but since this is just a temporary solution lets stick with this as it
-    // will come handy when implementing S2Loop.
+    // as (0, points/2), but adding all of them keeps the cap tight for any number of points.
     pointsAtDistance
         .map(p => p.toPoint())
         .forEach(p => {
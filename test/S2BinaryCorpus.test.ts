@@ -0,0 +1,105 @@
+import {S2CellId} from "../src/S2CellId";
+import {S2CellIdBits} from "../src/S2CellIdBits";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2Point} from "../src/S2Point";
+import {S2BinaryCorpus} from "../src/S2BinaryCorpus";
+import {expect} from "chai";
+import * as fs from "fs";
+import Long = require('long');
+declare var __dirname;
+const genJavaLocs = require('./assets/main-tests.json');
+const corpusPoints = require('./assets/corpus-points.json');
+const corpusCoverings = require('./assets/corpus-coverings.json');
+
+describe('S2BinaryCorpus', () => {
+  it('should read back the points it lays out', () => {
+    const count = genJavaLocs.length;
+    const lat = new Float64Array(count);
+    const lng = new Float64Array(count);
+    const ids = new Uint32Array(2 * count);
+    genJavaLocs.forEach((item, i) => {
+      lat[i] = parseFloat(item.coords.lat);
+      lng[i] = parseFloat(item.coords.lng);
+      S2CellIdBits.fromLong(Long.fromString(item.id), ids, 2 * i);
+    });
+    const bytes = S2BinaryCorpus.write('points', count, [
+      {name: 'lat', type: S2BinaryCorpus.F64, data: lat},
+      {name: 'lng', type: S2BinaryCorpus.F64, data: lng},
+      {name: 'id', type: S2BinaryCorpus.U64, data: ids},
+    ]);
+
+    // Shifted by one byte to go through the unaligned path as well.
+    const unaligned = new Uint8Array(bytes.length + 1);
+    unaligned.set(bytes, 1);
+    [bytes, unaligned.subarray(1)].forEach(input => {
+      const corpus = S2BinaryCorpus.read(input);
+      expect(corpus.kind).to.be.eq('points');
+      expect(corpus.count).to.be.eq(count);
+      expect(Array.from(corpus.f64('lat'))).to.be.deep.eq(Array.from(lat));
+      expect(Array.from(corpus.f64('lng'))).to.be.deep.eq(Array.from(lng));
+      const read = corpus.ids('id');
+      genJavaLocs.forEach((item, i) => {
+        expect(new S2CellId(S2CellIdBits.toLong(read[2 * i + 1], read[2 * i])).id.toString()).to.be.eq(item.id);
+      });
+    });
+    expect(S2BinaryCorpus.read(bytes).f64('lat').buffer).to.be.eq(bytes.buffer);
+  });
+
+  it('should read coverings through their offsets', () => {
+    const offsets = new Uint32Array([0, 2, 2, 3]);
+    const cells = new Uint32Array([1, 0x10000000, 3, 0x10000000, 0, 0x30000000]);
+    const corpus = S2BinaryCorpus.read(S2BinaryCorpus.write('coverings', 3, [
+      {name: 'height', type: S2BinaryCorpus.F64, data: new Float64Array([0.1, 0.2, 0.3])},
+      {name: 'maxCells', type: S2BinaryCorpus.U32, data: new Uint32Array([8, 8, 20])},
+      {name: 'offsets', type: S2BinaryCorpus.U32, data: offsets},
+      {name: 'cells', type: S2BinaryCorpus.U64, data: cells},
+    ]));
+    expect(corpus.kind).to.be.eq('coverings');
+    expect(Array.from(corpus.u32('offsets'))).to.be.deep.eq([0, 2, 2, 3]);
+    expect(Array.from(corpus.ids('cells').subarray(2 * 2, 2 * 3))).to.be.deep.eq([0, 0x30000000]);
+    expect(() => corpus.f64('maxCells')).to.throw();
+  });
+
+  // Written by java-test-creator with the same arguments but --format binary and --format json:
+  // --corpus points|coverings --count 12 --distribution clustered --seed 7 --threads 1
+  it('should read the points written by the java side', () => {
+    const corpus = S2BinaryCorpus.read(fs.readFileSync(__dirname + '/assets/corpus-points.s2cb'));
+    expect(corpus.kind).to.be.eq('points');
+    expect(corpus.count).to.be.eq(corpusPoints.length);
+    const ids = corpus.ids('id');
+    corpusPoints.forEach((item, i) => {
+      for (const name of ['lat', 'lng', 'x', 'y', 'z']) {
+        expect(corpus.f64(name)[i]).to.be.eq(parseFloat(item[name]));
+      }
+      const id = new S2CellId(S2CellIdBits.toLong(ids[2 * i + 1], ids[2 * i]));
+      expect(id.id.toString()).to.be.eq(item.id);
+      const p = new S2Point(corpus.f64('x')[i], corpus.f64('y')[i], corpus.f64('z')[i]);
+      expect(S2CellId.fromPoint(p).id.equals(id.id)).is.true;
+    });
+  });
+
+  it('should read the coverings written by the java side', () => {
+    const corpus = S2BinaryCorpus.read(fs.readFileSync(__dirname + '/assets/corpus-coverings.s2cb'));
+    expect(corpus.kind).to.be.eq('coverings');
+    expect(corpus.count).to.be.eq(corpusCoverings.length);
+    const offsets = corpus.u32('offsets');
+    const cells = corpus.ids('cells');
+    expect(offsets.length).to.be.eq(corpus.count + 1);
+    expect(offsets[corpus.count]).to.be.eq(cells.length / 2);
+    corpusCoverings.forEach((item, i) => {
+      expect(corpus.f64('x')[i]).to.be.eq(parseFloat(item.axis.x));
+      expect(corpus.f64('y')[i]).to.be.eq(parseFloat(item.axis.y));
+      expect(corpus.f64('z')[i]).to.be.eq(parseFloat(item.axis.z));
+      expect(corpus.f64('height')[i]).to.be.eq(parseFloat(item.height));
+      for (const name of ['maxCells', 'minLevel', 'maxLevel', 'levelMod']) {
+        expect(corpus.u32(name)[i]).to.be.eq(item[name]);
+      }
+      const covering:S2CellId[] = [];
+      for (let k = offsets[i]; k < offsets[i + 1]; k++) {
+        covering.push(new S2CellId(S2CellIdBits.toLong(cells[2 * k + 1], cells[2 * k])));
+      }
+      expect(covering.map(id => id.id.toString())).to.be.deep.eq(
+          item.covering.map(token => S2CellId.fromToken(token).id.toString()));
+    });
+  });
+});
@@ -10,9 +10,11 @@ import {R1Interval} from "../src/R1Interval";
 import {S1Interval} from "../src/S1Interval";
 import {S1Angle} from "../src/S1Angle";
 import {S2Point} from "../src/S2Point";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2CellIdBits} from "../src/S2CellIdBits";
+import {S2} from "../src/S2";
 // import {S2Cap} from "../src/S2Cap";
 // import {S2RegionCoverer} from "../src/S2RegionCoverer";
-// import {S2LatLng} from "../src/S2LatLng";
 // S2Cap.addCap()
 describe('S2Cell', () => {
   describe('java data', () => {
@@ -120,6 +122,58 @@ describe('S2Cell', () => {
     });
   });
 
+  describe('scratch cells', () => {
+    const cells:S2Cell[] = [0, 1, 2, 3, 4, 5].map(face => S2Cell.fromFace(face));
+    for (let n = 0; n < 200; n++) {
+      const p = S2LatLng.fromDegrees(180 * Math.random() - 90, 360 * Math.random() - 180).toPoint();
+      cells.push(new S2Cell(S2CellId.fromPoint(p).parentL(1 + Math.floor(Math.random() * 29))));
+    }
+
+    function sameCell(a:S2Cell, b:S2Cell) {
+      expect(a.id.toToken()).to.eq(b.id.toToken());
+      expect([a.face, a.level, a.orientation]).to.deep.eq([b.face, b.level, b.orientation]);
+      for (let k = 0; k < 4; k++) {
+        expect(a.getVertexRaw(k).equals(b.getVertexRaw(k))).to.be.true;
+      }
+    }
+
+    it('reinitializes a cell in place from the id words', () => {
+      const scratch = new S2Cell();
+      for (const cell of cells) {
+        sameCell(scratch.initRaw(cell.idHi, cell.idLo), cell);
+        expect(S2CellIdBits.toLong(cell.idHi, cell.idLo).equals(cell.id.id)).to.be.true;
+      }
+    });
+
+    it('subdivides into scratch cells like the constructor', () => {
+      const children = [new S2Cell(), new S2Cell(), new S2Cell(), new S2Cell()];
+      for (const cell of cells) {
+        expect(cell.subdivideInto(children)).to.be.true;
+        let id = cell.id.childBegin();
+        for (let pos = 0; pos < 4; pos++, id = id.next()) {
+          sameCell(children[pos], new S2Cell(id));
+          sameCell(children[pos].clone(), new S2Cell(id));
+        }
+      }
+      const leaf = new S2Cell(S2CellId.fromPoint(S2LatLng.fromDegrees(45, 12).toPoint()));
+      expect(leaf.subdivideInto(children)).to.be.false;
+      expect(leaf.subdivide()).to.be.null;
+    });
+
+    it('writes vertices, edges and bounds into the given objects', () => {
+      const out = new S2Point(0, 0, 0);
+      const rect = new S2LatLngRect(new R1Interval(0, 0), new S1Interval(0, 0));
+      for (const cell of cells) {
+        for (let k = 0; k < 4; k++) {
+          expect(cell.getVertex(k, out).equals(cell.getVertex(k))).to.be.true;
+          expect(cell.getEdgeRaw(k, out).equals(cell.getEdgeRaw(k))).to.be.true;
+        }
+        expect(cell.getRectBound(rect)).to.eq(rect);
+        expect(rect.toString()).to.eq(referenceRectBound(cell).toString());
+      }
+    });
+  });
+
 
 /*
   it('bauauau', () => {
@@ -175,3 +229,21 @@ describe('S2Cell', () => {
   /**/
 
 });
+
+/** The cell bound built with the interval methods, from the vertices. */
+function referenceRectBound(cell:S2Cell):S2LatLngRect {
+  if (cell.level == 0) {
+    return cell.getRectBound();
+  }
+  const vertices = [0, 1, 2, 3].map(k => cell.getVertexRaw(k));
+  const lats = vertices.map(v => S2LatLng.latitude(v).radians);
+  const lngs = vertices.map(v => S2LatLng.longitude(v).radians);
+  // One diagonal gives the latitude range, the other the longitude range.
+  const lng02 = S1Interval.fromPointPair(lngs[0], lngs[2]);
+  const lng13 = S1Interval.fromPointPair(lngs[1], lngs[3]);
+  return new S2LatLngRect(
+      new R1Interval(Math.min(...lats), Math.max(...lats)),
+      lng02.getLength() >= lng13.getLength() ? lng02 : lng13)
+      .expanded(S2LatLng.fromRadians(S2.DBL_EPSILON, S2.DBL_EPSILON))
+      .polarClosure();
+}
@@ -1,4 +1,5 @@
 import {S2CellId} from "../src/S2CellId";
+import {S2CellIdBits} from "../src/S2CellIdBits";
 import {expect} from "chai";
 const genJavaLocs = require('./assets/main-tests.json');
 const cellTests = require('./assets/cell-tests.json');
@@ -222,4 +223,34 @@ describe('S2CellId', () => {
       })
     });
   });
+
+  it('iterates over the descendants at a level', () => {
+    const parent = S2CellId.fromToken('357ca574');
+    for (const level of [parent.level(), parent.level() + 1, parent.level() + 4]) {
+      const expected:string[] = [];
+      for (let c = parent.childBeginL(level); !c.equals(parent.childEndL(level)); c = c.next()) {
+        expected.push(c.toToken());
+      }
+      expect(Array.from(parent.descendants(level)).map(c => c.toToken())).to.deep.eq(expected);
+      // Chunks of 3 ids: full ones, then the remainder.
+      const chunked:string[] = [];
+      for (const chunk of parent.descendantChunks(level, new Uint32Array(6))) {
+        expect(chunk.length === 6 || chunked.length + chunk.length / 2 === expected.length).is.true;
+        for (let k = 0; k < chunk.length; k += 2) {
+          chunked.push(new S2CellId(Long.fromBits(chunk[k], chunk[k + 1])).toToken());
+        }
+      }
+      expect(chunked).to.deep.eq(expected);
+    }
+    // The last cells of the curve.
+    const last = S2CellId.fromFace(5);
+    const leaves = Array.from(last.rangeMax().parentL(28).descendants(30));
+    expect(leaves.length).to.eq(16);
+    expect(leaves[15].equals(last.rangeMax())).is.true;
+    // A coarser level has no descendants to stop at.
+    expect(() => parent.descendantChunks(parent.level() - 1)).to.throw();
+    expect(() => parent.descendants(parent.level() - 1).next()).to.throw();
+    const words = new Uint32Array([parent.id.low, parent.id.high]);
+    expect(() => S2CellIdBits.descendantChunks(words, () => 0).next()).to.throw();
+  });
 });
@@ -0,0 +1,169 @@
+import {S2CellId} from "../src/S2CellId";
+import {S2CellIdBits} from "../src/S2CellIdBits";
+import {S2LatLng} from "../src/S2LatLng";
+import {expect} from "chai";
+import Long = require('long');
+const genJavaLocs = require('./assets/main-tests.json');
+
+function read(out:Uint32Array, offset = 0):string {
+  return S2CellIdBits.toLong(out[offset + 1], out[offset]).toString();
+}
+
+describe('S2CellIdBits', () => {
+  let items = [];
+  before(() => {
+    items = genJavaLocs.map(item => {
+      const id = Long.fromString(item.id);
+      return {item, cell: new S2CellId(id), hi: id.high >>> 0, lo: id.low >>> 0};
+    });
+  });
+
+  it('should match java data for the navigation methods', () => {
+    const out = new Uint32Array(2);
+    items.forEach(({item, hi, lo}) => {
+      S2CellIdBits.next(hi, lo, out);
+      expect(read(out)).to.be.eq(item.next);
+      S2CellIdBits.prev(hi, lo, out);
+      expect(read(out)).to.be.eq(item.prev);
+      S2CellIdBits.immediateParent(hi, lo, out);
+      expect(read(out)).to.be.eq(item.parent);
+      S2CellIdBits.parent(hi, lo, 1, out);
+      expect(read(out)).to.be.eq(item.parentLvl1);
+      S2CellIdBits.rangeMin(hi, lo, out);
+      expect(read(out)).to.be.eq(item.rangeMin);
+      S2CellIdBits.rangeMax(hi, lo, out);
+      expect(read(out)).to.be.eq(item.rangeMax);
+      expect(S2CellIdBits.level(hi, lo)).to.be.eq(item.lvl);
+      expect(S2CellIdBits.face(hi)).to.be.eq(item.face);
+      expect(S2CellIdBits.isValid(hi, lo)).is.true;
+    });
+  });
+
+  it('should match java data for fromFaceIJ, fromPoint and toFaceIJOrientation', () => {
+    const out = new Uint32Array(2);
+    const ijo = new Uint32Array(3);
+    items.forEach(({item, hi, lo}) => {
+      S2CellIdBits.fromFaceIJ(item.face, item.i, item.j, out);
+      S2CellIdBits.parent(out[1], out[0], item.lvl, out);
+      expect(read(out)).to.be.eq(item.id);
+
+      S2CellIdBits.fromPoint(parseFloat(item.point.x), parseFloat(item.point.y), parseFloat(item.point.z), out);
+      S2CellIdBits.parent(out[1], out[0], item.lvl, out);
+      expect(read(out)).to.be.eq(item.id);
+
+      expect(S2CellIdBits.toFaceIJOrientation(hi, lo, ijo)).to.be.eq(item.face);
+      expect(ijo[0]).to.be.eq(item.i);
+      expect(ijo[1]).to.be.eq(item.j);
+    });
+  });
+
+  it('should agree with the Long based implementation', () => {
+    const out = new Uint32Array(4);
+    items.forEach(({cell, hi, lo}) => {
+      const level = cell.level();
+      for (const l of [level, Math.min(S2CellId.MAX_LEVEL, level + 1), S2CellId.MAX_LEVEL]) {
+        S2CellIdBits.childBegin(hi, lo, l, out, 2);
+        expect(read(out, 2)).to.be.eq(cell.id.subtract(cell.lowestOnBit()).add(S2CellId.lowestOnBitForLevel(l)).toString());
+        S2CellIdBits.childEnd(hi, lo, l, out, 2);
+        expect(read(out, 2)).to.be.eq(cell.id.add(cell.lowestOnBit()).add(S2CellId.lowestOnBitForLevel(l)).toString());
+      }
+      const parent = cell.parent();
+      expect(S2CellIdBits.contains(parent.id.high, parent.id.low, hi, lo)).is.true;
+      expect(S2CellIdBits.contains(hi, lo, parent.id.high, parent.id.low)).is.false;
+      expect(S2CellIdBits.intersects(hi, lo, parent.id.high, parent.id.low)).is.true;
+      const next = cell.next();
+      expect(S2CellIdBits.intersects(hi, lo, next.id.high, next.id.low)).is.false;
+      expect(S2CellIdBits.compare(hi, lo, next.id.high, next.id.low)).to.be.eq(-1);
+      expect(S2CellIdBits.compare(next.id.high, next.id.low, hi, lo)).to.be.eq(1);
+      expect(S2CellIdBits.compare(hi, lo, hi, lo)).to.be.eq(0);
+    });
+  });
+
+  it('should match java data for the edge neighbors', () => {
+    const out = new Uint32Array(8);
+    items.forEach(({item, hi, lo}) => {
+      S2CellIdBits.edgeNeighbors(hi, lo, out);
+      expect([0, 2, 4, 6].map(k => read(out, k))).to.be.deep.equal(item.neighbors);
+    });
+  });
+
+  it('should convert lat/lng and point columns in batch', () => {
+    const lat = new Float64Array(items.length);
+    const lng = new Float64Array(items.length);
+    const xyz = new Float64Array(3 * items.length);
+    items.forEach(({item}, k) => {
+      lat[k] = parseFloat(item.coords.lat);
+      lng[k] = parseFloat(item.coords.lng);
+      const p = S2LatLng.fromDegrees(lat[k], lng[k]).toPoint();
+      xyz.set([p.x, p.y, p.z], 3 * k);
+    });
+    const fromLatLng = new Uint32Array(2 + 2 * items.length);
+    const fromPoints = new Uint32Array(2 * items.length);
+    [14, 15, 16, S2CellId.MAX_LEVEL].forEach(level => {
+      S2CellIdBits.fromLatLngDegrees(lat, lng, level, fromLatLng, 2);
+      S2CellIdBits.fromPoints(xyz, level, fromPoints);
+      items.forEach(({item}, k) => {
+        const expected = S2CellId.fromPoint(S2LatLng.fromDegrees(lat[k], lng[k]).toPoint()).parentL(level).id.toString();
+        expect(read(fromLatLng, 2 + 2 * k)).to.be.eq(expected);
+        expect(read(fromPoints, 2 * k)).to.be.eq(expected);
+        if (item.lvl === level) {
+          expect(expected).to.be.eq(item.id);
+        }
+      });
+    });
+  });
+
+  it('should handle the invalid ids at both ends of the range', () => {
+    const out = new Uint32Array(2);
+    S2CellIdBits.rangeMin(0, 0, out);
+    expect(read(out)).to.be.eq(S2CellId.none().rangeMin().id.toString());
+    S2CellIdBits.rangeMax(0, 0, out);
+    expect(read(out)).to.be.eq('-1');
+    expect(S2CellIdBits.isValid(0, 0)).is.false;
+    expect(S2CellIdBits.isValid(0xffffffff, 0xffffffff)).is.false;
+    expect(S2CellIdBits.compare(0xffffffff, 0, 0, 0xffffffff)).to.be.eq(1);
+  });
+
+  it('should sort ids like compare', () => {
+    for (const count of [10, 3000]) {
+      const words = new Uint32Array(2 * count);
+      items.slice(0, count).forEach(({hi, lo}, i) => {
+        // Repeat a few ids to check that the sort is stable.
+        words[2 * i] = i % 7 === 0 ? words[0] : lo;
+        words[2 * i + 1] = i % 7 === 0 ? words[1] : hi;
+      });
+      const order = Array.from(S2CellIdBits.sortOrder(words));
+      const expected = order.slice().sort((a, b) =>
+          S2CellIdBits.compare(words[2 * a + 1], words[2 * a], words[2 * b + 1], words[2 * b]) || a - b);
+      expect(order).to.be.deep.eq(expected);
+    }
+  });
+
+  it('should tell normalized ids apart', () => {
+    const words = (ids:S2CellId[]) => {
+      const out = new Uint32Array(2 * ids.length);
+      ids.forEach((id, i) => S2CellIdBits.fromLong(id.id, out, 2 * i));
+      return out;
+    };
+    const parent = S2CellId.fromToken('357ca574');
+    const children = [parent.childBegin()];
+    while (children.length < 4) {
+      children.push(children[children.length - 1].next());
+    }
+    expect(S2CellIdBits.isNormalized(new Uint32Array(0))).is.true;
+    expect(S2CellIdBits.isNormalized(words([parent, parent.next(), S2CellId.fromFace(5)]))).is.true;
+    expect(S2CellIdBits.isNormalized(words(children.slice(0, 3)))).is.true;
+    expect(S2CellIdBits.isNormalized(words([children[0], children[1], children[3], parent.next()]))).is.true;
+    // Out of order, duplicated, contained, and four siblings.
+    expect(S2CellIdBits.isNormalized(words([parent.next(), parent]))).is.false;
+    expect(S2CellIdBits.isNormalized(words([parent, parent]))).is.false;
+    expect(S2CellIdBits.isNormalized(words([parent, children[3]]))).is.false;
+    expect(S2CellIdBits.isNormalized(words([children[0], parent]))).is.false;
+    expect(S2CellIdBits.isNormalized(words(children))).is.false;
+    // Agrees with normalizeSorted on the java data.
+    const sorted = S2CellIdBits.sortWords(words(items.map(({cell}) => cell)));
+    const normalized = sorted.slice(0, 2 * S2CellIdBits.normalizeSorted(sorted, sorted.length >> 1));
+    expect(S2CellIdBits.isNormalized(normalized)).is.true;
+    expect(S2CellIdBits.isNormalized(sorted)).to.eq(normalized.length === sorted.length);
+  });
+});
@@ -0,0 +1,112 @@
+import {expect} from "chai";
+import * as Long from 'long';
+import {S2CellIdCodec} from "../src/S2CellIdCodec";
+import {S2CellId} from "../src/S2CellId";
+import {S2LatLng} from "../src/S2LatLng";
+
+function randomIds(count:number):Long[] {
+  const ids:Long[] = [];
+  for (let i = 0; i < count; i++) {
+    const leaf = S2CellId.fromPoint(S2LatLng.fromDegrees(180 * Math.random() - 90, 360 * Math.random() - 180).toPoint());
+    ids.push(leaf.parentL(Math.floor(31 * Math.random())).id);
+  }
+  // Edge cases: the invalid id, the smallest and the largest words.
+  ids.push(Long.ZERO, Long.ONE, Long.fromBits(0, 1), Long.fromBits(1, 0x80000000), Long.MAX_VALUE, Long.MIN_VALUE, Long.NEG_ONE);
+  return ids;
+}
+
+function words(ids:Long[]):Uint32Array {
+  const out = new Uint32Array(2 * ids.length);
+  ids.forEach((id, i) => {
+    out[2 * i] = id.low;
+    out[2 * i + 1] = id.high;
+  });
+  return out;
+}
+
+function ascii(text:string):Uint8Array {
+  return Uint8Array.from(text, c => c.charCodeAt(0));
+}
+
+describe('S2CellIdCodec', () => {
+  const ids = randomIds(2000);
+  const packed = words(ids);
+
+  it('encodes tokens like S2CellId', () => {
+    for (const id of ids) {
+      const expected = id.isZero() ? 'X' : id.toUnsigned().toString(16).padStart(16, '0').replace(/0+$/, '');
+      expect(S2CellIdCodec.toToken(id.high, id.low)).to.eq(expected);
+      expect(new S2CellId(id).toToken()).to.eq(expected);
+    }
+  });
+
+  it('decodes its tokens', () => {
+    const out = new Uint32Array(2);
+    for (const id of ids) {
+      S2CellIdCodec.fromToken(S2CellIdCodec.toToken(id.high, id.low), out);
+      expect(Long.fromBits(out[0], out[1]).equals(id)).is.true;
+      expect(S2CellId.fromToken(new S2CellId(id).toToken()).id.equals(id)).is.true;
+    }
+    S2CellIdCodec.fromToken('89C259', out);
+    expect(S2CellIdCodec.toToken(out[1], out[0])).to.eq('89c259');
+    S2CellIdCodec.fromToken('0123456789abcdef0', out);
+    expect(Array.from(out)).to.deep.eq([0, 0]);
+    expect(() => S2CellIdCodec.fromToken('', out)).to.throw();
+    expect(() => S2CellIdCodec.fromToken('89g2', out)).to.throw();
+    expect(() => S2CellId.fromToken('89 2')).to.throw();
+  });
+
+  it('encodes and decodes decimal ids', () => {
+    const out = new Uint32Array(2);
+    for (const id of ids) {
+      const unsigned = S2CellIdCodec.toDecimal(id.high, id.low);
+      const signed = S2CellIdCodec.toDecimal(id.high, id.low, true);
+      expect(unsigned).to.eq(id.toUnsigned().toString());
+      expect(signed).to.eq(id.toSigned().toString());
+      S2CellIdCodec.fromDecimal(unsigned, out);
+      expect(Long.fromBits(out[0], out[1]).equals(id)).is.true;
+      S2CellIdCodec.fromDecimal(signed, out);
+      expect(Long.fromBits(out[0], out[1]).equals(id)).is.true;
+      expect(new S2CellId(unsigned).id.equals(id)).is.true;
+    }
+    expect(() => S2CellIdCodec.fromDecimal('18446744073709551616', out)).to.throw();
+    expect(() => S2CellIdCodec.fromDecimal('-9223372036854775809', out)).to.throw();
+    expect(() => S2CellIdCodec.fromDecimal('-', out)).to.throw();
+    expect(() => S2CellIdCodec.fromDecimal('12a', out)).to.throw();
+  });
+
+  it('converts columns of ids', () => {
+    const tokens = S2CellIdCodec.toTokens(packed);
+    expect(tokens).to.deep.eq(ids.map(id => S2CellIdCodec.toToken(id.high, id.low)));
+    expect(Array.from(S2CellIdCodec.fromTokens(tokens))).to.deep.eq(Array.from(packed));
+
+    const decimals = S2CellIdCodec.toDecimals(packed, true);
+    expect(decimals).to.deep.eq(ids.map(id => id.toString()));
+    expect(Array.from(S2CellIdCodec.fromDecimals(decimals))).to.deep.eq(Array.from(packed));
+
+    // Into an existing buffer, after the ids already there.
+    const out = new Uint32Array(6);
+    S2CellIdCodec.fromTokens(tokens.slice(0, 2), out, 2);
+    expect(Array.from(out)).to.deep.eq([0, 0].concat(Array.from(packed.subarray(0, 4))));
+    expect(S2CellIdCodec.toTokens(packed, 3)).to.deep.eq(tokens.slice(0, 3));
+  });
+
+  it('reads and writes delimited bytes', () => {
+    const tokenBytes = S2CellIdCodec.toTokenBytes(packed);
+    const tokens = S2CellIdCodec.toTokens(packed);
+    expect(Buffer.from(tokenBytes).toString('ascii')).to.eq(tokens.join('\n') + '\n');
+    expect(Array.from(S2CellIdCodec.fromTokenBytes(tokenBytes))).to.deep.eq(Array.from(packed));
+
+    const decimalBytes = S2CellIdCodec.toDecimalBytes(packed, false, 0x2c);
+    const decimals = S2CellIdCodec.toDecimals(packed);
+    expect(Buffer.from(decimalBytes).toString('ascii')).to.eq(decimals.join(',') + ',');
+    expect(Array.from(S2CellIdCodec.fromDecimalBytes(decimalBytes, 0x2c))).to.deep.eq(Array.from(packed));
+
+    // A Buffer without the trailing separator.
+    const buffer = Buffer.from('89c259\nX\n-1', 'ascii');
+    expect(Array.from(S2CellIdCodec.fromTokenBytes(buffer.subarray(0, 8)))).to.deep.eq([0, 0x89c25900, 0, 0]);
+    expect(Array.from(S2CellIdCodec.fromDecimalBytes(ascii('5\n-1')))).to.deep.eq([5, 0, 0xffffffff, 0xffffffff]);
+    expect(S2CellIdCodec.fromTokenBytes(new Uint8Array(0)).length).to.eq(0);
+    expect(() => S2CellIdCodec.fromTokenBytes(ascii('89c2\n\n89c3'))).to.throw();
+  });
+});
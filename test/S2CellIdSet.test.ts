@@ -0,0 +1,36 @@
+import {S2CellId} from "../src/S2CellId";
+import {S2CellIdSet} from "../src/S2CellIdSet";
+import {expect} from "chai";
+import Long = require('long');
+const genJavaLocs = require('./assets/main-tests.json');
+
+describe('S2CellIdSet', () => {
+  it('should behave like a set of ids', () => {
+    const set = new S2CellIdSet(4);
+    const tokens = new Set<string>();
+    genJavaLocs.forEach(item => {
+      const cell = new S2CellId(Long.fromString(item.id));
+      [cell, cell.parentL(3), cell.next()].forEach(id => {
+        expect(set.hasCellId(id)).to.be.eq(tokens.has(id.toToken()));
+        expect(set.addCellId(id)).to.be.eq(!tokens.has(id.toToken()));
+        tokens.add(id.toToken());
+        expect(set.hasCellId(id)).is.true;
+      });
+    });
+    expect(set.size()).to.be.eq(tokens.size);
+  });
+
+  it('should accept signed and unsigned words alike', () => {
+    const set = new S2CellIdSet();
+    expect(set.add(-0x20000000, 1)).is.true;
+    expect(set.has(0xe0000000, 1)).is.true;
+    expect(set.add(0xe0000000, 1)).is.false;
+    expect(set.has(0, 0)).is.false;
+    expect(set.add(0, 0)).is.true;
+    expect(set.has(0, 0)).is.true;
+    expect(set.size()).to.be.eq(2);
+    set.clear();
+    expect(set.size()).to.be.eq(0);
+    expect(set.has(0xe0000000, 1)).is.false;
+  });
+});
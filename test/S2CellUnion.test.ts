@@ -2,6 +2,12 @@ import { S2CellUnion } from '../src/S2CellUnion';
 import { S2CellId } from '../src/S2CellId';
 import {expect} from "chai";
 import { S2Cell } from '../src/S2Cell';
+import { S2CellIdBits } from '../src/S2CellIdBits';
+import { S2PackedCellUnion } from '../src/S2PackedCellUnion';
+import { S2RegionCoverer } from '../src/S2RegionCoverer';
+import { S2Cap } from '../src/S2Cap';
+import { S2LatLng } from '../src/S2LatLng';
+import { S1Angle } from '../src/S1Angle';
 declare var __dirname;
 
 // import {S2Cap} from "../src/S2Cap";
@@ -48,6 +54,57 @@ describe('S2CellUnion', () => {
       })
     });
 
+    it('should compute difference correctly', () => {
+      unionTests.forEach((test) => {
+        const x = createUnionFromTokensList(test.firstCells);
+        const y = createUnionFromTokensList(test.scndCells);
+        const difference = new S2CellUnion();
+        difference.getDifference(x, y);
+        const common = new S2CellUnion();
+        common.getIntersectionUU(difference, y);
+        expect(common.size()).to.be.eq(0);
+        const intersection = new S2CellUnion();
+        intersection.getIntersectionUU(x, y);
+        const restored = new S2CellUnion();
+        restored.getUnion(difference, intersection);
+        expect(restored.getCellIds().map(id => id.toToken())).to.be.deep.eq(x.getCellIds().map(id => id.toToken()));
+      });
+    });
+
+    it('should combine raw unions given out of order or overlapping', () => {
+      unionTests.forEach((test) => {
+        // Reversed, with a duplicate and a child of the first cell.
+        const rawIds = (tokens:string[]) => {
+          const ids = tokens.map(token => S2CellId.fromToken(token)).reverse();
+          return ids.concat(ids.length > 0 ? [ids[0], ids[0].isLeaf() ? ids[0] : ids[0].childBegin()] : []);
+        };
+        const x = new S2CellUnion();
+        x.initRawCellIds(rawIds(test.firstCells));
+        const y = new S2CellUnion();
+        y.initRawCellIds(rawIds(test.scndCells));
+        const union = new S2CellUnion();
+        union.getUnion(x, y);
+        expect(union.getCellIds().map(c => c.toToken())).to.be.deep.eq(test.union);
+        const intersection = new S2CellUnion();
+        intersection.getIntersectionUU(x, y);
+        expect(intersection.getCellIds().map(c => c.toToken())).to.be.deep.eq(test.intersectionUnionCells);
+        const difference = new S2CellUnion();
+        difference.getDifference(x, y);
+        const expected = new S2CellUnion();
+        expected.getDifference(createUnionFromTokensList(test.firstCells), createUnionFromTokensList(test.scndCells));
+        expect(difference.getCellIds().map(c => c.toToken())).to.be.deep.eq(expected.getCellIds().map(c => c.toToken()));
+      });
+    });
+
+    it('should tell whether unions intersect', () => {
+      unionTests.forEach((test) => {
+        const first = createUnionFromTokensList(test.firstCells);
+        const second = createUnionFromTokensList(test.scndCells);
+        expect(first.intersectsUnion(second)).to.be.eq(test.intersectionUnionCells.length > 0);
+        expect(second.intersectsUnion(first)).to.be.eq(test.intersectionUnionCells.length > 0);
+      })
+    });
+
   });
   it('bug#1', () => {
     const unionOne = new S2CellUnion();
@@ -95,5 +152,49 @@ describe('S2CellUnion', () => {
     expect(cellUnion.denormalize(minLevel, 1).map(id=>id.toToken())).to.be.deep.eq(["357ca571", "357ca573", "357ca575", "357ca577"]);
   })
 
+  describe('lazy iteration', () => {
+    const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.5, 12).toPoint(), S1Angle.degrees(1));
+    const covering = new S2RegionCoverer().setMaxCells(20).getCoveringUnion(cap);
+
+    function collect(chunks:IterableIterator<Uint32Array>):string[] {
+      const tokens:string[] = [];
+      for (const chunk of chunks) {
+        expect(chunk.length).to.be.lte(2 * 100);
+        for (let k = 0; k < chunk.length; k += 2) {
+          tokens.push(new S2CellId(S2CellIdBits.toLong(chunk[k + 1], chunk[k])).toToken());
+        }
+      }
+      return tokens;
+    }
+
+    it('streams the denormalized cells', () => {
+      for (const [minLevel, levelMod] of [[9, 1], [8, 2], [10, 3]]) {
+        const expected = covering.denormalize(minLevel, levelMod).map(id => id.toToken());
+        expect(expected.length).to.be.gt(covering.size());
+        expect(collect(covering.denormalizeChunks(minLevel, levelMod, new Uint32Array(2 * 100)))).to.deep.eq(expected);
+        expect(Array.from(covering.denormalizeIterator(minLevel, levelMod)).map(id => id.toToken())).to.deep.eq(expected);
+      }
+      // The cells are generated on demand.
+      const iterator = covering.denormalizeIterator(12, 1);
+      expect(iterator.next().value.toToken()).to.eq(covering.denormalize(12, 1)[0].toToken());
+    });
+
+    it('streams the expanded cells', () => {
+      const level = 8;
+      const expanded = new S2CellUnion();
+      expanded.initFromCellIds(covering.getCellIds());
+      expanded.expand(level);
+
+      const streamed = collect(covering.expandChunks(level, new Uint32Array(2 * 100)));
+      const words = new Uint32Array(2 * streamed.length);
+      streamed.forEach((token, i) => S2CellIdBits.fromLong(S2CellId.fromToken(token).id, words, 2 * i));
+      expect(S2PackedCellUnion.fromWords(words).getCellIds().map(id => id.toToken()))
+          .to.deep.eq(expanded.getCellIds().map(id => id.toToken()));
+      expect(Array.from(covering.expandIterator(level)).map(id => id.toToken())).to.deep.eq(streamed);
+      // The union itself is left as it is.
+      expect(covering.size()).to.be.lte(20);
+    });
+  });
+
 
 });
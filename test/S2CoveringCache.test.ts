@@ -0,0 +1,82 @@
+import {S2CoveringCache} from "../src/S2CoveringCache";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2Cap} from "../src/S2Cap";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2LatLngRect} from "../src/S2LatLngRect";
+import {S1Angle} from "../src/S1Angle";
+import {expect} from "chai";
+
+function cap(lat:number, lng:number, degrees = 0.5):S2Cap {
+  return S2Cap.fromAxisAngle(S2LatLng.fromDegrees(lat, lng).toPoint(), S1Angle.degrees(degrees));
+}
+
+describe('S2CoveringCache', () => {
+  it('should return the same covering as the coverer and share it', () => {
+    const coverer = new S2RegionCoverer().setMaxCells(20).setMaxLevel(16);
+    const cache = new S2CoveringCache(coverer);
+    const region = cap(45, 12);
+    const expected = new S2RegionCoverer().setMaxCells(20).setMaxLevel(16).getCoveringCells(region).map(id => id.toToken());
+
+    const first = cache.getCoveringUnion(region);
+    expect(first.getCellIds().map(id => id.toToken())).to.be.deep.eq(expected);
+    // An equal region built separately hits the same entry.
+    expect(cache.getCoveringUnion(cap(45, 12))).to.be.eq(first);
+    expect(cache.getStats()).to.be.deep.eq({hits: 1, misses: 1, evictions: 0, size: 1, cells: first.size()});
+  });
+
+  it('should return frozen unions', () => {
+    const cache = new S2CoveringCache(new S2RegionCoverer().setMaxCells(8));
+    const union = cache.getCoveringUnion(cap(10, 10));
+    expect(Object.isFrozen(union)).is.true;
+    expect(() => union.getCellIds().push(union.cellId(0))).to.throw();
+    expect(() => union.initRawSwap([])).to.throw();
+  });
+
+  it('should key by coverer parameters and covering type', () => {
+    const coverer = new S2RegionCoverer().setMaxCells(8);
+    const cache = new S2CoveringCache(coverer);
+    const rect = S2LatLngRect.fromPointPair(S2LatLng.fromDegrees(45, 11), S2LatLng.fromDegrees(46, 12.5));
+    const covering = cache.getCoveringUnion(rect);
+    const interior = cache.getInteriorCoveringUnion(rect);
+    expect(interior).not.to.be.eq(covering);
+    coverer.setMaxCells(30);
+    const finer = cache.getCoveringUnion(rect);
+    expect(finer).not.to.be.eq(covering);
+    expect(finer.size()).to.be.gt(covering.size());
+    coverer.setMaxCells(8);
+    expect(cache.getCoveringUnion(rect)).to.be.eq(covering);
+    expect(cache.getStats().misses).to.be.eq(3);
+    expect(cache.getStats().hits).to.be.eq(1);
+  });
+
+  it('should evict the least recently used entries', () => {
+    const cache = new S2CoveringCache(new S2RegionCoverer().setMaxCells(8), 2);
+    const a = cache.getCoveringUnion(cap(0, 0));
+    cache.getCoveringUnion(cap(0, 10));
+    cache.getCoveringUnion(cap(0, 0));
+    cache.getCoveringUnion(cap(0, 20));
+    expect(cache.getStats().evictions).to.be.eq(1);
+    expect(cache.getCoveringUnion(cap(0, 0))).to.be.eq(a);
+    cache.getCoveringUnion(cap(0, 10));
+    expect(cache.getStats()).to.include({hits: 2, misses: 4, evictions: 2, size: 2});
+  });
+
+  it('should evict by total number of cells', () => {
+    const cache = new S2CoveringCache(new S2RegionCoverer().setMaxCells(8), 1000, 10);
+    for (let i = 0; i < 5; i++) {
+      cache.getCoveringUnion(cap(0, 10 * i));
+    }
+    expect(cache.getStats().cells).to.be.lte(10);
+    expect(cache.getStats().evictions).to.be.gt(0);
+  });
+
+  it('should only cache unknown regions with an explicit key', () => {
+    const coverer = new S2RegionCoverer().setMaxCells(8);
+    const cache = new S2CoveringCache(coverer);
+    const union = coverer.getCoveringUnion(cap(30, 30));
+    const first = cache.getCoveringUnion(union);
+    expect(cache.getCoveringUnion(union)).not.to.be.eq(first);
+    expect(cache.getCoveringUnion(union, 'zone-1')).to.be.eq(cache.getCoveringUnion(union, 'zone-1'));
+    expect(cache.getStats()).to.include({hits: 1, misses: 3, size: 1});
+  });
+});
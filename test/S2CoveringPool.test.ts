@@ -0,0 +1,89 @@
+import {S2CoveringPool} from "../src/S2CoveringPool";
+import {S2RegionCodec} from "../src/S2RegionCodec";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2PackedCellUnion} from "../src/S2PackedCellUnion";
+import {S2CellIdBits} from "../src/S2CellIdBits";
+import {S2Cap} from "../src/S2Cap";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2Region} from "../src/S2Region";
+import {S1Angle} from "../src/S1Angle";
+import {expect} from "chai";
+
+describe('S2CoveringPool', () => {
+  const regions:S2Region[] = [];
+  for (let i = 0; i < 300; i++) {
+    const lat = -80 + 160 * ((i * 0.618034) % 1);
+    const lng = -180 + 360 * ((i * 0.754878) % 1);
+    regions.push(S2Cap.fromAxisAngle(S2LatLng.fromDegrees(lat, lng).toPoint(), S1Angle.degrees(0.01 + (i % 7) * 0.2)));
+  }
+  const coverer = new S2RegionCoverer().setMaxCells(50).setMaxLevel(18);
+  let pool:S2CoveringPool;
+
+  before(() => {
+    pool = new S2CoveringPool(3, 16);
+  });
+
+  after(() => pool.close());
+
+  it('computes the same coverings as the coverer', async () => {
+    const batch = await pool.getCoverings(regions, coverer);
+    expect(batch.offsets.length).to.eq(regions.length + 1);
+    regions.forEach((region, i) => {
+      const covering = S2PackedCellUnion.fromRawWords(batch.cells.slice(2 * batch.offsets[i], 2 * batch.offsets[i + 1]));
+      expect(Array.from(covering.getWords())).to.deep.eq(Array.from(S2PackedCellUnion.fromCellUnion(coverer.getCoveringUnion(region)).getWords()));
+    });
+
+    const interior = await pool.getCoverings(S2RegionCodec.encode(regions), coverer, true);
+    expect(interior.cells.length).to.eq(regions.reduce((sum, region) => sum + 2 * coverer.getInteriorCoveringUnion(region).size(), 0));
+  }).timeout(20000);
+
+  it('computes cell ids in bulk', async () => {
+    const lats = new Float64Array(10000);
+    const lngs = new Float64Array(10000);
+    for (let i = 0; i < lats.length; i++) {
+      lats[i] = -90 + 180 * ((i * 0.618034) % 1);
+      lngs[i] = -180 + 360 * ((i * 0.754878) % 1);
+    }
+    const expected = new Uint32Array(2 * lats.length);
+    S2CellIdBits.fromLatLngDegrees(lats, lngs, 14, expected);
+    expect(Array.from(await pool.cellIdsFromLatLngDegrees(lats, lngs, 14))).to.deep.eq(Array.from(expected));
+  }).timeout(20000);
+
+  it('needs at least one worker', () => {
+    expect(() => new S2CoveringPool(0)).to.throw();
+    expect(() => new S2CoveringPool(-1)).to.throw();
+  });
+
+  it('reports failed tasks', async () => {
+    let error:Error = null;
+    try {
+      // A loop without vertices can be split into tasks but not decoded.
+      await pool.getCoverings(new Float64Array([4, 0]), coverer);
+    } catch (e) {
+      error = e;
+    }
+    expect(error).to.be.not.null;
+    // The pool is still usable.
+    expect((await pool.getCoverings(regions.slice(0, 5), coverer)).offsets.length).to.eq(6);
+  }).timeout(20000);
+
+  it('fails the task of a worker that exits and replaces it', async () => {
+    const single = new S2CoveringPool(1);
+    try {
+      const covering = single.getCoverings(regions, coverer);
+      // Stopped without an error, while it runs the task.
+      await single['workers'][0].terminate();
+      let error:Error = null;
+      try {
+        await covering;
+      } catch (e) {
+        error = e;
+      }
+      expect(error).to.be.not.null;
+      expect(single.size()).to.eq(1);
+      expect((await single.getCoverings(regions.slice(0, 5), coverer)).offsets.length).to.eq(6);
+    } finally {
+      await single.close();
+    }
+  }).timeout(20000);
+});
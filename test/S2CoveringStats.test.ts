@@ -0,0 +1,94 @@
+import {expect} from "chai";
+import {S2CoveringMetrics, S2CoveringStats, S2NormalizeStats} from "../src/S2CoveringStats";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2CellUnion} from "../src/S2CellUnion";
+import {S2Cap} from "../src/S2Cap";
+import {S2Cell} from "../src/S2Cell";
+import {S2CellId} from "../src/S2CellId";
+import {S2Region} from "../src/S2Region";
+import {S2LatLng} from "../src/S2LatLng";
+import {S1Angle} from "../src/S1Angle";
+
+/** Delegates to a region, counting the calls the coverer makes. */
+function countingRegion(region:S2Region) {
+  const counts = {mayIntersect: 0, contains: 0};
+  const wrapped:S2Region = {
+    getCapBound: () => region.getCapBound(),
+    getRectBound: () => region.getRectBound(),
+    mayIntersectC: (cell:S2Cell) => { counts.mayIntersect++; return region.mayIntersectC(cell); },
+    containsC: (cell:S2Cell) => { counts.contains++; return region.containsC(cell); },
+  } as S2Region;
+  return {wrapped, counts};
+}
+
+describe('S2CoveringStats', () => {
+  const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.4, 11.9).toPoint(), S1Angle.degrees(0.5));
+
+  afterEach(() => S2CellUnion.setObserver(null));
+
+  it('reports what a covering did', () => {
+    const reported:S2CoveringStats[] = [];
+    const coverer = new S2RegionCoverer().setMaxCells(50).setMaxLevel(20).setObserver({onCovering: s => reported.push(s)});
+    const {wrapped, counts} = countingRegion(cap);
+    const union = coverer.getCoveringUnion(wrapped);
+
+    expect(reported.length).to.eq(1);
+    const stats = reported[0];
+    expect(stats.interior).to.be.false;
+    expect(stats.truncated).to.be.false;
+    expect(stats.mayIntersectCalls).to.eq(counts.mayIntersect);
+    expect(stats.containsCalls).to.eq(counts.contains);
+    expect(stats.candidatesCreated).to.be.gt(0);
+    expect(stats.maxQueueSize).to.be.gt(0);
+    expect(stats.resultCells).to.be.gte(union.size());
+    expect(stats.expandedPerLevel.reduce((a, b) => a + (b || 0), 0)).to.be.gt(0);
+    expect(stats.timeMs).to.be.gte(0);
+
+    coverer.getInteriorCoveringUnion(cap);
+    expect(reported[1].interior).to.be.true;
+
+    coverer.setObserver(null).getCoveringUnion(cap);
+    expect(reported.length).to.eq(2);
+  });
+
+  it('reports truncated streaming coverings', async () => {
+    const reported:S2CoveringStats[] = [];
+    const coverer = new S2RegionCoverer().setMaxCells(1000).setMaxLevel(20).setObserver({onCovering: s => reported.push(s)});
+    await coverer.getCoveringUnionAsync(cap, {maxCandidates: 100});
+    expect(reported.length).to.eq(1);
+    expect(reported[0].truncated).to.be.true;
+    expect(reported[0].candidatesCreated).to.be.gte(100);
+  });
+
+  it('reports normalizations', () => {
+    const reported:S2NormalizeStats[] = [];
+    S2CellUnion.setObserver({onNormalize: s => reported.push(s)});
+    const parent = S2CellId.fromPoint(S2LatLng.fromDegrees(45.4, 11.9).toPoint()).parentL(10);
+    const children = [parent.childBegin()];
+    for (let i = 1; i < 4; i++) {
+      children.push(children[i - 1].next());
+    }
+    const union = new S2CellUnion();
+    union.initFromCellIds([...children, parent]);
+    expect(reported).to.deep.eq([{inputCells: 5, outputCells: 1, timeMs: reported[0].timeMs}]);
+  });
+
+  it('exports the aggregated metrics in the Prometheus format', () => {
+    const metrics = new S2CoveringMetrics();
+    S2CellUnion.setObserver(metrics);
+    const coverer = new S2RegionCoverer().setMaxCells(20).setObserver(metrics);
+    coverer.getCoveringUnion(cap);
+    coverer.getInteriorCoveringUnion(cap);
+
+    expect(metrics.coverings).to.eq(2);
+    expect(metrics.interiorCoverings).to.eq(1);
+    expect(metrics.normalizations).to.eq(2);
+    const text = metrics.toPrometheus('geo_');
+    expect(text).to.contain('# TYPE geo_coverings_total counter\ngeo_coverings_total 2\n');
+    expect(text).to.contain('geo_covering_seconds_bucket{le="+Inf"} 2\n');
+    expect(text).to.contain('geo_covering_seconds_count 2\n');
+    expect(/geo_covering_expanded_cells_total\{level="\d+"\} \d+\n/.test(text)).to.be.true;
+    expect(text).to.contain(`geo_covering_may_intersect_calls_total ${metrics.mayIntersectCalls}\n`);
+    expect(text).to.contain('geo_normalize_total 2\n');
+  });
+});
@@ -0,0 +1,150 @@
+import {S2Loop} from "../src/S2Loop";
+import {S2EdgeUtil} from "../src/S2EdgeUtil";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2Point} from "../src/S2Point";
+import {S2Cell} from "../src/S2Cell";
+import {S2CellId} from "../src/S2CellId";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {expect} from "chai";
+
+/**
+ * A CCW star shaped loop around (lat, lng) whose vertices alternate between
+ * the outer radius and a wobbling inner one, so that points near the boundary
+ * are inside or outside depending on their bearing.
+ */
+function starVertices(lat:number, lng:number, n:number, outer:number, inner:number):S2Point[] {
+  const vertices:S2Point[] = [];
+  for (let i = 0; i < n; i++) {
+    const angle = 2 * Math.PI * i / n;
+    const r = (i % 2) ? outer : inner * (0.8 + 0.2 * Math.sin(i * 0.37));
+    vertices.push(S2LatLng.fromDegrees(lat + r * Math.sin(angle), lng + r * Math.cos(angle) / Math.cos(lat * Math.PI / 180)).toPoint());
+  }
+  return vertices;
+}
+
+/** Linear scan containment, counting the crossings from a point known to be inside. */
+function bruteForceContains(vertices:S2Point[], inside:S2Point, p:S2Point):boolean {
+  let result = true;
+  const crosser = new S2EdgeUtil.EdgeCrosser(inside, p, vertices[vertices.length - 1]);
+  for (const v of vertices) {
+    if (crosser.edgeOrVertexCrossing(v)) {
+      result = !result;
+    }
+  }
+  return result;
+}
+
+function point(lat:number, lng:number):S2Point {
+  return S2LatLng.fromDegrees(lat, lng).toPoint();
+}
+
+describe('S2Loop', () => {
+  const center = point(45.5, 12.6);
+  const vertices = starVertices(45.5, 12.6, 2000, 0.5, 0.3);
+  const loop = new S2Loop(vertices);
+  const queries:S2Point[] = [];
+  for (let i = 0; i < 2000; i++) {
+    // Deterministic points spread over the bounding box of the star.
+    queries.push(point(45.5 + 1.2 * ((i * 0.618034) % 1 - 0.5), 12.6 + 1.6 * ((i * 0.754878) % 1 - 0.5)));
+  }
+
+  it('contains the same points as a linear scan', () => {
+    let inside = 0;
+    for (const q of queries) {
+      const expected = bruteForceContains(vertices, center, q);
+      expect(loop.contains(q)).to.be.eq(expected);
+      inside += expected ? 1 : 0;
+    }
+    // Make sure both outcomes are exercised.
+    expect(inside).to.be.gt(200);
+    expect(inside).to.be.lt(queries.length - 200);
+  });
+
+  it('contains alternate vertices of a star consistently', () => {
+    // Each vertex belongs to exactly one of a loop and its reverse.
+    const reversed = new S2Loop(vertices.slice().reverse());
+    for (let i = 0; i < 20; i++) {
+      expect(loop.contains(vertices[i])).to.be.not.eq(reversed.contains(vertices[i]));
+    }
+  });
+
+  it('interprets a clockwise loop as its complement', () => {
+    const reversed = new S2Loop(vertices.slice().reverse());
+    for (const q of queries.slice(0, 200)) {
+      expect(reversed.contains(q)).to.be.eq(!loop.contains(q));
+    }
+    expect(reversed.contains(new S2Point(0, 0, 1))).is.true;
+    expect(reversed.contains(new S2Point(0, 0, -1))).is.true;
+    expect(reversed.getRectBound().isFull()).is.true;
+  });
+
+  it('has a tight rect bound', () => {
+    const bound = loop.getRectBound();
+    for (const v of vertices) {
+      expect(bound.containsP(v)).is.true;
+    }
+    expect(bound.latLo().degrees()).to.be.closeTo(45, 1e-4);
+    expect(bound.latHi().degrees()).to.be.closeTo(46, 1e-4);
+    expect(loop.getCapBound().contains(center)).is.true;
+
+    // The edge bounds overlap end to start, which S1Interval.union used to get wrong.
+    const notched = S2Loop.fromLatLngs([S2LatLng.fromDegrees(44.5, 11), S2LatLng.fromDegrees(44.6, 12.8),
+      S2LatLng.fromDegrees(45.8, 13), S2LatLng.fromDegrees(45.2, 12.1), S2LatLng.fromDegrees(46.2, 11.2)]);
+    expect(notched.getRectBound().lngHi().degrees()).to.be.closeTo(13, 1e-4);
+    expect(notched.contains(S2LatLng.fromDegrees(45.55, 12.85).toPoint())).is.true;
+  });
+
+  it('contains a loop around the north pole', () => {
+    const polar = S2Loop.fromLatLngs([
+      S2LatLng.fromDegrees(80, 0),
+      S2LatLng.fromDegrees(80, 120),
+      S2LatLng.fromDegrees(80, -120),
+    ]);
+    expect(polar.contains(new S2Point(0, 0, 1))).is.true;
+    expect(polar.contains(point(85, 45))).is.true;
+    expect(polar.contains(point(75, 45))).is.false;
+    expect(polar.getRectBound().lng.isFull()).is.true;
+    expect(polar.getRectBound().latHi().degrees()).to.be.closeTo(90, 1e-9);
+  });
+
+  it('relates cells consistently with point containment', () => {
+    let contained = 0;
+    let disjoint = 0;
+    for (let i = 0; i < 500; i++) {
+      const cell = new S2Cell(S2CellId.fromPoint(queries[i]).parentL(8 + (i % 8)));
+      const containsCell = loop.containsC(cell);
+      const mayIntersect = loop.mayIntersectC(cell);
+      contained += containsCell ? 1 : 0;
+      disjoint += mayIntersect ? 0 : 1;
+      for (const p of [cell.getCenter(), cell.getVertex(0), cell.getVertex(1), cell.getVertex(2), cell.getVertex(3)]) {
+        const inside = loop.contains(p);
+        if (containsCell) {
+          expect(inside).is.true;
+        }
+        if (!mayIntersect) {
+          expect(inside).is.false;
+        }
+      }
+    }
+    expect(contained).to.be.gt(0);
+    expect(disjoint).to.be.gt(0);
+  });
+
+  it('gives tighter coverings than its cap bound', () => {
+    const coverer = new S2RegionCoverer().setMaxCells(100).setMaxLevel(20);
+    const covering = coverer.getCoveringUnion(loop);
+    for (const v of vertices) {
+      expect(covering.contains(S2CellId.fromPoint(v))).is.true;
+    }
+    expect(covering.approxArea()).to.be.lt(coverer.getCoveringUnion(loop.getCapBound()).approxArea());
+
+    const interior = coverer.getInteriorCoveringUnion(loop);
+    expect(interior.size()).to.be.gt(0);
+    for (const id of interior.getCellIds()) {
+      const cell = new S2Cell(id);
+      for (let k = 0; k < 4; k++) {
+        expect(loop.contains(cell.getVertex(k))).is.true;
+      }
+    }
+  });
+});
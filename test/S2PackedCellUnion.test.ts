@@ -0,0 +1,96 @@
+import { S2CellUnion } from '../src/S2CellUnion';
+import { S2CellId } from '../src/S2CellId';
+import { S2PackedCellUnion } from '../src/S2PackedCellUnion';
+import {expect} from "chai";
+
+const unionTests = require('./assets/union-tests.json');
+function createUnionFromTokensList(tokens:string[]):S2PackedCellUnion {
+  return S2PackedCellUnion.fromCellIds(tokens.map(token => S2CellId.fromToken(token)));
+}
+function tokens(union:S2PackedCellUnion):string[] {
+  return union.getCellIds().map(c => c.toToken());
+}
+describe('S2PackedCellUnion', () => {
+  describe('java data', () => {
+    it('should reorder cells correctly when creating from cellids', () => {
+      unionTests.forEach((test) => {
+        expect(tokens(createUnionFromTokensList(test.firstCells))).to.be.deep.eq(test.firstUnionResultCells);
+        expect(tokens(createUnionFromTokensList(test.scndCells))).to.be.deep.eq(test.scndUnionResultCells);
+      });
+    });
+
+    it('should compute union correctly', () => {
+      unionTests.forEach((test) => {
+        const result = S2PackedCellUnion.union(
+          createUnionFromTokensList(test.firstCells),
+          createUnionFromTokensList(test.scndCells)
+        );
+        expect(tokens(result)).to.be.deep.eq(test.union);
+      });
+    });
+
+    it('should compute intersection correctly', () => {
+      unionTests.forEach((test) => {
+        const result = S2PackedCellUnion.intersection(
+          createUnionFromTokensList(test.firstCells),
+          createUnionFromTokensList(test.scndCells)
+        );
+        expect(tokens(result)).to.be.deep.eq(test.intersectionUnionCells);
+      });
+    });
+  });
+
+  it('should compute difference correctly', () => {
+    unionTests.forEach((test) => {
+      const x = createUnionFromTokensList(test.firstCells);
+      const y = createUnionFromTokensList(test.scndCells);
+      const difference = S2PackedCellUnion.difference(x, y);
+      // The difference does not overlap y, and together with x & y it is x.
+      expect(S2PackedCellUnion.intersection(difference, y).size()).to.be.eq(0);
+      const restored = S2PackedCellUnion.union(difference, S2PackedCellUnion.intersection(x, y));
+      expect(tokens(restored)).to.be.deep.eq(tokens(x));
+      expect(S2PackedCellUnion.difference(x, x).size()).to.be.eq(0);
+    });
+    const parent = S2CellId.fromToken('357ca574');
+    const child = parent.childBegin().childBegin();
+    const holed = S2PackedCellUnion.difference(createUnionFromTokensList([parent.toToken()]), createUnionFromTokensList([child.toToken()]));
+    expect(holed.size()).to.be.eq(6);
+    expect(holed.contains(child)).to.be.false;
+    expect(holed.contains(child.next())).to.be.true;
+  });
+
+  it('should answer contains and intersects like S2CellUnion', () => {
+    unionTests.forEach((test) => {
+      const union = new S2CellUnion();
+      union.initFromCellIds(test.firstCells.map(token => S2CellId.fromToken(token)));
+      const packed = S2PackedCellUnion.fromCellUnion(union);
+      test.scndCells.concat(test.firstCells).map(token => S2CellId.fromToken(token)).forEach(id => {
+        [id, id.parentL(Math.max(0, id.level() - 2)), id.childBegin()].forEach(cell => {
+          expect(packed.contains(cell)).to.be.eq(union.contains(cell));
+          expect(packed.intersects(cell)).to.be.eq(union.intersects(cell));
+        });
+      });
+    });
+  });
+
+  it('should normalize siblings', () => {
+    const union = createUnionFromTokensList(["357ca571", "357ca573", "357ca575", "357ca577"]);
+    expect(tokens(union)).to.be.deep.eq(['357ca574']);
+  });
+
+  it('should share the buffer it is built from', () => {
+    const union = createUnionFromTokensList(unionTests[0].union);
+    const words = union.getWords();
+    expect(S2PackedCellUnion.fromRawWords(words).getWords().buffer).to.be.eq(words.buffer);
+
+    const bytes = union.getBytes();
+    expect(bytes.buffer).to.be.eq(words.buffer);
+    const fromBytes = S2PackedCellUnion.fromRawBytes(bytes);
+    expect(fromBytes.getWords().buffer).to.be.eq(words.buffer);
+    expect(tokens(fromBytes)).to.be.deep.eq(unionTests[0].union);
+
+    const unaligned = new Uint8Array(bytes.length + 1);
+    unaligned.set(bytes, 1);
+    expect(tokens(S2PackedCellUnion.fromRawBytes(unaligned.subarray(1)))).to.be.deep.eq(unionTests[0].union);
+  });
+});
@@ -0,0 +1,104 @@
+import {expect} from "chai";
+import {S2PointIndex} from "../src/S2PointIndex";
+import {S2Point} from "../src/S2Point";
+import {S2Cap} from "../src/S2Cap";
+import {S2Cell} from "../src/S2Cell";
+import {S2CellId} from "../src/S2CellId";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2LatLngRect} from "../src/S2LatLngRect";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S1Angle} from "../src/S1Angle";
+import {S1ChordAngle} from "../src/S1ChordAngle";
+
+/** Points scattered around a center, a few of them duplicated. */
+function randomPoints(count:number, lat:number, lng:number, spread:number):S2Point[] {
+  const points:S2Point[] = [];
+  for (let i = 0; i < count; i++) {
+    points.push(S2LatLng.fromDegrees(lat + spread * (Math.random() - 0.5), lng + spread * (Math.random() - 0.5)).toPoint());
+  }
+  for (let i = 0; i < count / 20; i++) {
+    points.push(points[i]);
+  }
+  return points;
+}
+
+function distance2(a:S2Point, b:S2Point):number {
+  return S1ChordAngle.fromS2Point(a, b).getLength2();
+}
+
+describe('S2PointIndex', () => {
+  const points = randomPoints(3000, 45.4, 11.9, 2);
+  const index = S2PointIndex.fromPoints(points);
+
+  it('finds the points in a region', () => {
+    const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.5, 12).toPoint(), S1Angle.degrees(0.3));
+    const rect = S2LatLngRect.fromPointPair(S2LatLng.fromDegrees(45, 11.5), S2LatLng.fromDegrees(45.6, 12.1));
+    const cell = new S2Cell(S2CellId.fromPoint(points[0]).parentL(9));
+    for (const region of [cap, rect, cell]) {
+      const expected = points.map((p, i) => i).filter(i => region instanceof S2LatLngRect
+          ? region.containsLL(S2LatLng.fromPoint(points[i])) : region.contains(points[i]));
+      const found = index.getPointsInRegion(region, new S2RegionCoverer().setMaxCells(20)).map(e => e.data);
+      expect(found.sort((a, b) => a - b)).to.deep.eq(expected);
+    }
+  });
+
+  it('stops visiting when the visitor returns false', () => {
+    const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.4, 11.9).toPoint(), S1Angle.degrees(1));
+    let visited = 0;
+    expect(index.visitPointsInRegion(cap, () => ++visited < 10)).to.be.false;
+    expect(visited).to.eq(10);
+  });
+
+  it('finds the closest points', () => {
+    for (let t = 0; t < 20; t++) {
+      const target = S2LatLng.fromDegrees(45.4 + 3 * (Math.random() - 0.5), 11.9 + 3 * (Math.random() - 0.5)).toPoint();
+      const expected = points.map(p => distance2(target, p)).sort((a, b) => a - b);
+      const k = 1 + Math.floor(Math.random() * 50);
+      const found = index.findClosestPoints(target, k);
+      expect(found.length).to.eq(k);
+      found.forEach((neighbor, i) => {
+        expect(neighbor.distance.getLength2()).to.be.closeTo(expected[i], 1e-15);
+        expect(neighbor.point.equals(points[neighbor.data])).to.be.true;
+      });
+    }
+  });
+
+  it('finds the points within a distance', () => {
+    const target = S2LatLng.fromDegrees(45.4, 11.9).toPoint();
+    const radius = S1ChordAngle.fromS1Angle(S1Angle.degrees(0.2));
+    const expected = points.filter(p => distance2(target, p) <= radius.getLength2()).length;
+    const found = index.findPointsWithinDistance(target, radius);
+    expect(found.length).to.eq(expected);
+    for (let i = 1; i < found.length; i++) {
+      expect(found[i].distance.getLength2()).to.be.gte(found[i - 1].distance.getLength2());
+    }
+    expect(index.findClosestPoints(target, 5, radius).length).to.eq(Math.min(5, expected));
+  });
+
+  it('adds and removes points', () => {
+    const dynamic = S2PointIndex.fromPoints(points.slice(0, 500));
+    const expected = points.slice(0, 500).map((p, i) => ({p, data: i}));
+    for (let i = 500; i < 2500; i++) {
+      dynamic.add(points[i], i);
+      expected.push({p: points[i], data: i});
+      if (i % 3 === 0) {
+        const victim = expected.splice(Math.floor(Math.random() * expected.length), 1)[0];
+        expect(dynamic.remove(victim.p, victim.data)).to.be.true;
+        expect(dynamic.remove(victim.p, victim.data)).to.be.false;
+      }
+    }
+    expect(dynamic.size()).to.eq(expected.length);
+
+    const target = points[42];
+    const check = () => {
+      const found = dynamic.findClosestPoints(target, 30).map(n => n.distance.getLength2());
+      const brute = expected.map(e => distance2(target, e.p)).sort((a, b) => a - b).slice(0, 30);
+      expect(found).to.deep.eq(brute);
+      const all = dynamic.getPointsInRegion(S2Cap.full()).map(e => e.data).sort((a, b) => a - b);
+      expect(all).to.deep.eq(expected.map(e => e.data).sort((a, b) => a - b));
+    };
+    check();
+    dynamic.compact();
+    check();
+  });
+});
@@ -0,0 +1,87 @@
+import {expect} from "chai";
+import {S2PreparedRegion} from "../src/S2PreparedRegion";
+import {S2Point} from "../src/S2Point";
+import {S2Cap} from "../src/S2Cap";
+import {S2Cell} from "../src/S2Cell";
+import {S2CellId} from "../src/S2CellId";
+import {S2CellUnion} from "../src/S2CellUnion";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2LatLngRect} from "../src/S2LatLngRect";
+import {S2Loop} from "../src/S2Loop";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S1Angle} from "../src/S1Angle";
+
+function randomPoints(count:number, lat:number, lng:number, spread:number):S2Point[] {
+  const points:S2Point[] = [];
+  for (let i = 0; i < count; i++) {
+    points.push(S2LatLng.fromDegrees(lat + spread * (Math.random() - 0.5), lng + spread * (Math.random() - 0.5)).toPoint());
+  }
+  return points;
+}
+
+describe('S2PreparedRegion', () => {
+  const points = randomPoints(20000, 45.4, 11.9, 3);
+  const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.5, 12).toPoint(), S1Angle.degrees(0.8));
+  const rect = S2LatLngRect.fromPointPair(S2LatLng.fromDegrees(45, 11.5), S2LatLng.fromDegrees(45.9, 12.6));
+  const loop = S2Loop.fromLatLngs([
+    S2LatLng.fromDegrees(44.5, 11), S2LatLng.fromDegrees(44.6, 12.8), S2LatLng.fromDegrees(45.8, 13),
+    S2LatLng.fromDegrees(45.2, 12.1), S2LatLng.fromDegrees(46.2, 11.2)]);
+  const cell = new S2Cell(S2CellId.fromPoint(S2LatLng.fromDegrees(45.4, 11.9).toPoint()).parentL(8));
+  const union = new S2RegionCoverer().setMaxCells(30).getCoveringUnion(cap);
+
+  it('classifies points like the region', () => {
+    for (const region of [cap, rect, loop, cell]) {
+      const prepared = new S2PreparedRegion(region);
+      for (const p of points) {
+        const expected = region instanceof S2LatLngRect ? region.containsP(p) : region.contains(p);
+        expect(prepared.contains(p)).to.eq(expected);
+      }
+    }
+    const prepared = new S2PreparedRegion(union);
+    for (const p of points) {
+      expect(prepared.contains(p)).to.eq(union.containsPoint(p));
+    }
+  });
+
+  it('answers most points without the exact test', () => {
+    const prepared = new S2PreparedRegion(loop);
+    points.forEach(p => prepared.contains(p));
+    const stats = prepared.getStats();
+    expect(stats.points).to.eq(points.length);
+    expect(stats.interiorHits + stats.exteriorMisses + stats.exactTests).to.eq(points.length);
+    expect(stats.interiorHits).to.be.gt(0);
+    expect(stats.exteriorMisses).to.be.gt(0);
+    expect(prepared.getHitRate()).to.be.gt(0.9);
+
+    const coarse = new S2PreparedRegion(loop, new S2RegionCoverer().setMaxCells(8));
+    points.forEach(p => coarse.contains(p));
+    expect(coarse.getHitRate()).to.be.lt(prepared.getHitRate());
+
+    prepared.resetStats();
+    expect(prepared.getStats()).to.deep.eq({points: 0, interiorHits: 0, exteriorMisses: 0, exactTests: 0});
+    expect(prepared.getHitRate()).to.eq(0);
+  });
+
+  it('joins the cells that touch into one range', () => {
+    // Two children of a cell, which are contiguous on the curve.
+    const parent = S2CellId.fromPoint(S2LatLng.fromDegrees(45.4, 11.9).toPoint()).parentL(10);
+    const siblings = new S2CellUnion();
+    siblings.initRawCellIds([parent.childBeginL(11), parent.childBeginL(11).next()]);
+    const prepared = new S2PreparedRegion(siblings, new S2RegionCoverer().setMinLevel(11).setMaxLevel(11));
+    expect(prepared.getInteriorCovering().size()).to.eq(2);
+    expect(prepared.numRanges()).to.eq(1);
+    // Crossing into the high word: the last leaf of face 0 (lo 0xffffffff) and the next one.
+    const face = S2CellId.fromFace(0);
+    const both = new S2CellUnion();
+    both.initRawCellIds([face.childBeginL(1).next().next().next(), S2CellId.fromFace(1).childBeginL(1)]);
+    expect(new S2PreparedRegion(both, new S2RegionCoverer().setMinLevel(1).setMaxLevel(1)).numRanges()).to.eq(1);
+  });
+
+  it('tests packed coordinates in batch', () => {
+    const prepared = new S2PreparedRegion(cap);
+    const xyz = new Float64Array(3 * points.length);
+    points.forEach((p, i) => xyz.set([p.x, p.y, p.z], 3 * i));
+    const inside = prepared.containsPoints(xyz);
+    expect(Array.from(inside)).to.deep.eq(points.map(p => cap.contains(p) ? 1 : 0));
+  });
+});
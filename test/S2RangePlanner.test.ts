@@ -0,0 +1,104 @@
+import {expect} from "chai";
+import {S2RangePlanner} from "../src/S2RangePlanner";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2CellId} from "../src/S2CellId";
+import {S2CellUnion} from "../src/S2CellUnion";
+import {S2Cell} from "../src/S2Cell";
+import {S2Cap} from "../src/S2Cap";
+import {S2LatLng} from "../src/S2LatLng";
+import {S1Angle} from "../src/S1Angle";
+import * as Long from 'long';
+
+/** The number of leaf cells strictly between two leaf cell ids. */
+function gapLeaves(endId:S2CellId, startId:S2CellId):number {
+  return startId.id.toUnsigned().subtract(endId.id.toUnsigned()).shiftRightUnsigned(1).toNumber() - 1;
+}
+
+describe('S2RangePlanner', () => {
+  const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.5, 12).toPoint(), S1Angle.degrees(0.5));
+  const coverer = new S2RegionCoverer().setMaxCells(40).setMaxLevel(16);
+  const covering = coverer.getCoveringUnion(cap);
+  const leafArea = S2Cell.averageArea(S2CellId.MAX_LEVEL);
+
+  it('joins the cells that touch', () => {
+    const union = new S2CellUnion();
+    union.initFromIds(['357ca571', '357ca573', '357ca57c', '357ca584'].map(token => S2CellId.fromToken(token).id));
+    const plan = new S2RangePlanner().setMaxRanges(Number.MAX_SAFE_INTEGER).planCovering(union);
+    // The first two cells are siblings, the third ends right before the fourth.
+    expect(plan.size()).to.eq(2);
+    expect(plan.startId(0).id.equals(S2CellId.fromToken('357ca571').rangeMin().id)).is.true;
+    expect(plan.endId(0).id.equals(S2CellId.fromToken('357ca573').rangeMax().id)).is.true;
+    expect(plan.startId(1).id.equals(S2CellId.fromToken('357ca57c').rangeMin().id)).is.true;
+    expect(plan.endId(1).id.equals(S2CellId.fromToken('357ca584').rangeMax().id)).is.true;
+    expect(plan.getExtraArea()).to.eq(0);
+    expect(plan.getMergedGapAreas().length).to.eq(0);
+  });
+
+  it('covers the covering with at most max ranges', () => {
+    const unlimited = new S2RangePlanner(coverer).setMaxRanges(Number.MAX_SAFE_INTEGER).plan(cap);
+    expect(unlimited.size()).to.be.gt(8);
+    expect(unlimited.getCoveringArea()).to.be.closeTo(covering.approxArea(), covering.approxArea() * 0.5);
+    let extraArea = 0;
+    for (const maxRanges of [8, 4, 2, 1]) {
+      const plan = new S2RangePlanner(coverer).setMaxRanges(maxRanges).plan(cap);
+      expect(plan.size()).to.eq(maxRanges);
+      expect(plan.getMergedGapAreas().length).to.eq(unlimited.size() - maxRanges);
+      expect(plan.getExtraArea()).to.be.gt(extraArea);
+      expect(plan.getCoveringArea()).to.eq(unlimited.getCoveringArea());
+      extraArea = plan.getExtraArea();
+      for (let i = 0; i < plan.size(); i++) {
+        expect(plan.startId(i).lessOrEquals(plan.endId(i))).is.true;
+        if (i > 0) {
+          expect(gapLeaves(plan.endId(i - 1), plan.startId(i))).to.be.gt(0);
+        }
+      }
+      for (const id of covering.getCellIds()) {
+        expect(plan.contains(id.rangeMin())).is.true;
+        expect(plan.contains(id.rangeMax())).is.true;
+      }
+    }
+    const single = new S2RangePlanner(coverer).setMaxRanges(1).plan(cap);
+    expect(single.startId(0).id.equals(covering.cellId(0).rangeMin().id)).is.true;
+    expect(single.endId(0).id.equals(covering.cellId(covering.size() - 1).rangeMax().id)).is.true;
+  });
+
+  it('merges the smallest gaps first', () => {
+    const unlimited = new S2RangePlanner(coverer).setMaxRanges(Number.MAX_SAFE_INTEGER).plan(cap);
+    const gaps:number[] = [];
+    for (let i = 1; i < unlimited.size(); i++) {
+      gaps.push(gapLeaves(unlimited.endId(i - 1), unlimited.startId(i)) * leafArea);
+    }
+    gaps.sort((a, b) => a - b);
+    const plan = new S2RangePlanner(coverer).setMaxRanges(4).plan(cap);
+    const merged = Array.from(plan.getMergedGapAreas()).sort((a, b) => a - b);
+    merged.forEach((area, i) => expect(area).to.be.closeTo(gaps[i], gaps[i] * 1e-9));
+  });
+
+  it('always merges the gaps below the tolerance', () => {
+    const unlimited = new S2RangePlanner(coverer).setMaxRanges(Number.MAX_SAFE_INTEGER).plan(cap);
+    const tolerance = S2Cell.averageArea(8);
+    const plan = new S2RangePlanner(coverer).setMaxRanges(Number.MAX_SAFE_INTEGER).setMaxGapArea(tolerance).plan(cap);
+    expect(plan.size()).to.be.lt(unlimited.size());
+    for (let i = 1; i < plan.size(); i++) {
+      expect(gapLeaves(plan.endId(i - 1), plan.startId(i)) * leafArea).to.be.gt(tolerance);
+    }
+    for (const area of Array.from(plan.getMergedGapAreas())) {
+      expect(area).to.be.lte(tolerance);
+    }
+    // A limit still applies on top of the tolerance.
+    expect(new S2RangePlanner(coverer).setMaxRanges(2).setMaxGapArea(tolerance).plan(cap).size()).to.eq(2);
+  });
+
+  it('checks leaf ids against the ranges', () => {
+    const plan = new S2RangePlanner(coverer).setMaxRanges(4).plan(cap);
+    for (let i = 0; i < plan.size(); i++) {
+      expect(plan.contains(plan.startId(i))).is.true;
+      expect(plan.contains(plan.endId(i))).is.true;
+      expect(plan.contains(plan.startId(i).prev())).is.false;
+      expect(plan.contains(plan.endId(i).next())).is.false;
+    }
+    const words = plan.getStarts();
+    expect(Long.fromBits(words[0], words[1]).equals(plan.startId(0).id)).is.true;
+    expect(plan.getEnds().length).to.eq(2 * plan.size());
+  });
+});
@@ -0,0 +1,39 @@
+import {S2RegionCodec} from "../src/S2RegionCodec";
+import {S2Cap} from "../src/S2Cap";
+import {S2Cell} from "../src/S2Cell";
+import {S2CellId} from "../src/S2CellId";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2LatLngRect} from "../src/S2LatLngRect";
+import {S2Loop} from "../src/S2Loop";
+import {S2Region} from "../src/S2Region";
+import {S1Angle} from "../src/S1Angle";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {expect} from "chai";
+
+describe('S2RegionCodec', () => {
+  const regions:S2Region[] = [
+    S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.4, 11.9).toPoint(), S1Angle.degrees(0.3)),
+    S2LatLngRect.fromPointPair(S2LatLng.fromDegrees(-10, 170), S2LatLng.fromDegrees(5, -175)),
+    new S2Cell(S2CellId.fromPoint(S2LatLng.fromDegrees(-33.9, 151.2).toPoint()).parentL(9)),
+    S2Loop.fromLatLngs([S2LatLng.fromDegrees(0, 0), S2LatLng.fromDegrees(0, 1), S2LatLng.fromDegrees(1, 0.5)]),
+  ];
+
+  it('decodes the regions it encodes', () => {
+    const data = S2RegionCodec.encode(regions);
+    expect(data.length).to.eq(5 + 5 + 3 + 2 + 9);
+    const decoded = S2RegionCodec.decode(data);
+    expect(decoded.length).to.eq(regions.length);
+    const coverer = new S2RegionCoverer().setMaxCells(20);
+    regions.forEach((region, i) => {
+      expect(decoded[i].constructor).to.eq(region.constructor);
+      expect(coverer.getCoveringUnion(decoded[i]).getCellIds().map(id => id.toToken()))
+          .to.deep.eq(coverer.getCoveringUnion(region).getCellIds().map(id => id.toToken()));
+    });
+    expect((decoded[2] as S2Cell).id.toToken()).to.eq((regions[2] as S2Cell).id.toToken());
+  });
+
+  it('rejects unknown regions and records', () => {
+    expect(() => S2RegionCodec.encode([{} as S2Region])).to.throw();
+    expect(() => S2RegionCodec.decode(new Float64Array([9, 0, 0]))).to.throw();
+  });
+});
@@ -10,6 +10,7 @@ import { S2Region } from "../src/S2Region";
 import { S2 } from "../src/S2";
 import { S2Point } from "../src/S2Point";
 import { S2Cap } from "../src/S2Cap";
+import { S1Angle } from "../src/S1Angle";
 import { getRandomCap } from "./geometricTestCase";
 const genLocs = require('./assets/latlng-covering-tests.json');
 
@@ -188,6 +189,104 @@ describe('S2RegionCoverer', () => {
     }
   }).timeout(5000);
 
+  it('breaks priority ties like the previous sort-based queue', () => {
+    // Coverings and interior coverings computed with the queue that re-sorted
+    // its entries on every add (a stable sort, so equal priorities came out in
+    // insertion order). Polling ties in another order changes most of them.
+    const check = (region:S2Region, maxCells:number, covering:string, interior:string) => {
+      const coverer = new S2RegionCoverer().setMaxCells(maxCells);
+      expect(coverer.getCoveringCells(region).map(id => id.toToken()).join(' ')).to.eq(covering);
+      expect(coverer.getInteriorCoveringCells(region).map(id => id.toToken()).join(' ')).to.eq(interior);
+    };
+    // [lat, lng, radius in degrees, max cells, covering, interior covering]
+    const caps:[number, number, number, number, string, string][] = [
+      [45.5, 12, 1, 8, '477c 47802c 4781c 47824 47829',
+          '4778c 47794 477bf 477c4 477ec 477f4 4781f 47821'],
+      [0, 0, 10, 5, '054 0fc 104 1ac',
+          '055 0ff 101 1024 1ab'],
+      [90, 0, 20, 6, '45 4f 51 5b',
+          '44d 44f 454 4fc 504 5ac'],
+      [-33.9, 151.2, 0.3, 10, '6b0d54 6b0d5c 6b129 6b12b 6b12d 6b12ec 6b6d34 6b6d5 6b72a7 6b72ac',
+          '6b0d55 6b0d57 6b1295 6b1297 6b12ac 6b12b4 6b12bc 6b12c1 6b6d54 6b72ab'],
+    ];
+    for (const [lat, lng, radius, maxCells, covering, interior] of caps) {
+      check(S2Cap.fromAxisAngle(S2LatLng.fromDegrees(lat, lng).toPoint(), S1Angle.degrees(radius)), maxCells, covering, interior);
+    }
+    // [lat lo, lng lo, lat hi, lng hi, max cells, covering, interior covering]
+    const rects:[number, number, number, number, number, string, string][] = [
+      [44, 10, 46, 14, 7, '12d54 132c 1332c 4763 477c 4781 4783',
+          '12d55 132cb 477c4 477d4 477dc 477f 4781c'],
+      [-10, -10, 10, 10, 4, '054 0fc 104 1ac',
+          '055 0ff 101 1ab'],
+      [35, 135, 36, 140, 12, '35555 5ff8c 5fff 6001 6003 6004c 6017f 6019 601b 601d 601ec',
+          '5fff5 5fff7 60003 60019 6001d 6002f 6003b 60185 6018f 6019b 601b7 601c7'],
+    ];
+    for (const [latLo, lngLo, latHi, lngHi, maxCells, covering, interior] of rects) {
+      const rect = S2LatLngRect.fromPointPair(S2LatLng.fromDegrees(latLo, lngLo), S2LatLng.fromDegrees(latHi, lngHi));
+      check(rect, maxCells, covering, interior);
+    }
+  });
+
+  it('streams the same coverings as getCoveringUnion', async () => {
+    for (let i = 0; i < 50; ++i) {
+      const coverer = new S2RegionCoverer().setMaxCells(1 + Math.floor(Math.random() * 100))
+          .setLevelMod(1 + (i % 3)).setMinLevel(i % 5).setMaxLevel(20);
+      const cap = getRandomCap(0.1 * S2Cell.averageArea(20), 4 * S2.M_PI);
+
+      const streamed:S2CellId[] = [];
+      const stream = coverer.getCoveringStream(cap, {sliceMs: 0});
+      let step = await stream.next();
+      while (!step.done) {
+        streamed.push(step.value as S2CellId);
+        step = await stream.next();
+      }
+      expect(step.value).to.be.true;
+      const union = new S2CellUnion();
+      union.initFromCellIds(streamed);
+      expect(union.getCellIds().map(id => id.toToken())).to.deep.eq(coverer.getCoveringUnion(cap).getCellIds().map(id => id.toToken()));
+
+      const interior = await coverer.getInteriorCoveringUnionAsync(cap);
+      expect(interior.getCellIds().map(id => id.toToken())).to.deep.eq(coverer.getInteriorCoveringUnion(cap).getCellIds().map(id => id.toToken()));
+    }
+  });
+
+  it('returns a coarser but valid covering when the budget runs out', async () => {
+    const coverer = new S2RegionCoverer().setMaxCells(1000).setMaxLevel(20);
+    const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.4, 11.9).toPoint(), S1Angle.degrees(0.5));
+    const full = coverer.getCoveringUnion(cap);
+
+    const cells:S2CellId[] = [];
+    const stream = coverer.getCoveringStream(cap, {maxCandidates: 100});
+    let step = await stream.next();
+    while (!step.done) {
+      cells.push(step.value as S2CellId);
+      step = await stream.next();
+    }
+    expect(step.value).to.be.false;
+    const truncated = new S2CellUnion();
+    truncated.initFromCellIds(cells);
+    expect(truncated.size()).to.be.lt(full.size());
+    checkCoveringCoversGivenRegion(cap, truncated, true, new S2CellId(Long.fromNumber(0)));
+
+    const interior = await coverer.getInteriorCoveringUnionAsync(cap, {maxTimeMs: 0});
+    for (const id of interior.getCellIds()) {
+      assert(cap.containsC(new S2Cell(id)));
+    }
+  });
+
+  it('returns control to the event loop while streaming', async () => {
+    const coverer = new S2RegionCoverer().setMaxCells(2000).setMaxLevel(30);
+    const cap = getRandomCap(S2Cell.averageArea(10), S2Cell.averageArea(8));
+    let ticks = 0;
+    const timer = setInterval(() => ticks++, 0);
+    try {
+      await coverer.getCoveringUnionAsync(cap, {sliceMs: 0});
+    } finally {
+      clearInterval(timer);
+    }
+    expect(ticks).to.be.gt(0);
+  });
+
   // it("benchmark", () => {
   //   const ITERATIONS = 1000;
 
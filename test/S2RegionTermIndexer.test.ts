@@ -0,0 +1,114 @@
+import {S2RegionTermIndexer} from "../src/S2RegionTermIndexer";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2CellUnion} from "../src/S2CellUnion";
+import {S2CellId} from "../src/S2CellId";
+import {S2Cap} from "../src/S2Cap";
+import {S2Point} from "../src/S2Point";
+import {S2LatLng} from "../src/S2LatLng";
+import {S1Angle} from "../src/S1Angle";
+import {getRandomFrameAt} from "./geometricTestCase";
+import {expect} from "chai";
+
+const center = S2LatLng.fromDegrees(45.4, 11.9).toPoint();
+const frame = getRandomFrameAt(center);
+
+/** A random point within the given angle (in degrees) of the center. */
+function samplePoint(maxDegrees:number):S2Point {
+  const angle = S1Angle.degrees(maxDegrees * Math.sqrt(Math.random())).radians;
+  const theta = 2 * Math.PI * Math.random();
+  const x = S2Point.mul(frame.getCol(0), Math.sin(angle) * Math.cos(theta));
+  const y = S2Point.mul(frame.getCol(1), Math.sin(angle) * Math.sin(theta));
+  return S2Point.normalize(S2Point.add(S2Point.add(x, y), S2Point.mul(frame.getCol(2), Math.cos(angle))));
+}
+
+function sampleCap():S2Cap {
+  return S2Cap.fromAxisAngle(samplePoint(1), S1Angle.degrees(0.2 * Math.pow(0.01, Math.random())));
+}
+
+/**
+ * Indexes random points or caps, queries random points or caps, and checks that
+ * the documents sharing a term with the query are exactly the ones whose
+ * covering intersects the covering of the query.
+ */
+function checkRandomCaps(indexer:S2RegionTermIndexer, indexPoints:boolean, queryPoints:boolean) {
+  const coverer = indexer.getCoverer();
+  const docs:Set<string>[] = [];
+  const coverings:S2CellUnion[] = [];
+  for (let i = 0; i < 40; i++) {
+    const covering = new S2CellUnion();
+    if (indexPoints) {
+      const p = samplePoint(1);
+      docs.push(new Set(indexer.getIndexTerms(p, 'geo:')));
+      covering.initFromCellIds([S2CellId.fromPoint(p).parentL(indexer.trueMaxLevel())]);
+    } else {
+      const cap = sampleCap();
+      docs.push(new Set(indexer.getIndexTerms(cap, 'geo:')));
+      covering.initFromCellIds(coverer.getCoveringCells(cap));
+    }
+    coverings.push(covering);
+  }
+
+  let matches = 0;
+  for (let q = 0; q < 40; q++) {
+    const queryCovering = new S2CellUnion();
+    let terms:string[];
+    if (queryPoints) {
+      const p = samplePoint(1);
+      terms = indexer.getQueryTerms(p, 'geo:');
+      queryCovering.initFromCellIds([S2CellId.fromPoint(p)]);
+    } else {
+      const cap = sampleCap();
+      terms = indexer.getQueryTerms(cap, 'geo:');
+      queryCovering.initFromCellIds(coverer.getCoveringCells(cap));
+    }
+    docs.forEach((doc, i) => {
+      const expected = coverings[i].intersectsUnion(queryCovering);
+      expect(terms.some(term => doc.has(term))).to.eq(expected);
+      matches += expected ? 1 : 0;
+    });
+  }
+  return matches;
+}
+
+describe('S2RegionTermIndexer', () => {
+  const configs = [
+    {name: 'default', levelMod: 1, optimizeForSpace: false},
+    {name: 'optimized for space', levelMod: 1, optimizeForSpace: true},
+    {name: 'level mod 2', levelMod: 2, optimizeForSpace: false},
+    {name: 'level mod 3 optimized for space', levelMod: 3, optimizeForSpace: true},
+  ];
+  configs.forEach(config => {
+    const newIndexer = () => new S2RegionTermIndexer(
+        new S2RegionCoverer().setMaxCells(8).setMinLevel(6).setMaxLevel(17).setLevelMod(config.levelMod))
+        .setOptimizeForSpace(config.optimizeForSpace);
+
+    it(`matches intersecting regions (${config.name})`, () => {
+      let matches = 0;
+      matches += checkRandomCaps(newIndexer(), false, false);
+      matches += checkRandomCaps(newIndexer(), false, true);
+      matches += checkRandomCaps(newIndexer(), true, false);
+      matches += checkRandomCaps(newIndexer().setIndexContainsPointsOnly(true), true, false);
+      matches += checkRandomCaps(newIndexer().setIndexContainsPointsOnly(true), true, true);
+      expect(matches).to.be.gt(0);
+    }).timeout(10000);
+  });
+
+  it('trades index terms for query terms when optimizing for space', () => {
+    const coverer = new S2RegionCoverer().setMaxCells(8).setMinLevel(4).setMaxLevel(16);
+    const cap = S2Cap.fromAxisAngle(center, S1Angle.degrees(0.1));
+    const time = new S2RegionTermIndexer(coverer);
+    const space = new S2RegionTermIndexer(coverer).setOptimizeForSpace(true);
+    expect(space.getIndexTerms(cap).length).to.be.lt(time.getIndexTerms(cap).length);
+    expect(space.getQueryTerms(cap).length).to.be.gt(time.getQueryTerms(cap).length);
+  });
+
+  it('distinguishes covering terms with the marker', () => {
+    const indexer = new S2RegionTermIndexer(new S2RegionCoverer().setMinLevel(2).setMaxLevel(4)).setMarker('#');
+    const id = S2CellId.fromPoint(center);
+    expect(indexer.getQueryTerms(center, 'p:')).to.deep.eq(
+        ['p:' + id.parentL(4).toToken(), 'p:#' + id.parentL(4).toToken(), 'p:#' + id.parentL(3).toToken(), 'p:#' + id.parentL(2).toToken()]);
+    expect(indexer.getIndexTerms(center)).to.deep.eq([2, 3, 4].map(level => id.parentL(level).toToken()));
+    expect(() => indexer.setMarker('a')).to.throw();
+    expect(() => indexer.setIndexContainsPointsOnly(true).getIndexTerms(S2Cap.fromAxisAngle(center, S1Angle.degrees(1)))).to.throw();
+  });
+});
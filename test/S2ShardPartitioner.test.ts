@@ -0,0 +1,152 @@
+import {expect} from "chai";
+import {S2ShardPartitioner} from "../src/S2ShardPartitioner";
+import {S2CellIdBits} from "../src/S2CellIdBits";
+import {S2CellId} from "../src/S2CellId";
+import {S2LatLng} from "../src/S2LatLng";
+import {S2Cap} from "../src/S2Cap";
+import {S2RegionCoverer} from "../src/S2RegionCoverer";
+import {S2PackedCellUnion} from "../src/S2PackedCellUnion";
+import {S2CellUnion} from "../src/S2CellUnion";
+import {S1Angle} from "../src/S1Angle";
+
+/** A seeded generator of doubles in [0, 1) (mulberry32), so that the samples are the same on every run. */
+function seededRandom(seed:number):() => number {
+  return () => {
+    seed = (seed + 0x6d2b79f5) | 0;
+    let t = Math.imul(seed ^ (seed >>> 15), 1 | seed);
+    t = (t + Math.imul(t ^ (t >>> 7), 61 | t)) ^ t;
+    return ((t ^ (t >>> 14)) >>> 0) / 4294967296;
+  };
+}
+
+/** Leaf ids of points, most of them packed in a few dense "cities". */
+function skewedSample(count:number, seed:number):Uint32Array {
+  const random = seededRandom(seed);
+  const cities = [[45.46, 9.19], [40.71, -74.0], [35.68, 139.69]];
+  const lats = new Float64Array(count);
+  const lngs = new Float64Array(count);
+  for (let i = 0; i < count; i++) {
+    if (i % 10 === 0) {
+      lats[i] = 180 * random() - 90;
+      lngs[i] = 360 * random() - 180;
+    } else {
+      const city = cities[i % cities.length];
+      lats[i] = city[0] + 0.05 * (random() - 0.5);
+      lngs[i] = city[1] + 0.05 * (random() - 0.5);
+    }
+  }
+  const words = new Uint32Array(2 * count);
+  S2CellIdBits.fromLatLngDegrees(lats, lngs, S2CellId.MAX_LEVEL, words);
+  return words;
+}
+
+function counts(partitioner:S2ShardPartitioner, words:Uint32Array):number[] {
+  const result = new Array(partitioner.numShards()).fill(0);
+  for (let i = 0; i < words.length; i += 2) {
+    result[partitioner.shardOfRaw(words[i + 1], words[i])]++;
+  }
+  return result;
+}
+
+describe('S2ShardPartitioner', () => {
+  const sample = skewedSample(20000, 1);
+
+  it('balances a skewed sample', () => {
+    const partitioner = S2ShardPartitioner.fromSample(sample, 16);
+    expect(partitioner.numShards()).to.eq(16);
+    for (const n of counts(partitioner, sample)) {
+      expect(n).to.be.closeTo(sample.length / 2 / 16, 2);
+    }
+    // New points from the same distribution are still roughly balanced.
+    for (const n of counts(partitioner, skewedSample(20000, 2))) {
+      expect(n).to.be.closeTo(20000 / 16, 20000 / 16 * 0.3);
+    }
+    // Splitting by face would put nearly everything in a few shards.
+    const faces = [0, 0, 0, 0, 0, 0];
+    for (let i = 0; i < sample.length; i += 2) {
+      faces[sample[i + 1] >>> 29]++;
+    }
+    expect(Math.max(...faces)).to.be.gt(sample.length / 2 / 4);
+  });
+
+  it('finds shards by binary search over the splits', () => {
+    const partitioner = S2ShardPartitioner.fromSample(sample, 8);
+    for (let s = 0; s < 8; s++) {
+      const start = partitioner.shardStart(s);
+      const end = partitioner.shardEnd(s);
+      expect(start.isLeaf()).is.true;
+      expect(end.isLeaf()).is.true;
+      expect(partitioner.shardOf(start)).to.eq(s);
+      expect(partitioner.shardOf(end)).to.eq(s);
+      if (s > 0) {
+        expect(partitioner.shardOf(start.prev())).to.eq(s - 1);
+      }
+      if (s < 7) {
+        expect(end.next().id.equals(partitioner.shardStart(s + 1).id)).is.true;
+      }
+    }
+    expect(partitioner.shardStart(0).id.equals(S2CellId.begin(S2CellId.MAX_LEVEL).id)).is.true;
+    expect(partitioner.shardEnd(7).next().id.equals(S2CellId.end(S2CellId.MAX_LEVEL).id)).is.true;
+    // A larger cell goes with its first leaf.
+    const leaf = S2CellId.fromPoint(S2LatLng.fromDegrees(45.46, 9.19).toPoint());
+    expect(partitioner.shardOf(leaf.parentL(10))).to.eq(partitioner.shardOf(leaf.parentL(10).rangeMin()));
+
+    const restored = S2ShardPartitioner.fromSplits(partitioner.getSplits().slice());
+    expect(counts(restored, sample)).to.deep.eq(counts(partitioner, sample));
+  });
+
+  it('balances the area of a union', () => {
+    const cap = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.5, 12).toPoint(), S1Angle.degrees(3));
+    const union = S2PackedCellUnion.fromCellUnion(new S2RegionCoverer().setMaxCells(200).getCoveringUnion(cap));
+    const partitioner = S2ShardPartitioner.fromCellUnion(union, 5);
+    expect(partitioner.numShards()).to.eq(5);
+    expect(partitioner.shardsOf(union)).to.deep.eq([0, 1, 2, 3, 4]);
+
+    // Weigh descendants of the cells (at most 4 levels down) by their area.
+    const perShard = [0, 0, 0, 0, 0];
+    let total = 0;
+    for (const id of union.getCellIds()) {
+      const step = Math.max(0, Math.min(4, 16 - id.level()));
+      for (let c = id.childBeginL(id.level() + step); !c.equals(id.childEndL(id.level() + step)); c = c.next()) {
+        const weight = Math.pow(4, 16 - c.level());
+        perShard[partitioner.shardOf(c)] += weight;
+        total += weight;
+      }
+    }
+    perShard.forEach(n => expect(n).to.be.closeTo(total / 5, total / 5 * 0.05));
+  });
+
+  it('maps a covering to the shards it touches', () => {
+    const partitioner = S2ShardPartitioner.fromSample(sample, 16);
+    const milan = S2Cap.fromAxisAngle(S2LatLng.fromDegrees(45.46, 9.19).toPoint(), S1Angle.degrees(0.01));
+    const covering = new S2RegionCoverer().setMaxCells(8).getCoveringUnion(milan);
+    const shards = partitioner.shardsOf(covering);
+    expect(shards.length).to.be.gt(0);
+    expect(shards.length).to.be.lt(16);
+    const expected = new Set<number>();
+    for (const id of covering.getCellIds()) {
+      for (let s = partitioner.shardOf(id.rangeMin()); s <= partitioner.shardOf(id.rangeMax()); s++) {
+        expected.add(s);
+      }
+    }
+    expect(shards).to.deep.eq(Array.from(expected).sort((a, b) => a - b));
+    expect(partitioner.shardsOf(covering.getCellIds())).to.deep.eq(shards);
+    expect(partitioner.shardsOf(S2PackedCellUnion.fromCellUnion(covering))).to.deep.eq(shards);
+    // The whole sphere touches every shard.
+    expect(partitioner.shardsOf([0, 1, 2, 3, 4, 5].map(f => S2CellId.fromFace(f))).length).to.eq(16);
+  });
+
+  it('splits the whole curve for an empty union and rejects no shards', () => {
+    const partitioner = S2ShardPartitioner.fromCellUnion(new S2CellUnion(), 3);
+    expect(partitioner.numShards()).to.eq(3);
+    // Two faces per shard.
+    expect(partitioner.shardStart(1).id.equals(S2CellId.fromFace(2).rangeMin().id)).is.true;
+    expect(partitioner.shardStart(2).id.equals(S2CellId.fromFace(4).rangeMin().id)).is.true;
+    expect(S2ShardPartitioner.fromCellUnion(S2PackedCellUnion.fromCellIds([]), 1).numShards()).to.eq(1);
+
+    for (const numShards of [0, -1, 1.5, NaN]) {
+      expect(() => S2ShardPartitioner.fromSample(sample, numShards)).to.throw();
+      expect(() => S2ShardPartitioner.fromCellUnion(new S2CellUnion(), numShards)).to.throw();
+    }
+  });
+});